@@ -15,53 +15,247 @@
  */
 package com.expedia.adaptivealerting.anomdetect;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.expedia.adaptivealerting.anomdetect.comp.CaffeineDetectorCache;
+import com.expedia.adaptivealerting.anomdetect.comp.DetectorCache;
+import com.expedia.adaptivealerting.anomdetect.comp.DetectorCacheStats;
 import com.expedia.adaptivealerting.anomdetect.comp.DetectorSource;
+import com.expedia.adaptivealerting.anomdetect.comp.DetectorStateStore;
 import com.expedia.adaptivealerting.anomdetect.detector.Detector;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
 import com.expedia.adaptivealerting.core.data.MappedMetricData;
+import com.expedia.adaptivealerting.core.util.ThreadUtil;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 import lombok.Getter;
-import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import lombok.var;
 
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 
 /**
  * Component that manages a given set of anomaly detectors.
  */
-@RequiredArgsConstructor
 @Slf4j
 public class DetectorManager {
     private static final String CK_DETECTOR_REFRESH_PERIOD = "detector-refresh-period";
+    private static final String CK_DETECTOR_CACHE = "detector-cache";
+    private static final String CK_DETECTOR_CACHE_MAXIMUM_SIZE = "detector-cache.maximum-size";
+    private static final String CK_DETECTOR_CACHE_EXPIRE_MINUTES = "detector-cache.expire-after-access-minutes";
+    private static final String CK_DETECTOR_LOADER_THREADS = "detector-loader-threads";
+    private static final String CK_DETECTOR_PREFETCH_BATCH_SIZE = "detector-prefetch.batch-size";
+    private static final String CK_DETECTOR_UPDATES_ENABLED = "detector-updates.enabled";
+    private static final String CK_QUARANTINE_INITIAL_BACKOFF_MS = "detector-quarantine.initial-backoff-ms";
+    private static final String CK_QUARANTINE_MAX_BACKOFF_MS = "detector-quarantine.max-backoff-ms";
+    private static final String CK_REFRESH_AHEAD_ENABLED = "detector-refresh-ahead.enabled";
+    private static final String CK_REFRESH_AHEAD_INTERVAL_MS = "detector-refresh-ahead.refresh-interval-ms";
+    private static final String CK_REFRESH_AHEAD_WINDOW_MS = "detector-refresh-ahead.refresh-ahead-ms";
+    private static final String CK_REFRESH_AHEAD_RETRY_BACKOFF_MS = "detector-refresh-ahead.retry-backoff-ms";
+    private static final int DEFAULT_DETECTOR_LOADER_THREADS = 4;
+    private static final int DEFAULT_DETECTOR_PREFETCH_BATCH_SIZE = 100;
+    private static final long DEFAULT_QUARANTINE_INITIAL_BACKOFF_MS = 1_000L;
+    private static final long DEFAULT_QUARANTINE_MAX_BACKOFF_MS = 5 * 60 * 1_000L;
+    private static final long DEFAULT_REFRESH_AHEAD_INTERVAL_MS = 10 * 60 * 1_000L;
+    private static final long DEFAULT_REFRESH_AHEAD_WINDOW_MS = 60 * 1_000L;
+    private static final long DEFAULT_REFRESH_AHEAD_RETRY_BACKOFF_MS = 30 * 1_000L;
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
 
     @Getter
-    @NonNull
-    private DetectorSource detectorSource;
+    private final DetectorSource detectorSource;
 
-    private int detectorRefreshTimePeriod;
+    private final int detectorRefreshTimePeriod;
 
-    // TODO Consider making this an explicit class so we can mock it and verify interactions
-    //  against it. [WLW]
-    private final Map<UUID, Detector> cachedDetectors = new HashMap<>();
+    // Shared between the stream threads and the refresh scheduler, so this must be thread-safe.
+    private final DetectorCache cachedDetectors;
+
+    // Executor for asynchronous detector loads, and the loads currently in flight, so concurrent misses for the same
+    // detector share a single model service request.
+    private final ExecutorService loaderExecutor;
+    private final ConcurrentMap<UUID, CompletableFuture<Detector>> inFlightLoads = new ConcurrentHashMap<>();
+
+    // Detectors loaded by a prefetch but not yet installed. They're handed out by the regular load paths, so state
+    // restore still happens on the thread that owns the state store. Bounded like the detector cache, so prefetched
+    // detectors whose records never arrive don't pile up.
+    private final ConcurrentMap<UUID, Detector> prefetchedDetectors;
+    private final int prefetchBatchSize;
+
+    // Replacements built by reloads on the loader threads, waiting for the stream thread that classifies the detector
+    // to swap them in. Only that thread may read the live detector's state.
+    private final ConcurrentMap<UUID, Detector> pendingSwaps = new ConcurrentHashMap<>();
+
+    @Getter
+    private final DetectorPrefetchProgress prefetchProgress = new DetectorPrefetchProgress();
+
+    // Detectors whose last load failed, so records for them don't hit the model service until their backoff expires.
+    @Getter
+    private final DetectorQuarantine quarantine;
+
+    // Refresh-ahead deadlines and staleness of cached detectors, or null if refresh-ahead is off.
+    @Getter
+    private final DetectorRefreshSchedule refreshSchedule;
+
+    // Detectors by the input partition their records arrive on, so detectors for revoked partitions can be dropped.
+    private final ConcurrentMap<Integer, Set<UUID>> partitionDetectors = new ConcurrentHashMap<>();
+
+    // Detectors disabled via pushed detector updates. Always empty in polling mode.
+    private final Set<UUID> disabledDetectors = ConcurrentHashMap.newKeySet();
+
+    @Getter
+    private final MetricRegistry metricRegistry;
+
+    // Classify latency per detector class, so the hot path doesn't build a metric name per record.
+    private final ConcurrentMap<Class<?>, Timer> classifyTimers = new ConcurrentHashMap<>();
+    private final Timer loadTimer;
+    private final Meter refreshFailures;
 
     public DetectorManager(DetectorSource detectorSource, Config config) {
+        this(detectorSource, config, new MetricRegistry());
+    }
+
+    public DetectorManager(DetectorSource detectorSource, Config config, MetricRegistry metricRegistry) {
+        this(detectorSource, config, buildDetectorCache(config), metricRegistry);
+    }
+
+    public DetectorManager(DetectorSource detectorSource, Config config, DetectorCache cachedDetectors) {
+        this(detectorSource, config, cachedDetectors, new MetricRegistry());
+    }
+
+    public DetectorManager(
+            DetectorSource detectorSource,
+            Config config,
+            DetectorCache cachedDetectors,
+            MetricRegistry metricRegistry) {
+
+        notNull(detectorSource, "detectorSource can't be null");
+        notNull(config, "config can't be null");
+        notNull(cachedDetectors, "cachedDetectors can't be null");
+        notNull(metricRegistry, "metricRegistry can't be null");
         this.detectorSource = detectorSource;
+        this.metricRegistry = metricRegistry;
+        this.loadTimer = metricRegistry.timer(MetricRegistry.name("detector", "load"));
+        this.refreshFailures = metricRegistry.meter(MetricRegistry.name("detector", "refresh", "failures"));
         this.detectorRefreshTimePeriod = config.getInt(CK_DETECTOR_REFRESH_PERIOD);
-        this.initScheduler();
+        this.cachedDetectors = cachedDetectors;
+        this.prefetchedDetectors = buildPrefetchedDetectors(config);
+        this.loaderExecutor = Executors.newFixedThreadPool(
+                config.hasPath(CK_DETECTOR_LOADER_THREADS)
+                        ? config.getInt(CK_DETECTOR_LOADER_THREADS)
+                        : DEFAULT_DETECTOR_LOADER_THREADS,
+                ThreadUtil.daemonThreadFactory("detector-loader"));
+        this.prefetchBatchSize = config.hasPath(CK_DETECTOR_PREFETCH_BATCH_SIZE)
+                ? config.getInt(CK_DETECTOR_PREFETCH_BATCH_SIZE)
+                : DEFAULT_DETECTOR_PREFETCH_BATCH_SIZE;
+        isTrue(prefetchBatchSize > 0, "detector-prefetch.batch-size must be strictly positive");
+        this.quarantine = new DetectorQuarantine(
+                config.hasPath(CK_QUARANTINE_INITIAL_BACKOFF_MS)
+                        ? config.getLong(CK_QUARANTINE_INITIAL_BACKOFF_MS)
+                        : DEFAULT_QUARANTINE_INITIAL_BACKOFF_MS,
+                config.hasPath(CK_QUARANTINE_MAX_BACKOFF_MS)
+                        ? config.getLong(CK_QUARANTINE_MAX_BACKOFF_MS)
+                        : DEFAULT_QUARANTINE_MAX_BACKOFF_MS);
+
+        this.refreshSchedule = buildRefreshSchedule(config);
+        if (refreshSchedule != null) {
+            // The registry may be shared with an earlier manager in this JVM, so replace its gauge rather than fail.
+            val staleName = MetricRegistry.name("detector", "stale");
+            metricRegistry.remove(staleName);
+            metricRegistry.register(staleName, (Gauge<Integer>) refreshSchedule::getStaleCount);
+        }
+        initSweep(config.hasPath(CK_REFRESH_AHEAD_INTERVAL_MS)
+                ? config.getLong(CK_REFRESH_AHEAD_INTERVAL_MS)
+                : DEFAULT_REFRESH_AHEAD_INTERVAL_MS);
+
+        // With pushed updates the caller feeds changes in via applyDetectorUpdate() and applyDetectorDelete().
+        val pushedUpdates = config.hasPath(CK_DETECTOR_UPDATES_ENABLED)
+                && config.getBoolean(CK_DETECTOR_UPDATES_ENABLED);
+        if (pushedUpdates) {
+            log.info("Detector updates are pushed; not polling for updated detectors");
+        } else {
+            this.initScheduler();
+        }
+    }
+
+    private static DetectorCache buildDetectorCache(Config config) {
+        notNull(config, "config can't be null");
+        val cacheConfig = config.hasPath(CK_DETECTOR_CACHE)
+                ? config.getConfig(CK_DETECTOR_CACHE)
+                : ConfigFactory.empty();
+        return CaffeineDetectorCache.fromConfig(cacheConfig);
+    }
+
+    private static ConcurrentMap<UUID, Detector> buildPrefetchedDetectors(Config config) {
+        val maximumSize = config.hasPath(CK_DETECTOR_CACHE_MAXIMUM_SIZE)
+                ? config.getLong(CK_DETECTOR_CACHE_MAXIMUM_SIZE)
+                : CaffeineDetectorCache.DEFAULT_MAXIMUM_SIZE;
+        val expireMinutes = config.hasPath(CK_DETECTOR_CACHE_EXPIRE_MINUTES)
+                ? config.getLong(CK_DETECTOR_CACHE_EXPIRE_MINUTES)
+                : CaffeineDetectorCache.DEFAULT_EXPIRE_AFTER_ACCESS_MINUTES;
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+                .<UUID, Detector>build()
+                .asMap();
+    }
+
+    private static DetectorRefreshSchedule buildRefreshSchedule(Config config) {
+        if (!config.hasPath(CK_REFRESH_AHEAD_ENABLED) || !config.getBoolean(CK_REFRESH_AHEAD_ENABLED)) {
+            return null;
+        }
+        return new DetectorRefreshSchedule(
+                config.hasPath(CK_REFRESH_AHEAD_INTERVAL_MS)
+                        ? config.getLong(CK_REFRESH_AHEAD_INTERVAL_MS)
+                        : DEFAULT_REFRESH_AHEAD_INTERVAL_MS,
+                config.hasPath(CK_REFRESH_AHEAD_WINDOW_MS)
+                        ? config.getLong(CK_REFRESH_AHEAD_WINDOW_MS)
+                        : DEFAULT_REFRESH_AHEAD_WINDOW_MS,
+                config.hasPath(CK_REFRESH_AHEAD_RETRY_BACKOFF_MS)
+                        ? config.getLong(CK_REFRESH_AHEAD_RETRY_BACKOFF_MS)
+                        : DEFAULT_REFRESH_AHEAD_RETRY_BACKOFF_MS);
+    }
+
+    private void initSweep(long intervalMillis) {
+        // Detectors the cache evicts on its own (size, idle time) never come back to the swap or refresh paths; forget
+        // them.
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                pendingSwaps.keySet().removeIf(uuid -> !cachedDetectors.contains(uuid));
+                if (refreshSchedule != null) {
+                    refreshSchedule.retainIf(cachedDetectors::contains);
+                }
+            } catch (Exception e) {
+                log.error("Error sweeping detector swaps and refresh schedule", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
     }
 
     private void initScheduler() {
@@ -95,6 +289,15 @@ public class DetectorManager {
         return getDetectorTypes().contains(detectorType);
     }
 
+    /**
+     * Returns a snapshot of the detector cache statistics (hits, misses, evictions and load times).
+     *
+     * @return Detector cache statistics.
+     */
+    public DetectorCacheStats getDetectorCacheStats() {
+        return cachedDetectors.stats();
+    }
+
     /**
      * Classifies the mapped metric data, performing detector lookup behind the scenes. Returns {@code null} if there's
      * no detector defined for the given mapped metric data.
@@ -103,45 +306,667 @@ public class DetectorManager {
      * @return The anomaly result, or {@code null} if there's no associated detector.
      */
     public AnomalyResult classify(MappedMetricData mappedMetricData) {
+        return classify(mappedMetricData, null);
+    }
+
+    /**
+     * Classifies the mapped metric data as per {@link #classify(MappedMetricData)}. When the detector isn't cached yet,
+     * its learned state is restored from the given state store after loading.
+     *
+     * @param mappedMetricData Mapped metric data.
+     * @param stateStore       Detector state store, or {@code null} to always start from fresh state.
+     * @return The anomaly result, or {@code null} if there's no associated detector.
+     */
+    public AnomalyResult classify(MappedMetricData mappedMetricData, DetectorStateStore stateStore) {
         notNull(mappedMetricData, "mappedMetricData can't be null");
 
-        val detector = detectorFor(mappedMetricData);
+        if (isDetectorDisabled(mappedMetricData.getDetectorUuid())) {
+            log.debug("Skipping disabled detector: mappedMetricData={}", mappedMetricData);
+            return null;
+        }
+        val detector = detectorFor(mappedMetricData, stateStore);
         if (detector == null) {
-            log.warn("No detector for mappedMetricData={}", mappedMetricData);
+            if (!quarantine.isQuarantined(mappedMetricData.getDetectorUuid())) {
+                log.warn("No detector for mappedMetricData={}", mappedMetricData);
+            }
             return null;
         }
         val metricData = mappedMetricData.getMetricData();
-        return detector.classify(metricData);
+        final Timer.Context timerContext = classifyTimer(detector).time();
+        try {
+            return detector.classify(metricData);
+        } finally {
+            timerContext.stop();
+        }
     }
 
-    private Detector detectorFor(MappedMetricData mappedMetricData) {
-        notNull(mappedMetricData, "mappedMetricData can't be null");
+    /**
+     * Classifies a batch of mapped metric data as per {@link #classify(MappedMetricData)}.
+     *
+     * @param batch Mapped metric data.
+     * @return Anomaly results, aligned with the batch.
+     */
+    public List<AnomalyResult> classifyBatch(List<MappedMetricData> batch) {
+        return classifyBatch(batch, null);
+    }
 
-        val detectorUuid = mappedMetricData.getDetectorUuid();
-        var detector = cachedDetectors.get(detectorUuid);
+    /**
+     * <p>
+     * Classifies a batch of mapped metric data. Records are grouped by detector so each detector is looked up once per
+     * batch, and each group is classified in timestamp order, with ties kept in arrival order.
+     * </p>
+     * <p>
+     * Unlike {@link #classify(MappedMetricData, DetectorStateStore)}, errors don't propagate: a detector that fails to
+     * load or a record that fails to classify is logged and gets a {@code null} result, so one bad record doesn't cost
+     * the rest of the batch.
+     * </p>
+     *
+     * @param batch      Mapped metric data.
+     * @param stateStore Detector state store, or {@code null} to always start from fresh state.
+     * @return Anomaly results, aligned with the batch. An element is {@code null} if the record wasn't classified.
+     */
+    public List<AnomalyResult> classifyBatch(List<MappedMetricData> batch, DetectorStateStore stateStore) {
+        notNull(batch, "batch can't be null");
+
+        final List<AnomalyResult> results = new ArrayList<>(Collections.nCopies(batch.size(), null));
+        final Map<UUID, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            val mappedMetricData = batch.get(i);
+            notNull(mappedMetricData, "batch can't contain null elements");
+            groups.computeIfAbsent(mappedMetricData.getDetectorUuid(), uuid -> new ArrayList<>()).add(i);
+        }
+        preloadDetectors(groups.keySet());
+        for (val group : groups.entrySet()) {
+            classifyGroup(group.getKey(), group.getValue(), batch, results, stateStore);
+        }
+        return results;
+    }
+
+    /**
+     * Loads the batch's uncached detectors with a single bulk lookup, so a cold batch doesn't cost one model service
+     * call per detector. Detectors the bulk lookup misses, or all of them if it fails, fall back to individual loads.
+     */
+    private void preloadDetectors(Collection<UUID> detectorUuids) {
+        val missing = new ArrayList<UUID>();
+        for (val uuid : detectorUuids) {
+            if (cachedDetectors.getIfPresent(uuid) == null
+                    && !prefetchedDetectors.containsKey(uuid)
+                    && !inFlightLoads.containsKey(uuid)
+                    && !quarantine.isQuarantined(uuid)
+                    && !isDetectorDisabled(uuid)) {
+                missing.add(uuid);
+            }
+        }
+        if (missing.size() < 2) {
+            return;
+        }
+        try {
+            prefetchedDetectors.putAll(detectorSource.findDetectors(missing));
+        } catch (Exception e) {
+            log.warn("Bulk detector load failed, falling back to individual loads: count={}, error={}",
+                    missing.size(), e.getMessage());
+        }
+    }
+
+    private void classifyGroup(
+            UUID detectorUuid,
+            List<Integer> indexes,
+            List<MappedMetricData> batch,
+            List<AnomalyResult> results,
+            DetectorStateStore stateStore) {
+
+        if (isDetectorDisabled(detectorUuid)) {
+            return;
+        }
+        final Detector detector;
+        try {
+            detector = detectorFor(batch.get(indexes.get(0)), stateStore);
+        } catch (Exception e) {
+            log.error("Error loading detector: uuid={}, skippedRecords={}", detectorUuid, indexes.size(), e);
+            return;
+        }
+        if (detector == null) {
+            if (!quarantine.isQuarantined(detectorUuid)) {
+                log.warn("No detector: uuid={}, skippedRecords={}", detectorUuid, indexes.size());
+            }
+            return;
+        }
+
+        indexes.sort(Comparator.comparingLong((Integer i) -> batch.get(i).getMetricData().getTimestamp()));
+        val timer = classifyTimer(detector);
+        for (val i : indexes) {
+            val mappedMetricData = batch.get(i);
+            final Timer.Context timerContext = timer.time();
+            try {
+                results.set(i, detector.classify(mappedMetricData.getMetricData()));
+            } catch (Exception e) {
+                log.error("Classification error: mappedMetricData={}", mappedMetricData, e);
+            } finally {
+                timerContext.stop();
+            }
+        }
+    }
+
+    /**
+     * Writes the learned state of the given cached detector to the state store. Does nothing if the detector isn't
+     * cached or is stateless.
+     *
+     * @param detectorUuid Detector UUID.
+     * @param stateStore   Detector state store.
+     * @return Boolean indicating whether a snapshot was written.
+     */
+    public boolean saveDetectorState(UUID detectorUuid, DetectorStateStore stateStore) {
+        notNull(detectorUuid, "detectorUuid can't be null");
+        notNull(stateStore, "stateStore can't be null");
+
+        val detector = cachedDetectors.getIfPresent(detectorUuid);
         if (detector == null) {
-            detector = detectorSource.findDetector(detectorUuid);
-            cachedDetectors.put(detectorUuid, detector);
+            return false;
+        }
+        val snapshot = detector.snapshotState();
+        if (snapshot == null) {
+            return false;
+        }
+        stateStore.save(detectorUuid, snapshot);
+        return true;
+    }
+
+    /**
+     * Returns the cached detector with the given UUID without loading it.
+     *
+     * @param detectorUuid Detector UUID.
+     * @return The cached detector, or {@code null} if it isn't cached.
+     */
+    public Detector getCachedDetector(UUID detectorUuid) {
+        notNull(detectorUuid, "detectorUuid can't be null");
+        return cachedDetectors.getIfPresent(detectorUuid);
+    }
+
+    /**
+     * Loads the detector with the given UUID from the detector source without blocking the caller, via
+     * {@link DetectorSource#findDetectorAsync(UUID, java.util.concurrent.Executor)}. Concurrent calls for the same
+     * detector share the in-flight load. The loaded detector is not cached; callers install it with
+     * {@link #installDetector(UUID, Detector, DetectorStateStore)} on the thread that owns the state store.
+     *
+     * @param detectorUuid Detector UUID.
+     * @return Future completing with the detector, or with {@code null} if the source has no such detector.
+     */
+    public CompletableFuture<Detector> loadDetectorAsync(UUID detectorUuid) {
+        notNull(detectorUuid, "detectorUuid can't be null");
+
+        val prefetched = prefetchedDetectors.remove(detectorUuid);
+        if (prefetched != null) {
+            return CompletableFuture.completedFuture(prefetched);
+        }
+        if (quarantine.isQuarantined(detectorUuid)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        val inFlight = inFlightLoads.get(detectorUuid);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        val future = new CompletableFuture<Detector>();
+        val existing = inFlightLoads.putIfAbsent(detectorUuid, future);
+        if (existing != null) {
+            return existing;
+        }
+        final Timer.Context timerContext = loadTimer.time();
+        detectorSource.findDetectorAsync(detectorUuid, loaderExecutor).whenComplete((detector, e) -> {
+            timerContext.stop();
+            if (e == null) {
+                recordLoadResult(detectorUuid, detector);
+                future.complete(detector);
+            } else {
+                val cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                recordLoadFailure(detectorUuid, cause);
+                future.completeExceptionally(cause);
+            }
+            inFlightLoads.remove(detectorUuid, future);
+        });
+        return future;
+    }
+
+    /**
+     * Prefetches all enabled detectors accepted by the given filter, e.g. those whose records land on partitions this
+     * instance owns. See {@link #prefetchDetectors(Collection)}.
+     *
+     * @param filter Detector UUID filter.
+     * @return Future completing when the prefetch is done.
+     */
+    public CompletableFuture<Void> prefetchDetectors(Predicate<UUID> filter) {
+        notNull(filter, "filter can't be null");
+        return CompletableFuture
+                .supplyAsync(detectorSource::findEnabledDetectorUuids, loaderExecutor)
+                .thenCompose(uuids -> prefetchDetectors(uuids.stream().filter(filter).collect(Collectors.toList())));
+    }
+
+    /**
+     * Loads the given detectors from the detector source in batches, running the batches in parallel on the loader
+     * threads. Detectors that are already cached or loading are skipped. Prefetched detectors are handed out by
+     * {@link #loadDetectorAsync(UUID)} and by {@link #classify(MappedMetricData, DetectorStateStore)} without another
+     * model service call, and loads requested while the prefetch runs wait for it instead of issuing their own.
+     *
+     * @param detectorUuids Detector UUIDs.
+     * @return Future completing when all batches are done. Failed batches are logged and counted, not propagated.
+     */
+    public CompletableFuture<Void> prefetchDetectors(Collection<UUID> detectorUuids) {
+        notNull(detectorUuids, "detectorUuids can't be null");
+
+        val startMillis = System.currentTimeMillis();
+        val futures = new HashMap<UUID, CompletableFuture<Detector>>();
+        for (val uuid : detectorUuids) {
+            if (cachedDetectors.getIfPresent(uuid) != null || prefetchedDetectors.containsKey(uuid)) {
+                continue;
+            }
+            val future = new CompletableFuture<Detector>();
+            if (inFlightLoads.putIfAbsent(uuid, future) == null) {
+                futures.put(uuid, future);
+            }
+        }
+
+        val toLoad = new ArrayList<UUID>(futures.keySet());
+        prefetchProgress.start(toLoad.size());
+        log.info("Prefetching detectors: count={}, batchSize={}", toLoad.size(), prefetchBatchSize);
+
+        val batches = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < toLoad.size(); i += prefetchBatchSize) {
+            val batch = toLoad.subList(i, Math.min(i + prefetchBatchSize, toLoad.size()));
+            batches.add(CompletableFuture.runAsync(() -> prefetchBatch(batch, futures), loaderExecutor));
+        }
+        return CompletableFuture
+                .allOf(batches.toArray(new CompletableFuture[0]))
+                .whenComplete((result, e) -> {
+                    val elapsedMillis = System.currentTimeMillis() - startMillis;
+                    prefetchProgress.finish(elapsedMillis);
+                    log.info("Prefetched detectors: loaded={}, missing={}, failed={}, durationMillis={}",
+                            prefetchProgress.getLoaded(),
+                            prefetchProgress.getMissing(),
+                            prefetchProgress.getFailed(),
+                            elapsedMillis);
+                });
+    }
+
+    private void prefetchBatch(List<UUID> batch, Map<UUID, CompletableFuture<Detector>> futures) {
+        Map<UUID, Detector> detectors;
+        try {
+            detectors = detectorSource.findDetectors(batch);
+        } catch (Exception e) {
+            log.error("Error prefetching detector batch: size={}", batch.size(), e);
+            prefetchProgress.recordFailure(batch.size());
+            for (val uuid : batch) {
+                val future = futures.get(uuid);
+                inFlightLoads.remove(uuid, future);
+                future.completeExceptionally(e);
+            }
+            return;
+        }
+
+        long loaded = 0L;
+        for (val uuid : batch) {
+            val future = futures.get(uuid);
+            val detector = detectors.get(uuid);
+            if (detector != null) {
+                prefetchedDetectors.put(uuid, detector);
+                loaded++;
+            }
+            inFlightLoads.remove(uuid, future);
+
+            // Detectors missing from the bulk result resolve to null, just like a single load that finds nothing.
+            future.complete(detector);
+        }
+        prefetchProgress.recordBatch(loaded, batch.size() - loaded);
+    }
+
+    /**
+     * Restores the detector's learned state from the given state store and adds it to the cache.
+     *
+     * @param detectorUuid Detector UUID.
+     * @param detector     Detector, typically from {@link #loadDetectorAsync(UUID)}.
+     * @param stateStore   Detector state store, or {@code null} to start from fresh state.
+     */
+    public void installDetector(UUID detectorUuid, Detector detector, DetectorStateStore stateStore) {
+        notNull(detectorUuid, "detectorUuid can't be null");
+        notNull(detector, "detector can't be null");
+        prefetchedDetectors.remove(detectorUuid);
+        pendingSwaps.remove(detectorUuid);
+        if (stateStore != null) {
+            restoreDetectorState(detectorUuid, detector, stateStore);
+        }
+        cachedDetectors.put(detectorUuid, detector);
+        recordFresh(detectorUuid);
+    }
+
+    /**
+     * Indicates whether the given detector has been disabled by a pushed update.
+     *
+     * @param detectorUuid Detector UUID.
+     * @return Boolean indicating whether the detector is disabled.
+     */
+    public boolean isDetectorDisabled(UUID detectorUuid) {
+        notNull(detectorUuid, "detectorUuid can't be null");
+        return disabledDetectors.contains(detectorUuid);
+    }
+
+    /**
+     * Applies a pushed detector update. Enabled detectors are hot-swapped as per {@link #swapDetector(UUID)}; disabled
+     * ones are evicted.
+     *
+     * @param detectorUuid Detector UUID.
+     * @param enabled      Whether the detector is enabled.
+     */
+    public void applyDetectorUpdate(UUID detectorUuid, boolean enabled) {
+        notNull(detectorUuid, "detectorUuid can't be null");
+        if (enabled) {
+            disabledDetectors.remove(detectorUuid);
+            swapDetector(detectorUuid);
         } else {
-            log.trace("Got cached detector");
+            disabledDetectors.add(detectorUuid);
+            evictDetector(detectorUuid);
+        }
+        log.info("Applied detector update: uuid={}, enabled={}", detectorUuid, enabled);
+    }
+
+    /**
+     * Applies a pushed detector deletion by evicting the detector.
+     *
+     * @param detectorUuid Detector UUID.
+     */
+    public void applyDetectorDelete(UUID detectorUuid) {
+        notNull(detectorUuid, "detectorUuid can't be null");
+        disabledDetectors.remove(detectorUuid);
+        evictDetector(detectorUuid);
+        log.info("Applied detector delete: uuid={}", detectorUuid);
+    }
+
+    /**
+     * <p>
+     * Reloads a cached detector with its current params on a loader thread and swaps the new instance into the cache,
+     * carrying its learned state over where the new params allow it (see {@link Detector#migrateStateFrom(Detector)}).
+     * </p>
+     * <p>
+     * The swap is double-buffered: the replacement is built next to the live detector, which keeps classifying, so
+     * classification never waits on a reload. The state copy and the swap itself happen on the thread that classifies
+     * the detector, when its next record arrives, so the replacement sees every point the live detector classified.
+     * If the detector isn't cached there's nothing to preserve, and its next record loads it as usual. See
+     * {@link #reloadDetector(UUID)} for how failed reloads are handled.
+     * </p>
+     *
+     * @param detectorUuid Detector UUID.
+     */
+    void swapDetector(UUID detectorUuid) {
+        prefetchedDetectors.remove(detectorUuid);
+        quarantine.release(detectorUuid);
+        if (!cachedDetectors.contains(detectorUuid)) {
+            return;
+        }
+        reloadDetector(detectorUuid);
+    }
+
+    /**
+     * Reloads a cached detector on a loader thread and leaves the new instance for the classifying thread to swap in,
+     * as per {@link #swapDetector(UUID)}. If the model service is unavailable the current instance stays in place as
+     * the last-known-good detector and is marked stale. Other failures evict it.
+     */
+    private void reloadDetector(UUID detectorUuid) {
+        loaderExecutor.execute(() -> {
+            try {
+                val replacement = timedFindDetector(detectorUuid);
+                if (replacement == null) {
+                    pendingSwaps.remove(detectorUuid);
+                    cachedDetectors.invalidate(detectorUuid);
+                    forgetRefresh(detectorUuid);
+                    return;
+                }
+                if (cachedDetectors.contains(detectorUuid)) {
+                    pendingSwaps.put(detectorUuid, replacement);
+                    log.debug("Reloaded detector, pending swap: uuid={}", detectorUuid);
+                }
+            } catch (DetectorRetrievalException e) {
+                refreshFailures.mark();
+                if (refreshSchedule != null) {
+                    refreshSchedule.recordRefreshFailed(detectorUuid);
+                }
+                log.warn("Error reloading detector, serving last-known-good instance: uuid={}, error={}",
+                        detectorUuid, e.getMessage());
+            } catch (Exception e) {
+                refreshFailures.mark();
+                log.error("Error reloading detector, evicting it: uuid={}", detectorUuid, e);
+                pendingSwaps.remove(detectorUuid);
+                cachedDetectors.invalidate(detectorUuid);
+                forgetRefresh(detectorUuid);
+            }
+        });
+    }
+
+    /**
+     * Swaps in the replacement a reload left for the given detector, if any. Called by the thread classifying the
+     * detector, before it classifies the next point, so the live detector's state isn't changing while it's copied.
+     *
+     * @return The detector to classify with.
+     */
+    private Detector swapIfPending(UUID detectorUuid, Detector current) {
+        val replacement = pendingSwaps.remove(detectorUuid);
+        if (replacement == null) {
+            return current;
+        }
+        boolean migrated;
+        try {
+            migrated = replacement.migrateStateFrom(current);
+        } catch (DetectorStateException e) {
+            // The new params still apply; the replacement just warms up from scratch.
+            log.warn("Can't migrate detector state, starting fresh: uuid={}, error={}", detectorUuid, e.getMessage());
+            migrated = false;
+        }
+        if (!cachedDetectors.replace(detectorUuid, current, replacement)) {
+            return current;
+        }
+        recordFresh(detectorUuid);
+        log.info("Swapped detector: uuid={}, stateMigrated={}", detectorUuid, migrated);
+        return replacement;
+    }
+
+    private void refreshAheadIfDue(UUID detectorUuid) {
+        if (refreshSchedule != null && refreshSchedule.tryStartRefresh(detectorUuid)) {
+            log.debug("Refreshing detector ahead of its deadline: uuid={}", detectorUuid);
+            reloadDetector(detectorUuid);
+        }
+    }
+
+    private void recordFresh(UUID detectorUuid) {
+        if (refreshSchedule != null) {
+            refreshSchedule.recordLoaded(detectorUuid);
+        }
+    }
+
+    private void forgetRefresh(UUID detectorUuid) {
+        if (refreshSchedule != null) {
+            refreshSchedule.remove(detectorUuid);
+        }
+    }
+
+    /**
+     * Records that the given detector's records arrive on the given input partition.
+     *
+     * @param detectorUuid Detector UUID.
+     * @param partition    Input partition.
+     */
+    public void trackDetectorPartition(UUID detectorUuid, int partition) {
+        notNull(detectorUuid, "detectorUuid can't be null");
+        partitionDetectors.computeIfAbsent(partition, p -> ConcurrentHashMap.newKeySet()).add(detectorUuid);
+    }
+
+    /**
+     * <p>
+     * Evicts the detectors tracked for input partitions this instance no longer owns, so the cache follows the
+     * partition assignment instead of accumulating detectors for partitions that moved elsewhere. Detectors still
+     * tracked for an owned partition are kept.
+     * </p>
+     * <p>
+     * Learned state isn't saved here; the owning task writes it to the state store when its partition is revoked, and
+     * the new owner restores it from there.
+     * </p>
+     *
+     * @param ownedPartitions Input partitions currently owned by this instance.
+     * @return Number of detectors evicted.
+     */
+    public int retainPartitions(Set<Integer> ownedPartitions) {
+        notNull(ownedPartitions, "ownedPartitions can't be null");
+
+        final Set<UUID> revoked = new HashSet<>();
+        val it = partitionDetectors.entrySet().iterator();
+        while (it.hasNext()) {
+            val entry = it.next();
+            if (!ownedPartitions.contains(entry.getKey())) {
+                revoked.addAll(entry.getValue());
+                it.remove();
+            }
+        }
+        partitionDetectors.values().forEach(revoked::removeAll);
+        revoked.forEach(this::evictDetector);
+        log.info("Evicted detectors for revoked partitions: ownedPartitions={}, evicted={}",
+                ownedPartitions, revoked.size());
+        return revoked.size();
+    }
+
+    private void evictDetector(UUID detectorUuid) {
+        cachedDetectors.invalidate(detectorUuid);
+        prefetchedDetectors.remove(detectorUuid);
+        pendingSwaps.remove(detectorUuid);
+        quarantine.release(detectorUuid);
+        forgetRefresh(detectorUuid);
+    }
+
+    private Detector detectorFor(MappedMetricData mappedMetricData, DetectorStateStore stateStore) {
+        notNull(mappedMetricData, "mappedMetricData can't be null");
+
+        val detectorUuid = mappedMetricData.getDetectorUuid();
+        val cached = cachedDetectors.getIfPresent(detectorUuid);
+        if (cached != null) {
+            val detector = swapIfPending(detectorUuid, cached);
+            refreshAheadIfDue(detectorUuid);
+            return detector;
+        }
+        if (quarantine.isQuarantined(detectorUuid)) {
+            log.debug("Skipping quarantined detector: uuid={}", detectorUuid);
+            return null;
+        }
+        return cachedDetectors.get(detectorUuid, uuid -> loadDetector(uuid, stateStore));
+    }
+
+    private Detector loadDetector(UUID detectorUuid, DetectorStateStore stateStore) {
+        final Detector detector;
+        try {
+            detector = findDetector(detectorUuid);
+        } catch (RuntimeException e) {
+            recordLoadFailure(detectorUuid, e);
+            throw e;
+        }
+        recordLoadResult(detectorUuid, detector);
+        if (detector != null) {
+            recordFresh(detectorUuid);
+            if (stateStore != null) {
+                restoreDetectorState(detectorUuid, detector, stateStore);
+            }
         }
         return detector;
     }
 
+    private void recordLoadResult(UUID detectorUuid, Detector detector) {
+        if (detector != null) {
+            quarantine.release(detectorUuid);
+        } else {
+            val backoffMillis = quarantine.recordFailure(detectorUuid);
+            log.warn("Quarantining detector after failed load: uuid={}, backoffMillis={}", detectorUuid, backoffMillis);
+        }
+    }
+
+    private void recordLoadFailure(UUID detectorUuid, Throwable e) {
+        if (isDetectorFailure(e)) {
+            recordLoadResult(detectorUuid, null);
+        }
+    }
+
+    /**
+     * Indicates whether a load failure comes from the detector itself: it doesn't exist, its model can't be read, or
+     * it can't be built from its params. Transport failures (open circuits, exhausted retries, timeouts, I/O errors)
+     * say nothing about the detector, and quarantining on them would quarantine every detector during a model service
+     * outage, so those retry normally.
+     */
+    static boolean isDetectorFailure(Throwable e) {
+        if (e instanceof DetectorNotFoundException || e instanceof DetectorDeserializationException) {
+            return true;
+        }
+        return !(e instanceof DetectorRetrievalException
+                || e instanceof UncheckedIOException
+                || e instanceof TimeoutException);
+    }
+
+    private Detector timedFindDetector(UUID detectorUuid) {
+        final Timer.Context timerContext = loadTimer.time();
+        try {
+            return detectorSource.findDetector(detectorUuid);
+        } finally {
+            timerContext.stop();
+        }
+    }
+
+    private Timer classifyTimer(Detector detector) {
+        return classifyTimers.computeIfAbsent(detector.getClass(),
+                detectorClass -> metricRegistry.timer(
+                        MetricRegistry.name("detector", "classify", detectorClass.getSimpleName())));
+    }
+
+    private Detector findDetector(UUID detectorUuid) {
+        val prefetched = prefetchedDetectors.remove(detectorUuid);
+        if (prefetched != null) {
+            return prefetched;
+        }
+        val inFlight = inFlightLoads.get(detectorUuid);
+        if (inFlight == null) {
+            return timedFindDetector(detectorUuid);
+        }
+        try {
+            val detector = inFlight.join();
+            if (detector != null) {
+                prefetchedDetectors.remove(detectorUuid, detector);
+            }
+            return detector;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void restoreDetectorState(UUID detectorUuid, Detector detector, DetectorStateStore stateStore) {
+        val snapshot = stateStore.load(detectorUuid);
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            detector.restoreState(snapshot);
+            log.info("Restored detector state: uuid={}", detectorUuid);
+        } catch (DetectorStateException e) {
+            // Incompatible or corrupt snapshots are dropped and the detector warms up from scratch.
+            log.warn("Discarding detector state: uuid={}, error={}", detectorUuid, e.getMessage());
+            stateStore.delete(detectorUuid);
+        }
+    }
+
     /**
-     * Remove detectors from cache that have been modified in last `timePeriod` minutes.
-     * The deleted detectors will be cleaned up and the detectors modified will be reloaded
-     * when corresponding mapped-metric comes in.
+     * Hot-swap cached detectors that have been modified in last `timePeriod` minutes, preserving learned state where
+     * the new params allow it. See {@link #swapDetector(UUID)}.
      */
     List<UUID> detectorMapRefresh() {
 
         var updatedDetectors = new ArrayList<UUID>();
         detectorSource.findUpdatedDetectors(detectorRefreshTimePeriod).forEach(key -> {
             updatedDetectors.add(key);
-            cachedDetectors.remove(key);
+            swapDetector(key);
         });
 
-        log.info("Removed detectors on refresh : {}",updatedDetectors);
+        log.info("Swapping detectors on refresh : {}",updatedDetectors);
         return updatedDetectors;
     }
 }
@@ -15,30 +15,49 @@
  */
 package com.expedia.adaptivealerting.anomdetect;
 
+import com.expedia.adaptivealerting.anomdetect.comp.DetectorMappingCache;
 import com.expedia.adaptivealerting.anomdetect.comp.DetectorSource;
 import com.expedia.adaptivealerting.core.data.MappedMetricData;
 import com.expedia.metrics.MetricData;
+import com.expedia.metrics.MetricDefinition;
 import lombok.Getter;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import lombok.val;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 
 /**
  * Entry into the Adaptive Alerting runtime. Its job is find for any incoming {@link MetricData} the corresponding set
- * of mapped detectors, creating a {@link MappedMetricData} for each.
+ * of mapped detectors, creating a {@link MappedMetricData} for each. With a {@link DetectorMappingCache}, mappings are
+ * served from the cache instead of hitting the detector source per data point.
  */
-@RequiredArgsConstructor
 @Slf4j
 public class DetectorMapper {
 
     @Getter
-    @NonNull
-    private DetectorSource detectorSource;
+    private final DetectorSource detectorSource;
+
+    /**
+     * Mapping cache, or {@code null} to look up every data point in the detector source.
+     */
+    @Getter
+    private final DetectorMappingCache mappingCache;
+
+    public DetectorMapper(@NonNull DetectorSource detectorSource) {
+        this(detectorSource, null);
+    }
+
+    public DetectorMapper(@NonNull DetectorSource detectorSource, DetectorMappingCache mappingCache) {
+        this.detectorSource = detectorSource;
+        this.mappingCache = mappingCache;
+    }
 
     /**
      * Maps an {@link MetricData} to its corresponding set of {@link MappedMetricData}s.
@@ -48,10 +67,44 @@ public class DetectorMapper {
      */
     public Set<MappedMetricData> map(MetricData metricData) {
         notNull(metricData, "metricData can't be null");
-        return detectorSource
-                .findDetectorUuids(metricData.getMetricDefinition())
+        return findDetectorUuids(metricData)
                 .stream()
                 .map(detectorUuid -> new MappedMetricData(metricData, detectorUuid))
                 .collect(Collectors.toSet());
     }
+
+    /**
+     * Maps a batch of {@link MetricData}s, looking up the detectors for all of them at once.
+     *
+     * @param metricDataList MetricData to map.
+     * @return The corresponding sets of {@link MappedMetricData}s, aligned with {@code metricDataList}.
+     */
+    public List<Set<MappedMetricData>> mapBatch(List<MetricData> metricDataList) {
+        notNull(metricDataList, "metricDataList can't be null");
+        val metricDefinitions = new ArrayList<MetricDefinition>(metricDataList.size());
+        for (val metricData : metricDataList) {
+            notNull(metricData, "metricData can't be null");
+            metricDefinitions.add(metricData.getMetricDefinition());
+        }
+        val detectorUuids = mappingCache == null
+                ? detectorSource.findDetectorUuids(metricDefinitions)
+                : mappingCache.findDetectorUuids(metricDefinitions);
+
+        val result = new ArrayList<Set<MappedMetricData>>(metricDataList.size());
+        for (int i = 0; i < metricDataList.size(); i++) {
+            val metricData = metricDataList.get(i);
+            result.add(detectorUuids.get(i)
+                    .stream()
+                    .map(detectorUuid -> new MappedMetricData(metricData, detectorUuid))
+                    .collect(Collectors.toSet()));
+        }
+        return result;
+    }
+
+    private List<UUID> findDetectorUuids(MetricData metricData) {
+        val metricDefinition = metricData.getMetricDefinition();
+        return mappingCache == null
+                ? detectorSource.findDetectorUuids(metricDefinition)
+                : mappingCache.findDetectorUuids(metricDefinition);
+    }
 }
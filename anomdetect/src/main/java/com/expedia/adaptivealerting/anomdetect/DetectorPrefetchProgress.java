@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of the most recent bulk detector prefetch. Safe to read from any thread, e.g. by metrics reporters.
+ */
+public class DetectorPrefetchProgress {
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong loaded = new AtomicLong();
+    private final AtomicLong missing = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong durationMillis = new AtomicLong();
+    private volatile boolean running;
+
+    void start(long requestedCount) {
+        requested.set(requestedCount);
+        loaded.set(0L);
+        missing.set(0L);
+        failed.set(0L);
+        durationMillis.set(0L);
+        running = true;
+    }
+
+    void recordBatch(long loadedCount, long missingCount) {
+        loaded.addAndGet(loadedCount);
+        missing.addAndGet(missingCount);
+    }
+
+    void recordFailure(long failedCount) {
+        failed.addAndGet(failedCount);
+    }
+
+    void finish(long elapsedMillis) {
+        durationMillis.set(elapsedMillis);
+        running = false;
+    }
+
+    /**
+     * Returns the number of detectors the prefetch set out to load.
+     *
+     * @return Requested detector count.
+     */
+    public long getRequested() {
+        return requested.get();
+    }
+
+    /**
+     * Returns the number of detectors loaded in bulk so far.
+     *
+     * @return Loaded detector count.
+     */
+    public long getLoaded() {
+        return loaded.get();
+    }
+
+    /**
+     * Returns the number of requested detectors the bulk load didn't return. These are loaded individually on demand.
+     *
+     * @return Missing detector count.
+     */
+    public long getMissing() {
+        return missing.get();
+    }
+
+    /**
+     * Returns the number of detectors whose batch failed to load.
+     *
+     * @return Failed detector count.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Returns the wall-clock duration of the last completed prefetch, or 0 while one is running.
+     *
+     * @return Duration in milliseconds.
+     */
+    public long getDurationMillis() {
+        return durationMillis.get();
+    }
+
+    /**
+     * Indicates whether a prefetch is currently running.
+     *
+     * @return Boolean indicating whether a prefetch is running.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import lombok.val;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * Negative cache for detectors that fail to load. Each consecutive failure doubles the time before the detector may be
+ * loaded again, up to a maximum, so a misconfigured high-rate detector doesn't hit the model service on every record.
+ * A successful load clears the detector's history.
+ */
+public class DetectorQuarantine {
+    private static final int MAX_BACKOFF_EXPONENT = 30;
+
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final LongSupplier clock;
+    private final ConcurrentMap<UUID, Failure> entries = new ConcurrentHashMap<>();
+
+    public DetectorQuarantine(long initialBackoffMillis, long maxBackoffMillis) {
+        this(initialBackoffMillis, maxBackoffMillis, System::currentTimeMillis);
+    }
+
+    DetectorQuarantine(long initialBackoffMillis, long maxBackoffMillis, LongSupplier clock) {
+        isTrue(initialBackoffMillis > 0, "initialBackoffMillis must be strictly positive");
+        isTrue(maxBackoffMillis >= initialBackoffMillis, "maxBackoffMillis must be >= initialBackoffMillis");
+        notNull(clock, "clock can't be null");
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Indicates whether loads for the given detector should currently be skipped.
+     *
+     * @param detectorUuid Detector UUID.
+     * @return Boolean indicating whether the detector is quarantined.
+     */
+    public boolean isQuarantined(UUID detectorUuid) {
+        val entry = entries.get(detectorUuid);
+        return entry != null && clock.getAsLong() < entry.retryAtMillis;
+    }
+
+    /**
+     * Records a failed load and quarantines the detector for the next backoff period.
+     *
+     * @param detectorUuid Detector UUID.
+     * @return Backoff period in milliseconds.
+     */
+    public long recordFailure(UUID detectorUuid) {
+        notNull(detectorUuid, "detectorUuid can't be null");
+        val now = clock.getAsLong();
+        val entry = entries.compute(detectorUuid, (uuid, prev) -> {
+            val failures = prev == null ? 1 : prev.failures + 1;
+            return new Failure(failures, now + backoffMillis(failures));
+        });
+        return entry.retryAtMillis - now;
+    }
+
+    /**
+     * Clears the detector's failure history, e.g. after a successful load or when the detector has been updated.
+     *
+     * @param detectorUuid Detector UUID.
+     */
+    public void release(UUID detectorUuid) {
+        entries.remove(detectorUuid);
+    }
+
+    /**
+     * Returns the detectors currently quarantined.
+     *
+     * @return Quarantined detector UUIDs.
+     */
+    public Set<UUID> getQuarantinedDetectors() {
+        val now = clock.getAsLong();
+        return entries.entrySet().stream()
+                .filter(e -> now < e.getValue().retryAtMillis)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    private long backoffMillis(int failures) {
+        val exponent = Math.min(failures - 1, MAX_BACKOFF_EXPONENT);
+        return Math.min(maxBackoffMillis, initialBackoffMillis << exponent);
+    }
+
+    private static final class Failure {
+        private final int failures;
+        private final long retryAtMillis;
+
+        Failure(int failures, long retryAtMillis) {
+            this.failures = failures;
+            this.retryAtMillis = retryAtMillis;
+        }
+    }
+}
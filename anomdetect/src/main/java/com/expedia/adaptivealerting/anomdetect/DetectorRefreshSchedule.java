@@ -0,0 +1,151 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import lombok.val;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * Refresh-ahead bookkeeping for cached detectors. Each detector is due for a background reload once it's within the
+ * refresh-ahead window of its refresh deadline, and at most one reload per detector runs at a time. A failed reload
+ * marks the detector stale, meaning its last-known-good instance keeps serving, and makes it due again after the retry
+ * backoff.
+ */
+public class DetectorRefreshSchedule {
+    private final long refreshIntervalMillis;
+    private final long refreshAheadMillis;
+    private final long retryBackoffMillis;
+    private final LongSupplier clock;
+    private final ConcurrentMap<UUID, Entry> entries = new ConcurrentHashMap<>();
+
+    public DetectorRefreshSchedule(long refreshIntervalMillis, long refreshAheadMillis, long retryBackoffMillis) {
+        this(refreshIntervalMillis, refreshAheadMillis, retryBackoffMillis, System::currentTimeMillis);
+    }
+
+    DetectorRefreshSchedule(
+            long refreshIntervalMillis,
+            long refreshAheadMillis,
+            long retryBackoffMillis,
+            LongSupplier clock) {
+
+        isTrue(refreshIntervalMillis > 0, "refreshIntervalMillis must be strictly positive");
+        isTrue(refreshAheadMillis >= 0, "refreshAheadMillis must be >= 0");
+        isTrue(refreshAheadMillis < refreshIntervalMillis, "refreshAheadMillis must be < refreshIntervalMillis");
+        isTrue(retryBackoffMillis > 0, "retryBackoffMillis must be strictly positive");
+        notNull(clock, "clock can't be null");
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.refreshAheadMillis = refreshAheadMillis;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Records a fresh detector instance, starting a new refresh interval and clearing any staleness.
+     *
+     * @param detectorUuid Detector UUID.
+     */
+    public void recordLoaded(UUID detectorUuid) {
+        notNull(detectorUuid, "detectorUuid can't be null");
+        entries.put(detectorUuid, new Entry(clock.getAsLong() + refreshIntervalMillis, false, false));
+    }
+
+    /**
+     * Claims the detector's background reload if it's due and none is running.
+     *
+     * @param detectorUuid Detector UUID.
+     * @return Boolean indicating whether the caller should reload the detector.
+     */
+    public boolean tryStartRefresh(UUID detectorUuid) {
+        val entry = entries.get(detectorUuid);
+        if (entry == null || entry.refreshing || clock.getAsLong() < entry.refreshAtMillis - refreshAheadMillis) {
+            return false;
+        }
+        return entries.replace(detectorUuid, entry, new Entry(entry.refreshAtMillis, true, entry.stale));
+    }
+
+    /**
+     * Records a failed background reload. The detector is marked stale and is due again after the retry backoff.
+     *
+     * @param detectorUuid Detector UUID.
+     */
+    public void recordRefreshFailed(UUID detectorUuid) {
+        notNull(detectorUuid, "detectorUuid can't be null");
+        val retryAtMillis = clock.getAsLong() + retryBackoffMillis + refreshAheadMillis;
+        entries.computeIfPresent(detectorUuid, (uuid, entry) -> new Entry(retryAtMillis, false, true));
+    }
+
+    /**
+     * Forgets the detector, e.g. when it's evicted from the cache.
+     *
+     * @param detectorUuid Detector UUID.
+     */
+    public void remove(UUID detectorUuid) {
+        entries.remove(detectorUuid);
+    }
+
+    /**
+     * Forgets the detectors that don't match the given predicate, e.g. those no longer cached.
+     *
+     * @param predicate Predicate for the detectors to keep.
+     */
+    public void retainIf(Predicate<UUID> predicate) {
+        entries.keySet().removeIf(predicate.negate());
+    }
+
+    public boolean isStale(UUID detectorUuid) {
+        val entry = entries.get(detectorUuid);
+        return entry != null && entry.stale;
+    }
+
+    /**
+     * Returns the detectors currently served from a last-known-good instance because their reload failed.
+     *
+     * @return Stale detector UUIDs.
+     */
+    public Set<UUID> getStaleDetectors() {
+        return entries.entrySet().stream()
+                .filter(e -> e.getValue().stale)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    public int getStaleCount() {
+        return (int) entries.values().stream().filter(entry -> entry.stale).count();
+    }
+
+    private static final class Entry {
+        private final long refreshAtMillis;
+        private final boolean refreshing;
+        private final boolean stale;
+
+        Entry(long refreshAtMillis, boolean refreshing, boolean stale) {
+            this.refreshAtMillis = refreshAtMillis;
+            this.refreshing = refreshing;
+            this.stale = stale;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+/**
+ * Exception indicating a failed model service call that wasn't retried because the connector's retry budget is spent.
+ * The cause is the failure of the last attempt.
+ */
+public class RetryBudgetExhaustedException extends DetectorRetrievalException {
+
+    public RetryBudgetExhaustedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
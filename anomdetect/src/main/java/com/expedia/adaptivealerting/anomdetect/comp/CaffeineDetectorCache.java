@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.typesafe.config.Config;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * {@link DetectorCache} backed by Caffeine, which gives us W-TinyLFU size-based eviction and idle-time expiry.
+ */
+@Slf4j
+public class CaffeineDetectorCache implements DetectorCache {
+    private static final String CK_MAXIMUM_SIZE = "maximum-size";
+    private static final String CK_EXPIRE_AFTER_ACCESS_MINUTES = "expire-after-access-minutes";
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 100_000L;
+    public static final long DEFAULT_EXPIRE_AFTER_ACCESS_MINUTES = 24 * 60L;
+
+    private final Cache<UUID, Detector> cache;
+
+    public CaffeineDetectorCache() {
+        this(DEFAULT_MAXIMUM_SIZE, DEFAULT_EXPIRE_AFTER_ACCESS_MINUTES);
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maximumSize              Maximum number of cached detectors.
+     * @param expireAfterAccessMinutes Idle time, in minutes, after which a detector is evicted.
+     */
+    public CaffeineDetectorCache(long maximumSize, long expireAfterAccessMinutes) {
+        isTrue(maximumSize > 0, "maximumSize must be > 0");
+        isTrue(expireAfterAccessMinutes > 0, "expireAfterAccessMinutes must be > 0");
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccessMinutes, TimeUnit.MINUTES)
+                .removalListener((UUID uuid, Detector detector, RemovalCause cause) ->
+                        log.trace("Removed detector: uuid={}, cause={}", uuid, cause))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Creates a new cache from the given config, falling back to defaults for missing keys.
+     *
+     * @param config Cache config, e.g. the {@code detector-cache} block of the manager config.
+     * @return New cache.
+     */
+    public static CaffeineDetectorCache fromConfig(Config config) {
+        notNull(config, "config can't be null");
+        val maximumSize = config.hasPath(CK_MAXIMUM_SIZE)
+                ? config.getLong(CK_MAXIMUM_SIZE)
+                : DEFAULT_MAXIMUM_SIZE;
+        val expireAfterAccessMinutes = config.hasPath(CK_EXPIRE_AFTER_ACCESS_MINUTES)
+                ? config.getLong(CK_EXPIRE_AFTER_ACCESS_MINUTES)
+                : DEFAULT_EXPIRE_AFTER_ACCESS_MINUTES;
+        return new CaffeineDetectorCache(maximumSize, expireAfterAccessMinutes);
+    }
+
+    @Override
+    public Detector getIfPresent(UUID uuid) {
+        notNull(uuid, "uuid can't be null");
+        return cache.getIfPresent(uuid);
+    }
+
+    @Override
+    public Detector get(UUID uuid, Function<UUID, Detector> loader) {
+        notNull(uuid, "uuid can't be null");
+        notNull(loader, "loader can't be null");
+        return cache.get(uuid, loader);
+    }
+
+    @Override
+    public boolean contains(UUID uuid) {
+        notNull(uuid, "uuid can't be null");
+        return cache.asMap().containsKey(uuid);
+    }
+
+    @Override
+    public void put(UUID uuid, Detector detector) {
+        notNull(uuid, "uuid can't be null");
+        notNull(detector, "detector can't be null");
+        cache.put(uuid, detector);
+    }
+
+    @Override
+    public boolean replace(UUID uuid, Detector expected, Detector replacement) {
+        notNull(uuid, "uuid can't be null");
+        notNull(expected, "expected can't be null");
+        notNull(replacement, "replacement can't be null");
+        return cache.asMap().replace(uuid, expected, replacement);
+    }
+
+    @Override
+    public void invalidate(UUID uuid) {
+        notNull(uuid, "uuid can't be null");
+        cache.invalidate(uuid);
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    @Override
+    public DetectorCacheStats stats() {
+        val stats = cache.stats();
+        return new DetectorCacheStats(
+                stats.hitCount(),
+                stats.missCount(),
+                stats.loadSuccessCount(),
+                stats.loadFailureCount(),
+                stats.totalLoadTime(),
+                stats.evictionCount());
+    }
+}
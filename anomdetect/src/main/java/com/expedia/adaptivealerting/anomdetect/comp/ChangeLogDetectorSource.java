@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector;
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.metrics.MetricDefinition;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * A {@link DetectorSource} that answers {@link #findUpdatedDetectors(int)} from the Model Service's detector change
+ * log instead of polling for detectors updated within a time period. It keeps a cursor into the log and returns the
+ * detectors changed since the previous call, including deleted detectors and detectors with new models, which the
+ * time-based query misses. All other lookups go to the delegate.
+ * <p>
+ * The first call reads the log head and falls back to the delegate's time-based query, covering changes made before
+ * the cursor existed. The cursor only advances once a whole sync succeeds, so a failed call is retried from the same
+ * position and no change is lost.
+ */
+@Slf4j
+public class ChangeLogDetectorSource implements DetectorSource {
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
+    private final ModelServiceConnector connector;
+    private final DetectorSource delegate;
+    private final int pageSize;
+
+    // Guarded by this.
+    private long cursor = -1L;
+
+    public ChangeLogDetectorSource(ModelServiceConnector connector, DetectorSource delegate) {
+        this(connector, delegate, DEFAULT_PAGE_SIZE);
+    }
+
+    public ChangeLogDetectorSource(ModelServiceConnector connector, DetectorSource delegate, int pageSize) {
+        notNull(connector, "connector can't be null");
+        notNull(delegate, "delegate can't be null");
+        isTrue(pageSize > 0, "pageSize must be strictly positive");
+        this.connector = connector;
+        this.delegate = delegate;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public Set<String> findDetectorTypes() {
+        return delegate.findDetectorTypes();
+    }
+
+    @Override
+    public List<UUID> findDetectorUuids(MetricDefinition metricDef) {
+        return delegate.findDetectorUuids(metricDef);
+    }
+
+    @Override
+    public CompletableFuture<List<UUID>> findDetectorUuidsAsync(MetricDefinition metricDef, Executor executor) {
+        return delegate.findDetectorUuidsAsync(metricDef, executor);
+    }
+
+    @Override
+    public List<List<UUID>> findDetectorUuids(List<MetricDefinition> metricDefs) {
+        return delegate.findDetectorUuids(metricDefs);
+    }
+
+    @Override
+    public Detector findDetector(UUID uuid) {
+        return delegate.findDetector(uuid);
+    }
+
+    @Override
+    public CompletableFuture<Detector> findDetectorAsync(UUID uuid, Executor executor) {
+        return delegate.findDetectorAsync(uuid, executor);
+    }
+
+    @Override
+    public List<UUID> findEnabledDetectorUuids() {
+        return delegate.findEnabledDetectorUuids();
+    }
+
+    @Override
+    public Map<UUID, Detector> findDetectors(Collection<UUID> uuids) {
+        return delegate.findDetectors(uuids);
+    }
+
+    /**
+     * Returns the detectors changed since the previous call, each once, in the order of their first change. The time
+     * period only applies to the first call.
+     *
+     * @param timePeriod Time period in minutes, for the first call.
+     * @return UUIDs of the changed detectors.
+     */
+    @Override
+    public synchronized List<UUID> findUpdatedDetectors(int timePeriod) {
+        if (cursor < 0) {
+            val head = connector.findChangeLogHead();
+            val updated = delegate.findUpdatedDetectors(timePeriod);
+            cursor = head;
+            log.info("Starting detector change log sync: cursor={}", head);
+            return updated;
+        }
+
+        long nextCursor = cursor;
+        val changed = new LinkedHashSet<UUID>();
+        boolean hasMore = true;
+        while (hasMore) {
+            val page = connector.findChangesSince(nextCursor, pageSize);
+            if (page.getChanges() != null) {
+                page.getChanges().forEach(change -> changed.add(UUID.fromString(change.getDetectorUuid())));
+            }
+            hasMore = page.isHasMore() && page.getCursor() > nextCursor;
+            nextCursor = page.getCursor();
+        }
+        if (!changed.isEmpty()) {
+            log.info("Synced detector change log: changedDetectors={}, cursor={}", changed.size(), nextCursor);
+        }
+        cursor = nextCursor;
+        return new ArrayList<>(changed);
+    }
+
+    /**
+     * Returns the current change log cursor.
+     *
+     * @return Seq of the last change seen, or -1 before the first sync.
+     */
+    public synchronized long getCursor() {
+        return cursor;
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.expedia.adaptivealerting.anomdetect.comp;
 
+import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelResource;
 import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector;
 import com.expedia.adaptivealerting.anomdetect.detector.ConstantThresholdParams;
 import com.expedia.adaptivealerting.anomdetect.detector.CusumParams;
@@ -29,9 +30,14 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
@@ -57,13 +63,19 @@ public class DefaultDetectorSource implements DetectorSource {
     @Override
     public List<UUID> findDetectorUuids(MetricDefinition metricDef) {
         notNull(metricDef, "metricDefinition can't be null");
-        return connector
-                .findDetectors(metricDef)
-                .getEmbedded()
-                .getDetectors()
-                .stream()
-                .map(resource -> UUID.fromString(resource.getUuid()))
-                .collect(Collectors.toList());
+        return connector.findDetectorUuids(metricDef);
+    }
+
+    @Override
+    public CompletableFuture<List<UUID>> findDetectorUuidsAsync(MetricDefinition metricDef, Executor executor) {
+        notNull(metricDef, "metricDefinition can't be null");
+        return connector.findDetectorUuidsAsync(metricDef);
+    }
+
+    @Override
+    public List<List<UUID>> findDetectorUuids(List<MetricDefinition> metricDefs) {
+        notNull(metricDefs, "metricDefs can't be null");
+        return connector.findDetectorUuids(metricDefs);
     }
 
     @Override
@@ -76,11 +88,22 @@ public class DefaultDetectorSource implements DetectorSource {
     }
 
     @Override
-    public List<UUID> findUpdatedDetectors(int timePeriod) {
-        notNull(timePeriod, "timePeriod can't be null");
+    public CompletableFuture<Detector> findDetectorAsync(UUID uuid, Executor executor) {
+        notNull(uuid, "uuid can't be null");
+        notNull(executor, "executor can't be null");
 
+        // Build the detector on the given executor, not on the HTTP client thread that completed the call.
         return connector
-                .findUpdatedDetectors(timePeriod)
+                .findDetectorBundleAsync(uuid)
+                .thenApplyAsync(
+                        bundle -> doLegacyBuildDetector(detectorLookup, uuid, bundle.toModelResource()),
+                        executor);
+    }
+
+    @Override
+    public List<UUID> findEnabledDetectorUuids() {
+        return connector
+                .findEnabledDetectors()
                 .getEmbedded()
                 .getDetectors()
                 .stream()
@@ -88,6 +111,30 @@ public class DefaultDetectorSource implements DetectorSource {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public Map<UUID, Detector> findDetectors(Collection<UUID> uuids) {
+        notNull(uuids, "uuids can't be null");
+
+        val detectors = new HashMap<UUID, Detector>();
+        for (val bundle : connector.findDetectorBundles(uuids)) {
+            val uuid = UUID.fromString(bundle.getUuid());
+            try {
+                detectors.put(uuid, doLegacyBuildDetector(detectorLookup, uuid, bundle.toModelResource()));
+            } catch (RuntimeException e) {
+                // One bad model shouldn't fail the whole batch.
+                log.warn("Skipping detector in bulk load: uuid={}, error={}", uuid, e.getMessage());
+            }
+        }
+        return detectors;
+    }
+
+    @Override
+    public List<UUID> findUpdatedDetectors(int timePeriod) {
+        notNull(timePeriod, "timePeriod can't be null");
+
+        return connector.findUpdatedDetectorUuids(timePeriod);
+    }
+
 
     // ================================================================================
     // Legacy
@@ -100,8 +147,16 @@ public class DefaultDetectorSource implements DetectorSource {
         //  These are basic detectors backed by single statistical models, as opposed to being ML models that we have to
         //  refresh/retrain periodically. So we probably want to simplify this by just collapsing the model concept into
         //  the detector. [WLW]
-        val model = connector.findLatestModel(uuid);
+        // The bundle carries the detector type and latest model params from a single Model Service query.
+        val bundle = connector.findDetectorBundle(uuid);
+        return doLegacyBuildDetector(detectorLookup, uuid, bundle.toModelResource());
+    }
 
+    /**
+     * Builds a detector from its latest model. Shared with {@link FileDetectorSource}, which stores the same models.
+     */
+    @Deprecated
+    static Detector doLegacyBuildDetector(DetectorLookup detectorLookup, UUID uuid, ModelResource model) {
         val detectorType = model.getDetectorType().getKey();
         val detectorClass = detectorLookup.getDetector(detectorType);
         val detector = ReflectionUtil.newInstance(detectorClass);
@@ -115,7 +170,7 @@ public class DefaultDetectorSource implements DetectorSource {
     }
 
     @Deprecated
-    private AnomalyType doLegacyGetAnomalyType(DetectorParams params) {
+    private static AnomalyType doLegacyGetAnomalyType(DetectorParams params) {
         val paramsClass = params.getClass();
 
         // TODO For now we simply reproduce current behavior, which is that only certain detectors support tails. Soon
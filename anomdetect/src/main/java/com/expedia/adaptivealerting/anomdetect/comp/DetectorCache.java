@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorManager;
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Thread-safe cache of detectors, keyed by detector UUID. Used by {@link DetectorManager} so the cache can be shared
+ * between stream threads and the refresh scheduler, and so that its size and eviction policy are configurable.
+ */
+public interface DetectorCache {
+
+    /**
+     * Returns the cached detector for the given UUID, or {@code null} if there isn't one.
+     *
+     * @param uuid Detector UUID.
+     * @return The cached detector, or {@code null} if absent.
+     */
+    Detector getIfPresent(UUID uuid);
+
+    /**
+     * Returns the cached detector for the given UUID, using the loader to load and cache it on a miss. Concurrent
+     * callers for the same UUID block until the single load completes. A {@code null} load result is not cached.
+     *
+     * @param uuid   Detector UUID.
+     * @param loader Detector loader.
+     * @return The detector, or {@code null} if the loader returned {@code null}.
+     */
+    Detector get(UUID uuid, Function<UUID, Detector> loader);
+
+    /**
+     * Indicates whether a detector is cached for the given UUID, without counting as an access.
+     *
+     * @param uuid Detector UUID.
+     * @return Boolean indicating whether the detector is cached.
+     */
+    boolean contains(UUID uuid);
+
+    void put(UUID uuid, Detector detector);
+
+    /**
+     * Atomically replaces the cached detector, but only if it's still the expected instance.
+     *
+     * @param uuid        Detector UUID.
+     * @param expected    Detector expected to be cached.
+     * @param replacement Replacement detector.
+     * @return Boolean indicating whether the detector was replaced.
+     */
+    boolean replace(UUID uuid, Detector expected, Detector replacement);
+
+    void invalidate(UUID uuid);
+
+    void invalidateAll();
+
+    /**
+     * Returns the approximate number of cached detectors.
+     *
+     * @return Approximate number of cached detectors.
+     */
+    long size();
+
+    /**
+     * Returns a snapshot of the cache statistics.
+     *
+     * @return Cache statistics.
+     */
+    DetectorCacheStats stats();
+}
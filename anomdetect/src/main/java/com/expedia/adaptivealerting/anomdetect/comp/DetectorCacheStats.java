@@ -0,0 +1,42 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import lombok.Value;
+import lombok.val;
+
+/**
+ * Point-in-time snapshot of {@link DetectorCache} statistics.
+ */
+@Value
+public class DetectorCacheStats {
+    long hitCount;
+    long missCount;
+    long loadSuccessCount;
+    long loadFailureCount;
+    long totalLoadTimeNanos;
+    long evictionCount;
+
+    public double hitRate() {
+        val requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    public double averageLoadPenaltyNanos() {
+        val loadCount = loadSuccessCount + loadFailureCount;
+        return loadCount == 0 ? 0.0 : (double) totalLoadTimeNanos / loadCount;
+    }
+}
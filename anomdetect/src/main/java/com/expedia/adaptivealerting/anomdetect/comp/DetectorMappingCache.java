@@ -0,0 +1,226 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.adaptivealerting.core.data.MetricDefinitionInterner;
+import com.expedia.adaptivealerting.core.util.ThreadUtil;
+import com.expedia.metrics.MetricDefinition;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.typesafe.config.Config;
+import lombok.val;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * Caches metric-to-detector mappings by MetricTank metric id, so the mapper doesn't ask the model service for every
+ * incoming data point. Empty mappings are cached too, since most metrics have no detectors at all.
+ * </p>
+ * <p>
+ * Entries older than the refresh interval are reloaded in the background on their next lookup, and the stale mapping
+ * is served until the reload completes, so lookups only block on the first sighting of a metric. A failed reload keeps
+ * the stale mapping. Entries idle for longer than the expiry are dropped, and the cache is size-bounded.
+ * </p>
+ */
+public class DetectorMappingCache {
+    private static final String CK_MAXIMUM_SIZE = "maximum-size";
+    private static final String CK_REFRESH_AFTER_WRITE_SECONDS = "refresh-after-write-seconds";
+    private static final String CK_EXPIRE_AFTER_ACCESS_MINUTES = "expire-after-access-minutes";
+    private static final String CK_REFRESH_THREADS = "refresh-threads";
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 1_000_000L;
+    public static final long DEFAULT_REFRESH_AFTER_WRITE_SECONDS = 60L;
+    public static final long DEFAULT_EXPIRE_AFTER_ACCESS_MINUTES = 60L;
+    public static final int DEFAULT_REFRESH_THREADS = 4;
+
+    private final MetricDefinitionInterner metricDefinitionInterner = MetricDefinitionInterner.shared();
+    private final LoadingCache<MappingKey, List<UUID>> cache;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param detectorSource           Source of the mappings.
+     * @param maximumSize              Maximum number of cached metrics.
+     * @param refreshAfterWriteSeconds Age, in seconds, after which a mapping is reloaded in the background.
+     * @param expireAfterAccessMinutes Idle time, in minutes, after which a mapping is dropped.
+     * @param refreshExecutor          Executor for background reloads.
+     */
+    public DetectorMappingCache(
+            DetectorSource detectorSource,
+            long maximumSize,
+            long refreshAfterWriteSeconds,
+            long expireAfterAccessMinutes,
+            Executor refreshExecutor) {
+
+        notNull(detectorSource, "detectorSource can't be null");
+        isTrue(maximumSize > 0, "maximumSize must be > 0");
+        isTrue(refreshAfterWriteSeconds > 0, "refreshAfterWriteSeconds must be > 0");
+        isTrue(expireAfterAccessMinutes > 0, "expireAfterAccessMinutes must be > 0");
+        notNull(refreshExecutor, "refreshExecutor can't be null");
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .refreshAfterWrite(refreshAfterWriteSeconds, TimeUnit.SECONDS)
+                .expireAfterAccess(expireAfterAccessMinutes, TimeUnit.MINUTES)
+                .executor(refreshExecutor)
+                .recordStats()
+                .build(new MappingLoader(detectorSource));
+    }
+
+    /**
+     * Creates a new cache from the given config, falling back to defaults for missing keys.
+     *
+     * @param detectorSource Source of the mappings.
+     * @param config         Cache config, e.g. the {@code detector-mapping-cache} block of the mapper config.
+     * @return New cache.
+     */
+    public static DetectorMappingCache fromConfig(DetectorSource detectorSource, Config config) {
+        notNull(config, "config can't be null");
+        val refreshThreads = config.hasPath(CK_REFRESH_THREADS)
+                ? config.getInt(CK_REFRESH_THREADS)
+                : DEFAULT_REFRESH_THREADS;
+        return new DetectorMappingCache(
+                detectorSource,
+                config.hasPath(CK_MAXIMUM_SIZE) ? config.getLong(CK_MAXIMUM_SIZE) : DEFAULT_MAXIMUM_SIZE,
+                config.hasPath(CK_REFRESH_AFTER_WRITE_SECONDS)
+                        ? config.getLong(CK_REFRESH_AFTER_WRITE_SECONDS)
+                        : DEFAULT_REFRESH_AFTER_WRITE_SECONDS,
+                config.hasPath(CK_EXPIRE_AFTER_ACCESS_MINUTES)
+                        ? config.getLong(CK_EXPIRE_AFTER_ACCESS_MINUTES)
+                        : DEFAULT_EXPIRE_AFTER_ACCESS_MINUTES,
+                Executors.newFixedThreadPool(
+                        refreshThreads,
+                        ThreadUtil.daemonThreadFactory("detector-mapping-refresh")));
+    }
+
+    /**
+     * Returns the detectors mapped to the given metric, loading the mapping on the first lookup.
+     *
+     * @param metricDefinition Metric definition.
+     * @return Mapped detector UUIDs, possibly empty.
+     */
+    public List<UUID> findDetectorUuids(MetricDefinition metricDefinition) {
+        notNull(metricDefinition, "metricDefinition can't be null");
+        val metricId = metricDefinitionInterner.getId(metricDefinition);
+        return cache.get(new MappingKey(metricId, metricDefinition));
+    }
+
+    /**
+     * Returns the detectors mapped to each of the given metrics. Mappings missing from the cache are loaded with a
+     * single batched call to the detector source.
+     *
+     * @param metricDefinitions Metric definitions.
+     * @return Mapped detector UUIDs, aligned with {@code metricDefinitions}.
+     */
+    public List<List<UUID>> findDetectorUuids(List<MetricDefinition> metricDefinitions) {
+        notNull(metricDefinitions, "metricDefinitions can't be null");
+        val keys = new ArrayList<MappingKey>(metricDefinitions.size());
+        for (val metricDefinition : metricDefinitions) {
+            notNull(metricDefinition, "metricDefinition can't be null");
+            keys.add(new MappingKey(metricDefinitionInterner.getId(metricDefinition), metricDefinition));
+        }
+        val mappings = cache.getAll(keys);
+        val result = new ArrayList<List<UUID>>(keys.size());
+        for (val key : keys) {
+            result.add(mappings.getOrDefault(key, Collections.emptyList()));
+        }
+        return result;
+    }
+
+    public double hitRate() {
+        return cache.stats().hitRate();
+    }
+
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    private static final class MappingLoader implements CacheLoader<MappingKey, List<UUID>> {
+        private final DetectorSource detectorSource;
+
+        MappingLoader(DetectorSource detectorSource) {
+            this.detectorSource = detectorSource;
+        }
+
+        @Override
+        public List<UUID> load(MappingKey key) {
+            return toCacheValue(detectorSource.findDetectorUuids(key.metricDefinition));
+        }
+
+        @Override
+        public CompletableFuture<List<UUID>> asyncReload(MappingKey key, List<UUID> oldValue, Executor executor) {
+            return detectorSource.findDetectorUuidsAsync(key.metricDefinition, executor)
+                    .thenApply(MappingLoader::toCacheValue);
+        }
+
+        @Override
+        public Map<MappingKey, List<UUID>> loadAll(Iterable<? extends MappingKey> keys) {
+            val keyList = new ArrayList<MappingKey>();
+            val metricDefinitions = new ArrayList<MetricDefinition>();
+            for (val key : keys) {
+                keyList.add(key);
+                metricDefinitions.add(key.metricDefinition);
+            }
+            val uuids = detectorSource.findDetectorUuids(metricDefinitions);
+            val result = new HashMap<MappingKey, List<UUID>>();
+            for (int i = 0; i < keyList.size(); i++) {
+                result.put(keyList.get(i), toCacheValue(uuids.get(i)));
+            }
+            return result;
+        }
+
+        private static List<UUID> toCacheValue(List<UUID> uuids) {
+            return Collections.unmodifiableList(new ArrayList<>(uuids));
+        }
+    }
+
+    /**
+     * Cache key. Identity is the metric id alone; the definition rides along so background reloads can query the
+     * detector source.
+     */
+    private static final class MappingKey {
+        private final String metricId;
+        private final MetricDefinition metricDefinition;
+
+        MappingKey(String metricId, MetricDefinition metricDefinition) {
+            this.metricId = metricId;
+            this.metricDefinition = metricDefinition;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof MappingKey && metricId.equals(((MappingKey) o).metricId));
+        }
+
+        @Override
+        public int hashCode() {
+            return metricId.hashCode();
+        }
+    }
+}
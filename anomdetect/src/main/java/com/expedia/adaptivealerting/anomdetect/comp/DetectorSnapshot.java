@@ -0,0 +1,211 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelResource;
+import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelTypeResource;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.val;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * <p>
+ * Read-only view of a detector snapshot file, as written by {@link DetectorSnapshotWriter}.
+ * </p>
+ * <p>
+ * The file is memory-mapped. Loading only walks it to index the detector records by UUID and to build the mapping
+ * index; a detector's type and params are decoded from the mapping when the detector is looked up, so cold starts
+ * don't pay for parsing every model up front and the page cache holds the params rather than the heap.
+ * </p>
+ * <p>
+ * Format (big-endian):
+ * </p>
+ * <pre>
+ * int    magic "AADS"
+ * int    version
+ * long   creation time in epoch millis
+ * int    detector count
+ *   long   UUID most significant bits
+ *   long   UUID least significant bits
+ *   byte   flags (bit 0: enabled)
+ *   int    record length, followed by the record:
+ *     short  detector type length, followed by the UTF-8 detector type
+ *     int    params length or -1 if the detector has no model, followed by the UTF-8 JSON params
+ * int    mapping count
+ *   short  metric id length, followed by the UTF-8 metric id
+ *   int    detector ordinal
+ * </pre>
+ */
+final class DetectorSnapshot {
+    static final int MAGIC = 0x41414453;
+    static final int VERSION = 1;
+    static final int FLAG_ENABLED = 1;
+
+    private static final TypeReference<Map<String, Object>> PARAMS_TYPE = new TypeReference<Map<String, Object>>() {
+    };
+
+    private final ByteBuffer buffer;
+    private final Map<UUID, Integer> recordOffsets;
+    private final Map<UUID, Long> recordChecksums;
+
+    @Getter
+    private final List<UUID> enabledDetectorUuids;
+
+    @Getter
+    private final MetricDetectorIndex mappingIndex;
+
+    @Getter
+    private final long createdMillis;
+
+    private DetectorSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a detector snapshot");
+            }
+            val version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported detector snapshot version: " + version);
+            }
+            this.createdMillis = buffer.getLong();
+
+            val detectorCount = buffer.getInt();
+            val detectorUuids = new UUID[detectorCount];
+            val offsets = new HashMap<UUID, Integer>(detectorCount * 2);
+            val checksums = new HashMap<UUID, Long>(detectorCount * 2);
+            val enabled = new ArrayList<UUID>();
+            val crc = new CRC32();
+            for (int i = 0; i < detectorCount; i++) {
+                val uuid = new UUID(buffer.getLong(), buffer.getLong());
+                val flags = buffer.get();
+                val recordLength = buffer.getInt();
+                val recordOffset = buffer.position();
+                detectorUuids[i] = uuid;
+                offsets.put(uuid, recordOffset);
+                if ((flags & FLAG_ENABLED) != 0) {
+                    enabled.add(uuid);
+                }
+                crc.reset();
+                val record = buffer.duplicate();
+                record.limit(recordOffset + recordLength);
+                crc.update(flags);
+                crc.update(record);
+                checksums.put(uuid, crc.getValue());
+                buffer.position(recordOffset + recordLength);
+            }
+
+            val mappingCount = buffer.getInt();
+            val builder = new MetricDetectorIndex.Builder();
+            for (int i = 0; i < mappingCount; i++) {
+                val metricId = readString(buffer);
+                builder.add(metricId, detectorUuids[buffer.getInt()]);
+            }
+            this.recordOffsets = offsets;
+            this.recordChecksums = checksums;
+            this.enabledDetectorUuids = Collections.unmodifiableList(enabled);
+            this.mappingIndex = builder.build();
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Corrupt detector snapshot", e);
+        }
+    }
+
+    /**
+     * Maps and indexes the given snapshot file. The mapping stays valid after the file is replaced or deleted.
+     *
+     * @param file Snapshot file.
+     * @return Snapshot.
+     * @throws IOException if the file can't be read or isn't a valid snapshot
+     */
+    static DetectorSnapshot load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new DetectorSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    int detectorCount() {
+        return recordOffsets.size();
+    }
+
+    boolean containsDetector(UUID uuid) {
+        return recordOffsets.containsKey(uuid);
+    }
+
+    /**
+     * Returns a checksum of the detector's flags, type and params, so reloads can tell which detectors changed.
+     *
+     * @param uuid Detector UUID.
+     * @return Checksum, or null if the snapshot doesn't contain the detector.
+     */
+    Long recordChecksum(UUID uuid) {
+        return recordChecksums.get(uuid);
+    }
+
+    Iterable<UUID> detectorUuids() {
+        return recordOffsets.keySet();
+    }
+
+    /**
+     * Decodes the given detector's latest model.
+     *
+     * @param uuid         Detector UUID.
+     * @param objectMapper Object mapper for the params.
+     * @return Model, or null if the snapshot doesn't contain the detector or the detector has no model.
+     * @throws IOException if the params can't be decoded
+     */
+    ModelResource findModel(UUID uuid, ObjectMapper objectMapper) throws IOException {
+        val offset = recordOffsets.get(uuid);
+        if (offset == null) {
+            return null;
+        }
+        val record = buffer.duplicate();
+        record.position(offset);
+        val detectorType = readString(record);
+        val paramsLength = record.getInt();
+        if (paramsLength < 0) {
+            return null;
+        }
+        val paramsBytes = new byte[paramsLength];
+        record.get(paramsBytes);
+
+        val model = new ModelResource();
+        model.setUuid(uuid.toString());
+        model.setDetectorType(new ModelTypeResource(detectorType));
+        model.setParams(objectMapper.readValue(paramsBytes, PARAMS_TYPE));
+        return model;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        val bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
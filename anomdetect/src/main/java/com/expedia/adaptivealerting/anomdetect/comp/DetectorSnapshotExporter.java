@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.adaptivealerting.anomdetect.comp.connector.HttpClientWrapper;
+import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelResource;
+import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * Exports the enabled detectors, their latest models and their metric mappings from the Model Service to a snapshot
+ * file for {@link FileDetectorSource}. Mappings to detectors that aren't enabled are left out.
+ * <p>
+ * Usage: {@code DetectorSnapshotExporter <model service base URI> <snapshot file>}
+ */
+@Slf4j
+public final class DetectorSnapshotExporter {
+
+    /**
+     * Prevent instantiation.
+     */
+    private DetectorSnapshotExporter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: DetectorSnapshotExporter <model service base URI> <snapshot file>");
+            System.exit(1);
+        }
+        try (HttpClientWrapper httpClient = new HttpClientWrapper()) {
+            val connector = new ModelServiceConnector(httpClient, args[0], new ObjectMapper());
+            export(connector, Paths.get(args[1]));
+        }
+    }
+
+    /**
+     * Exports a snapshot.
+     *
+     * @param connector Model Service connector.
+     * @param file      Snapshot file, replaced atomically if it exists.
+     * @throws IOException if the snapshot can't be written
+     */
+    public static void export(ModelServiceConnector connector, Path file) throws IOException {
+        notNull(connector, "connector can't be null");
+        notNull(file, "file can't be null");
+        val startMillis = System.currentTimeMillis();
+
+        val detectorResources = connector.findEnabledDetectors().getEmbedded().getDetectors();
+        val uuids = detectorResources.stream()
+                .map(resource -> UUID.fromString(resource.getUuid()))
+                .collect(Collectors.toList());
+        val models = new HashMap<UUID, ModelResource>();
+        for (val model : connector.findLatestModels(uuids)) {
+            models.put(UUID.fromString(model.getUuid()), model);
+        }
+
+        val writer = new DetectorSnapshotWriter();
+        for (val resource : detectorResources) {
+            val uuid = UUID.fromString(resource.getUuid());
+            val model = models.get(uuid);
+            val detectorType = model != null && model.getDetectorType() != null
+                    ? model.getDetectorType().getKey()
+                    : resource.getType() == null ? null : resource.getType().getKey();
+            if (detectorType == null) {
+                log.warn("Skipping detector without a type: uuid={}", uuid);
+                continue;
+            }
+            writer.addDetector(uuid, true, detectorType, model == null ? null : model.getParams());
+        }
+
+        val mappingCount = new AtomicInteger();
+        connector.readMappingIndex(0L, entry -> {
+            UUID detectorUuid = UUID.fromString(entry.getDetectorUuid());
+            if (writer.hasDetector(detectorUuid)) {
+                writer.addMapping(entry.getMetricHash(), detectorUuid);
+                mappingCount.incrementAndGet();
+            }
+        });
+
+        writer.writeTo(file);
+        log.info("Exported detector snapshot: file={}, detectors={}, models={}, mappings={}, durationMs={}",
+                file, detectorResources.size(), models.size(), mappingCount.get(),
+                System.currentTimeMillis() - startMillis);
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.val;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * Writes detector snapshot files for {@link FileDetectorSource}. See {@link DetectorSnapshot} for the format.
+ * <p>
+ * Add the detectors first, then the mappings that reference them. {@link #writeTo(Path)} writes to a temporary file
+ * next to the target and renames it into place, so a source polling the target never sees a partial snapshot.
+ */
+public class DetectorSnapshotWriter {
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<UUID, DetectorRecord> detectors = new LinkedHashMap<>();
+    private final Map<UUID, Integer> ordinals = new LinkedHashMap<>();
+    private final List<MappingRecord> mappings = new ArrayList<>();
+
+    /**
+     * Adds a detector.
+     *
+     * @param uuid         Detector UUID.
+     * @param enabled      Whether the detector is enabled.
+     * @param detectorType Detector type key.
+     * @param params       Params of the detector's latest model, or null if it has no model.
+     * @return This writer.
+     */
+    public DetectorSnapshotWriter addDetector(UUID uuid, boolean enabled, String detectorType,
+                                              Map<String, Object> params) {
+        notNull(uuid, "uuid can't be null");
+        notNull(detectorType, "detectorType can't be null");
+        isTrue(!detectors.containsKey(uuid), "Duplicate detector: " + uuid);
+        byte[] paramsBytes;
+        try {
+            paramsBytes = params == null ? null : objectMapper.writeValueAsBytes(params);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Can't serialize params for detector " + uuid, e);
+        }
+        ordinals.put(uuid, detectors.size());
+        detectors.put(uuid, new DetectorRecord(uuid, enabled, utf8(detectorType), paramsBytes));
+        return this;
+    }
+
+    /**
+     * Adds a metric-to-detector mapping.
+     *
+     * @param metricId     MetricTank metric id.
+     * @param detectorUuid UUID of a detector added earlier.
+     * @return This writer.
+     */
+    public DetectorSnapshotWriter addMapping(String metricId, UUID detectorUuid) {
+        notNull(metricId, "metricId can't be null");
+        val ordinal = ordinals.get(detectorUuid);
+        if (ordinal == null) {
+            throw new IllegalArgumentException("Unknown detector: " + detectorUuid);
+        }
+        mappings.add(new MappingRecord(utf8(metricId), ordinal));
+        return this;
+    }
+
+    public boolean hasDetector(UUID uuid) {
+        return detectors.containsKey(uuid);
+    }
+
+    /**
+     * Atomically writes the snapshot to the given file, replacing it if it exists.
+     *
+     * @param file Target file.
+     * @throws IOException if the snapshot can't be written
+     */
+    public void writeTo(Path file) throws IOException {
+        notNull(file, "file can't be null");
+        val dir = file.toAbsolutePath().getParent();
+        val tmpFile = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out =
+                         new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+                write(out);
+            }
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        out.writeInt(DetectorSnapshot.MAGIC);
+        out.writeInt(DetectorSnapshot.VERSION);
+        out.writeLong(System.currentTimeMillis());
+
+        out.writeInt(detectors.size());
+        for (val detector : detectors.values()) {
+            out.writeLong(detector.uuid.getMostSignificantBits());
+            out.writeLong(detector.uuid.getLeastSignificantBits());
+            out.writeByte(detector.enabled ? DetectorSnapshot.FLAG_ENABLED : 0);
+            val paramsLength = detector.params == null ? 0 : detector.params.length;
+            out.writeInt(2 + detector.type.length + 4 + paramsLength);
+            writeBytes(out, detector.type);
+            if (detector.params == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(detector.params.length);
+                out.write(detector.params);
+            }
+        }
+
+        out.writeInt(mappings.size());
+        for (val mapping : mappings) {
+            writeBytes(out, mapping.metricId);
+            out.writeInt(mapping.ordinal);
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] utf8(String s) {
+        val bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("String too long for snapshot: " + s);
+        }
+        return bytes;
+    }
+
+    private static final class DetectorRecord {
+        private final UUID uuid;
+        private final boolean enabled;
+        private final byte[] type;
+        private final byte[] params;
+
+        DetectorRecord(UUID uuid, boolean enabled, byte[] type, byte[] params) {
+            this.uuid = uuid;
+            this.enabled = enabled;
+            this.type = type;
+            this.params = params;
+        }
+    }
+
+    private static final class MappingRecord {
+        private final byte[] metricId;
+        private final int ordinal;
+
+        MappingRecord(byte[] metricId, int ordinal) {
+            this.metricId = metricId;
+            this.ordinal = ordinal;
+        }
+    }
+}
@@ -22,9 +22,14 @@ import com.expedia.adaptivealerting.anomdetect.DetectorNotFoundException;
 import com.expedia.adaptivealerting.anomdetect.detector.Detector;
 import com.expedia.metrics.MetricDefinition;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 
 /**
  * Detector source interfaces, supporting two major functions:
@@ -47,6 +52,32 @@ public interface DetectorSource {
      */
     List<UUID> findDetectorUuids(MetricDefinition metricDef);
 
+    /**
+     * Finds the detector UUIDs for a batch of metrics. The default implementation performs one lookup per metric;
+     * sources with a batched backend should override this.
+     *
+     * @param metricDefs The metrics.
+     * @return The detector UUIDs, aligned with {@code metricDefs}.
+     * @throws DetectorException if there's a problem finding the detectors
+     */
+    default List<List<UUID>> findDetectorUuids(List<MetricDefinition> metricDefs) {
+        return metricDefs.stream()
+                .map(this::findDetectorUuids)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Async version of {@link #findDetectorUuids(MetricDefinition)}. The default implementation runs the lookup on the
+     * given executor; sources with a non-blocking backend should override this.
+     *
+     * @param metricDef The metric.
+     * @param executor  Executor for blocking lookups.
+     * @return Future detector UUIDs.
+     */
+    default CompletableFuture<List<UUID>> findDetectorUuidsAsync(MetricDefinition metricDef, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> findDetectorUuids(metricDef), executor);
+    }
+
     /**
      * Finds the detector for a given detector and, optionally, metric.
      *
@@ -57,6 +88,36 @@ public interface DetectorSource {
      */
     Detector findDetector(UUID uuid);
 
+    /**
+     * Async version of {@link #findDetector(UUID)}. The default implementation runs the lookup on the given executor;
+     * sources with a non-blocking backend should override this.
+     *
+     * @param uuid     Detector UUID.
+     * @param executor Executor for blocking lookups and for building the detector.
+     * @return Future detector.
+     */
+    default CompletableFuture<Detector> findDetectorAsync(UUID uuid, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> findDetector(uuid), executor);
+    }
+
+    /**
+     * Finds the UUIDs of all enabled detectors.
+     *
+     * @return The enabled detector UUIDs.
+     * @throws DetectorException if there's a problem finding the detectors
+     */
+    List<UUID> findEnabledDetectorUuids();
+
+    /**
+     * Finds the detectors for the given UUIDs in bulk. Detectors that don't exist or can't be built are absent from the
+     * result; callers can fall back to {@link #findDetector(UUID)} for those.
+     *
+     * @param uuids Detector UUIDs.
+     * @return The detectors found, keyed by UUID.
+     * @throws DetectorException if there's a problem finding the detectors
+     */
+    Map<UUID, Detector> findDetectors(Collection<UUID> uuids);
+
     /**
      * Finds the list of detector UUIDs updated in last `timePeriod` minutes
      *
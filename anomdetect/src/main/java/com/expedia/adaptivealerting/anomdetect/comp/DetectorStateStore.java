@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+
+import java.util.UUID;
+
+/**
+ * Durable store for detector state snapshots (see {@link Detector#snapshotState()}), keyed by detector UUID. Lets a
+ * detector resume from its learned state after a restart or rebalance instead of warming up from scratch.
+ */
+public interface DetectorStateStore {
+
+    /**
+     * Returns the stored snapshot for the given detector.
+     *
+     * @param uuid Detector UUID.
+     * @return Snapshot, or {@code null} if there isn't one.
+     */
+    byte[] load(UUID uuid);
+
+    /**
+     * Stores a snapshot for the given detector, replacing any existing snapshot.
+     *
+     * @param uuid     Detector UUID.
+     * @param snapshot Snapshot.
+     */
+    void save(UUID uuid, byte[] snapshot);
+
+    /**
+     * Removes the stored snapshot for the given detector, if any.
+     *
+     * @param uuid Detector UUID.
+     */
+    void delete(UUID uuid);
+}
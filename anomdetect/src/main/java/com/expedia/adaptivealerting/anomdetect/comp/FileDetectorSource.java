@@ -0,0 +1,258 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorDeserializationException;
+import com.expedia.adaptivealerting.anomdetect.DetectorException;
+import com.expedia.adaptivealerting.anomdetect.DetectorNotFoundException;
+import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelResource;
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.core.data.MetricDefinitionInterner;
+import com.expedia.adaptivealerting.core.util.ThreadUtil;
+import com.expedia.metrics.MetricDefinition;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * A {@link DetectorSource} that serves detectors, models and mappings from a local snapshot file written by
+ * {@link DetectorSnapshotWriter}, e.g. exported from the Model Service with {@link DetectorSnapshotExporter}. It needs
+ * no Model Service at all, which makes for instant cold starts, offline load tests and a local stand-in for the Model
+ * Service in benchmarks.
+ * </p>
+ * <p>
+ * The snapshot is memory-mapped (see {@link DetectorSnapshot}). {@link #refresh()} reloads it when the file's
+ * modification time or size changes: the new snapshot is fully loaded before it atomically replaces the old one, and
+ * a snapshot that fails to load leaves the old one in place. Detectors that changed or disappeared are reported once
+ * through {@link #findUpdatedDetectors(int)}, so detector managers pick up the new params.
+ * </p>
+ */
+@Slf4j
+public class FileDetectorSource implements DetectorSource, Closeable {
+    private final DetectorLookup detectorLookup = new DetectorLookup();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MetricDefinitionInterner metricDefinitionInterner = MetricDefinitionInterner.shared();
+    private final Set<UUID> updatedDetectors = ConcurrentHashMap.newKeySet();
+
+    @Getter
+    private final Path file;
+
+    private volatile DetectorSnapshot snapshot;
+    private FileTime lastModified;
+    private long lastSize;
+    private ScheduledExecutorService scheduler;
+
+    @Getter
+    private volatile long lastLoadMillis;
+
+    /**
+     * Creates a source and loads the given snapshot file.
+     *
+     * @param file Snapshot file.
+     * @throws DetectorException if the snapshot can't be loaded
+     */
+    public FileDetectorSource(Path file) {
+        notNull(file, "file can't be null");
+        this.file = file;
+        try {
+            reload();
+        } catch (IOException e) {
+            throw new DetectorException("Can't load detector snapshot: file=" + file, e);
+        }
+    }
+
+    @Override
+    public Set<String> findDetectorTypes() {
+        return detectorLookup.getDetectorTypes();
+    }
+
+    @Override
+    public List<UUID> findDetectorUuids(MetricDefinition metricDef) {
+        notNull(metricDef, "metricDefinition can't be null");
+        return snapshot.getMappingIndex().find(metricDefinitionInterner.getId(metricDef));
+    }
+
+    @Override
+    public Detector findDetector(UUID uuid) {
+        notNull(uuid, "uuid can't be null");
+        val model = findModel(snapshot, uuid);
+        if (model == null) {
+            throw new DetectorNotFoundException("No models for detectorUuid=" + uuid);
+        }
+        return DefaultDetectorSource.doLegacyBuildDetector(detectorLookup, uuid, model);
+    }
+
+    @Override
+    public List<UUID> findEnabledDetectorUuids() {
+        return snapshot.getEnabledDetectorUuids();
+    }
+
+    @Override
+    public Map<UUID, Detector> findDetectors(Collection<UUID> uuids) {
+        notNull(uuids, "uuids can't be null");
+        val currentSnapshot = snapshot;
+        val detectors = new HashMap<UUID, Detector>();
+        for (val uuid : uuids) {
+            try {
+                val model = findModel(currentSnapshot, uuid);
+                if (model != null) {
+                    detectors.put(uuid, DefaultDetectorSource.doLegacyBuildDetector(detectorLookup, uuid, model));
+                }
+            } catch (RuntimeException e) {
+                // One bad model shouldn't fail the whole batch.
+                log.warn("Skipping detector in bulk load: uuid={}, error={}", uuid, e.getMessage());
+            }
+        }
+        return detectors;
+    }
+
+    /**
+     * Returns the detectors that changed or disappeared in snapshot reloads since the last call. The time period is
+     * ignored: each change is reported exactly once.
+     *
+     * @param timePeriod Ignored.
+     * @return Updated detector UUIDs.
+     */
+    @Override
+    public List<UUID> findUpdatedDetectors(int timePeriod) {
+        val result = new ArrayList<UUID>();
+        for (val uuid : updatedDetectors) {
+            if (updatedDetectors.remove(uuid)) {
+                result.add(uuid);
+            }
+        }
+        return result;
+    }
+
+    public int getDetectorCount() {
+        return snapshot.detectorCount();
+    }
+
+    public int getMappingCount() {
+        return snapshot.getMappingIndex().mappingCount();
+    }
+
+    /**
+     * Reloads the snapshot if the file has changed since the last load.
+     *
+     * @return true if a new snapshot was loaded.
+     * @throws DetectorException if the changed file can't be loaded
+     */
+    public synchronized boolean refresh() {
+        try {
+            if (Objects.equals(lastModified, Files.getLastModifiedTime(file)) && lastSize == Files.size(file)) {
+                return false;
+            }
+            reload();
+            return true;
+        } catch (IOException e) {
+            throw new DetectorException("Can't reload detector snapshot: file=" + file, e);
+        }
+    }
+
+    /**
+     * Starts checking the file for changes periodically in the background.
+     *
+     * @param refreshIntervalMs Refresh interval in milliseconds.
+     */
+    public synchronized void start(long refreshIntervalMs) {
+        isTrue(refreshIntervalMs > 0, "refreshIntervalMs must be > 0");
+        isTrue(scheduler == null, "Detector snapshot already started");
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                ThreadUtil.daemonThreadFactory("detector-snapshot-refresh"));
+        scheduler.scheduleWithFixedDelay(
+                this::refreshQuietly,
+                refreshIntervalMs,
+                refreshIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void reload() throws IOException {
+        val startMillis = System.currentTimeMillis();
+
+        // Read the attributes first: if the file changes while it's loaded, the next refresh loads it again.
+        val modified = Files.getLastModifiedTime(file);
+        val size = Files.size(file);
+        val newSnapshot = DetectorSnapshot.load(file);
+        val oldSnapshot = snapshot;
+        if (oldSnapshot != null) {
+            trackUpdates(oldSnapshot, newSnapshot);
+        }
+        this.snapshot = newSnapshot;
+        this.lastModified = modified;
+        this.lastSize = size;
+        this.lastLoadMillis = System.currentTimeMillis();
+        log.info("Loaded detector snapshot: file={}, detectors={}, mappings={}, durationMs={}",
+                file, newSnapshot.detectorCount(), newSnapshot.getMappingIndex().mappingCount(),
+                lastLoadMillis - startMillis);
+    }
+
+    private void trackUpdates(DetectorSnapshot oldSnapshot, DetectorSnapshot newSnapshot) {
+        for (val uuid : oldSnapshot.detectorUuids()) {
+            if (!Objects.equals(oldSnapshot.recordChecksum(uuid), newSnapshot.recordChecksum(uuid))) {
+                updatedDetectors.add(uuid);
+            }
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.warn("Error reloading detector snapshot, keeping the current one: file={}", file, e);
+        }
+    }
+
+    private ModelResource findModel(DetectorSnapshot currentSnapshot, UUID uuid) {
+        try {
+            return currentSnapshot.findModel(uuid, objectMapper);
+        } catch (IOException e) {
+            val message = "IOException while deserializing params for detector " + uuid;
+            throw new DetectorDeserializationException(message, e);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorException;
+import com.expedia.adaptivealerting.anomdetect.comp.connector.MappingIndexEntry;
+import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector;
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.core.data.MetricDefinitionInterner;
+import com.expedia.adaptivealerting.core.util.ThreadUtil;
+import com.expedia.metrics.MetricDefinition;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import lombok.var;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * A {@link DetectorSource} that answers {@link #findDetectorUuids(MetricDefinition)} from an in-memory copy of the
+ * complete metric-to-detector mapping, so the mapper hot path does no I/O and keeps working while the Model Service is
+ * down. All other lookups go to a delegate source.
+ * <p>
+ * The first refresh streams the full mapping index from the Model Service. Later refreshes stream only the mappings
+ * added since the last cursor and apply them to a copy of the index. When the Model Service reports a different
+ * mapping count or checksum than the index holds, mappings were deleted, updated in place or committed below the
+ * cursor, and the next refresh reloads the full index. Until the first load succeeds, lookups go to the delegate.
+ */
+@Slf4j
+public class MappingIndexDetectorSource implements DetectorSource, Closeable {
+    private final ModelServiceConnector connector;
+    private final DetectorSource delegate;
+    private final MetricDefinitionInterner metricDefinitionInterner = MetricDefinitionInterner.shared();
+
+    private volatile MetricDetectorIndex index;
+
+    @Getter
+    private volatile long cursor;
+
+    @Getter
+    private volatile long lastSyncMillis;
+
+    private long checksum;
+    private boolean reloadRequired = true;
+    private ScheduledExecutorService scheduler;
+
+    public MappingIndexDetectorSource(ModelServiceConnector connector, DetectorSource delegate) {
+        notNull(connector, "connector can't be null");
+        notNull(delegate, "delegate can't be null");
+        this.connector = connector;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Set<String> findDetectorTypes() {
+        return delegate.findDetectorTypes();
+    }
+
+    @Override
+    public List<UUID> findDetectorUuids(MetricDefinition metricDef) {
+        notNull(metricDef, "metricDefinition can't be null");
+        val currentIndex = index;
+        if (currentIndex == null) {
+            return delegate.findDetectorUuids(metricDef);
+        }
+        return currentIndex.find(metricDefinitionInterner.getId(metricDef));
+    }
+
+    @Override
+    public CompletableFuture<List<UUID>> findDetectorUuidsAsync(MetricDefinition metricDef, Executor executor) {
+        notNull(metricDef, "metricDefinition can't be null");
+        val currentIndex = index;
+        if (currentIndex == null) {
+            return delegate.findDetectorUuidsAsync(metricDef, executor);
+        }
+        return CompletableFuture.completedFuture(currentIndex.find(metricDefinitionInterner.getId(metricDef)));
+    }
+
+    @Override
+    public List<List<UUID>> findDetectorUuids(List<MetricDefinition> metricDefs) {
+        notNull(metricDefs, "metricDefs can't be null");
+        val currentIndex = index;
+        if (currentIndex == null) {
+            return delegate.findDetectorUuids(metricDefs);
+        }
+        val result = new ArrayList<List<UUID>>(metricDefs.size());
+        for (val metricDef : metricDefs) {
+            result.add(currentIndex.find(metricDefinitionInterner.getId(metricDef)));
+        }
+        return result;
+    }
+
+    @Override
+    public Detector findDetector(UUID uuid) {
+        return delegate.findDetector(uuid);
+    }
+
+    @Override
+    public CompletableFuture<Detector> findDetectorAsync(UUID uuid, Executor executor) {
+        return delegate.findDetectorAsync(uuid, executor);
+    }
+
+    @Override
+    public List<UUID> findEnabledDetectorUuids() {
+        return delegate.findEnabledDetectorUuids();
+    }
+
+    @Override
+    public Map<UUID, Detector> findDetectors(Collection<UUID> uuids) {
+        return delegate.findDetectors(uuids);
+    }
+
+    @Override
+    public List<UUID> findUpdatedDetectors(int timePeriod) {
+        return delegate.findUpdatedDetectors(timePeriod);
+    }
+
+    /**
+     * Indicates whether the index has been loaded.
+     *
+     * @return true if lookups are served from the index.
+     */
+    public boolean isLoaded() {
+        return index != null;
+    }
+
+    /**
+     * Returns the number of mappings in the index.
+     *
+     * @return Mapping count, or 0 if the index hasn't been loaded.
+     */
+    public int getMappingCount() {
+        val currentIndex = index;
+        return currentIndex == null ? 0 : currentIndex.mappingCount();
+    }
+
+    /**
+     * Brings the index up to date, either by applying the mappings added since the last refresh or, on the first
+     * refresh and after deletions, by reloading the full index.
+     *
+     * @throws DetectorException if there's a problem retrieving the mapping index
+     */
+    public synchronized void refresh() {
+        if (reloadRequired) {
+            reload();
+            return;
+        }
+
+        val added = new ArrayList<MappingIndexEntry>();
+        val header = connector.readMappingIndex(cursor, added::add);
+        var currentIndex = index;
+        var currentChecksum = checksum;
+        if (!added.isEmpty()) {
+            val builder = new MetricDetectorIndex.Builder(currentIndex);
+            for (val entry : added) {
+                addEntry(builder, entry);
+                currentChecksum += entry.checksum();
+            }
+            currentIndex = builder.build();
+        }
+        publish(currentIndex, header.getMaxId(), currentChecksum);
+        if (currentIndex.mappingCount() != header.getCount()
+                || (header.getChecksum() != null && header.getChecksum() != currentChecksum)) {
+            log.info("Mapping index out of sync, reloading on next refresh: indexCount={}, serviceCount={}, "
+                            + "indexChecksum={}, serviceChecksum={}",
+                    currentIndex.mappingCount(), header.getCount(), currentChecksum, header.getChecksum());
+            this.reloadRequired = true;
+        } else if (!added.isEmpty()) {
+            log.info("Applied mapping index delta: added={}, cursor={}", added.size(), cursor);
+        }
+    }
+
+    /**
+     * Loads the index and starts refreshing it periodically in the background. A failed initial load is logged rather
+     * than thrown, and lookups go to the delegate until a refresh succeeds.
+     *
+     * @param refreshIntervalMs Refresh interval in milliseconds.
+     */
+    public synchronized void start(long refreshIntervalMs) {
+        isTrue(refreshIntervalMs > 0, "refreshIntervalMs must be > 0");
+        isTrue(scheduler == null, "Mapping index already started");
+        refreshQuietly();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                ThreadUtil.daemonThreadFactory("mapping-index-refresh"));
+        scheduler.scheduleWithFixedDelay(
+                this::refreshQuietly,
+                refreshIntervalMs,
+                refreshIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void reload() {
+        val startMillis = System.currentTimeMillis();
+        val builder = new MetricDetectorIndex.Builder();
+        val newChecksum = new AtomicLong();
+        val header = connector.readMappingIndex(0L, entry -> {
+            addEntry(builder, entry);
+            newChecksum.addAndGet(entry.checksum());
+        });
+        val newIndex = builder.build();
+        publish(newIndex, header.getMaxId(), newChecksum.get());
+        this.reloadRequired = false;
+        log.info("Loaded mapping index: mappings={}, metrics={}, cursor={}, durationMs={}",
+                newIndex.mappingCount(), newIndex.metricCount(), cursor, System.currentTimeMillis() - startMillis);
+    }
+
+    private void publish(MetricDetectorIndex newIndex, long newCursor, long newChecksum) {
+        this.index = newIndex;
+        this.cursor = newCursor;
+        this.checksum = newChecksum;
+        this.lastSyncMillis = System.currentTimeMillis();
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.warn("Error refreshing mapping index, keeping cursor={}", cursor, e);
+        }
+    }
+
+    private static void addEntry(MetricDetectorIndex.Builder builder, MappingIndexEntry entry) {
+        builder.add(entry.getMetricHash(), UUID.fromString(entry.getDetectorUuid()));
+    }
+}
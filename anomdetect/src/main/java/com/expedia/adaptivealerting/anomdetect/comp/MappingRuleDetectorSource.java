@@ -0,0 +1,208 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorException;
+import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector;
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.core.util.ThreadUtil;
+import com.expedia.metrics.MetricDefinition;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * A {@link DetectorSource} that adds the detectors of matching pattern-based mapping rules to the explicit mappings
+ * found by a delegate source. The rules are downloaded from the Model Service and compiled into a local
+ * {@link MappingRuleMatcher}, so a rule covers new metrics as soon as they show up, without mapping rows or lookups
+ * per metric. All other lookups go to the delegate.
+ * <p>
+ * Until the first rule download succeeds no rules match. A failed refresh keeps the previous rules.
+ */
+@Slf4j
+public class MappingRuleDetectorSource implements DetectorSource, Closeable {
+    private final ModelServiceConnector connector;
+    private final DetectorSource delegate;
+
+    private volatile MappingRuleMatcher matcher = MappingRuleMatcher.EMPTY;
+
+    @Getter
+    private volatile long lastSyncMillis;
+
+    private ScheduledExecutorService scheduler;
+
+    public MappingRuleDetectorSource(ModelServiceConnector connector, DetectorSource delegate) {
+        notNull(connector, "connector can't be null");
+        notNull(delegate, "delegate can't be null");
+        this.connector = connector;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Set<String> findDetectorTypes() {
+        return delegate.findDetectorTypes();
+    }
+
+    @Override
+    public List<UUID> findDetectorUuids(MetricDefinition metricDef) {
+        notNull(metricDef, "metricDefinition can't be null");
+        return merge(delegate.findDetectorUuids(metricDef), matcher.match(metricDef));
+    }
+
+    @Override
+    public CompletableFuture<List<UUID>> findDetectorUuidsAsync(MetricDefinition metricDef, Executor executor) {
+        notNull(metricDef, "metricDefinition can't be null");
+        val ruleUuids = matcher.match(metricDef);
+        return delegate.findDetectorUuidsAsync(metricDef, executor).thenApply(uuids -> merge(uuids, ruleUuids));
+    }
+
+    @Override
+    public List<List<UUID>> findDetectorUuids(List<MetricDefinition> metricDefs) {
+        notNull(metricDefs, "metricDefs can't be null");
+        val currentMatcher = matcher;
+        val mapped = delegate.findDetectorUuids(metricDefs);
+        val result = new ArrayList<List<UUID>>(metricDefs.size());
+        for (int i = 0; i < metricDefs.size(); i++) {
+            result.add(merge(mapped.get(i), currentMatcher.match(metricDefs.get(i))));
+        }
+        return result;
+    }
+
+    @Override
+    public Detector findDetector(UUID uuid) {
+        return delegate.findDetector(uuid);
+    }
+
+    @Override
+    public CompletableFuture<Detector> findDetectorAsync(UUID uuid, Executor executor) {
+        return delegate.findDetectorAsync(uuid, executor);
+    }
+
+    @Override
+    public List<UUID> findEnabledDetectorUuids() {
+        return delegate.findEnabledDetectorUuids();
+    }
+
+    @Override
+    public Map<UUID, Detector> findDetectors(Collection<UUID> uuids) {
+        return delegate.findDetectors(uuids);
+    }
+
+    @Override
+    public List<UUID> findUpdatedDetectors(int timePeriod) {
+        return delegate.findUpdatedDetectors(timePeriod);
+    }
+
+    /**
+     * Indicates whether any mapping rule matches the given metric, regardless of its explicit mappings.
+     *
+     * @param metricDef Metric definition.
+     * @return true if at least one rule matches.
+     */
+    public boolean matchesAnyRule(MetricDefinition metricDef) {
+        return !matcher.match(metricDef).isEmpty();
+    }
+
+    /**
+     * Returns the number of compiled rules.
+     *
+     * @return Rule count.
+     */
+    public int getRuleCount() {
+        return matcher.ruleCount();
+    }
+
+    /**
+     * Downloads and compiles the current mapping rules.
+     *
+     * @throws DetectorException if there's a problem retrieving the mapping rules
+     */
+    public void refresh() {
+        val rules = connector.findMappingRules();
+        val newMatcher = MappingRuleMatcher.compile(rules);
+        val oldCount = matcher.ruleCount();
+        this.matcher = newMatcher;
+        this.lastSyncMillis = System.currentTimeMillis();
+        if (newMatcher.ruleCount() != oldCount) {
+            log.info("Loaded mapping rules: rules={}, skipped={}", newMatcher.ruleCount(),
+                    rules.size() - newMatcher.ruleCount());
+        }
+    }
+
+    /**
+     * Loads the rules and starts refreshing them periodically in the background. A failed initial load is logged
+     * rather than thrown.
+     *
+     * @param refreshIntervalMs Refresh interval in milliseconds.
+     */
+    public synchronized void start(long refreshIntervalMs) {
+        isTrue(refreshIntervalMs > 0, "refreshIntervalMs must be > 0");
+        isTrue(scheduler == null, "Mapping rules already started");
+        refreshQuietly();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                ThreadUtil.daemonThreadFactory("mapping-rule-refresh"));
+        scheduler.scheduleWithFixedDelay(
+                this::refreshQuietly,
+                refreshIntervalMs,
+                refreshIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.warn("Error refreshing mapping rules, keeping rules={}", matcher.ruleCount(), e);
+        }
+    }
+
+    private static List<UUID> merge(List<UUID> mapped, List<UUID> matched) {
+        if (matched.isEmpty()) {
+            return mapped;
+        }
+        if (mapped == null || mapped.isEmpty()) {
+            return matched;
+        }
+        val merged = new LinkedHashSet<UUID>(mapped);
+        merged.addAll(matched);
+        return new ArrayList<>(merged);
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.adaptivealerting.anomdetect.comp.connector.MappingRuleEntry;
+import com.expedia.metrics.MetricDefinition;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * Immutable matcher compiled from pattern-based mapping rules.
+ * <p>
+ * Rules are indexed by the literal prefix of their key pattern (everything before the first wildcard) in a character
+ * trie, so matching a metric walks the trie along its key once and only evaluates the rules whose prefix the key
+ * starts with. Rules whose key pattern starts with a wildcard are indexed by one of their exact tag predicates instead,
+ * so they're only evaluated for metrics carrying that tag value. The cost of matching a metric depends on its key
+ * length and the number of candidate rules, not on how many metrics the rules cover.
+ * <p>
+ * Key patterns and tag predicates are globs: '*' matches any run of characters and '?' a single character. A tag
+ * predicate of "*" only requires the tag to be present.
+ */
+@Slf4j
+final class MappingRuleMatcher {
+    static final MappingRuleMatcher EMPTY = compile(Collections.emptyList());
+
+    private static final String ANY = "*";
+
+    private final Node root;
+    private final Map<String, Map<String, List<Rule>>> rulesByTag;
+    private final int ruleCount;
+
+    private MappingRuleMatcher(Node root, Map<String, Map<String, List<Rule>>> rulesByTag, int ruleCount) {
+        this.root = root;
+        this.rulesByTag = rulesByTag;
+        this.ruleCount = ruleCount;
+    }
+
+    /**
+     * Compiles the given rules. Rules without a valid detector UUID or key pattern are skipped.
+     *
+     * @param entries Mapping rules.
+     * @return Matcher.
+     */
+    static MappingRuleMatcher compile(Collection<MappingRuleEntry> entries) {
+        notNull(entries, "entries can't be null");
+        val root = new Node();
+        val rulesByTag = new HashMap<String, Map<String, List<Rule>>>();
+        int ruleCount = 0;
+        for (val entry : entries) {
+            val rule = Rule.compile(entry);
+            if (rule == null) {
+                log.warn("Skipping invalid mapping rule: {}", entry);
+                continue;
+            }
+            ruleCount++;
+            val indexTag = rule.prefix.isEmpty() ? rule.exactTagPredicate() : null;
+            if (indexTag != null) {
+                rulesByTag.computeIfAbsent(indexTag.name, name -> new HashMap<>())
+                        .computeIfAbsent(indexTag.exactValue, value -> new ArrayList<>())
+                        .add(rule);
+            } else {
+                root.descend(rule.prefix).rules.add(rule);
+            }
+        }
+        return new MappingRuleMatcher(root, rulesByTag, ruleCount);
+    }
+
+    /**
+     * Finds the detectors of the rules matching the given metric.
+     *
+     * @param metricDef Metric definition.
+     * @return Detector UUIDs, or an empty list if no rule matches.
+     */
+    List<UUID> match(MetricDefinition metricDef) {
+        notNull(metricDef, "metricDef can't be null");
+        if (ruleCount == 0) {
+            return Collections.emptyList();
+        }
+        val key = metricDef.getKey() == null ? "" : metricDef.getKey();
+        val tags = kvTags(metricDef);
+        Set<UUID> result = null;
+
+        Node node = root;
+        for (int i = 0; node != null; i++) {
+            result = collect(node.rules, key, i, tags, result);
+            node = i < key.length() ? node.children.get(key.charAt(i)) : null;
+        }
+        if (!rulesByTag.isEmpty()) {
+            for (val tag : tags.entrySet()) {
+                val rulesByValue = rulesByTag.get(tag.getKey());
+                if (rulesByValue != null) {
+                    result = collect(rulesByValue.get(tag.getValue()), key, 0, tags, result);
+                }
+            }
+        }
+        return result == null ? Collections.emptyList() : new ArrayList<>(result);
+    }
+
+    int ruleCount() {
+        return ruleCount;
+    }
+
+    private static Set<UUID> collect(List<Rule> rules, String key, int prefixLength, Map<String, String> tags,
+                                     Set<UUID> result) {
+        if (rules == null) {
+            return result;
+        }
+        for (val rule : rules) {
+            if (rule.matches(key, prefixLength, tags)) {
+                if (result == null) {
+                    result = new LinkedHashSet<>();
+                }
+                result.add(rule.detectorUuid);
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, String> kvTags(MetricDefinition metricDef) {
+        val tags = metricDef.getTags();
+        return tags == null || tags.getKv() == null ? Collections.emptyMap() : tags.getKv();
+    }
+
+    private static boolean isGlob(String pattern) {
+        return pattern.indexOf('*') >= 0 || pattern.indexOf('?') >= 0;
+    }
+
+    private static Pattern globToRegex(String glob) {
+        val regex = new StringBuilder(glob.length() + 16);
+        val literal = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            val c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '*' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private final List<Rule> rules = new ArrayList<>();
+
+        Node descend(String path) {
+            Node node = this;
+            for (int i = 0; i < path.length(); i++) {
+                node = node.children.computeIfAbsent(path.charAt(i), c -> new Node());
+            }
+            return node;
+        }
+    }
+
+    private static final class Rule {
+        private final UUID detectorUuid;
+        private final String prefix;
+
+        // Null if the key pattern is a plain prefix followed by '*', or has no wildcard at all.
+        private final Pattern keyRegex;
+        private final boolean exactKey;
+        private final List<TagPredicate> tagPredicates;
+
+        private Rule(UUID detectorUuid, String keyPattern, List<TagPredicate> tagPredicates) {
+            this.detectorUuid = detectorUuid;
+            this.tagPredicates = tagPredicates;
+            val wildcard = firstWildcard(keyPattern);
+            this.prefix = wildcard < 0 ? keyPattern : keyPattern.substring(0, wildcard);
+            this.exactKey = wildcard < 0;
+            val plainPrefix = wildcard == keyPattern.length() - 1 && keyPattern.charAt(wildcard) == '*';
+            this.keyRegex = exactKey || plainPrefix ? null : globToRegex(keyPattern);
+        }
+
+        static Rule compile(MappingRuleEntry entry) {
+            if (entry == null || entry.getDetectorUuid() == null || entry.getKeyPattern() == null
+                    || entry.getKeyPattern().isEmpty()) {
+                return null;
+            }
+            final UUID detectorUuid;
+            try {
+                detectorUuid = UUID.fromString(entry.getDetectorUuid());
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            val tagPredicates = new ArrayList<TagPredicate>();
+            if (entry.getTags() != null) {
+                for (val tag : entry.getTags().entrySet()) {
+                    if (tag.getKey() == null || tag.getValue() == null) {
+                        return null;
+                    }
+                    tagPredicates.add(new TagPredicate(tag.getKey(), tag.getValue()));
+                }
+            }
+            return new Rule(detectorUuid, entry.getKeyPattern(), tagPredicates);
+        }
+
+        /**
+         * Checks the rule against a metric whose key is known to start with the rule's prefix.
+         */
+        boolean matches(String key, int prefixLength, Map<String, String> tags) {
+            if (exactKey && key.length() != prefixLength) {
+                return false;
+            }
+            if (keyRegex != null && !keyRegex.matcher(key).matches()) {
+                return false;
+            }
+            for (val predicate : tagPredicates) {
+                if (!predicate.matches(tags.get(predicate.name))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        TagPredicate exactTagPredicate() {
+            for (val predicate : tagPredicates) {
+                if (predicate.exactValue != null) {
+                    return predicate;
+                }
+            }
+            return null;
+        }
+
+        private static int firstWildcard(String pattern) {
+            for (int i = 0; i < pattern.length(); i++) {
+                val c = pattern.charAt(i);
+                if (c == '*' || c == '?') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static final class TagPredicate {
+        private final String name;
+
+        // Exactly one of these is set, unless the predicate only requires the tag to be present.
+        private final String exactValue;
+        private final Pattern valueRegex;
+
+        TagPredicate(String name, String valuePattern) {
+            this.name = name;
+            val glob = isGlob(valuePattern);
+            this.exactValue = glob ? null : valuePattern;
+            this.valueRegex = glob && !ANY.equals(valuePattern) ? globToRegex(valuePattern) : null;
+        }
+
+        boolean matches(String value) {
+            if (value == null) {
+                return false;
+            }
+            if (exactValue != null) {
+                return exactValue.equals(value);
+            }
+            return valueRegex == null || valueRegex.matcher(value).matches();
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import lombok.val;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * Compact, immutable index from MetricTank metric ids to detector UUIDs.
+ * <p>
+ * MetricTank ids have the form {@code <orgId>.<32 hex digit md5>}. The index parses them into an int and two longs and
+ * keeps them in an open-addressing table of primitive arrays, so each metric costs a few dozen bytes rather than a
+ * string, a map entry and a list. Detector UUIDs are interned into a single array and referenced by position. Ids that
+ * don't have the MetricTank form fall back to a regular map.
+ * <p>
+ * Use a {@link Builder} to create an index, or to derive a new index from an existing one plus additional mappings.
+ * Mappings can't be removed; rebuild the index instead.
+ */
+final class MetricDetectorIndex {
+    private static final int HEX_DIGITS = 32;
+    private static final int MAX_ORG_ID_DIGITS = 9;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    // Slot values: 0 means empty, n > 0 means the single detector at index n - 1, and n < 0 means the detector list
+    // at overflow index -n - 1.
+    private final int[] orgIds;
+    private final long[] hashHis;
+    private final long[] hashLos;
+    private final int[] values;
+    private final int[][] overflow;
+    private final UUID[] detectors;
+    private final Map<String, int[]> irregular;
+    private final int metricCount;
+    private final int mappingCount;
+
+    private MetricDetectorIndex(Builder builder) {
+        this.orgIds = builder.orgIds;
+        this.hashHis = builder.hashHis;
+        this.hashLos = builder.hashLos;
+        this.values = builder.values;
+        this.overflow = builder.overflow.toArray(new int[0][]);
+        this.detectors = builder.detectors.toArray(new UUID[0]);
+        this.irregular = builder.irregular;
+        this.metricCount = builder.metricCount;
+        this.mappingCount = builder.mappingCount;
+    }
+
+    /**
+     * Finds the detectors mapped to the given metric.
+     *
+     * @param metricId MetricTank metric id.
+     * @return Detector UUIDs, or an empty list if there aren't any.
+     */
+    public List<UUID> find(String metricId) {
+        notNull(metricId, "metricId can't be null");
+        val dot = regularDotIndex(metricId);
+        if (dot < 0) {
+            val detectorIndexes = irregular.get(metricId);
+            return detectorIndexes == null ? Collections.emptyList() : toUuids(detectorIndexes);
+        }
+
+        val orgId = parseOrgId(metricId, dot);
+        val hashHi = parseHex(metricId, dot + 1);
+        val hashLo = parseHex(metricId, dot + 1 + HEX_DIGITS / 2);
+        val mask = values.length - 1;
+        for (int slot = slot(orgId, hashHi, hashLo, mask); values[slot] != 0; slot = (slot + 1) & mask) {
+            if (orgIds[slot] == orgId && hashHis[slot] == hashHi && hashLos[slot] == hashLo) {
+                val value = values[slot];
+                return value > 0
+                        ? Collections.singletonList(detectors[value - 1])
+                        : toUuids(overflow[-value - 1]);
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns the number of metrics with at least one detector.
+     *
+     * @return Metric count.
+     */
+    public int metricCount() {
+        return metricCount;
+    }
+
+    /**
+     * Returns the number of distinct metric/detector mappings.
+     *
+     * @return Mapping count.
+     */
+    public int mappingCount() {
+        return mappingCount;
+    }
+
+    private List<UUID> toUuids(int[] detectorIndexes) {
+        val uuids = new ArrayList<UUID>(detectorIndexes.length);
+        for (val detectorIndex : detectorIndexes) {
+            uuids.add(detectors[detectorIndex]);
+        }
+        return uuids;
+    }
+
+    private static int slot(int orgId, long hashHi, long hashLo, int mask) {
+        // The md5 bits are already uniformly distributed, so a light mix is enough.
+        long h = hashLo ^ (hashHi * MIX) ^ orgId;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Returns the position of the dot if the given id has the MetricTank form, or -1 otherwise. Only lower-case hex
+     * digits count, so every id string maps to a single key.
+     */
+    private static int regularDotIndex(String id) {
+        val dot = id.indexOf('.');
+        if (dot < 1 || dot > MAX_ORG_ID_DIGITS || id.length() != dot + 1 + HEX_DIGITS) {
+            return -1;
+        }
+        for (int i = 0; i < dot; i++) {
+            val c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+        }
+        for (int i = dot + 1; i < id.length(); i++) {
+            val c = id.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return -1;
+            }
+        }
+        return dot;
+    }
+
+    private static int parseOrgId(String id, int dot) {
+        int orgId = 0;
+        for (int i = 0; i < dot; i++) {
+            orgId = orgId * 10 + (id.charAt(i) - '0');
+        }
+        return orgId;
+    }
+
+    private static long parseHex(String id, int start) {
+        long value = 0L;
+        for (int i = start; i < start + HEX_DIGITS / 2; i++) {
+            value = (value << 4) | Character.digit(id.charAt(i), 16);
+        }
+        return value;
+    }
+
+    /**
+     * Builds {@link MetricDetectorIndex}es. Not thread-safe, and can only build once.
+     */
+    static final class Builder {
+        private int[] orgIds;
+        private long[] hashHis;
+        private long[] hashLos;
+        private int[] values;
+        private final List<int[]> overflow;
+        private final List<UUID> detectors;
+        private final Map<UUID, Integer> detectorIndexes;
+        private final Map<String, int[]> irregular;
+        private int metricCount;
+        private int mappingCount;
+        private boolean built;
+
+        /**
+         * Creates a builder for an empty index.
+         */
+        Builder() {
+            this.orgIds = new int[INITIAL_CAPACITY];
+            this.hashHis = new long[INITIAL_CAPACITY];
+            this.hashLos = new long[INITIAL_CAPACITY];
+            this.values = new int[INITIAL_CAPACITY];
+            this.overflow = new ArrayList<>();
+            this.detectors = new ArrayList<>();
+            this.detectorIndexes = new HashMap<>();
+            this.irregular = new HashMap<>();
+        }
+
+        /**
+         * Creates a builder for an index holding the given index's mappings. The given index is left unchanged.
+         *
+         * @param base Base index.
+         */
+        Builder(MetricDetectorIndex base) {
+            notNull(base, "base can't be null");
+            this.orgIds = base.orgIds.clone();
+            this.hashHis = base.hashHis.clone();
+            this.hashLos = base.hashLos.clone();
+            this.values = base.values.clone();
+
+            // The int arrays are shared with the base index, so they're replaced rather than modified.
+            this.overflow = new ArrayList<>(Arrays.asList(base.overflow));
+            this.detectors = new ArrayList<>(Arrays.asList(base.detectors));
+            this.detectorIndexes = new HashMap<>();
+            for (int i = 0; i < base.detectors.length; i++) {
+                detectorIndexes.put(base.detectors[i], i);
+            }
+            this.irregular = new HashMap<>(base.irregular);
+            this.metricCount = base.metricCount;
+            this.mappingCount = base.mappingCount;
+        }
+
+        /**
+         * Adds a mapping. Adding an existing mapping does nothing.
+         *
+         * @param metricId     MetricTank metric id.
+         * @param detectorUuid Detector UUID.
+         * @return This builder.
+         */
+        Builder add(String metricId, UUID detectorUuid) {
+            notNull(metricId, "metricId can't be null");
+            notNull(detectorUuid, "detectorUuid can't be null");
+            isTrue(!built, "Index already built");
+
+            int detectorIndex = detectorIndexes.computeIfAbsent(detectorUuid, uuid -> {
+                detectors.add(uuid);
+                return detectors.size() - 1;
+            });
+
+            val dot = regularDotIndex(metricId);
+            if (dot < 0) {
+                val current = irregular.get(metricId);
+                if (current == null) {
+                    irregular.put(metricId, new int[]{detectorIndex});
+                    metricCount++;
+                    mappingCount++;
+                } else if (!contains(current, detectorIndex)) {
+                    irregular.put(metricId, append(current, detectorIndex));
+                    mappingCount++;
+                }
+                return this;
+            }
+
+            val orgId = parseOrgId(metricId, dot);
+            val hashHi = parseHex(metricId, dot + 1);
+            val hashLo = parseHex(metricId, dot + 1 + HEX_DIGITS / 2);
+            val slot = findSlot(orgId, hashHi, hashLo);
+            val value = values[slot];
+            if (value == 0) {
+                orgIds[slot] = orgId;
+                hashHis[slot] = hashHi;
+                hashLos[slot] = hashLo;
+                values[slot] = detectorIndex + 1;
+                metricCount++;
+                mappingCount++;
+                if (metricCount * 2 > values.length) {
+                    grow();
+                }
+            } else if (value > 0) {
+                if (value - 1 != detectorIndex) {
+                    overflow.add(new int[]{value - 1, detectorIndex});
+                    values[slot] = -overflow.size();
+                    mappingCount++;
+                }
+            } else {
+                val current = overflow.get(-value - 1);
+                if (!contains(current, detectorIndex)) {
+                    overflow.set(-value - 1, append(current, detectorIndex));
+                    mappingCount++;
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Builds the index. The builder can't be used afterwards.
+         *
+         * @return Index.
+         */
+        MetricDetectorIndex build() {
+            isTrue(!built, "Index already built");
+            this.built = true;
+            return new MetricDetectorIndex(this);
+        }
+
+        private int findSlot(int orgId, long hashHi, long hashLo) {
+            val mask = values.length - 1;
+            int slot = slot(orgId, hashHi, hashLo, mask);
+            while (values[slot] != 0
+                    && (orgIds[slot] != orgId || hashHis[slot] != hashHi || hashLos[slot] != hashLo)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            val oldOrgIds = orgIds;
+            val oldHashHis = hashHis;
+            val oldHashLos = hashLos;
+            val oldValues = values;
+            val capacity = oldValues.length * 2;
+            this.orgIds = new int[capacity];
+            this.hashHis = new long[capacity];
+            this.hashLos = new long[capacity];
+            this.values = new int[capacity];
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != 0) {
+                    val slot = findSlot(oldOrgIds[i], oldHashHis[i], oldHashLos[i]);
+                    orgIds[slot] = oldOrgIds[i];
+                    hashHis[slot] = oldHashHis[i];
+                    hashLos[slot] = oldHashLos[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static boolean contains(int[] array, int value) {
+            for (val element : array) {
+                if (element == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static int[] append(int[] array, int value) {
+            val result = Arrays.copyOf(array, array.length + 1);
+            result[array.length] = value;
+            return result;
+        }
+    }
+}
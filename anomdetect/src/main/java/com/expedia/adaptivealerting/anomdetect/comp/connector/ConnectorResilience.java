@@ -0,0 +1,343 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp.connector;
+
+import com.expedia.adaptivealerting.anomdetect.CircuitOpenException;
+import com.expedia.adaptivealerting.anomdetect.RetryBudgetExhaustedException;
+import com.expedia.adaptivealerting.core.util.ThreadUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.apache.http.client.HttpResponseException;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * Resilience policy for {@link ModelServiceConnector} calls, so a slow or failing Model Service sheds load instead of
+ * being buried under per-record retries:
+ * </p>
+ * <ul>
+ * <li>Each endpoint has a {@link CircuitBreaker}. Calls to an endpoint whose breaker is open fail fast with a
+ * {@link CircuitOpenException}.</li>
+ * <li>Failed synchronous calls are retried with full-jitter exponential backoff, but only while the shared
+ * {@link RetryBudget} has tokens. Otherwise they fail with a {@link RetryBudgetExhaustedException}.</li>
+ * <li>Async calls can be hedged: if the first attempt hasn't completed after the hedge delay, a second one is sent and
+ * the first success wins. Hedges spend retry budget too.</li>
+ * </ul>
+ * <p>
+ * Only network errors, 5xx and 429 responses count as failures. Other error responses and unparseable bodies mean the
+ * service is healthy, so they propagate immediately without retries.
+ * </p>
+ */
+@Slf4j
+public class ConnectorResilience {
+    private static final String CK_ENABLED = "enabled";
+    private static final String CK_FAILURE_THRESHOLD = "circuit-breaker.failure-threshold";
+    private static final String CK_OPEN_DURATION_MS = "circuit-breaker.open-duration-ms";
+    private static final String CK_MAX_RETRIES = "retry.max-retries";
+    private static final String CK_BACKOFF_BASE_MS = "retry.backoff-base-ms";
+    private static final String CK_BACKOFF_MAX_MS = "retry.backoff-max-ms";
+    private static final String CK_BUDGET_RATIO = "retry.budget-ratio";
+    private static final String CK_BUDGET_MAX_TOKENS = "retry.budget-max-tokens";
+    private static final String CK_HEDGE_DELAY_MS = "hedge.delay-ms";
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_OPEN_DURATION_MS = 10_000L;
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    public static final long DEFAULT_BACKOFF_BASE_MS = 50L;
+    public static final long DEFAULT_BACKOFF_MAX_MS = 1_000L;
+    public static final double DEFAULT_BUDGET_RATIO = 0.1;
+    public static final double DEFAULT_BUDGET_MAX_TOKENS = 10.0;
+    public static final long DEFAULT_HEDGE_DELAY_MS = 0L;
+
+    private static final int MAX_BACKOFF_EXPONENT = 30;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private final boolean enabled;
+    private final int failureThreshold;
+    private final long openDurationMs;
+    private final int maxRetries;
+    private final long backoffBaseMs;
+    private final long backoffMaxMs;
+    private final long hedgeDelayMs;
+    private final RetryBudget retryBudget;
+    private final LongSupplier clock;
+    private final Sleeper sleeper;
+    private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService hedgeScheduler;
+
+    /**
+     * Creates a policy from the given config, falling back to defaults for missing keys.
+     *
+     * @param config Policy config, e.g. the {@code model-service-resilience} block of an app config.
+     */
+    public ConnectorResilience(Config config) {
+        this(config, System::currentTimeMillis, Thread::sleep);
+    }
+
+    ConnectorResilience(Config config, LongSupplier clock, Sleeper sleeper) {
+        notNull(config, "config can't be null");
+        notNull(clock, "clock can't be null");
+        notNull(sleeper, "sleeper can't be null");
+        this.enabled = !config.hasPath(CK_ENABLED) || config.getBoolean(CK_ENABLED);
+        this.failureThreshold = config.hasPath(CK_FAILURE_THRESHOLD)
+                ? config.getInt(CK_FAILURE_THRESHOLD)
+                : DEFAULT_FAILURE_THRESHOLD;
+        this.openDurationMs = config.hasPath(CK_OPEN_DURATION_MS)
+                ? config.getLong(CK_OPEN_DURATION_MS)
+                : DEFAULT_OPEN_DURATION_MS;
+        this.maxRetries = config.hasPath(CK_MAX_RETRIES) ? config.getInt(CK_MAX_RETRIES) : DEFAULT_MAX_RETRIES;
+        this.backoffBaseMs = config.hasPath(CK_BACKOFF_BASE_MS)
+                ? config.getLong(CK_BACKOFF_BASE_MS)
+                : DEFAULT_BACKOFF_BASE_MS;
+        this.backoffMaxMs = config.hasPath(CK_BACKOFF_MAX_MS)
+                ? config.getLong(CK_BACKOFF_MAX_MS)
+                : DEFAULT_BACKOFF_MAX_MS;
+        this.hedgeDelayMs = config.hasPath(CK_HEDGE_DELAY_MS)
+                ? config.getLong(CK_HEDGE_DELAY_MS)
+                : DEFAULT_HEDGE_DELAY_MS;
+        this.retryBudget = new RetryBudget(
+                config.hasPath(CK_BUDGET_RATIO) ? config.getDouble(CK_BUDGET_RATIO) : DEFAULT_BUDGET_RATIO,
+                config.hasPath(CK_BUDGET_MAX_TOKENS)
+                        ? config.getDouble(CK_BUDGET_MAX_TOKENS)
+                        : DEFAULT_BUDGET_MAX_TOKENS);
+        this.clock = clock;
+        this.sleeper = sleeper;
+
+        isTrue(failureThreshold > 0, "failureThreshold must be > 0");
+        isTrue(openDurationMs > 0, "openDurationMs must be > 0");
+        isTrue(maxRetries >= 0, "maxRetries must be >= 0");
+        isTrue(backoffBaseMs > 0, "backoffBaseMs must be > 0");
+        isTrue(backoffMaxMs >= backoffBaseMs, "backoffMaxMs must be >= backoffBaseMs");
+        isTrue(hedgeDelayMs >= 0, "hedgeDelayMs must be >= 0");
+    }
+
+    /**
+     * Returns a pass-through policy: no circuit breaking, retries or hedging.
+     *
+     * @return Disabled policy.
+     */
+    public static ConnectorResilience disabled() {
+        return new ConnectorResilience(ConfigFactory.parseString(CK_ENABLED + " = false"));
+    }
+
+    /**
+     * Runs a synchronous call against the given endpoint, applying the circuit breaker and retries.
+     *
+     * @param endpoint Endpoint name, identifying the circuit breaker.
+     * @param call     The call.
+     * @param <T>      Call result type.
+     * @return Call result.
+     * @throws CircuitOpenException           if the endpoint's circuit breaker is open
+     * @throws RetryBudgetExhaustedException  if the call failed and the retry budget is spent
+     * @throws IOException                    if the call failed with a non-retryable error or ran out of retries
+     */
+    <T> T call(String endpoint, IOCall<T> call) throws IOException {
+        return call(endpoint, call, maxRetries);
+    }
+
+    /**
+     * Runs a synchronous call against the given endpoint, applying the circuit breaker but no retries. Suits calls
+     * that aren't safe to repeat, such as streamed reads whose consumer has already seen part of the response.
+     *
+     * @param endpoint Endpoint name, identifying the circuit breaker.
+     * @param call     The call.
+     * @param <T>      Call result type.
+     * @return Call result.
+     * @throws CircuitOpenException if the endpoint's circuit breaker is open
+     * @throws IOException          if the call failed
+     */
+    <T> T callOnce(String endpoint, IOCall<T> call) throws IOException {
+        return call(endpoint, call, 0);
+    }
+
+    private <T> T call(String endpoint, IOCall<T> call, int maxRetries) throws IOException {
+        if (!enabled) {
+            return call.call();
+        }
+        val breaker = breaker(endpoint);
+        if (!breaker.tryAcquire()) {
+            throw new CircuitOpenException("Circuit open for Model Service endpoint " + endpoint);
+        }
+        retryBudget.recordCall();
+
+        int attempt = 0;
+        while (true) {
+            try {
+                val result = call.call();
+                breaker.recordSuccess();
+                return result;
+            } catch (RuntimeException e) {
+                // Not retried, but the breaker still needs the outcome or a half-open trial never ends.
+                recordOutcome(breaker, e);
+                throw e;
+            } catch (IOException e) {
+                if (!isFailure(e)) {
+                    breaker.recordSuccess();
+                    throw e;
+                }
+                breaker.recordFailure();
+                if (attempt >= maxRetries || breaker.getState() != CircuitBreaker.State.CLOSED) {
+                    throw e;
+                }
+                if (!retryBudget.tryWithdraw()) {
+                    throw new RetryBudgetExhaustedException(
+                            "Retry budget exhausted for Model Service endpoint " + endpoint, e);
+                }
+                attempt++;
+                val backoffMs = backoffMillis(attempt);
+                log.debug("Retrying Model Service call: endpoint={}, attempt={}, backoffMs={}, error={}",
+                        endpoint, attempt, backoffMs, e.getMessage());
+                try {
+                    sleeper.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs an async call against the given endpoint, applying the circuit breaker and hedging. The supplier may be
+     * invoked twice, so it must be idempotent.
+     *
+     * @param endpoint Endpoint name, identifying the circuit breaker.
+     * @param call     Supplier starting the call.
+     * @param <T>      Call result type.
+     * @return Future call result. Completes exceptionally with a {@link CircuitOpenException} if the endpoint's circuit
+     * breaker is open.
+     */
+    <T> CompletableFuture<T> callAsync(String endpoint, Supplier<CompletableFuture<T>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        val result = new CompletableFuture<T>();
+        val breaker = breaker(endpoint);
+        if (!breaker.tryAcquire()) {
+            result.completeExceptionally(
+                    new CircuitOpenException("Circuit open for Model Service endpoint " + endpoint));
+            return result;
+        }
+        retryBudget.recordCall();
+
+        val pendingAttempts = new AtomicInteger(1);
+        startAttempt(call, result, breaker, pendingAttempts);
+        if (hedgeDelayMs > 0) {
+            hedgeScheduler().schedule(() -> {
+                if (!result.isDone() && retryBudget.tryWithdraw()) {
+                    log.debug("Hedging Model Service call: endpoint={}", endpoint);
+                    pendingAttempts.incrementAndGet();
+                    startAttempt(call, result, breaker, pendingAttempts);
+                }
+            }, hedgeDelayMs, TimeUnit.MILLISECONDS);
+        }
+        return result;
+    }
+
+    private <T> void startAttempt(
+            Supplier<CompletableFuture<T>> call,
+            CompletableFuture<T> result,
+            CircuitBreaker breaker,
+            AtomicInteger pendingAttempts) {
+
+        CompletableFuture<T> attempt;
+        try {
+            attempt = call.get();
+        } catch (RuntimeException e) {
+            attempt = new CompletableFuture<>();
+            attempt.completeExceptionally(e);
+        }
+        attempt.whenComplete((value, e) -> {
+            if (e == null) {
+                breaker.recordSuccess();
+                result.complete(value);
+            } else if (pendingAttempts.decrementAndGet() == 0) {
+                recordOutcome(breaker, e);
+                result.completeExceptionally(e);
+            }
+        });
+    }
+
+    private static void recordOutcome(CircuitBreaker breaker, Throwable e) {
+        if (isFailure(e)) {
+            breaker.recordFailure();
+        } else {
+            breaker.recordSuccess();
+        }
+    }
+
+    private CircuitBreaker breaker(String endpoint) {
+        return breakers.computeIfAbsent(endpoint, e -> new CircuitBreaker(failureThreshold, openDurationMs, clock));
+    }
+
+    private synchronized ScheduledExecutorService hedgeScheduler() {
+        if (hedgeScheduler == null) {
+            hedgeScheduler = Executors.newSingleThreadScheduledExecutor(
+                    ThreadUtil.daemonThreadFactory("model-service-hedge"));
+        }
+        return hedgeScheduler;
+    }
+
+    /**
+     * Full jitter: a uniformly random delay up to the exponential backoff for the given attempt.
+     */
+    private long backoffMillis(int attempt) {
+        val exponent = Math.min(attempt - 1, MAX_BACKOFF_EXPONENT);
+        val ceiling = Math.min(backoffMaxMs, backoffBaseMs << exponent);
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static boolean isFailure(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && !(cause instanceof IOException)) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof JsonProcessingException) {
+            return false;
+        }
+        if (cause instanceof HttpResponseException) {
+            val statusCode = ((HttpResponseException) cause).getStatusCode();
+            return statusCode >= 500 || statusCode == HTTP_TOO_MANY_REQUESTS;
+        }
+        return true;
+    }
+
+    interface IOCall<T> {
+        T call() throws IOException;
+    }
+
+    interface Sleeper {
+        void sleep(long millis) throws InterruptedException;
+    }
+}
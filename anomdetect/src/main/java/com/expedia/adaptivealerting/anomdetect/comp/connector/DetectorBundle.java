@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp.connector;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.val;
+
+import java.util.Map;
+
+/**
+ * Everything needed to build a detector, as returned by the detector bundle endpoints in a single query.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class DetectorBundle {
+    private String uuid;
+    private String detectorType;
+    private boolean enabled;
+
+    /**
+     * Params of the detector's latest model.
+     */
+    private Map<String, Object> params;
+
+    /**
+     * Anomaly type param, or null for detectors that don't support tails.
+     */
+    private String anomalyType;
+
+    /**
+     * Converts this bundle to the model resource the detector builders take.
+     *
+     * @return Equivalent model resource.
+     */
+    public ModelResource toModelResource() {
+        val resource = new ModelResource();
+        resource.setUuid(uuid);
+        resource.setDetectorType(new ModelTypeResource(detectorType));
+        resource.setParams(params);
+        return resource;
+    }
+}
@@ -15,26 +15,228 @@
  */
 package com.expedia.adaptivealerting.anomdetect.comp.connector;
 
+import com.expedia.adaptivealerting.core.util.ThreadUtil;
+import com.typesafe.config.Config;
+import lombok.val;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.fluent.Content;
-import org.apache.http.client.fluent.Request;
+import org.apache.http.client.fluent.ContentResponseHandler;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
 
 /**
- * Simple wrapper around Apache's fluent HTTP client, intended to support mockability.
+ * <p>
+ * Wrapper around a pooled Apache HTTP client, intended to support mockability.
+ * </p>
+ * <p>
+ * Connections are kept alive and reused across calls, up to a per-route and a total limit. Every call is bounded by
+ * a connect timeout, a socket (read) timeout and a timeout for leasing a pooled connection, so a slow Model Service
+ * can't stall the caller indefinitely.
+ * </p>
+ * <p>
+ * All I/O is blocking. {@link #getAsync(String, ResponseHandler)} doesn't use non-blocking I/O: it runs the blocking
+ * call on a small, bounded pool of threads and returns a future, which keeps stream threads off the network but
+ * limits the number of calls in flight to the pool size. Further calls queue for a free thread. The synchronous
+ * {@link #get(String)} and {@link #post(String, String)} buffer the whole response body in memory; use
+ * {@link #get(String, ResponseHandler)} to stream large responses.
+ * </p>
  */
-public class HttpClientWrapper {
+public class HttpClientWrapper implements Closeable {
+    private static final String CK_MAX_CONNECTIONS = "max-connections";
+    private static final String CK_MAX_CONNECTIONS_PER_ROUTE = "max-connections-per-route";
+    private static final String CK_CONNECT_TIMEOUT_MS = "connect-timeout-ms";
+    private static final String CK_SOCKET_TIMEOUT_MS = "socket-timeout-ms";
+    private static final String CK_CONNECTION_REQUEST_TIMEOUT_MS = "connection-request-timeout-ms";
+    private static final String CK_BLOCKING_CALL_THREADS = "blocking-call-threads";
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 50;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+    public static final int DEFAULT_CONNECT_TIMEOUT_MS = 2_000;
+    public static final int DEFAULT_SOCKET_TIMEOUT_MS = 5_000;
+    public static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT_MS = 1_000;
+    public static final int DEFAULT_BLOCKING_CALL_THREADS = 4;
+
+    private static final long IDLE_CONNECTION_EVICTION_SECONDS = 30L;
+
+    private final CloseableHttpClient client;
+    private final ExecutorService blockingCallExecutor;
+
+    /**
+     * Creates a client with the default pool sizes and timeouts.
+     */
+    public HttpClientWrapper() {
+        this(DEFAULT_MAX_CONNECTIONS,
+                DEFAULT_MAX_CONNECTIONS_PER_ROUTE,
+                DEFAULT_CONNECT_TIMEOUT_MS,
+                DEFAULT_SOCKET_TIMEOUT_MS,
+                DEFAULT_CONNECTION_REQUEST_TIMEOUT_MS,
+                DEFAULT_BLOCKING_CALL_THREADS);
+    }
+
+    /**
+     * Creates a client.
+     *
+     * @param maxConnections             Maximum number of pooled connections.
+     * @param maxConnectionsPerRoute     Maximum number of pooled connections per host.
+     * @param connectTimeoutMs           Timeout, in milliseconds, for establishing a connection.
+     * @param socketTimeoutMs            Timeout, in milliseconds, between two consecutive reads of the response.
+     * @param connectionRequestTimeoutMs Timeout, in milliseconds, for leasing a connection from the pool.
+     * @param blockingCallThreads        Number of threads running the blocking calls behind futures.
+     */
+    public HttpClientWrapper(
+            int maxConnections,
+            int maxConnectionsPerRoute,
+            int connectTimeoutMs,
+            int socketTimeoutMs,
+            int connectionRequestTimeoutMs,
+            int blockingCallThreads) {
+
+        isTrue(maxConnections > 0, "maxConnections must be > 0");
+        isTrue(maxConnectionsPerRoute > 0, "maxConnectionsPerRoute must be > 0");
+        isTrue(connectTimeoutMs > 0, "connectTimeoutMs must be > 0");
+        isTrue(socketTimeoutMs > 0, "socketTimeoutMs must be > 0");
+        isTrue(connectionRequestTimeoutMs > 0, "connectionRequestTimeoutMs must be > 0");
+        isTrue(blockingCallThreads > 0, "blockingCallThreads must be > 0");
+
+        val connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+        val requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMs)
+                .setSocketTimeout(socketTimeoutMs)
+                .setConnectionRequestTimeout(connectionRequestTimeoutMs)
+                .build();
+
+        this.client = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(IDLE_CONNECTION_EVICTION_SECONDS, TimeUnit.SECONDS)
+                .build();
+        this.blockingCallExecutor = Executors.newFixedThreadPool(
+                blockingCallThreads,
+                ThreadUtil.daemonThreadFactory("model-service-http-blocking"));
+    }
+
+    /**
+     * Creates a client from the given config, falling back to defaults for missing keys.
+     *
+     * @param config Client config, e.g. the {@code model-service-http-client} block of an app config.
+     * @return New client.
+     */
+    public static HttpClientWrapper fromConfig(Config config) {
+        return new HttpClientWrapper(
+                getInt(config, CK_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS),
+                getInt(config, CK_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_CONNECTIONS_PER_ROUTE),
+                getInt(config, CK_CONNECT_TIMEOUT_MS, DEFAULT_CONNECT_TIMEOUT_MS),
+                getInt(config, CK_SOCKET_TIMEOUT_MS, DEFAULT_SOCKET_TIMEOUT_MS),
+                getInt(config, CK_CONNECTION_REQUEST_TIMEOUT_MS, DEFAULT_CONNECTION_REQUEST_TIMEOUT_MS),
+                getInt(config, CK_BLOCKING_CALL_THREADS, DEFAULT_BLOCKING_CALL_THREADS));
+    }
+
+    private static int getInt(Config config, String path, int defaultValue) {
+        return config.hasPath(path) ? config.getInt(path) : defaultValue;
+    }
 
     /**
-     * Makes an HTTP GET call to the given URI and returns the result.
+     * Makes an HTTP GET call to the given URI and returns the result, with the response body buffered in memory.
      *
      * @param uri URI
      * @return Call result
      * @throws IOException if there's a problem making the call
      */
     public Content get(String uri) throws IOException {
-        return Request.Get(uri)
-                .execute()
-                .returnContent();
+        return client.execute(new HttpGet(uri), new ContentResponseHandler());
+    }
+
+    /**
+     * Makes an HTTP POST call with the given JSON body to the given URI and returns the result, with the response body
+     * buffered in memory.
+     *
+     * @param uri  URI
+     * @param body JSON request body
+     * @return Call result
+     * @throws IOException if there's a problem making the call
+     */
+    public Content post(String uri, String body) throws IOException {
+        val request = new HttpPost(uri);
+        request.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+        return client.execute(request, new ContentResponseHandler());
+    }
+
+    /**
+     * Makes an HTTP GET call to the given URI and lets the given handler consume the response. Unlike
+     * {@link #get(String)} this doesn't buffer the response body, so the handler can stream it, e.g. straight into a
+     * JSON parser. The connection goes back to the pool once the handler returns.
+     *
+     * @param uri     URI
+     * @param handler Response handler
+     * @param <T>     Handler result type
+     * @return Handler result
+     * @throws IOException if there's a problem making the call or handling the response
+     */
+    public <T> T get(String uri, ResponseHandler<T> handler) throws IOException {
+        return client.execute(new HttpGet(uri), handler);
+    }
+
+    /**
+     * Like {@link #get(String, ResponseHandler)}, but sends the given request headers, e.g. {@code If-None-Match}.
+     *
+     * @param uri     URI
+     * @param headers Request headers
+     * @param handler Response handler
+     * @param <T>     Handler result type
+     * @return Handler result
+     * @throws IOException if there's a problem making the call or handling the response
+     */
+    public <T> T get(String uri, Map<String, String> headers, ResponseHandler<T> handler) throws IOException {
+        val request = new HttpGet(uri);
+        headers.forEach(request::setHeader);
+        return client.execute(request, handler);
+    }
+
+    /**
+     * Runs {@link #get(String, ResponseHandler)} on the bounded blocking-call pool and returns its future result. The
+     * call itself still blocks a pool thread for its whole duration, so at most {@code blocking-call-threads} calls are
+     * in flight at once. The future completes exceptionally with an {@link UncheckedIOException} if there's a problem
+     * making the call or handling the response.
+     *
+     * @param uri     URI
+     * @param handler Response handler
+     * @param <T>     Handler result type
+     * @return Future handler result
+     */
+    public <T> CompletableFuture<T> getAsync(String uri, ResponseHandler<T> handler) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return get(uri, handler);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, blockingCallExecutor);
+    }
+
+    @Override
+    public void close() throws IOException {
+        blockingCallExecutor.shutdownNow();
+        client.close();
     }
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp.connector;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.val;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Single metric-to-detector mapping in a mapping index export.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MappingIndexEntry {
+    private long id;
+    private String metricHash;
+    private String detectorUuid;
+
+    /**
+     * Returns the CRC32 of {@code metricHash:detectorUuid}, matching the Model Service's per-mapping checksum.
+     *
+     * @return Mapping checksum.
+     */
+    public long checksum() {
+        val crc = new CRC32();
+        crc.update((metricHash + ":" + detectorUuid).getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
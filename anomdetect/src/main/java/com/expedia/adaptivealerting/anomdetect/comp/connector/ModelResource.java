@@ -24,6 +24,7 @@ import java.util.Map;
 @Data
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class ModelResource {
+    private String uuid;
     private ModelTypeResource detectorType;
     private Map<String, Object> params;
     private Date dateCreated;
@@ -20,15 +20,40 @@ import com.expedia.adaptivealerting.anomdetect.DetectorException;
 import com.expedia.adaptivealerting.anomdetect.DetectorMapper;
 import com.expedia.adaptivealerting.anomdetect.DetectorNotFoundException;
 import com.expedia.adaptivealerting.anomdetect.DetectorRetrievalException;
+import com.expedia.adaptivealerting.core.data.MetricDefinitionInterner;
 import com.expedia.metrics.MetricDefinition;
-import com.expedia.metrics.metrictank.MetricTankIdFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.fluent.Content;
+import org.apache.http.util.EntityUtils;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
@@ -54,20 +79,88 @@ public class ModelServiceConnector {
     public static final String API_PATH_DETECTOR_BY_METRIC_HASH = "/api/detectors/search/findByMetricHash?hash=%s";
     public static final String API_PATH_MODEL_BY_DETECTOR_UUID = "/api/models/search/findLatestByDetectorUuid?uuid=%s";
     public static final String API_PATH_DETECTOR_UPDATES = "/api/detectors/search/getLastUpdatedDetectors?interval=%d";
+    public static final String API_PATH_ENABLED_DETECTORS = "/api/detectors/search/findByEnabled?enabled=true";
+    public static final String API_PATH_BATCH_DETECTOR_UUIDS_BY_METRIC_HASH = "/api/batch/detectorUuidsByMetricHash";
+    public static final String API_PATH_BATCH_MODELS_BY_DETECTOR_UUID = "/api/batch/latestModelsByDetectorUuid";
+    public static final String API_PATH_MAPPED_METRIC_FILTER = "/api/mappedMetricFilter";
+    public static final String MAPPED_METRIC_FILTER_VERSION_HEADER = "X-Filter-Version";
+    public static final String API_PATH_MAPPING_INDEX = "/api/mappingIndex?afterId=%d";
+    public static final String API_PATH_MAPPING_RULE_SET = "/api/mappingRuleSet";
+    public static final String API_PATH_SLIM_DETECTORS_BY_METRIC_HASH = "/api/slim/detectorUuidsByMetricHash?hash=";
+    public static final String API_PATH_SLIM_DETECTOR_UPDATES = "/api/slim/updatedDetectorUuids?interval=";
+    public static final String API_PATH_DETECTOR_BUNDLE = "/api/detectorBundle?uuid=";
+    public static final String API_PATH_BATCH_DETECTOR_BUNDLES = "/api/batch/detectorBundles";
+    public static final String API_PATH_CHANGE_LOG_HEAD = "/api/changes/head";
+    public static final String API_PATH_CHANGE_LOG = "/api/changes?since=%d&limit=%d";
 
-    private final MetricTankIdFactory metricTankIdFactory = new MetricTankIdFactory();
+    /**
+     * Maximum number of keys per batched lookup. The Model Service accepts up to 1000.
+     */
+    public static final int MAX_BATCH_SIZE = 500;
+
+    private static final TypeReference<Map<String, List<String>>> UUIDS_BY_METRIC_HASH_TYPE =
+            new TypeReference<Map<String, List<String>>>() {
+            };
+
+    private static final TypeReference<List<MappingRuleEntry>> MAPPING_RULES_TYPE =
+            new TypeReference<List<MappingRuleEntry>>() {
+            };
+
+    private static final TypeReference<List<UUID>> UUID_LIST_TYPE = new TypeReference<List<UUID>>() {
+    };
+
+    private static final TypeReference<List<DetectorBundle>> DETECTOR_BUNDLES_TYPE =
+            new TypeReference<List<DetectorBundle>>() {
+            };
+
+    private final MetricDefinitionInterner metricDefinitionInterner = MetricDefinitionInterner.shared();
     private final HttpClientWrapper httpClient;
     private final String baseUri;
     private final ObjectMapper objectMapper;
+    private final ConnectorResilience resilience;
+
+    // Readers are immutable and resolve their deserializers once, so the hot lookups share them.
+    private final ObjectReader uuidListReader;
+    private final ObjectReader detectorBundleReader;
+    private final ObjectReader detectorBundlesReader;
+    private final ObjectReader changePageReader;
+    private final ObjectReader mappingIndexHeaderReader;
+    private final ObjectReader mappingIndexEntryReader;
 
     public ModelServiceConnector(HttpClientWrapper httpClient, String baseUri, ObjectMapper objectMapper) {
+        this(httpClient, baseUri, objectMapper, ConnectorResilience.disabled());
+    }
+
+    /**
+     * Creates a connector whose calls are guarded by the given resilience policy. Calls rejected by the policy fail
+     * fast with a {@link DetectorRetrievalException} subclass, so callers can fall back to cached data.
+     *
+     * @param httpClient   HTTP client
+     * @param baseUri      Model Service base URI
+     * @param objectMapper JSON object mapper
+     * @param resilience   circuit breaking, retry and hedging policy
+     */
+    public ModelServiceConnector(
+            HttpClientWrapper httpClient,
+            String baseUri,
+            ObjectMapper objectMapper,
+            ConnectorResilience resilience) {
+
         notNull(httpClient, "httpClient can't be null");
         notNull(baseUri, "baseUri can't be null");
         notNull(objectMapper, "objectMapper can't be null");
+        notNull(resilience, "resilience can't be null");
 
         this.httpClient = httpClient;
         this.baseUri = baseUri;
         this.objectMapper = objectMapper;
+        this.resilience = resilience;
+        this.uuidListReader = objectMapper.readerFor(UUID_LIST_TYPE);
+        this.detectorBundleReader = objectMapper.readerFor(DetectorBundle.class);
+        this.detectorBundlesReader = objectMapper.readerFor(DETECTOR_BUNDLES_TYPE);
+        this.changePageReader = objectMapper.readerFor(DetectorChangePage.class);
+        this.mappingIndexHeaderReader = objectMapper.readerFor(MappingIndexHeader.class);
+        this.mappingIndexEntryReader = objectMapper.readerFor(MappingIndexEntry.class);
     }
 
     /**
@@ -83,7 +176,7 @@ public class ModelServiceConnector {
     public DetectorResources findDetectors(MetricDefinition metricDefinition) {
         notNull(metricDefinition, "metricDefinition can't be null");
 
-        val metricId = metricTankIdFactory.getId(metricDefinition);
+        val metricId = metricDefinitionInterner.getId(metricDefinition);
 
         // http://modelservice/api/detectors/search/findByMetricHash?hash=%s
         // http://modelservice/api/detectors/search/findByMetricHash?hash=1.bbbad54f9232ba765e20368fe9c1a9c4
@@ -91,7 +184,7 @@ public class ModelServiceConnector {
 
         Content content;
         try {
-            content = httpClient.get(uri);
+            content = resilience.call(API_PATH_DETECTOR_BY_METRIC_HASH, () -> httpClient.get(uri));
         } catch (IOException e) {
             val message = "IOException while getting detectors" +
                     ": metricDefinition=" + metricDefinition +
@@ -110,6 +203,29 @@ public class ModelServiceConnector {
         }
     }
 
+    /**
+     * Async version of {@link #findDetectors(MetricDefinition)}. The response is parsed as it streams in. The future
+     * completes exceptionally with the exceptions documented on the synchronous version.
+     *
+     * @param metricDefinition metric definition
+     * @return future detectors for the given metric definition
+     */
+    public CompletableFuture<DetectorResources> findDetectorsAsync(MetricDefinition metricDefinition) {
+        notNull(metricDefinition, "metricDefinition can't be null");
+
+        val metricId = metricDefinitionInterner.getId(metricDefinition);
+        val uri = String.format(baseUri + API_PATH_DETECTOR_BY_METRIC_HASH, metricId);
+        return resilience
+                .callAsync(API_PATH_DETECTOR_BY_METRIC_HASH,
+                        () -> httpClient.getAsync(uri, response -> readJson(response, DetectorResources.class)))
+                .handle((detectorResources, e) -> {
+                    if (e != null) {
+                        throw toDetectorException(e, "detectors: metricDefinition=" + metricDefinition, uri);
+                    }
+                    return detectorResources;
+                });
+    }
+
     /**
      * Finds the latest model for the given detector.
      *
@@ -132,7 +248,7 @@ public class ModelServiceConnector {
         // We should have made the backing method return a Model instead of a List<Model>. [WLW]
         Content content;
         try {
-            content = httpClient.get(uri);
+            content = resilience.call(API_PATH_MODEL_BY_DETECTOR_UUID, () -> httpClient.get(uri));
         } catch (IOException e) {
             val message = "IOException while getting models for detector " + detectorUuid +
                     ": httpMethod=GET" +
@@ -148,11 +264,36 @@ public class ModelServiceConnector {
             throw new DetectorDeserializationException(message, e);
         }
 
+        return latestModel(detectorUuid, modelResources);
+    }
+
+    /**
+     * Async version of {@link #findLatestModel(UUID)}. The response is parsed as it streams in. The future completes
+     * exceptionally with the exceptions documented on the synchronous version.
+     *
+     * @param detectorUuid detector UUID
+     * @return future latest model for the given detector
+     */
+    public CompletableFuture<ModelResource> findLatestModelAsync(UUID detectorUuid) {
+        notNull(detectorUuid, "detectorUuid can't be null");
+
+        val uri = String.format(baseUri + API_PATH_MODEL_BY_DETECTOR_UUID, detectorUuid);
+        return resilience
+                .callAsync(API_PATH_MODEL_BY_DETECTOR_UUID,
+                        () -> httpClient.getAsync(uri, response -> readJson(response, ModelResources.class)))
+                .handle((modelResources, e) -> {
+                    if (e != null) {
+                        throw toDetectorException(e, "models for detector " + detectorUuid, uri);
+                    }
+                    return latestModel(detectorUuid, modelResources);
+                });
+    }
+
+    private ModelResource latestModel(UUID detectorUuid, ModelResources modelResources) {
         val modelResourceList = modelResources.getEmbedded().getModels();
         if (modelResourceList.isEmpty()) {
             throw new DetectorNotFoundException("No models for detectorUuid=" + detectorUuid);
         }
-
         return modelResourceList.get(0);
     }
 
@@ -162,7 +303,7 @@ public class ModelServiceConnector {
         val uri = String.format(baseUri + API_PATH_DETECTOR_UPDATES, timePeriod);
         Content content;
         try {
-            content = httpClient.get(uri);
+            content = resilience.call(API_PATH_DETECTOR_UPDATES, () -> httpClient.get(uri));
         } catch (IOException e) {
             val message = "IOException while getting last updated detectors" +
                     ": timePeriod=" + timePeriod +
@@ -180,4 +321,517 @@ public class ModelServiceConnector {
         }
 
     }
+
+    /**
+     * Finds the UUIDs of the detectors for the given metric definition. Unlike
+     * {@link #findDetectors(MetricDefinition)} this calls the slim read endpoint, which returns a flat UUID list.
+     *
+     * @param metricDefinition metric definition
+     * @return detector UUIDs for the given metric definition
+     * @throws DetectorRetrievalException       if there's a problem calling the Model Service
+     * @throws DetectorDeserializationException if there's a problem deserializing the Model Service response
+     */
+    public List<UUID> findDetectorUuids(MetricDefinition metricDefinition) {
+        notNull(metricDefinition, "metricDefinition can't be null");
+
+        val metricId = metricDefinitionInterner.getId(metricDefinition);
+        val uri = baseUri + API_PATH_SLIM_DETECTORS_BY_METRIC_HASH + metricId;
+        val content = getContent(API_PATH_SLIM_DETECTORS_BY_METRIC_HASH, uri, "detector UUIDs");
+        try {
+            return uuidListReader.readValue(content.asBytes());
+        } catch (IOException e) {
+            val message = "IOException while deserializing detector UUIDs" +
+                    ": metricDefinition=" + metricDefinition;
+            throw new DetectorDeserializationException(message, e);
+        }
+    }
+
+    /**
+     * Async version of {@link #findDetectorUuids(MetricDefinition)}. The response is parsed as it streams in. The
+     * future completes exceptionally with the exceptions documented on the synchronous version.
+     *
+     * @param metricDefinition metric definition
+     * @return future detector UUIDs for the given metric definition
+     */
+    public CompletableFuture<List<UUID>> findDetectorUuidsAsync(MetricDefinition metricDefinition) {
+        notNull(metricDefinition, "metricDefinition can't be null");
+
+        val metricId = metricDefinitionInterner.getId(metricDefinition);
+        val uri = baseUri + API_PATH_SLIM_DETECTORS_BY_METRIC_HASH + metricId;
+        return resilience
+                .callAsync(API_PATH_SLIM_DETECTORS_BY_METRIC_HASH,
+                        () -> httpClient.getAsync(uri,
+                                response -> this.<List<UUID>>readJson(response, uuidListReader)))
+                .handle((uuids, e) -> {
+                    if (e != null) {
+                        throw toDetectorException(e, "detector UUIDs: metricDefinition=" + metricDefinition, uri);
+                    }
+                    return uuids;
+                });
+    }
+
+    /**
+     * Finds the bundle for the given detector: its type, enabled flag and latest model params, loaded by the Model
+     * Service in a single query.
+     *
+     * @param detectorUuid detector UUID
+     * @return detector bundle
+     * @throws DetectorRetrievalException       if there's a problem calling the Model Service
+     * @throws DetectorDeserializationException if there's a problem deserializing the Model Service response
+     * @throws DetectorNotFoundException        if the detector doesn't exist or doesn't have any models
+     */
+    public DetectorBundle findDetectorBundle(UUID detectorUuid) {
+        notNull(detectorUuid, "detectorUuid can't be null");
+
+        val uri = baseUri + API_PATH_DETECTOR_BUNDLE + detectorUuid;
+        Content content;
+        try {
+            content = resilience.call(API_PATH_DETECTOR_BUNDLE, () -> httpClient.get(uri));
+        } catch (IOException e) {
+            if (isNotFound(e)) {
+                throw new DetectorNotFoundException("No models for detectorUuid=" + detectorUuid);
+            }
+            val message = "IOException while getting bundle for detector " + detectorUuid +
+                    ": httpMethod=GET" +
+                    ", uri=" + uri;
+            throw new DetectorRetrievalException(message, e);
+        }
+
+        try {
+            return detectorBundleReader.readValue(content.asBytes());
+        } catch (IOException e) {
+            val message = "IOException while deserializing bundle for detector " + detectorUuid;
+            throw new DetectorDeserializationException(message, e);
+        }
+    }
+
+    /**
+     * Async version of {@link #findDetectorBundle(UUID)}. The response is parsed as it streams in. The future completes
+     * exceptionally with the exceptions documented on the synchronous version.
+     *
+     * @param detectorUuid detector UUID
+     * @return future detector bundle
+     */
+    public CompletableFuture<DetectorBundle> findDetectorBundleAsync(UUID detectorUuid) {
+        notNull(detectorUuid, "detectorUuid can't be null");
+
+        val uri = baseUri + API_PATH_DETECTOR_BUNDLE + detectorUuid;
+        return resilience
+                .callAsync(API_PATH_DETECTOR_BUNDLE,
+                        () -> httpClient.getAsync(uri,
+                                response -> this.<DetectorBundle>readJson(response, detectorBundleReader)))
+                .handle((bundle, e) -> {
+                    if (e != null) {
+                        if (isNotFound(e)) {
+                            throw new DetectorNotFoundException("No models for detectorUuid=" + detectorUuid);
+                        }
+                        throw toDetectorException(e, "bundle for detector " + detectorUuid, uri);
+                    }
+                    return bundle;
+                });
+    }
+
+    /**
+     * Finds the bundles for the given detectors, posting up to {@link #MAX_BATCH_SIZE} detector UUIDs per Model
+     * Service call. Detectors without models are absent from the result.
+     *
+     * @param detectorUuids detector UUIDs
+     * @return detector bundles
+     * @throws DetectorRetrievalException       if there's a problem calling the Model Service
+     * @throws DetectorDeserializationException if there's a problem deserializing the Model Service response
+     */
+    public List<DetectorBundle> findDetectorBundles(Collection<UUID> detectorUuids) {
+        notNull(detectorUuids, "detectorUuids can't be null");
+
+        val uuids = detectorUuids.stream().map(UUID::toString).distinct().collect(Collectors.toList());
+        val bundles = new ArrayList<DetectorBundle>();
+        for (int i = 0; i < uuids.size(); i += MAX_BATCH_SIZE) {
+            val chunk = uuids.subList(i, Math.min(i + MAX_BATCH_SIZE, uuids.size()));
+            val content = post(API_PATH_BATCH_DETECTOR_BUNDLES, chunk, "detector bundles");
+            try {
+                List<DetectorBundle> chunkBundles = detectorBundlesReader.readValue(content.asBytes());
+                bundles.addAll(chunkBundles);
+            } catch (IOException e) {
+                val message = "IOException while deserializing bundles for " + chunk.size() + " detectors";
+                throw new DetectorDeserializationException(message, e);
+            }
+        }
+        return bundles;
+    }
+
+    /**
+     * Finds the UUIDs of the detectors updated within the given time period. Unlike
+     * {@link #findUpdatedDetectors(int)} this calls the slim read endpoint, which returns a flat UUID list.
+     *
+     * @param timePeriod time period in minutes
+     * @return UUIDs of the updated detectors
+     * @throws DetectorRetrievalException       if there's a problem calling the Model Service
+     * @throws DetectorDeserializationException if there's a problem deserializing the Model Service response
+     */
+    public List<UUID> findUpdatedDetectorUuids(int timePeriod) {
+        isTrue(timePeriod > 0, "timePeriod must be strictly positive");
+
+        val uri = baseUri + API_PATH_SLIM_DETECTOR_UPDATES + timePeriod;
+        val content = getContent(API_PATH_SLIM_DETECTOR_UPDATES, uri, "last updated detector UUIDs");
+        try {
+            return uuidListReader.readValue(content.asBytes());
+        } catch (IOException e) {
+            val message = "IOException while deserializing last updated detector UUIDs" +
+                    ": timePeriod=" + timePeriod;
+            throw new DetectorDeserializationException(message, e);
+        }
+    }
+
+    private Content getContent(String path, String uri, String description) {
+        try {
+            return resilience.call(path, () -> httpClient.get(uri));
+        } catch (IOException e) {
+            val message = "IOException while getting " + description +
+                    ": httpMethod=GET" +
+                    ", uri=" + uri;
+            throw new DetectorRetrievalException(message, e);
+        }
+    }
+
+    /**
+     * Finds the cursor of the latest change in the detector change log. Callers that already have an up-to-date view
+     * of the detectors start reading changes from here.
+     *
+     * @return change log cursor
+     * @throws DetectorRetrievalException       if there's a problem calling the Model Service
+     * @throws DetectorDeserializationException if there's a problem deserializing the Model Service response
+     */
+    public long findChangeLogHead() {
+        val uri = baseUri + API_PATH_CHANGE_LOG_HEAD;
+        val content = getContent(API_PATH_CHANGE_LOG_HEAD, uri, "change log head");
+        try {
+            // Same shape as a change page, with just the cursor.
+            DetectorChangePage head = changePageReader.readValue(content.asBytes());
+            return head.getCursor();
+        } catch (IOException e) {
+            throw new DetectorDeserializationException("IOException while deserializing change log head", e);
+        }
+    }
+
+    /**
+     * Finds the detector changes after the given cursor, in order.
+     *
+     * @param cursor cursor returned by the previous call, or by {@link #findChangeLogHead()}
+     * @param limit  maximum number of changes
+     * @return page of changes, with the cursor for the next call
+     * @throws DetectorRetrievalException       if there's a problem calling the Model Service
+     * @throws DetectorDeserializationException if there's a problem deserializing the Model Service response
+     */
+    public DetectorChangePage findChangesSince(long cursor, int limit) {
+        isTrue(cursor >= 0, "cursor must be >= 0");
+        isTrue(limit > 0, "limit must be strictly positive");
+
+        val uri = String.format(baseUri + API_PATH_CHANGE_LOG, cursor, limit);
+        val content = getContent(API_PATH_CHANGE_LOG, uri, "detector changes");
+        try {
+            return changePageReader.readValue(content.asBytes());
+        } catch (IOException e) {
+            val message = "IOException while deserializing detector changes" +
+                    ": cursor=" + cursor;
+            throw new DetectorDeserializationException(message, e);
+        }
+    }
+
+    /**
+     * Finds all enabled detectors.
+     *
+     * @return enabled detectors
+     * @throws DetectorRetrievalException       if there's a problem calling the Model Service
+     * @throws DetectorDeserializationException if there's a problem deserializing the Model Service response into a
+     *                                          detector list
+     */
+    public DetectorResources findEnabledDetectors() {
+        val uri = baseUri + API_PATH_ENABLED_DETECTORS;
+        Content content;
+        try {
+            content = resilience.call(API_PATH_ENABLED_DETECTORS, () -> httpClient.get(uri));
+        } catch (IOException e) {
+            val message = "IOException while getting enabled detectors" +
+                    ": httpMethod=GET" +
+                    ", uri=" + uri;
+            throw new DetectorRetrievalException(message, e);
+        }
+
+        try {
+            return objectMapper.readValue(content.asBytes(), DetectorResources.class);
+        } catch (IOException e) {
+            throw new DetectorDeserializationException("IOException while deserializing enabled detectors", e);
+        }
+    }
+
+    /**
+     * Finds the latest model for each of the given detectors, posting up to {@link #MAX_BATCH_SIZE} detector UUIDs per
+     * Model Service call. Detectors without models are absent from the result.
+     *
+     * @param detectorUuids detector UUIDs
+     * @return latest models, each carrying its detector UUID
+     * @throws DetectorRetrievalException       if there's a problem calling the Model Service
+     * @throws DetectorDeserializationException if there's a problem deserializing the Model Service response into a
+     *                                          model list
+     */
+    public List<ModelResource> findLatestModels(Collection<UUID> detectorUuids) {
+        notNull(detectorUuids, "detectorUuids can't be null");
+
+        val uuids = detectorUuids.stream().map(UUID::toString).distinct().collect(Collectors.toList());
+        val models = new ArrayList<ModelResource>();
+        for (int i = 0; i < uuids.size(); i += MAX_BATCH_SIZE) {
+            val chunk = uuids.subList(i, Math.min(i + MAX_BATCH_SIZE, uuids.size()));
+            val content = post(API_PATH_BATCH_MODELS_BY_DETECTOR_UUID, chunk, "models");
+
+            ModelResources modelResources;
+            try {
+                modelResources = objectMapper.readValue(content.asBytes(), ModelResources.class);
+            } catch (IOException e) {
+                val message = "IOException while deserializing models for " + chunk.size() + " detectors";
+                throw new DetectorDeserializationException(message, e);
+            }
+            val modelResourceList = modelResources.getEmbedded().getModels();
+            if (modelResourceList != null) {
+                models.addAll(modelResourceList);
+            }
+        }
+        return models;
+    }
+
+    /**
+     * Finds the detector UUIDs for each of the given metric definitions, posting up to {@link #MAX_BATCH_SIZE} metric
+     * hashes per Model Service call.
+     *
+     * @param metricDefinitions metric definitions
+     * @return detector UUIDs, aligned with the metric definitions
+     * @throws DetectorRetrievalException       if there's a problem calling the Model Service
+     * @throws DetectorDeserializationException if there's a problem deserializing the Model Service response
+     */
+    public List<List<UUID>> findDetectorUuids(List<MetricDefinition> metricDefinitions) {
+        notNull(metricDefinitions, "metricDefinitions can't be null");
+
+        val metricIds = metricDefinitions.stream().map(metricDefinitionInterner::getId).collect(Collectors.toList());
+        val distinctIds = metricIds.stream().distinct().collect(Collectors.toList());
+        val uuidsByMetricId = new HashMap<String, List<UUID>>();
+        for (int i = 0; i < distinctIds.size(); i += MAX_BATCH_SIZE) {
+            val chunk = distinctIds.subList(i, Math.min(i + MAX_BATCH_SIZE, distinctIds.size()));
+            val content = post(API_PATH_BATCH_DETECTOR_UUIDS_BY_METRIC_HASH, chunk, "detectors");
+
+            Map<String, List<String>> uuidStrings;
+            try {
+                uuidStrings = objectMapper.readValue(content.asBytes(), UUIDS_BY_METRIC_HASH_TYPE);
+            } catch (IOException e) {
+                val message = "IOException while deserializing detectors for " + chunk.size() + " metrics";
+                throw new DetectorDeserializationException(message, e);
+            }
+            uuidStrings.forEach((metricId, uuids) -> uuidsByMetricId.put(
+                    metricId,
+                    uuids.stream().map(UUID::fromString).collect(Collectors.toList())));
+        }
+        return metricIds.stream()
+                .map(metricId -> uuidsByMetricId.getOrDefault(metricId, Collections.emptyList()))
+                .collect(Collectors.toList());
+    }
+
+    private Content post(String path, List<String> keys, String description) {
+        val uri = baseUri + path;
+        try {
+            val body = objectMapper.writeValueAsString(keys);
+            return resilience.call(path, () -> httpClient.post(uri, body));
+        } catch (IOException e) {
+            val message = "IOException while getting " + description + " for " + keys.size() + " keys" +
+                    ": httpMethod=POST" +
+                    ", uri=" + uri;
+            throw new DetectorRetrievalException(message, e);
+        }
+    }
+
+    /**
+     * Downloads the Model Service's mapped metric filter: a serialized Bloom filter over the hashes of all metrics that
+     * have detector mappings. The version comes from the response's {@code X-Filter-Version} header, or its ETag if
+     * that's missing. Passing the version of the filter the caller already has makes the download conditional.
+     *
+     * @param knownVersion version of the filter the caller already has, or null to download unconditionally
+     * @return mapped metric filter, or null if it's still at the known version
+     * @throws DetectorRetrievalException if there's a problem calling the Model Service
+     */
+    public MappedMetricFilterContent findMappedMetricFilter(String knownVersion) {
+        val uri = baseUri + API_PATH_MAPPED_METRIC_FILTER;
+        val headers = knownVersion == null
+                ? Collections.<String, String>emptyMap()
+                : Collections.singletonMap(HttpHeaders.IF_NONE_MATCH, "\"" + knownVersion + "\"");
+        try {
+            return resilience.call(API_PATH_MAPPED_METRIC_FILTER,
+                    () -> httpClient.get(uri, headers, ModelServiceConnector::readMappedMetricFilter));
+        } catch (IOException e) {
+            val message = "IOException while getting mapped metric filter" +
+                    ": httpMethod=GET" +
+                    ", uri=" + uri;
+            throw new DetectorRetrievalException(message, e);
+        }
+    }
+
+    private static MappedMetricFilterContent readMappedMetricFilter(HttpResponse response) throws IOException {
+        val status = response.getStatusLine();
+        if (status.getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+            return null;
+        }
+        if (status.getStatusCode() >= 300) {
+            throw new HttpResponseException(status.getStatusCode(), status.getReasonPhrase());
+        }
+        val entity = response.getEntity();
+        if (entity == null) {
+            throw new ClientProtocolException("Response contains no content");
+        }
+
+        Header versionHeader = response.getFirstHeader(MAPPED_METRIC_FILTER_VERSION_HEADER);
+        String version;
+        if (versionHeader != null) {
+            version = versionHeader.getValue();
+        } else {
+            versionHeader = response.getFirstHeader(HttpHeaders.ETAG);
+            if (versionHeader == null) {
+                throw new ClientProtocolException("Mapped metric filter has no version header");
+            }
+            version = versionHeader.getValue().replaceFirst("^W/", "").replace("\"", "");
+        }
+        return new MappedMetricFilterContent(version, EntityUtils.toByteArray(entity));
+    }
+
+    /**
+     * Finds the active pattern-based mapping rules: the enabled rules of enabled detectors.
+     *
+     * @return mapping rules
+     * @throws DetectorRetrievalException       if there's a problem calling the Model Service
+     * @throws DetectorDeserializationException if there's a problem deserializing the Model Service response into a
+     *                                          rule list
+     */
+    public List<MappingRuleEntry> findMappingRules() {
+        val uri = baseUri + API_PATH_MAPPING_RULE_SET;
+        Content content;
+        try {
+            content = resilience.call(API_PATH_MAPPING_RULE_SET, () -> httpClient.get(uri));
+        } catch (IOException e) {
+            val message = "IOException while getting mapping rules" +
+                    ": httpMethod=GET" +
+                    ", uri=" + uri;
+            throw new DetectorRetrievalException(message, e);
+        }
+
+        try {
+            return objectMapper.readValue(content.asBytes(), MAPPING_RULES_TYPE);
+        } catch (IOException e) {
+            throw new DetectorDeserializationException("IOException while deserializing mapping rules", e);
+        }
+    }
+
+    /**
+     * Streams the Model Service's metric-to-detector mapping index, passing each mapping with an id greater than the
+     * given id to the consumer without buffering the whole response.
+     *
+     * @param afterId  exclusive lower mapping id bound; 0 for the full index
+     * @param consumer mapping consumer
+     * @return index header, whose max id is the cursor for the next call
+     * @throws DetectorRetrievalException       if there's a problem calling the Model Service
+     * @throws DetectorDeserializationException if there's a problem deserializing the mapping index
+     */
+    public MappingIndexHeader readMappingIndex(long afterId, Consumer<MappingIndexEntry> consumer) {
+        isTrue(afterId >= 0, "afterId must be >= 0");
+        notNull(consumer, "consumer can't be null");
+
+        // http://modelservice/api/mappingIndex?afterId=%d
+        val uri = String.format(baseUri + API_PATH_MAPPING_INDEX, afterId);
+        try {
+            // Not retried: the consumer may already have seen part of the index.
+            return resilience.callOnce(API_PATH_MAPPING_INDEX,
+                    () -> httpClient.get(uri, response -> readMappingIndex(response, consumer)));
+        } catch (JsonProcessingException e) {
+            val message = "IOException while deserializing mapping index: afterId=" + afterId;
+            throw new DetectorDeserializationException(message, e);
+        } catch (IOException e) {
+            val message = "IOException while getting mapping index" +
+                    ": afterId=" + afterId +
+                    ", httpMethod=GET" +
+                    ", uri=" + uri;
+            throw new DetectorRetrievalException(message, e);
+        }
+    }
+
+    private MappingIndexHeader readMappingIndex(HttpResponse response, Consumer<MappingIndexEntry> consumer)
+            throws IOException {
+
+        val status = response.getStatusLine();
+        if (status.getStatusCode() >= 300) {
+            throw new HttpResponseException(status.getStatusCode(), status.getReasonPhrase());
+        }
+        val entity = response.getEntity();
+        if (entity == null) {
+            throw new ClientProtocolException("Response contains no content");
+        }
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8))) {
+            val headerLine = reader.readLine();
+            if (headerLine == null) {
+                throw new ClientProtocolException("Mapping index has no header");
+            }
+            MappingIndexHeader header = mappingIndexHeaderReader.readValue(headerLine);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    consumer.accept(mappingIndexEntryReader.readValue(line));
+                }
+            }
+            return header;
+        }
+    }
+
+    private <T> T readJson(HttpResponse response, Class<T> type) throws IOException {
+        return readJson(response, objectMapper.readerFor(type));
+    }
+
+    private <T> T readJson(HttpResponse response, ObjectReader reader) throws IOException {
+        val status = response.getStatusLine();
+        if (status.getStatusCode() >= 300) {
+            throw new HttpResponseException(status.getStatusCode(), status.getReasonPhrase());
+        }
+        val entity = response.getEntity();
+        if (entity == null) {
+            throw new ClientProtocolException("Response contains no content");
+        }
+        try (InputStream in = entity.getContent()) {
+            return reader.readValue(in);
+        }
+    }
+
+    private static boolean isNotFound(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && !(cause instanceof HttpResponseException)) {
+            cause = cause.getCause();
+        }
+        return cause instanceof HttpResponseException
+                && ((HttpResponseException) cause).getStatusCode() == HttpStatus.SC_NOT_FOUND;
+    }
+
+    /**
+     * Translates an async call failure into the exception the equivalent synchronous call would have thrown.
+     */
+    private static RuntimeException toDetectorException(Throwable e, String description, String uri) {
+        val cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof UncheckedIOException) {
+            val ioException = ((UncheckedIOException) cause).getCause();
+            if (ioException instanceof JsonProcessingException) {
+                return new DetectorDeserializationException(
+                        "IOException while deserializing " + description, ioException);
+            }
+            val message = "IOException while getting " + description +
+                    ": httpMethod=GET" +
+                    ", uri=" + uri;
+            return new DetectorRetrievalException(message, ioException);
+        }
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new DetectorRetrievalException("Error while getting " + description + ": uri=" + uri, cause);
+    }
 }
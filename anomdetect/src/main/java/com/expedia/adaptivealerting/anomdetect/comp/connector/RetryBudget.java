@@ -0,0 +1,55 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp.connector;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+
+/**
+ * Token bucket bounding retries (and hedged requests) to a fraction of the call volume. Each call deposits
+ * {@code ratio} tokens and each retry withdraws one, so during an outage retries add at most {@code ratio} extra load
+ * instead of multiplying it. The bucket holds at most {@code maxTokens}, which is also its initial balance, so a quiet
+ * connector can still retry a few isolated failures.
+ */
+class RetryBudget {
+    private final double ratio;
+    private final double maxTokens;
+
+    private double tokens;
+
+    RetryBudget(double ratio, double maxTokens) {
+        isTrue(ratio >= 0.0, "ratio must be >= 0");
+        isTrue(maxTokens >= 1.0, "maxTokens must be >= 1");
+        this.ratio = ratio;
+        this.maxTokens = maxTokens;
+        this.tokens = maxTokens;
+    }
+
+    synchronized void recordCall() {
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    synchronized boolean tryWithdraw() {
+        if (tokens < 1.0) {
+            return false;
+        }
+        tokens -= 1.0;
+        return true;
+    }
+
+    synchronized double getTokens() {
+        return tokens;
+    }
+}
@@ -15,9 +15,20 @@
  */
 package com.expedia.adaptivealerting.anomdetect.detector;
 
+import com.expedia.adaptivealerting.anomdetect.DetectorStateException;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.Getter;
+import lombok.val;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.UUID;
 
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
@@ -28,6 +39,23 @@ import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
  */
 public abstract class AbstractDetector<T extends DetectorParams> implements Detector<T> {
 
+    /**
+     * Version of the snapshot envelope (header layout). Implementation-specific state is versioned separately via
+     * {@link #getStateVersion()}.
+     */
+    private static final byte SNAPSHOT_FORMAT_VERSION = 2;
+
+    /**
+     * Serializes the params a snapshot was taken under, so a restore can check them against the current params.
+     */
+    private static final ObjectMapper PARAMS_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /**
+     * State version returned by stateless detectors.
+     */
+    protected static final int STATELESS = 0;
+
     @Getter
     private final Class<T> paramsClass;
 
@@ -66,4 +94,181 @@ public abstract class AbstractDetector<T extends DetectorParams> implements Dete
     protected void initState(T params) {
         // Override as desired
     }
+
+    @Override
+    public final byte[] snapshotState() {
+        val stateVersion = getStateVersion();
+        if (stateVersion == STATELESS) {
+            return null;
+        }
+
+        val bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(SNAPSHOT_FORMAT_VERSION);
+            out.writeUTF(getClass().getName());
+            out.writeInt(stateVersion);
+            writeBlock(out, PARAMS_MAPPER.writeValueAsBytes(params));
+            writeBlock(out, stateBytes());
+        } catch (IOException e) {
+            throw new DetectorStateException("Can't snapshot state for detector " + uuid, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public final void restoreState(byte[] snapshot) {
+        notNull(snapshot, "snapshot can't be null");
+        notNull(params, "Detector must be initialized before restoring state");
+
+        T oldParams;
+        byte[] state;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot))) {
+            val formatVersion = in.readByte();
+            if (formatVersion != SNAPSHOT_FORMAT_VERSION) {
+                throw new DetectorStateException("Unsupported snapshot format version: " + formatVersion);
+            }
+            val detectorClass = in.readUTF();
+            if (!detectorClass.equals(getClass().getName())) {
+                throw new DetectorStateException("Snapshot of a " + detectorClass + " can't be restored into a "
+                        + getClass().getName() + " for detector " + uuid);
+            }
+            val stateVersion = in.readInt();
+            if (stateVersion != getStateVersion()) {
+                throw new DetectorStateException("Unsupported state version " + stateVersion
+                        + " for detector " + uuid + " (expected " + getStateVersion() + ")");
+            }
+            oldParams = PARAMS_MAPPER.readValue(readBlock(in), paramsClass);
+            state = readBlock(in);
+            if (in.available() > 0) {
+                throw new DetectorStateException("Snapshot for detector " + uuid + " has trailing bytes");
+            }
+        } catch (IOException e) {
+            throw new DetectorStateException("Can't restore state for detector " + uuid, e);
+        }
+        if (!isStateCompatible(oldParams, params)) {
+            throw new DetectorStateException("Snapshot for detector " + uuid + " was taken under incompatible params");
+        }
+
+        val current = stateBytes();
+        if (!readFully(state)) {
+            // readState has already assigned the fields, so put the previous state back.
+            readFully(current);
+            throw new DetectorStateException("Snapshot state for detector " + uuid + " has trailing bytes");
+        }
+        onParamsChanged(oldParams, params);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public final boolean migrateStateFrom(Detector<?> previous) {
+        notNull(previous, "previous can't be null");
+        notNull(params, "Detector must be initialized before migrating state");
+
+        if (previous.getClass() != getClass() || getStateVersion() == STATELESS) {
+            return false;
+        }
+        val oldParams = ((AbstractDetector<T>) previous).getParams();
+        if (!isStateCompatible(oldParams, params)) {
+            return false;
+        }
+
+        // Same class, so the snapshot has our state version. Restoring also resets what the new params invalidate.
+        val snapshot = previous.snapshotState();
+        if (snapshot == null) {
+            return false;
+        }
+        restoreState(snapshot);
+        return true;
+    }
+
+    private byte[] stateBytes() {
+        val bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeState(out);
+        } catch (IOException e) {
+            throw new DetectorStateException("Can't snapshot state for detector " + uuid, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads the given state and indicates whether {@link #readState(DataInput)} consumed all of it.
+     */
+    private boolean readFully(byte[] state) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(state))) {
+            readState(in);
+            return in.available() == 0;
+        } catch (IOException e) {
+            throw new DetectorStateException("Can't restore state for detector " + uuid, e);
+        }
+    }
+
+    private static void writeBlock(DataOutput out, byte[] block) throws IOException {
+        out.writeInt(block.length);
+        out.write(block);
+    }
+
+    private static byte[] readBlock(DataInput in) throws IOException {
+        val length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative block length: " + length);
+        }
+        val block = new byte[length];
+        in.readFully(block);
+        return block;
+    }
+
+    /**
+     * Indicates whether learned state built under the old params is usable at all under the new params. Returns
+     * {@code true} by default, since most params only affect thresholds or smoothing going forward.
+     *
+     * @param oldParams params of the detector being replaced
+     * @param newParams params of this detector
+     * @return Boolean indicating whether state can be migrated
+     */
+    protected boolean isStateCompatible(T oldParams, T newParams) {
+        return true;
+    }
+
+    /**
+     * Resets or recomputes the parts of the migrated state that the new params invalidate. Called after the state has
+     * been copied from the detector being replaced. Does nothing by default.
+     *
+     * @param oldParams params of the detector being replaced
+     * @param newParams params of this detector
+     */
+    protected void onParamsChanged(T oldParams, T newParams) {
+        // Override as desired
+    }
+
+    /**
+     * Returns the version of the implementation-specific state layout. Stateful subclasses must return a positive
+     * version and bump it whenever {@link #writeState(DataOutput)} changes incompatibly.
+     *
+     * @return State version, or {@link #STATELESS} if the detector has no learned state.
+     */
+    protected int getStateVersion() {
+        return STATELESS;
+    }
+
+    /**
+     * Writes implementation-specific learned state. Params aren't included since they come from the model service.
+     *
+     * @param out data output
+     * @throws IOException if the state can't be written
+     */
+    protected void writeState(DataOutput out) throws IOException {
+        // Override as desired
+    }
+
+    /**
+     * Reads implementation-specific learned state written by {@link #writeState(DataOutput)}. Implementations should
+     * read everything before assigning any fields so that a rejected snapshot leaves the detector untouched.
+     *
+     * @param in data input
+     * @throws IOException if the state can't be read
+     */
+    protected void readState(DataInput in) throws IOException {
+        // Override as desired
+    }
 }
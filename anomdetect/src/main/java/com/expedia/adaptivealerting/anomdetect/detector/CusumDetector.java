@@ -22,6 +22,10 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import static com.expedia.adaptivealerting.core.anomaly.AnomalyLevel.*;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 
@@ -38,6 +42,7 @@ import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 @EqualsAndHashCode(callSuper = true)
 public final class CusumDetector extends AbstractDetector<CusumParams> {
     private static final double STD_DEV_DIVISOR = 1.128;
+    private static final int STATE_VERSION = 1;
 
     /**
      * Total number of data points seen so far.
@@ -154,6 +159,42 @@ public final class CusumDetector extends AbstractDetector<CusumParams> {
         return new AnomalyResult(level);
     }
 
+    @Override
+    protected int getStateVersion() {
+        return STATE_VERSION;
+    }
+
+    @Override
+    protected void writeState(DataOutput out) throws IOException {
+        out.writeInt(totalDataPoints);
+        out.writeDouble(sumHigh);
+        out.writeDouble(sumLow);
+        out.writeDouble(movingRange);
+        out.writeDouble(prevValue);
+    }
+
+    @Override
+    protected void readState(DataInput in) throws IOException {
+        val totalDataPoints = in.readInt();
+        val sumHigh = in.readDouble();
+        val sumLow = in.readDouble();
+        val movingRange = in.readDouble();
+        val prevValue = in.readDouble();
+        this.totalDataPoints = totalDataPoints;
+        this.sumHigh = sumHigh;
+        this.sumLow = sumLow;
+        this.movingRange = movingRange;
+        this.prevValue = prevValue;
+    }
+
+    @Override
+    protected void onParamsChanged(CusumParams oldParams, CusumParams newParams) {
+        // The cumulative sums measure drift from the target, so they're meaningless against a new target.
+        if (oldParams.getTargetValue() != newParams.getTargetValue()) {
+            resetSums();
+        }
+    }
+
     private void resetSums() {
         this.sumHigh = 0.0;
         this.sumLow = 0.0;
@@ -15,6 +15,7 @@
  */
 package com.expedia.adaptivealerting.anomdetect.detector;
 
+import com.expedia.adaptivealerting.anomdetect.DetectorStateException;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
 import com.expedia.metrics.MetricData;
@@ -46,4 +47,35 @@ public interface Detector<T extends DetectorParams> {
      * @return Anomaly result.
      */
     AnomalyResult classify(MetricData metricData);
+
+    /**
+     * Returns a compact, versioned binary snapshot of the detector's learned state, or {@code null} if the detector is
+     * stateless.
+     *
+     * @return State snapshot, or {@code null} if the detector is stateless.
+     * @throws DetectorStateException if the state can't be written
+     */
+    byte[] snapshotState();
+
+    /**
+     * Restores learned state from a snapshot previously produced by {@link #snapshotState()}. The detector must already
+     * be initialized. If the snapshot is rejected the detector's current state is left untouched.
+     *
+     * @param snapshot State snapshot.
+     * @throws DetectorStateException if the snapshot is malformed, has an unsupported version, was taken by a
+     *                                different detector type or under params incompatible with the detector's params
+     */
+    void restoreState(byte[] snapshot);
+
+    /**
+     * Carries learned state over from a live detector whose params this detector replaces. This detector must already
+     * be initialized with the new params; state the new params invalidate is reset. The previous detector isn't
+     * modified. Reads the previous detector's state without synchronization, so call this on the thread that
+     * classifies with the previous detector, and swap this one in before classifying the next point.
+     *
+     * @param previous Detector being replaced.
+     * @return Boolean indicating whether any state was carried over. {@code false} means this detector starts fresh.
+     * @throws DetectorStateException if the previous detector's state can't be transferred
+     */
+    boolean migrateStateFrom(Detector<?> previous);
 }
@@ -25,6 +25,10 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 import static java.lang.Math.sqrt;
 
@@ -51,6 +55,7 @@ import static java.lang.Math.sqrt;
 @Data
 @EqualsAndHashCode(callSuper = true)
 public final class EwmaDetector extends AbstractDetector<EwmaParams> {
+    private static final int STATE_VERSION = 1;
 
     /**
      * Mean estimate.
@@ -100,6 +105,25 @@ public final class EwmaDetector extends AbstractDetector<EwmaParams> {
         return result;
     }
 
+    @Override
+    protected int getStateVersion() {
+        return STATE_VERSION;
+    }
+
+    @Override
+    protected void writeState(DataOutput out) throws IOException {
+        out.writeDouble(mean);
+        out.writeDouble(variance);
+    }
+
+    @Override
+    protected void readState(DataInput in) throws IOException {
+        val mean = in.readDouble();
+        val variance = in.readDouble();
+        this.mean = mean;
+        this.variance = variance;
+    }
+
     private void updateEstimates(double value) {
         val params = getParams();
 
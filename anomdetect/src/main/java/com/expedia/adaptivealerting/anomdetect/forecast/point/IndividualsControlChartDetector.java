@@ -24,6 +24,10 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import static com.expedia.adaptivealerting.core.anomaly.AnomalyLevel.MODEL_WARMUP;
 import static com.expedia.adaptivealerting.core.anomaly.AnomalyLevel.NORMAL;
 import static com.expedia.adaptivealerting.core.anomaly.AnomalyLevel.STRONG;
@@ -51,6 +55,8 @@ public final class IndividualsControlChartDetector extends AbstractDetector<Indi
      */
     private static final int RECOMPUTE_LIMITS_PERIOD = 100;
 
+    private static final int STATE_VERSION = 1;
+
     /**
      * Aggregate Moving range. Used to calculate avg. moving range.
      */
@@ -151,13 +157,8 @@ public final class IndividualsControlChartDetector extends AbstractDetector<Indi
         }
 
         if (((totalDataPoints - params.getWarmUpPeriod()) % RECOMPUTE_LIMITS_PERIOD) == 0) {
-            double averageMovingRange = getAverageMovingRange();
-            double multiplier = params.getStrongSigmas() / R_CONTROL_CHART_CONSTANT_D2;
             this.target = this.mean;
-
-            upperControlLimit_R = R_CONTROL_CHART_CONSTANT_D4 * averageMovingRange;
-            upperControlLimit_X = this.target + multiplier * averageMovingRange;
-            lowerControlLimit_X = this.target - multiplier * averageMovingRange;
+            recomputeLimits(params);
         }
         this.prevValue = observed;
 
@@ -167,10 +168,68 @@ public final class IndividualsControlChartDetector extends AbstractDetector<Indi
         return result;
     }
 
+    @Override
+    protected int getStateVersion() {
+        return STATE_VERSION;
+    }
+
+    @Override
+    protected void writeState(DataOutput out) throws IOException {
+        out.writeDouble(movingRangeSum);
+        out.writeDouble(target);
+        out.writeDouble(prevValue);
+        out.writeInt(totalDataPoints);
+        out.writeDouble(upperControlLimit_R);
+        out.writeDouble(upperControlLimit_X);
+        out.writeDouble(lowerControlLimit_X);
+        out.writeDouble(variance);
+        out.writeDouble(mean);
+    }
+
+    @Override
+    protected void readState(DataInput in) throws IOException {
+        val movingRangeSum = in.readDouble();
+        val target = in.readDouble();
+        val prevValue = in.readDouble();
+        val totalDataPoints = in.readInt();
+        val upperControlLimit_R = in.readDouble();
+        val upperControlLimit_X = in.readDouble();
+        val lowerControlLimit_X = in.readDouble();
+        val variance = in.readDouble();
+        val mean = in.readDouble();
+        this.movingRangeSum = movingRangeSum;
+        this.target = target;
+        this.prevValue = prevValue;
+        this.totalDataPoints = totalDataPoints;
+        this.upperControlLimit_R = upperControlLimit_R;
+        this.upperControlLimit_X = upperControlLimit_X;
+        this.lowerControlLimit_X = lowerControlLimit_X;
+        this.variance = variance;
+        this.mean = mean;
+    }
+
     private double getRunningMean(double observed) {
         return this.mean + ((observed - this.mean) / (this.totalDataPoints + 1));
     }
 
+    @Override
+    protected void onParamsChanged(IndividualsControlChartParams oldParams, IndividualsControlChartParams newParams) {
+        // The X chart limits scale with strongSigmas. Recompute them now rather than at the next recompute period.
+        val limitsComputed = totalDataPoints >= oldParams.getWarmUpPeriod();
+        if (oldParams.getStrongSigmas() != newParams.getStrongSigmas() && limitsComputed) {
+            recomputeLimits(newParams);
+        }
+    }
+
+    private void recomputeLimits(IndividualsControlChartParams params) {
+        double averageMovingRange = getAverageMovingRange();
+        double multiplier = params.getStrongSigmas() / R_CONTROL_CHART_CONSTANT_D2;
+
+        upperControlLimit_R = R_CONTROL_CHART_CONSTANT_D4 * averageMovingRange;
+        upperControlLimit_X = this.target + multiplier * averageMovingRange;
+        lowerControlLimit_X = this.target - multiplier * averageMovingRange;
+    }
+
     private double getAverageMovingRange() {
         return movingRangeSum / Math.max(1, totalDataPoints - 1);
     }
@@ -24,6 +24,10 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 
 // TODO Return MODEL_WARMUP anomaly level if the model is still warming up. [WLW]
@@ -45,6 +49,7 @@ import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 @Data
 @EqualsAndHashCode(callSuper = true)
 public final class PewmaDetector extends AbstractDetector<PewmaParams> {
+    private static final int STATE_VERSION = 1;
 
     /**
      * Adjusted alpha, to match the way alpha is used in the paper that describes the algorithm.
@@ -114,6 +119,29 @@ public final class PewmaDetector extends AbstractDetector<PewmaParams> {
         return result;
     }
 
+    @Override
+    protected int getStateVersion() {
+        return STATE_VERSION;
+    }
+
+    @Override
+    protected void writeState(DataOutput out) throws IOException {
+        out.writeInt(trainingCount);
+        out.writeDouble(s1);
+        out.writeDouble(s2);
+    }
+
+    @Override
+    protected void readState(DataInput in) throws IOException {
+        val trainingCount = in.readInt();
+        val s1 = in.readDouble();
+        val s2 = in.readDouble();
+        this.trainingCount = trainingCount;
+        this.s1 = s1;
+        this.s2 = s2;
+        updateMeanAndStdDev();
+    }
+
     private void updateEstimates(double value) {
         double zt = 0;
         if (this.stdDev != 0.0) {
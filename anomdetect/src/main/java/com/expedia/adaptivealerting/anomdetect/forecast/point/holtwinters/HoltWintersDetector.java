@@ -25,6 +25,10 @@ import lombok.EqualsAndHashCode;
 import lombok.NonNull;
 import lombok.val;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import static com.expedia.adaptivealerting.core.anomaly.AnomalyLevel.MODEL_WARMUP;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 import static java.lang.String.format;
@@ -37,6 +41,7 @@ import static java.lang.String.format;
 @Data
 @EqualsAndHashCode(callSuper = true)
 public final class HoltWintersDetector extends AbstractDetector<HoltWintersParams> {
+    private static final int STATE_VERSION = 1;
 
     @NonNull
     private HoltWintersOnlineComponents components;
@@ -79,6 +84,35 @@ public final class HoltWintersDetector extends AbstractDetector<HoltWintersParam
         }
     }
 
+    @Override
+    protected int getStateVersion() {
+        return STATE_VERSION;
+    }
+
+    @Override
+    protected void writeState(DataOutput out) throws IOException {
+        components.writeTo(out);
+        holtWintersSimpleTrainingModel.writeTo(out);
+    }
+
+    @Override
+    protected void readState(DataInput in) throws IOException {
+        val params = getParams();
+        val restoredComponents = HoltWintersOnlineComponents.readFrom(in, params);
+        val restoredTrainingModel = HoltWintersSimpleTrainingModel.readFrom(in, params);
+        this.components = restoredComponents;
+        this.holtWintersSimpleTrainingModel = restoredTrainingModel;
+    }
+
+    @Override
+    protected boolean isStateCompatible(HoltWintersParams oldParams, HoltWintersParams newParams) {
+        // Seasonal components are indexed by frequency and combined according to the seasonality type, and training
+        // progress is specific to the training method. Smoothing params and thresholds can change freely.
+        return oldParams.getFrequency() == newParams.getFrequency()
+                && oldParams.getSeasonalityType() == newParams.getSeasonalityType()
+                && oldParams.getInitTrainingMethod() == newParams.getInitTrainingMethod();
+    }
+
     public boolean isInitialTrainingComplete() {
         val params = getParams();
         switch (params.getInitTrainingMethod()) {
@@ -17,10 +17,14 @@ package com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters;
 
 import lombok.Data;
 import lombok.NonNull;
-import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Arrays;
 
+import static java.lang.String.format;
+
 /**
  * Encapsulates the values that represent the components for the {@link HoltWintersOnlineAlgorithm} logic.
  * This represents the model's online data as opposed to {@link HoltWintersParams} which represents the users values for
@@ -40,8 +44,8 @@ public class HoltWintersOnlineComponents {
     private double base = 0;
     @NonNull
     private double[] seasonal;
-    private SummaryStatistics overallSummaryStatistics = new SummaryStatistics();
-    private SummaryStatistics[] seasonalSummaryStatistics;
+    private RunningStatistics overallSummaryStatistics = new RunningStatistics();
+    private RunningStatistics[] seasonalSummaryStatistics;
     private double forecast = Double.NaN;
 
     /**
@@ -104,6 +108,49 @@ public class HoltWintersOnlineComponents {
         return (int) (getN() % params.getFrequency());
     }
 
+    /**
+     * Writes the learned components (but not the params) to the given output.
+     *
+     * @param out data output
+     * @throws IOException if the components can't be written
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeDouble(level);
+        out.writeDouble(base);
+        out.writeDouble(forecast);
+        out.writeInt(seasonal.length);
+        for (int i = 0; i < seasonal.length; i++) {
+            out.writeDouble(seasonal[i]);
+            seasonalSummaryStatistics[i].writeTo(out);
+        }
+        overallSummaryStatistics.writeTo(out);
+    }
+
+    /**
+     * Reads components written by {@link #writeTo(DataOutput)} into a new instance for the given params.
+     *
+     * @param in     data input
+     * @param params model params; frequency must match the snapshot
+     * @return new components
+     * @throws IOException if the components can't be read or the frequency doesn't match
+     */
+    static HoltWintersOnlineComponents readFrom(DataInput in, HoltWintersParams params) throws IOException {
+        HoltWintersOnlineComponents components = new HoltWintersOnlineComponents(params);
+        components.level = in.readDouble();
+        components.base = in.readDouble();
+        components.forecast = in.readDouble();
+        int frequency = in.readInt();
+        if (frequency != params.getFrequency()) {
+            throw new IOException(format("Snapshot frequency (%d) doesn't match params frequency (%d)", frequency, params.getFrequency()));
+        }
+        for (int i = 0; i < frequency; i++) {
+            components.seasonal[i] = in.readDouble();
+            components.seasonalSummaryStatistics[i] = RunningStatistics.readFrom(in);
+        }
+        components.overallSummaryStatistics = RunningStatistics.readFrom(in);
+        return components;
+    }
+
     private void initLevelFromParams(HoltWintersParams params) {
         this.level = Double.isNaN(params.getInitLevelEstimate()) ? seasonalityIdentity() : params.getInitLevelEstimate();
     }
@@ -135,9 +182,9 @@ public class HoltWintersOnlineComponents {
     }
 
     private void initSeasonalStatistics(HoltWintersParams params) {
-        seasonalSummaryStatistics = new SummaryStatistics[params.getFrequency()];
+        seasonalSummaryStatistics = new RunningStatistics[params.getFrequency()];
         for (int i = 0; i < params.getFrequency(); i++) {
-            seasonalSummaryStatistics[i] = new SummaryStatistics();
+            seasonalSummaryStatistics[i] = new RunningStatistics();
             seasonalSummaryStatistics[i].addValue(seasonal[i]);
         }
     }
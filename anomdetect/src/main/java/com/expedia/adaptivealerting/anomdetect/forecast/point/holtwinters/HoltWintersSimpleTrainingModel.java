@@ -15,6 +15,9 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Arrays;
 
 import static com.expedia.adaptivealerting.core.util.AssertUtil.isFalse;
@@ -77,6 +80,47 @@ public class HoltWintersSimpleTrainingModel {
         n++;
     }
 
+    /**
+     * Writes the training progress and captured observations to the given output.
+     *
+     * @param out data output
+     * @throws IOException if the state can't be written
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(n);
+        out.writeInt(firstCycle.length);
+        for (double y : firstCycle) {
+            out.writeDouble(y);
+        }
+        for (double y : secondCycle) {
+            out.writeDouble(y);
+        }
+    }
+
+    /**
+     * Reads state written by {@link #writeTo(DataOutput)} into a new instance for the given params.
+     *
+     * @param in     data input
+     * @param params model params; frequency must match the snapshot
+     * @return new training model
+     * @throws IOException if the state can't be read or the frequency doesn't match
+     */
+    static HoltWintersSimpleTrainingModel readFrom(DataInput in, HoltWintersParams params) throws IOException {
+        HoltWintersSimpleTrainingModel model = new HoltWintersSimpleTrainingModel(params);
+        model.n = in.readInt();
+        int frequency = in.readInt();
+        if (frequency != params.getFrequency()) {
+            throw new IOException(String.format("Snapshot frequency (%d) doesn't match params frequency (%d)", frequency, params.getFrequency()));
+        }
+        for (int i = 0; i < frequency; i++) {
+            model.firstCycle[i] = in.readDouble();
+        }
+        for (int i = 0; i < frequency; i++) {
+            model.secondCycle[i] = in.readDouble();
+        }
+        return model;
+    }
+
     public boolean isTrainingComplete(HoltWintersParams params) {
         return n >= (params.calculateInitTrainingPeriod());
     }
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters;
+
+import lombok.Getter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Online count, mean and variance using Welford's algorithm. Produces the same results as the commons-math
+ * {@code SummaryStatistics} for the values we use, but keeps only three numbers so it can be snapshotted compactly.
+ *
+ * @see <a href="https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#Welford's_online_algorithm">Welford's online algorithm</a>
+ */
+public class RunningStatistics {
+
+    @Getter
+    private long n = 0;
+
+    @Getter
+    private double mean = 0.0;
+
+    /**
+     * Sum of squared deviations from the mean.
+     */
+    private double m2 = 0.0;
+
+    public void addValue(double value) {
+        n++;
+        double dev = value - mean;
+        double nDev = dev / n;
+        mean += nDev;
+        m2 += (n - 1.0) * dev * nDev;
+    }
+
+    /**
+     * Returns the bias-corrected sample variance.
+     *
+     * @return Sample variance, 0 if there's a single value, or NaN if there are no values.
+     */
+    public double getVariance() {
+        if (n == 0) {
+            return Double.NaN;
+        }
+        return n == 1 ? 0.0 : m2 / (n - 1.0);
+    }
+
+    public double getStandardDeviation() {
+        if (n == 0) {
+            return Double.NaN;
+        }
+        return n == 1 ? 0.0 : Math.sqrt(getVariance());
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeLong(n);
+        out.writeDouble(mean);
+        out.writeDouble(m2);
+    }
+
+    static RunningStatistics readFrom(DataInput in) throws IOException {
+        RunningStatistics stats = new RunningStatistics();
+        stats.n = in.readLong();
+        stats.mean = in.readDouble();
+        stats.m2 = in.readDouble();
+        return stats;
+    }
+}
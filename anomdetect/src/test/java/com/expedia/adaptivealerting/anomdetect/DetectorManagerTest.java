@@ -25,13 +25,18 @@ import com.typesafe.config.Config;
 import lombok.val;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.Answers;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.net.SocketTimeoutException;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -39,6 +44,13 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -51,7 +63,8 @@ public final class DetectorManagerTest {
 
     private DetectorManager managerUnderTest;
 
-    @Mock
+    // Real default methods, so async loads go through the stubbed synchronous lookups.
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
     private DetectorSource detectorSource;
 
     private UUID mappedUuid;
@@ -134,9 +147,190 @@ public final class DetectorManagerTest {
         managerUnderTest.classify(goodMappedMetricData);
 
         // This one grabs the cached detector
-        // TODO Come up with some way to actually prove this. E.g. mock the cache and verify().
-        //  For now I just put a log.trace() in there. [WLW]
         managerUnderTest.classify(goodMappedMetricData);
+
+        val stats = managerUnderTest.getDetectorCacheStats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        verify(detectorSource, times(1)).findDetector(mappedUuid);
+    }
+
+    @Test
+    public void testClassify_recordsMetrics() {
+        managerUnderTest.classify(goodMappedMetricData);
+        managerUnderTest.classify(goodMappedMetricData);
+
+        val timers = managerUnderTest.getMetricRegistry().getTimers();
+        assertEquals(1, timers.get("detector.load").getCount());
+        assertEquals(2, timers.get("detector.classify." + detector.getClass().getSimpleName()).getCount());
+    }
+
+    @Test
+    public void testClassifyBatch() {
+        val earlier = new MappedMetricData(
+                new MetricData(goodDefinition, 50.0, goodMetricData.getTimestamp() - 60), mappedUuid);
+        when(detector.classify(earlier.getMetricData())).thenReturn(anomalyResult);
+
+        val results = managerUnderTest.classifyBatch(
+                Arrays.asList(goodMappedMetricData, badMappedMetricData, earlier));
+        assertEquals(3, results.size());
+        assertSame(anomalyResult, results.get(0));
+        assertNull(results.get(1));
+        assertSame(anomalyResult, results.get(2));
+
+        // One bulk lookup for the batch's uncached detectors, and each detector sees its records in timestamp order.
+        verify(detectorSource, times(1)).findDetectors(anyCollection());
+        verify(detectorSource, never()).findDetector(mappedUuid);
+        val inOrder = inOrder(detector);
+        inOrder.verify(detector).classify(earlier.getMetricData());
+        inOrder.verify(detector).classify(goodMetricData);
+    }
+
+    @Test
+    public void testClassifyBatch_bulkLoadFailureFallsBackToSingleLoads() {
+        when(detectorSource.findDetectors(anyCollection())).thenThrow(new RuntimeException("Bulk load error"));
+
+        val results = managerUnderTest.classifyBatch(Arrays.asList(goodMappedMetricData, badMappedMetricData));
+        assertSame(anomalyResult, results.get(0));
+        assertNull(results.get(1));
+        verify(detectorSource, times(1)).findDetector(mappedUuid);
+    }
+
+    @Test
+    public void testClassifyBatch_classificationError() {
+        when(detector.classify(goodMetricData)).thenThrow(new RuntimeException("Classification error"));
+        val results = managerUnderTest.classifyBatch(Collections.singletonList(goodMappedMetricData));
+        assertNull(results.get(0));
+    }
+
+    @Test
+    public void testLoadDetectorAsync() {
+        val loaded = managerUnderTest.loadDetectorAsync(mappedUuid).join();
+        assertSame(detector, loaded);
+
+        // Loading doesn't cache; installing does.
+        assertNull(managerUnderTest.getCachedDetector(mappedUuid));
+        managerUnderTest.installDetector(mappedUuid, loaded, null);
+        assertSame(detector, managerUnderTest.getCachedDetector(mappedUuid));
+
+        managerUnderTest.classify(goodMappedMetricData);
+        verify(detectorSource, times(1)).findDetector(mappedUuid);
+    }
+
+    @Test
+    public void testPrefetchDetectors() {
+        managerUnderTest.prefetchDetectors(uuid -> true).join();
+
+        val progress = managerUnderTest.getPrefetchProgress();
+        assertFalse(progress.isRunning());
+        assertEquals(2, progress.getRequested());
+        assertEquals(1, progress.getLoaded());
+        assertEquals(1, progress.getMissing());
+        assertEquals(0, progress.getFailed());
+
+        // Prefetched detectors are handed out without another lookup.
+        assertSame(anomalyResult, managerUnderTest.classify(goodMappedMetricData));
+        verify(detectorSource, never()).findDetector(mappedUuid);
+    }
+
+    @Test
+    public void testPrefetchDetectors_filtered() {
+        managerUnderTest.prefetchDetectors(uuid -> false).join();
+        assertEquals(0, managerUnderTest.getPrefetchProgress().getRequested());
+    }
+
+    @Test
+    public void testApplyDetectorUpdate() {
+        managerUnderTest.classify(goodMappedMetricData);
+
+        managerUnderTest.applyDetectorUpdate(mappedUuid, false);
+        assertTrue(managerUnderTest.isDetectorDisabled(mappedUuid));
+        assertNull(managerUnderTest.getCachedDetector(mappedUuid));
+        assertNull(managerUnderTest.classify(goodMappedMetricData));
+
+        managerUnderTest.applyDetectorUpdate(mappedUuid, true);
+        assertSame(anomalyResult, managerUnderTest.classify(goodMappedMetricData));
+        verify(detectorSource, times(2)).findDetector(mappedUuid);
+    }
+
+    @Test
+    public void testSwapDetector() throws Exception {
+        managerUnderTest.classify(goodMappedMetricData);
+
+        val replacement = mock(Detector.class);
+        when(replacement.migrateStateFrom(detector)).thenReturn(true);
+        when(detectorSource.findDetector(mappedUuid)).thenReturn(replacement);
+
+        managerUnderTest.swapDetector(mappedUuid);
+        verify(detectorSource, timeout(1000).times(2)).findDetector(mappedUuid);
+
+        // The reload doesn't touch the live detector; the next record swaps the replacement in.
+        verify(replacement, never()).migrateStateFrom(detector);
+        assertSame(detector, managerUnderTest.getCachedDetector(mappedUuid));
+        for (int i = 0; i < 100 && managerUnderTest.getCachedDetector(mappedUuid) != replacement; i++) {
+            managerUnderTest.classify(goodMappedMetricData);
+            Thread.sleep(10);
+        }
+        assertSame(replacement, managerUnderTest.getCachedDetector(mappedUuid));
+        verify(replacement).migrateStateFrom(detector);
+    }
+
+    @Test
+    public void testSwapDetector_migratesOnClassifyingThread() throws Exception {
+        managerUnderTest.classify(goodMappedMetricData);
+
+        val replacement = mock(Detector.class);
+        val migratingThread = new AtomicReference<Thread>();
+        when(replacement.migrateStateFrom(detector)).thenAnswer(invocation -> {
+            migratingThread.set(Thread.currentThread());
+            return true;
+        });
+        when(detectorSource.findDetector(mappedUuid)).thenReturn(replacement);
+
+        managerUnderTest.swapDetector(mappedUuid);
+        for (int i = 0; i < 100 && migratingThread.get() == null; i++) {
+            managerUnderTest.classify(goodMappedMetricData);
+            Thread.sleep(10);
+        }
+        assertSame(Thread.currentThread(), migratingThread.get());
+    }
+
+    @Test
+    public void testSwapDetector_retrievalFailureKeepsLastKnownGood() throws Exception {
+        when(config.hasPath("detector-refresh-ahead.enabled")).thenReturn(true);
+        when(config.getBoolean("detector-refresh-ahead.enabled")).thenReturn(true);
+        val manager = new DetectorManager(detectorSource, config);
+        manager.classify(goodMappedMetricData);
+
+        when(detectorSource.findDetector(mappedUuid))
+                .thenThrow(new DetectorRetrievalException("model service down", new RuntimeException()));
+        manager.swapDetector(mappedUuid);
+        for (int i = 0; i < 100 && !manager.getRefreshSchedule().isStale(mappedUuid); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(manager.getRefreshSchedule().isStale(mappedUuid));
+        assertSame(detector, manager.getCachedDetector(mappedUuid));
+        assertSame(anomalyResult, manager.classify(goodMappedMetricData));
+    }
+
+    @Test
+    public void testApplyDetectorDelete() {
+        managerUnderTest.classify(goodMappedMetricData);
+        managerUnderTest.applyDetectorDelete(mappedUuid);
+        assertNull(managerUnderTest.getCachedDetector(mappedUuid));
+        assertFalse(managerUnderTest.isDetectorDisabled(mappedUuid));
+    }
+
+    @Test
+    public void testRetainPartitions() {
+        managerUnderTest.classify(goodMappedMetricData);
+        managerUnderTest.trackDetectorPartition(mappedUuid, 3);
+
+        assertEquals(0, managerUnderTest.retainPartitions(Collections.singleton(3)));
+        assertSame(detector, managerUnderTest.getCachedDetector(mappedUuid));
+
+        assertEquals(1, managerUnderTest.retainPartitions(Collections.singleton(4)));
+        assertNull(managerUnderTest.getCachedDetector(mappedUuid));
     }
 
     @Test
@@ -145,6 +339,60 @@ public final class DetectorManagerTest {
         assertNull(result);
     }
 
+    @Test
+    public void testClassifyMetricThatCantBeFound_quarantined() {
+        assertNull(managerUnderTest.classify(badMappedMetricData));
+        assertNull(managerUnderTest.classify(badMappedMetricData));
+
+        assertTrue(managerUnderTest.getQuarantine().isQuarantined(unmappedUuid));
+        verify(detectorSource, times(1)).findDetector(unmappedUuid);
+    }
+
+    @Test
+    public void testClassifyMetricThatFailsToLoad_quarantined() {
+        when(detectorSource.findDetector(unmappedUuid)).thenThrow(new IllegalArgumentException("bad params"));
+        try {
+            managerUnderTest.classify(badMappedMetricData);
+        } catch (RuntimeException e) {
+            // Expected
+        }
+        assertNull(managerUnderTest.classify(badMappedMetricData));
+        assertNull(managerUnderTest.loadDetectorAsync(unmappedUuid).join());
+        verify(detectorSource, times(1)).findDetector(unmappedUuid);
+
+        // An update gives the detector another chance.
+        managerUnderTest.applyDetectorUpdate(unmappedUuid, true);
+        assertFalse(managerUnderTest.getQuarantine().isQuarantined(unmappedUuid));
+    }
+
+    @Test
+    public void testClassifyMetricThatFailsToLoad_transportFailureNotQuarantined() {
+        when(detectorSource.findDetector(unmappedUuid))
+                .thenThrow(new RetryBudgetExhaustedException("retry budget exhausted", new RuntimeException()))
+                .thenThrow(new DetectorRetrievalException("model service down", new RuntimeException()));
+        for (int i = 0; i < 2; i++) {
+            try {
+                managerUnderTest.classify(badMappedMetricData);
+            } catch (DetectorRetrievalException e) {
+                // Expected
+            }
+        }
+        assertFalse(managerUnderTest.getQuarantine().isQuarantined(unmappedUuid));
+        verify(detectorSource, times(2)).findDetector(unmappedUuid);
+    }
+
+    @Test
+    public void testIsDetectorFailure() {
+        assertTrue(DetectorManager.isDetectorFailure(new DetectorNotFoundException("no models")));
+        assertTrue(DetectorManager.isDetectorFailure(
+                new DetectorDeserializationException("bad model", new RuntimeException())));
+        assertTrue(DetectorManager.isDetectorFailure(new IllegalArgumentException("bad params")));
+        assertFalse(DetectorManager.isDetectorFailure(new CircuitOpenException("circuit open")));
+        assertFalse(DetectorManager.isDetectorFailure(
+                new DetectorRetrievalException("timeout", new SocketTimeoutException())));
+        assertFalse(DetectorManager.isDetectorFailure(new TimeoutException()));
+    }
+
     private void initTestObjects() {
         this.mappedUuid = UUID.randomUUID();
         this.unmappedUuid = UUID.randomUUID();
@@ -169,6 +417,9 @@ public final class DetectorManagerTest {
         when(detectorSource.findDetector(mappedUuid)).thenReturn(detector);
         when(detectorSource.findDetector(unmappedUuid)).thenReturn(null);
         when(detectorSource.findUpdatedDetectors(detectorRefreshPeriod)).thenReturn(updatedDetectors);
+        when(detectorSource.findEnabledDetectorUuids()).thenReturn(Arrays.asList(mappedUuid, unmappedUuid));
+        when(detectorSource.findDetectors(anyCollection()))
+                .thenReturn(Collections.singletonMap(mappedUuid, detector));
 
         when(config.getInt("detector-refresh-period")).thenReturn(detectorRefreshPeriod);
         when(badConfig.getInt("detector-refresh-period")).thenReturn(badDetectorRefreshPeriod);
@@ -15,21 +15,27 @@
  */
 package com.expedia.adaptivealerting.anomdetect;
 
+import com.expedia.adaptivealerting.anomdetect.comp.DetectorMappingCache;
 import com.expedia.adaptivealerting.anomdetect.comp.DetectorSource;
 import com.expedia.adaptivealerting.core.data.MappedMetricData;
 import com.expedia.metrics.MetricData;
 import com.expedia.metrics.MetricDefinition;
+import lombok.val;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -83,6 +89,30 @@ public final class DetectorMapperTest {
         assertTrue(results.isEmpty());
     }
 
+    @Test
+    public void testMap_usesMappingCache() {
+        val mappingCache = mock(DetectorMappingCache.class);
+        when(mappingCache.findDetectorUuids(mappedDefinition)).thenReturn(detectorUuids);
+        val cachingMapper = new DetectorMapper(detectorSource, mappingCache);
+
+        final Set<MappedMetricData> results = cachingMapper.map(mappedData);
+        assertEquals(1, results.size());
+        verify(detectorSource, never()).findDetectorUuids(mappedDefinition);
+    }
+
+    @Test
+    public void testMapBatch() {
+        when(detectorSource.findDetectorUuids(Arrays.asList(mappedDefinition, unmappedDefinition)))
+                .thenReturn(Arrays.asList(detectorUuids, emptyDetectorUuids));
+
+        final List<Set<MappedMetricData>> results = mapper.mapBatch(Arrays.asList(mappedData, unmappedData));
+        assertEquals(2, results.size());
+        assertEquals(1, results.get(0).size());
+        assertEquals(detectorUuid, results.get(0).iterator().next().getDetectorUuid());
+        assertTrue(results.get(1).isEmpty());
+        verify(detectorSource, never()).findDetectorUuids(mappedDefinition);
+    }
+
     private void initTestObjects() {
         this.mappedData = new MetricData(mappedDefinition, 9, System.currentTimeMillis());
         this.unmappedData = new MetricData(unmappedDefinition, 9, System.currentTimeMillis());
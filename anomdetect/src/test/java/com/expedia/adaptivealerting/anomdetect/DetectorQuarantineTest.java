@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link DetectorQuarantine} unit test.
+ */
+public final class DetectorQuarantineTest {
+    private static final long INITIAL_BACKOFF = 100L;
+    private static final long MAX_BACKOFF = 350L;
+
+    private final AtomicLong clock = new AtomicLong();
+    private DetectorQuarantine quarantineUnderTest;
+    private UUID detectorUuid;
+
+    @Before
+    public void setUp() {
+        this.quarantineUnderTest = new DetectorQuarantine(INITIAL_BACKOFF, MAX_BACKOFF, clock::get);
+        this.detectorUuid = UUID.randomUUID();
+    }
+
+    @Test
+    public void testRecordFailure_backsOffExponentially() {
+        assertEquals(100L, quarantineUnderTest.recordFailure(detectorUuid));
+        assertEquals(200L, quarantineUnderTest.recordFailure(detectorUuid));
+        assertEquals(350L, quarantineUnderTest.recordFailure(detectorUuid));
+        assertEquals(350L, quarantineUnderTest.recordFailure(detectorUuid));
+    }
+
+    @Test
+    public void testIsQuarantined_untilBackoffExpires() {
+        assertFalse(quarantineUnderTest.isQuarantined(detectorUuid));
+
+        quarantineUnderTest.recordFailure(detectorUuid);
+        assertTrue(quarantineUnderTest.isQuarantined(detectorUuid));
+        assertEquals(Collections.singleton(detectorUuid), quarantineUnderTest.getQuarantinedDetectors());
+
+        clock.addAndGet(INITIAL_BACKOFF);
+        assertFalse(quarantineUnderTest.isQuarantined(detectorUuid));
+        assertTrue(quarantineUnderTest.getQuarantinedDetectors().isEmpty());
+    }
+
+    @Test
+    public void testRelease() {
+        quarantineUnderTest.recordFailure(detectorUuid);
+        quarantineUnderTest.recordFailure(detectorUuid);
+        quarantineUnderTest.release(detectorUuid);
+        assertFalse(quarantineUnderTest.isQuarantined(detectorUuid));
+
+        // History is cleared, so the next failure starts from the initial backoff again.
+        val backoff = quarantineUnderTest.recordFailure(detectorUuid);
+        assertEquals(INITIAL_BACKOFF, backoff);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadBackoffs() {
+        new DetectorQuarantine(INITIAL_BACKOFF, INITIAL_BACKOFF - 1);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect;
+
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link DetectorRefreshSchedule} unit test.
+ */
+public final class DetectorRefreshScheduleTest {
+    private static final long REFRESH_INTERVAL = 1_000L;
+    private static final long REFRESH_AHEAD = 100L;
+    private static final long RETRY_BACKOFF = 50L;
+
+    private final AtomicLong clock = new AtomicLong();
+    private DetectorRefreshSchedule scheduleUnderTest;
+    private UUID detectorUuid;
+
+    @Before
+    public void setUp() {
+        this.scheduleUnderTest = new DetectorRefreshSchedule(REFRESH_INTERVAL, REFRESH_AHEAD, RETRY_BACKOFF, clock::get);
+        this.detectorUuid = UUID.randomUUID();
+    }
+
+    @Test
+    public void testTryStartRefresh_dueAheadOfInterval() {
+        scheduleUnderTest.recordLoaded(detectorUuid);
+
+        clock.set(899L);
+        assertFalse(scheduleUnderTest.tryStartRefresh(detectorUuid));
+
+        clock.set(900L);
+        assertTrue(scheduleUnderTest.tryStartRefresh(detectorUuid));
+    }
+
+    @Test
+    public void testTryStartRefresh_claimsOnce() {
+        scheduleUnderTest.recordLoaded(detectorUuid);
+        clock.set(REFRESH_INTERVAL);
+
+        assertTrue(scheduleUnderTest.tryStartRefresh(detectorUuid));
+        assertFalse(scheduleUnderTest.tryStartRefresh(detectorUuid));
+    }
+
+    @Test
+    public void testTryStartRefresh_unknownDetector() {
+        assertFalse(scheduleUnderTest.tryStartRefresh(detectorUuid));
+    }
+
+    @Test
+    public void testRecordRefreshFailed_marksStaleAndRetriesAfterBackoff() {
+        scheduleUnderTest.recordLoaded(detectorUuid);
+        clock.set(REFRESH_INTERVAL);
+        scheduleUnderTest.tryStartRefresh(detectorUuid);
+
+        scheduleUnderTest.recordRefreshFailed(detectorUuid);
+        assertTrue(scheduleUnderTest.isStale(detectorUuid));
+        assertEquals(Collections.singleton(detectorUuid), scheduleUnderTest.getStaleDetectors());
+        assertEquals(1, scheduleUnderTest.getStaleCount());
+        assertFalse(scheduleUnderTest.tryStartRefresh(detectorUuid));
+
+        clock.addAndGet(RETRY_BACKOFF);
+        assertTrue(scheduleUnderTest.tryStartRefresh(detectorUuid));
+    }
+
+    @Test
+    public void testRecordLoaded_clearsStaleness() {
+        scheduleUnderTest.recordLoaded(detectorUuid);
+        clock.set(REFRESH_INTERVAL);
+        scheduleUnderTest.tryStartRefresh(detectorUuid);
+        scheduleUnderTest.recordRefreshFailed(detectorUuid);
+
+        scheduleUnderTest.recordLoaded(detectorUuid);
+        assertFalse(scheduleUnderTest.isStale(detectorUuid));
+        assertEquals(0, scheduleUnderTest.getStaleCount());
+    }
+
+    @Test
+    public void testRetainIf() {
+        val otherUuid = UUID.randomUUID();
+        scheduleUnderTest.recordLoaded(detectorUuid);
+        scheduleUnderTest.recordLoaded(otherUuid);
+
+        scheduleUnderTest.retainIf(detectorUuid::equals);
+        clock.set(REFRESH_INTERVAL);
+        assertTrue(scheduleUnderTest.tryStartRefresh(detectorUuid));
+        assertFalse(scheduleUnderTest.tryStartRefresh(otherUuid));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.typesafe.config.ConfigFactory;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public final class CaffeineDetectorCacheTest {
+    private CaffeineDetectorCache cacheUnderTest;
+    private UUID uuid;
+
+    @Mock
+    private Detector detector;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        this.cacheUnderTest = new CaffeineDetectorCache(10, 60);
+        this.uuid = UUID.randomUUID();
+    }
+
+    @Test
+    public void testGet_loadsOnceThenHits() {
+        assertSame(detector, cacheUnderTest.get(uuid, key -> detector));
+        assertSame(detector, cacheUnderTest.get(uuid, key -> {
+            throw new AssertionError("Loader shouldn't be called on a hit");
+        }));
+
+        val stats = cacheUnderTest.stats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getLoadSuccessCount());
+        assertEquals(0.5, stats.hitRate(), 0.0001);
+    }
+
+    @Test
+    public void testGet_nullLoadIsNotCached() {
+        assertNull(cacheUnderTest.get(uuid, key -> null));
+        assertNull(cacheUnderTest.getIfPresent(uuid));
+        assertEquals(1, cacheUnderTest.stats().getLoadFailureCount());
+    }
+
+    @Test
+    public void testInvalidate() {
+        cacheUnderTest.put(uuid, detector);
+        assertSame(detector, cacheUnderTest.getIfPresent(uuid));
+        cacheUnderTest.invalidate(uuid);
+        assertNull(cacheUnderTest.getIfPresent(uuid));
+    }
+
+    @Test
+    public void testFromConfig_defaults() {
+        val cache = CaffeineDetectorCache.fromConfig(ConfigFactory.empty());
+        cache.put(uuid, detector);
+        assertEquals(1, cache.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadMaximumSize() {
+        new CaffeineDetectorCache(0, 60);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorRetrievalException;
+import com.expedia.adaptivealerting.anomdetect.comp.connector.DetectorChangeEntry;
+import com.expedia.adaptivealerting.anomdetect.comp.connector.DetectorChangePage;
+import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link ChangeLogDetectorSource} unit test.
+ */
+public final class ChangeLogDetectorSourceTest {
+    private static final int PAGE_SIZE = 2;
+
+    private ChangeLogDetectorSource sourceUnderTest;
+
+    @Mock
+    private ModelServiceConnector connector;
+
+    @Mock
+    private DetectorSource delegate;
+
+    private UUID uuid1;
+    private UUID uuid2;
+    private UUID uuid3;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        this.uuid1 = UUID.randomUUID();
+        this.uuid2 = UUID.randomUUID();
+        this.uuid3 = UUID.randomUUID();
+        when(connector.findChangeLogHead()).thenReturn(10L);
+        when(delegate.findUpdatedDetectors(5)).thenReturn(Collections.singletonList(uuid1));
+        this.sourceUnderTest = new ChangeLogDetectorSource(connector, delegate, PAGE_SIZE);
+    }
+
+    @Test
+    public void testFindUpdatedDetectors_firstCallUsesDelegate() {
+        assertEquals(Collections.singletonList(uuid1), sourceUnderTest.findUpdatedDetectors(5));
+        assertEquals(10L, sourceUnderTest.getCursor());
+        verify(connector, never()).findChangesSince(10L, PAGE_SIZE);
+    }
+
+    @Test
+    public void testFindUpdatedDetectors_pagesThroughChanges() {
+        when(connector.findChangesSince(10L, PAGE_SIZE)).thenReturn(new DetectorChangePage(12L, true, Arrays.asList(
+                change(11L, uuid1, "DETECTOR"),
+                change(12L, uuid2, "MODEL"))));
+        when(connector.findChangesSince(12L, PAGE_SIZE)).thenReturn(new DetectorChangePage(14L, false, Arrays.asList(
+                change(14L, uuid1, "MAPPING"),
+                change(14L, uuid3, "DETECTOR"))));
+        sourceUnderTest.findUpdatedDetectors(5);
+
+        assertEquals(Arrays.asList(uuid1, uuid2, uuid3), sourceUnderTest.findUpdatedDetectors(5));
+        assertEquals(14L, sourceUnderTest.getCursor());
+        verify(delegate, times(1)).findUpdatedDetectors(5);
+    }
+
+    @Test
+    public void testFindUpdatedDetectors_noChanges() {
+        when(connector.findChangesSince(10L, PAGE_SIZE)).thenReturn(
+                new DetectorChangePage(10L, false, Collections.emptyList()));
+        sourceUnderTest.findUpdatedDetectors(5);
+
+        assertTrue(sourceUnderTest.findUpdatedDetectors(5).isEmpty());
+        assertEquals(10L, sourceUnderTest.getCursor());
+    }
+
+    @Test
+    public void testFindUpdatedDetectors_failureKeepsCursor() {
+        when(connector.findChangesSince(10L, PAGE_SIZE)).thenReturn(new DetectorChangePage(12L, true, Arrays.asList(
+                change(11L, uuid1, "DETECTOR"),
+                change(12L, uuid2, "MODEL"))));
+        when(connector.findChangesSince(12L, PAGE_SIZE))
+                .thenThrow(new DetectorRetrievalException("Can't get changes", new IOException()));
+        sourceUnderTest.findUpdatedDetectors(5);
+
+        try {
+            sourceUnderTest.findUpdatedDetectors(5);
+            fail("Expected DetectorRetrievalException");
+        } catch (DetectorRetrievalException e) {
+            // The next call retries from the same cursor, so the first page isn't lost.
+            assertEquals(10L, sourceUnderTest.getCursor());
+        }
+    }
+
+    @Test(expected = DetectorRetrievalException.class)
+    public void testFindUpdatedDetectors_headFailure() {
+        when(connector.findChangeLogHead())
+                .thenThrow(new DetectorRetrievalException("Can't get head", new IOException()));
+        try {
+            sourceUnderTest.findUpdatedDetectors(5);
+        } finally {
+            assertEquals(-1L, sourceUnderTest.getCursor());
+        }
+    }
+
+    private static DetectorChangeEntry change(long seq, UUID uuid, String source) {
+        val change = new DetectorChangeEntry();
+        change.setSeq(seq);
+        change.setDetectorUuid(uuid.toString());
+        change.setSource(source);
+        change.setType("UPSERT");
+        return change;
+    }
+}
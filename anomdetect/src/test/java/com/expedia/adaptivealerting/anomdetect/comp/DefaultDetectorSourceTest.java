@@ -17,6 +17,7 @@ package com.expedia.adaptivealerting.anomdetect.comp;
 
 import com.expedia.adaptivealerting.anomdetect.DetectorNotFoundException;
 import com.expedia.adaptivealerting.anomdetect.DetectorRetrievalException;
+import com.expedia.adaptivealerting.anomdetect.comp.connector.DetectorBundle;
 import com.expedia.adaptivealerting.anomdetect.comp.connector.DetectorResource;
 import com.expedia.adaptivealerting.anomdetect.comp.connector.DetectorResources;
 import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelResource;
@@ -33,11 +34,15 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Mockito.when;
 
@@ -61,10 +66,10 @@ public final class DefaultDetectorSourceTest {
     private MetricDefinition metricDef;
     private MetricDefinition metricDefException;
     private DetectorResources detectorResources;
-    private DetectorResources updatedDetectorResources;
     private ModelResource modelResource_constantThreshold;
     private ModelResource modelResource_cusum;
     private ModelResource modelResource_ewma;
+    private ModelResource modelResource_unknownType;
 
     @Before
     public void setUp() {
@@ -102,6 +107,24 @@ public final class DefaultDetectorSourceTest {
         assertEquals(DETECTOR_UUID_EWMA, result);
     }
 
+    @Test
+    public void testFindEnabledDetectorUuids() {
+        val results = sourceUnderTest.findEnabledDetectorUuids();
+        assertEquals(Collections.singletonList(DETECTOR_UUID_EWMA), results);
+    }
+
+    @Test
+    public void testFindDetectors() {
+        val results = sourceUnderTest.findDetectors(Arrays.asList(
+                DETECTOR_UUID_CUSUM, DETECTOR_UUID_EWMA, DETECTOR_UUID_MISSING_DETECTOR, DETECTOR_UUID_EXCEPTION));
+
+        // The missing detector has no model and the unknown detector type is skipped.
+        assertEquals(2, results.size());
+        assertEquals(DETECTOR_UUID_CUSUM, results.get(DETECTOR_UUID_CUSUM).getUuid());
+        assertEquals(DETECTOR_UUID_EWMA, results.get(DETECTOR_UUID_EWMA).getUuid());
+        assertFalse(results.containsKey(DETECTOR_UUID_EXCEPTION));
+    }
+
     @Test
     public void testFindDetector_constantThreshold() {
         val result = sourceUnderTest.findDetector(DETECTOR_UUID_CONSTANT_THRESHOLD);
@@ -125,6 +148,19 @@ public final class DefaultDetectorSourceTest {
         assertEquals(DETECTOR_UUID_EWMA, result.getUuid());
     }
 
+    @Test
+    public void testFindDetectorAsync_buildsOnExecutor() {
+        when(connector.findDetectorBundleAsync(DETECTOR_UUID_EWMA))
+                .thenReturn(CompletableFuture.completedFuture(toDetectorBundle(modelResource_ewma)));
+        val executorRuns = new AtomicInteger();
+        val result = sourceUnderTest.findDetectorAsync(DETECTOR_UUID_EWMA, task -> {
+            executorRuns.incrementAndGet();
+            task.run();
+        }).join();
+        assertEquals(DETECTOR_UUID_EWMA, result.getUuid());
+        assertEquals(1, executorRuns.get());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testFindDetector_nullMeta() {
         sourceUnderTest.findDetector(null);
@@ -154,12 +190,6 @@ public final class DefaultDetectorSourceTest {
                 new ModelTypeResource(DETECTOR_TYPE_EWMA),
                 true);
         this.detectorResources = new DetectorResources(Collections.singletonList(detectorResource));
-
-        val updatedDetectorsResource = new DetectorResource(
-                DETECTOR_UUID_EWMA.toString(),
-                new ModelTypeResource(DETECTOR_TYPE_EWMA),
-                true);
-        this.updatedDetectorResources = new DetectorResources(Collections.singletonList(updatedDetectorsResource));
     }
 
     private void initTestObjects_findLatestModel() {
@@ -192,27 +222,52 @@ public final class DefaultDetectorSourceTest {
         this.modelResource_ewma = new ModelResource();
         modelResource_ewma.setParams(ewmaParams);
         modelResource_ewma.setDetectorType(new ModelTypeResource(DETECTOR_TYPE_EWMA));
+
+        modelResource_cusum.setUuid(DETECTOR_UUID_CUSUM.toString());
+        modelResource_ewma.setUuid(DETECTOR_UUID_EWMA.toString());
+        this.modelResource_unknownType = new ModelResource();
+        modelResource_unknownType.setUuid(DETECTOR_UUID_EXCEPTION.toString());
+        modelResource_unknownType.setParams(new HashMap<>());
+        modelResource_unknownType.setDetectorType(new ModelTypeResource("unknown-detector"));
     }
 
     private void initDependencies() {
-        when(connector.findDetectors(metricDef))
-                .thenReturn(detectorResources);
-        when(connector.findDetectors(metricDefException))
+        when(connector.findDetectorUuids(metricDef))
+                .thenReturn(Collections.singletonList(DETECTOR_UUID_EWMA));
+        when(connector.findDetectorUuids(metricDefException))
                 .thenThrow(new DetectorRetrievalException("Error finding detectors", new IOException()));
 
-        when(connector.findUpdatedDetectors(1))
-                .thenReturn(updatedDetectorResources);
-
-        when(connector.findLatestModel(DETECTOR_UUID_CONSTANT_THRESHOLD))
-                .thenReturn(modelResource_constantThreshold);
-        when(connector.findLatestModel(DETECTOR_UUID_CUSUM))
-                .thenReturn(modelResource_cusum);
-        when(connector.findLatestModel(DETECTOR_UUID_EWMA))
-                .thenReturn(modelResource_ewma);
-
-        when(connector.findLatestModel(DETECTOR_UUID_MISSING_DETECTOR))
+        when(connector.findUpdatedDetectorUuids(1))
+                .thenReturn(Collections.singletonList(DETECTOR_UUID_EWMA));
+        when(connector.findEnabledDetectors())
+                .thenReturn(detectorResources);
+        when(connector.findDetectorBundles(Arrays.asList(
+                DETECTOR_UUID_CUSUM, DETECTOR_UUID_EWMA, DETECTOR_UUID_MISSING_DETECTOR, DETECTOR_UUID_EXCEPTION)))
+                .thenReturn(Arrays.asList(
+                        toDetectorBundle(modelResource_cusum),
+                        toDetectorBundle(modelResource_ewma),
+                        toDetectorBundle(modelResource_unknownType)));
+
+        when(connector.findDetectorBundle(DETECTOR_UUID_CONSTANT_THRESHOLD))
+                .thenReturn(toDetectorBundle(modelResource_constantThreshold));
+        when(connector.findDetectorBundle(DETECTOR_UUID_CUSUM))
+                .thenReturn(toDetectorBundle(modelResource_cusum));
+        when(connector.findDetectorBundle(DETECTOR_UUID_EWMA))
+                .thenReturn(toDetectorBundle(modelResource_ewma));
+
+        when(connector.findDetectorBundle(DETECTOR_UUID_MISSING_DETECTOR))
                 .thenThrow(new DetectorNotFoundException("No models found"));
-        when(connector.findLatestModel(DETECTOR_UUID_EXCEPTION))
+        when(connector.findDetectorBundle(DETECTOR_UUID_EXCEPTION))
                 .thenThrow(new DetectorRetrievalException("Error finding latest model", new IOException()));
     }
+
+    private static DetectorBundle toDetectorBundle(ModelResource model) {
+        val anomalyType = model.getParams().get("type");
+        return new DetectorBundle(
+                model.getUuid(),
+                model.getDetectorType().getKey(),
+                true,
+                model.getParams(),
+                anomalyType == null ? null : anomalyType.toString());
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.metrics.MetricDefinition;
+import com.expedia.metrics.TagCollection;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link DetectorMappingCache} unit test.
+ */
+public final class DetectorMappingCacheTest {
+    private DetectorMappingCache cacheUnderTest;
+
+    @Mock
+    private DetectorSource detectorSource;
+
+    private MetricDefinition mappedDefinition;
+    private MetricDefinition unmappedDefinition;
+    private UUID detectorUuid;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        initTestObjects();
+        initDependencies();
+        this.cacheUnderTest = new DetectorMappingCache(detectorSource, 100, 60, 60, Runnable::run);
+    }
+
+    @Test
+    public void testFindDetectorUuids_cached() {
+        assertEquals(Collections.singletonList(detectorUuid), cacheUnderTest.findDetectorUuids(mappedDefinition));
+        assertEquals(Collections.singletonList(detectorUuid), cacheUnderTest.findDetectorUuids(mappedDefinition));
+        verify(detectorSource, times(1)).findDetectorUuids(mappedDefinition);
+        assertEquals(0.5, cacheUnderTest.hitRate(), 0.001);
+    }
+
+    @Test
+    public void testFindDetectorUuids_cachesEmptyMappings() {
+        assertTrue(cacheUnderTest.findDetectorUuids(unmappedDefinition).isEmpty());
+        assertTrue(cacheUnderTest.findDetectorUuids(unmappedDefinition).isEmpty());
+        verify(detectorSource, times(1)).findDetectorUuids(unmappedDefinition);
+        assertEquals(1, cacheUnderTest.estimatedSize());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFindDetectorUuids_batchLoadsMissingMappingsAtOnce() {
+        when(detectorSource.findDetectorUuids(anyList())).thenAnswer(invocation -> {
+            val metricDefs = (List<MetricDefinition>) invocation.getArgument(0);
+            return metricDefs.stream()
+                    .map(metricDef -> mappedDefinition.equals(metricDef)
+                            ? Collections.singletonList(detectorUuid)
+                            : Collections.<UUID>emptyList())
+                    .collect(Collectors.toList());
+        });
+
+        val results = cacheUnderTest.findDetectorUuids(
+                Arrays.asList(unmappedDefinition, mappedDefinition, unmappedDefinition));
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isEmpty());
+        assertEquals(Collections.singletonList(detectorUuid), results.get(1));
+        assertTrue(results.get(2).isEmpty());
+        verify(detectorSource, times(1)).findDetectorUuids(anyList());
+
+        // Now served from the cache.
+        assertEquals(Collections.singletonList(detectorUuid), cacheUnderTest.findDetectorUuids(mappedDefinition));
+        verify(detectorSource, never()).findDetectorUuids(mappedDefinition);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadMaximumSize() {
+        new DetectorMappingCache(detectorSource, 0, 60, 60, Runnable::run);
+    }
+
+    private void initTestObjects() {
+        val tags = new HashMap<String, String>();
+        tags.put("org_id", "1");
+        tags.put("mtype", "count");
+        tags.put("unit", "");
+        tags.put("interval", "5");
+        this.mappedDefinition = new MetricDefinition("mapped", new TagCollection(tags), TagCollection.EMPTY);
+        this.unmappedDefinition = new MetricDefinition("unmapped", new TagCollection(tags), TagCollection.EMPTY);
+        this.detectorUuid = UUID.randomUUID();
+    }
+
+    private void initDependencies() {
+        when(detectorSource.findDetectorUuids(mappedDefinition)).thenReturn(Collections.singletonList(detectorUuid));
+        when(detectorSource.findDetectorUuids(unmappedDefinition)).thenReturn(Collections.emptyList());
+    }
+}
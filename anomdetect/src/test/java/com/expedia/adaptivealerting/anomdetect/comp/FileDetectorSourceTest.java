@@ -0,0 +1,164 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorException;
+import com.expedia.adaptivealerting.anomdetect.DetectorNotFoundException;
+import com.expedia.adaptivealerting.anomdetect.forecast.point.EwmaDetector;
+import com.expedia.metrics.MetricDefinition;
+import com.expedia.metrics.TagCollection;
+import com.expedia.metrics.metrictank.MetricTankIdFactory;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link FileDetectorSource} unit test.
+ */
+public final class FileDetectorSourceTest {
+    private static final String DETECTOR_TYPE_EWMA = "ewma-detector";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Path file;
+    private MetricDefinition metricDef;
+    private UUID detectorUuid;
+    private UUID disabledUuid;
+    private UUID modellessUuid;
+
+    @Before
+    public void setUp() throws Exception {
+        this.file = tempFolder.getRoot().toPath().resolve("detectors.snapshot");
+        this.metricDef = metricDefinition("metric");
+        this.detectorUuid = UUID.randomUUID();
+        this.disabledUuid = UUID.randomUUID();
+        this.modellessUuid = UUID.randomUUID();
+        baseSnapshot(0.2).writeTo(file);
+    }
+
+    @Test
+    public void testFindDetectorUuids() {
+        val sourceUnderTest = new FileDetectorSource(file);
+        assertEquals(Collections.singletonList(detectorUuid), sourceUnderTest.findDetectorUuids(metricDef));
+        assertTrue(sourceUnderTest.findDetectorUuids(metricDefinition("unmapped")).isEmpty());
+        assertEquals(1, sourceUnderTest.getMappingCount());
+    }
+
+    @Test
+    public void testFindDetector() {
+        val sourceUnderTest = new FileDetectorSource(file);
+        val detector = sourceUnderTest.findDetector(detectorUuid);
+        assertTrue(detector instanceof EwmaDetector);
+        assertEquals(detectorUuid, detector.getUuid());
+    }
+
+    @Test(expected = DetectorNotFoundException.class)
+    public void testFindDetector_noModel() {
+        new FileDetectorSource(file).findDetector(modellessUuid);
+    }
+
+    @Test(expected = DetectorNotFoundException.class)
+    public void testFindDetector_unknown() {
+        new FileDetectorSource(file).findDetector(UUID.randomUUID());
+    }
+
+    @Test
+    public void testFindEnabledDetectorUuids() {
+        val sourceUnderTest = new FileDetectorSource(file);
+        val enabled = sourceUnderTest.findEnabledDetectorUuids();
+        assertTrue(enabled.contains(detectorUuid));
+        assertFalse(enabled.contains(disabledUuid));
+        assertEquals(3, sourceUnderTest.getDetectorCount());
+    }
+
+    @Test
+    public void testFindDetectors_skipsDetectorsWithoutModels() {
+        val sourceUnderTest = new FileDetectorSource(file);
+        val detectors = sourceUnderTest.findDetectors(Arrays.asList(detectorUuid, modellessUuid));
+        assertEquals(Collections.singleton(detectorUuid), detectors.keySet());
+    }
+
+    @Test
+    public void testRefresh_reloadsChangedFileAndReportsUpdates() throws Exception {
+        val sourceUnderTest = new FileDetectorSource(file);
+        assertFalse(sourceUnderTest.refresh());
+
+        baseSnapshot(0.5).writeTo(file);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1_000L));
+        assertTrue(sourceUnderTest.refresh());
+
+        assertEquals(Collections.singletonList(detectorUuid), sourceUnderTest.findUpdatedDetectors(1));
+        assertTrue(sourceUnderTest.findUpdatedDetectors(1).isEmpty());
+    }
+
+    @Test
+    public void testRefresh_corruptFileKeepsSnapshot() throws Exception {
+        val sourceUnderTest = new FileDetectorSource(file);
+        Files.write(file, new byte[]{1, 2, 3});
+        try {
+            sourceUnderTest.refresh();
+        } catch (DetectorException e) {
+            // Expected
+        }
+        assertEquals(Collections.singletonList(detectorUuid), sourceUnderTest.findDetectorUuids(metricDef));
+    }
+
+    @Test(expected = DetectorException.class)
+    public void testConstructor_missingFile() {
+        new FileDetectorSource(file.resolveSibling("missing.snapshot"));
+    }
+
+    private DetectorSnapshotWriter baseSnapshot(double alpha) {
+        return new DetectorSnapshotWriter()
+                .addDetector(detectorUuid, true, DETECTOR_TYPE_EWMA, ewmaParams(alpha))
+                .addDetector(disabledUuid, false, DETECTOR_TYPE_EWMA, ewmaParams(0.2))
+                .addDetector(modellessUuid, true, DETECTOR_TYPE_EWMA, null)
+                .addMapping(new MetricTankIdFactory().getId(metricDef), detectorUuid);
+    }
+
+    private static Map<String, Object> ewmaParams(double alpha) {
+        val params = new HashMap<String, Object>();
+        params.put("alpha", alpha);
+        params.put("weakSigmas", 2.0);
+        params.put("strongSigmas", 4.0);
+        return params;
+    }
+
+    private static MetricDefinition metricDefinition(String key) {
+        val tags = new HashMap<String, String>();
+        tags.put("org_id", "1");
+        tags.put("mtype", "count");
+        tags.put("unit", "");
+        tags.put("interval", "5");
+        return new MetricDefinition(key, new TagCollection(tags), TagCollection.EMPTY);
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorRetrievalException;
+import com.expedia.adaptivealerting.anomdetect.comp.connector.MappingIndexEntry;
+import com.expedia.adaptivealerting.anomdetect.comp.connector.MappingIndexHeader;
+import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector;
+import com.expedia.metrics.MetricDefinition;
+import com.expedia.metrics.TagCollection;
+import com.expedia.metrics.metrictank.MetricTankIdFactory;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link MappingIndexDetectorSource} unit test.
+ */
+public final class MappingIndexDetectorSourceTest {
+    private MappingIndexDetectorSource sourceUnderTest;
+
+    @Mock
+    private ModelServiceConnector connector;
+
+    @Mock
+    private DetectorSource delegate;
+
+    private MetricDefinition metricDef;
+    private MetricDefinition otherMetricDef;
+    private String metricId;
+    private String otherMetricId;
+    private UUID detectorUuid;
+    private UUID otherDetectorUuid;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        initTestObjects();
+        this.sourceUnderTest = new MappingIndexDetectorSource(connector, delegate);
+    }
+
+    @Test
+    public void testFindDetectorUuids_delegatesUntilLoaded() {
+        when(delegate.findDetectorUuids(metricDef)).thenReturn(Collections.singletonList(detectorUuid));
+        assertFalse(sourceUnderTest.isLoaded());
+        assertEquals(Collections.singletonList(detectorUuid), sourceUnderTest.findDetectorUuids(metricDef));
+    }
+
+    @Test
+    public void testFindDetectorUuids_servedFromIndex() {
+        val mapping = entry(1L, metricId, detectorUuid);
+        stubIndex(0L, header(1L, mapping), mapping);
+        sourceUnderTest.refresh();
+
+        assertTrue(sourceUnderTest.isLoaded());
+        assertEquals(Collections.singletonList(detectorUuid), sourceUnderTest.findDetectorUuids(metricDef));
+        assertTrue(sourceUnderTest.findDetectorUuids(otherMetricDef).isEmpty());
+        verify(delegate, never()).findDetectorUuids(any(MetricDefinition.class));
+    }
+
+    @Test
+    public void testRefresh_appliesDeltas() {
+        val mapping = entry(1L, metricId, detectorUuid);
+        stubIndex(0L, header(1L, mapping), mapping);
+        sourceUnderTest.refresh();
+
+        val otherMapping = entry(2L, otherMetricId, otherDetectorUuid);
+        stubIndex(1L, header(2L, mapping, otherMapping), otherMapping);
+        sourceUnderTest.refresh();
+
+        assertEquals(2L, sourceUnderTest.getCursor());
+        assertEquals(2, sourceUnderTest.getMappingCount());
+        assertEquals(Collections.singletonList(otherDetectorUuid), sourceUnderTest.findDetectorUuids(otherMetricDef));
+    }
+
+    @Test
+    public void testRefresh_reloadsAfterDeletions() {
+        val mapping = entry(1L, metricId, detectorUuid);
+        val otherMapping = entry(2L, otherMetricId, otherDetectorUuid);
+        stubIndex(0L, header(2L, mapping, otherMapping), mapping, otherMapping);
+        sourceUnderTest.refresh();
+
+        // The first mapping was deleted, so the service reports fewer mappings than the index holds.
+        stubIndex(2L, header(2L, otherMapping));
+        sourceUnderTest.refresh();
+        assertEquals(Collections.singletonList(detectorUuid), sourceUnderTest.findDetectorUuids(metricDef));
+
+        stubIndex(0L, header(2L, otherMapping), otherMapping);
+        sourceUnderTest.refresh();
+        assertTrue(sourceUnderTest.findDetectorUuids(metricDef).isEmpty());
+        assertEquals(1, sourceUnderTest.getMappingCount());
+    }
+
+    @Test
+    public void testRefresh_reloadsAfterInPlaceUpdate() {
+        val mapping = entry(1L, metricId, detectorUuid);
+        stubIndex(0L, header(1L, mapping), mapping);
+        sourceUnderTest.refresh();
+
+        // The mapping was moved to another detector: same id, same count, but a different checksum.
+        val updated = entry(1L, metricId, otherDetectorUuid);
+        stubIndex(1L, header(1L, updated));
+        sourceUnderTest.refresh();
+        assertEquals(Collections.singletonList(detectorUuid), sourceUnderTest.findDetectorUuids(metricDef));
+
+        stubIndex(0L, header(1L, updated), updated);
+        sourceUnderTest.refresh();
+        assertEquals(Collections.singletonList(otherDetectorUuid), sourceUnderTest.findDetectorUuids(metricDef));
+    }
+
+    @Test
+    public void testRefresh_failureKeepsIndex() {
+        val mapping = entry(1L, metricId, detectorUuid);
+        stubIndex(0L, header(1L, mapping), mapping);
+        sourceUnderTest.refresh();
+
+        when(connector.readMappingIndex(eq(1L), any())).thenThrow(new DetectorRetrievalException("boom", null));
+        try {
+            sourceUnderTest.refresh();
+        } catch (DetectorRetrievalException e) {
+            // Expected
+        }
+        assertEquals(1L, sourceUnderTest.getCursor());
+        assertEquals(Collections.singletonList(detectorUuid), sourceUnderTest.findDetectorUuids(metricDef));
+    }
+
+    private void initTestObjects() {
+        this.metricDef = metricDefinition("metric");
+        this.otherMetricDef = metricDefinition("other-metric");
+        val idFactory = new MetricTankIdFactory();
+        this.metricId = idFactory.getId(metricDef);
+        this.otherMetricId = idFactory.getId(otherMetricDef);
+        this.detectorUuid = UUID.randomUUID();
+        this.otherDetectorUuid = UUID.randomUUID();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubIndex(long afterId, MappingIndexHeader header, MappingIndexEntry... entries) {
+        final List<MappingIndexEntry> entryList = Arrays.asList(entries);
+        final Answer<MappingIndexHeader> answer = invocation -> {
+            final Consumer<MappingIndexEntry> consumer = invocation.getArgument(1);
+            entryList.forEach(consumer);
+            return header;
+        };
+        when(connector.readMappingIndex(eq(afterId), any(Consumer.class))).thenAnswer(answer);
+    }
+
+    private static MappingIndexHeader header(long maxId, MappingIndexEntry... mappings) {
+        long checksum = 0L;
+        for (val mapping : mappings) {
+            checksum += mapping.checksum();
+        }
+        return new MappingIndexHeader(mappings.length, maxId, checksum);
+    }
+
+    private static MappingIndexEntry entry(long id, String metricId, UUID detectorUuid) {
+        return new MappingIndexEntry(id, metricId, detectorUuid.toString());
+    }
+
+    private static MetricDefinition metricDefinition(String key) {
+        val tags = new HashMap<String, String>();
+        tags.put("org_id", "1");
+        tags.put("mtype", "count");
+        tags.put("unit", "");
+        tags.put("interval", "5");
+        return new MetricDefinition(key, new TagCollection(tags), TagCollection.EMPTY);
+    }
+}
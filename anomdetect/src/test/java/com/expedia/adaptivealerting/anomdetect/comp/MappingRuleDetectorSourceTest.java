@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorRetrievalException;
+import com.expedia.adaptivealerting.anomdetect.comp.connector.MappingRuleEntry;
+import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector;
+import com.expedia.metrics.MetricDefinition;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link MappingRuleDetectorSource} unit test.
+ */
+public final class MappingRuleDetectorSourceTest {
+    private MappingRuleDetectorSource sourceUnderTest;
+
+    @Mock
+    private ModelServiceConnector connector;
+
+    @Mock
+    private DetectorSource delegate;
+
+    private MetricDefinition metricDef;
+    private UUID mappedUuid;
+    private UUID ruleUuid;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        this.metricDef = new MetricDefinition("app.checkout.latency");
+        this.mappedUuid = UUID.randomUUID();
+        this.ruleUuid = UUID.randomUUID();
+        when(delegate.findDetectorUuids(metricDef)).thenReturn(Collections.singletonList(mappedUuid));
+        when(connector.findMappingRules()).thenReturn(Collections.singletonList(
+                new MappingRuleEntry(1L, ruleUuid.toString(), "app.checkout.*", null)));
+        this.sourceUnderTest = new MappingRuleDetectorSource(connector, delegate);
+    }
+
+    @Test
+    public void testFindDetectorUuids_noRulesBeforeRefresh() {
+        assertEquals(Collections.singletonList(mappedUuid), sourceUnderTest.findDetectorUuids(metricDef));
+        assertFalse(sourceUnderTest.matchesAnyRule(metricDef));
+    }
+
+    @Test
+    public void testFindDetectorUuids_mergesRuleMatches() {
+        sourceUnderTest.refresh();
+        assertEquals(1, sourceUnderTest.getRuleCount());
+        assertTrue(sourceUnderTest.matchesAnyRule(metricDef));
+        assertEquals(Arrays.asList(mappedUuid, ruleUuid), sourceUnderTest.findDetectorUuids(metricDef));
+    }
+
+    @Test
+    public void testFindDetectorUuids_batch() {
+        val otherMetricDef = new MetricDefinition("app.search.latency");
+        val metricDefs = Arrays.asList(metricDef, otherMetricDef);
+        when(delegate.findDetectorUuids(metricDefs)).thenReturn(Arrays.asList(
+                Collections.singletonList(mappedUuid),
+                Collections.emptyList()));
+        sourceUnderTest.refresh();
+
+        val result = sourceUnderTest.findDetectorUuids(metricDefs);
+        assertEquals(Arrays.asList(mappedUuid, ruleUuid), result.get(0));
+        assertTrue(result.get(1).isEmpty());
+    }
+
+    @Test
+    public void testRefresh_failureKeepsRules() {
+        sourceUnderTest.refresh();
+        when(connector.findMappingRules()).thenThrow(new DetectorRetrievalException("boom", null));
+        try {
+            sourceUnderTest.refresh();
+        } catch (DetectorRetrievalException e) {
+            // Expected
+        }
+        assertEquals(1, sourceUnderTest.getRuleCount());
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import com.expedia.adaptivealerting.anomdetect.comp.connector.MappingRuleEntry;
+import com.expedia.metrics.MetricDefinition;
+import com.expedia.metrics.TagCollection;
+import lombok.val;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link MappingRuleMatcher} unit test.
+ */
+public final class MappingRuleMatcherTest {
+    private final UUID detectorUuid = UUID.randomUUID();
+    private final UUID otherDetectorUuid = UUID.randomUUID();
+
+    @Test
+    public void testMatch_prefix() {
+        val matcher = compile(rule(detectorUuid, "app.checkout.*", null));
+        assertEquals(Collections.singletonList(detectorUuid), matcher.match(metricDef("app.checkout.latency")));
+        assertTrue(matcher.match(metricDef("app.checkou")).isEmpty());
+        assertTrue(matcher.match(metricDef("app.search.latency")).isEmpty());
+    }
+
+    @Test
+    public void testMatch_exactKey() {
+        val matcher = compile(rule(detectorUuid, "app.checkout.latency", null));
+        assertEquals(Collections.singletonList(detectorUuid), matcher.match(metricDef("app.checkout.latency")));
+        assertTrue(matcher.match(metricDef("app.checkout.latency.p99")).isEmpty());
+    }
+
+    @Test
+    public void testMatch_glob() {
+        val matcher = compile(rule(detectorUuid, "app.*.latency.p?9", null));
+        assertEquals(Collections.singletonList(detectorUuid), matcher.match(metricDef("app.checkout.latency.p99")));
+        assertTrue(matcher.match(metricDef("app.checkout.latency.p50")).isEmpty());
+        assertTrue(matcher.match(metricDef("app.checkout.errors.p99")).isEmpty());
+    }
+
+    @Test
+    public void testMatch_globIsNotRegex() {
+        val matcher = compile(rule(detectorUuid, "app.(a|b)*", null));
+        assertEquals(Collections.singletonList(detectorUuid), matcher.match(metricDef("app.(a|b).count")));
+        assertTrue(matcher.match(metricDef("app.a.count")).isEmpty());
+    }
+
+    @Test
+    public void testMatch_tagPredicates() {
+        val matcher = compile(rule(detectorUuid, "*", tags("region", "us-*", "env", "prod")));
+        assertEquals(Collections.singletonList(detectorUuid),
+                matcher.match(metricDef("any.key", "region", "us-west-2", "env", "prod")));
+        assertTrue(matcher.match(metricDef("any.key", "region", "eu-west-1", "env", "prod")).isEmpty());
+        assertTrue(matcher.match(metricDef("any.key", "region", "us-west-2")).isEmpty());
+    }
+
+    @Test
+    public void testMatch_tagPresence() {
+        val matcher = compile(rule(detectorUuid, "app.*", tags("team", "*")));
+        assertEquals(Collections.singletonList(detectorUuid), matcher.match(metricDef("app.x", "team", "payments")));
+        assertTrue(matcher.match(metricDef("app.x")).isEmpty());
+    }
+
+    @Test
+    public void testMatch_multipleRules() {
+        val matcher = compile(
+                rule(detectorUuid, "app.*", null),
+                rule(otherDetectorUuid, "app.checkout.*", null),
+                rule(detectorUuid, "*", tags("env", "prod")));
+        assertEquals(Arrays.asList(detectorUuid, otherDetectorUuid),
+                matcher.match(metricDef("app.checkout.latency", "env", "prod")));
+        assertEquals(3, matcher.ruleCount());
+    }
+
+    @Test
+    public void testCompile_skipsInvalidRules() {
+        val matcher = compile(
+                rule(detectorUuid, "", null),
+                new MappingRuleEntry(2L, "not-a-uuid", "app.*", null),
+                rule(otherDetectorUuid, "app.*", null));
+        assertEquals(1, matcher.ruleCount());
+        assertEquals(Collections.singletonList(otherDetectorUuid), matcher.match(metricDef("app.x")));
+    }
+
+    @Test
+    public void testEmpty() {
+        assertTrue(MappingRuleMatcher.EMPTY.match(metricDef("app.x")).isEmpty());
+    }
+
+    private static MappingRuleMatcher compile(MappingRuleEntry... entries) {
+        return MappingRuleMatcher.compile(Arrays.asList(entries));
+    }
+
+    private static MappingRuleEntry rule(UUID detectorUuid, String keyPattern, Map<String, String> tags) {
+        return new MappingRuleEntry(1L, detectorUuid.toString(), keyPattern, tags);
+    }
+
+    private static Map<String, String> tags(String... kvs) {
+        val tags = new HashMap<String, String>();
+        for (int i = 0; i < kvs.length; i += 2) {
+            tags.put(kvs[i], kvs[i + 1]);
+        }
+        return tags;
+    }
+
+    private static MetricDefinition metricDef(String key, String... kvs) {
+        return new MetricDefinition(key, new TagCollection(tags(kvs)), TagCollection.EMPTY);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp;
+
+import lombok.val;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link MetricDetectorIndex} unit test.
+ */
+public final class MetricDetectorIndexTest {
+    private static final String METRIC_ID = "1.bbbad54f9232ba765e20368fe9c1a9c4";
+    private static final String OTHER_ORG_METRIC_ID = "2.bbbad54f9232ba765e20368fe9c1a9c4";
+    private static final String IRREGULAR_METRIC_ID = "some-legacy-hash";
+
+    private final UUID detectorUuid = UUID.randomUUID();
+    private final UUID otherDetectorUuid = UUID.randomUUID();
+
+    @Test
+    public void testFind() {
+        val index = new MetricDetectorIndex.Builder()
+                .add(METRIC_ID, detectorUuid)
+                .add(OTHER_ORG_METRIC_ID, otherDetectorUuid)
+                .build();
+        assertEquals(Collections.singletonList(detectorUuid), index.find(METRIC_ID));
+        assertEquals(Collections.singletonList(otherDetectorUuid), index.find(OTHER_ORG_METRIC_ID));
+        assertTrue(index.find("1.00000000000000000000000000000000").isEmpty());
+        assertEquals(2, index.metricCount());
+        assertEquals(2, index.mappingCount());
+    }
+
+    @Test
+    public void testFind_multipleDetectors() {
+        val index = new MetricDetectorIndex.Builder()
+                .add(METRIC_ID, detectorUuid)
+                .add(METRIC_ID, otherDetectorUuid)
+                .add(METRIC_ID, detectorUuid)
+                .build();
+        assertEquals(Arrays.asList(detectorUuid, otherDetectorUuid), index.find(METRIC_ID));
+        assertEquals(1, index.metricCount());
+        assertEquals(2, index.mappingCount());
+    }
+
+    @Test
+    public void testFind_irregularMetricIds() {
+        val upperCaseMetricId = METRIC_ID.toUpperCase();
+        val index = new MetricDetectorIndex.Builder()
+                .add(IRREGULAR_METRIC_ID, detectorUuid)
+                .add(upperCaseMetricId, otherDetectorUuid)
+                .build();
+        assertEquals(Collections.singletonList(detectorUuid), index.find(IRREGULAR_METRIC_ID));
+        assertEquals(Collections.singletonList(otherDetectorUuid), index.find(upperCaseMetricId));
+        assertTrue(index.find(METRIC_ID).isEmpty());
+    }
+
+    @Test
+    public void testFind_manyMetrics() {
+        val builder = new MetricDetectorIndex.Builder();
+        for (int i = 0; i < 10000; i++) {
+            builder.add(metricId(i), i % 2 == 0 ? detectorUuid : otherDetectorUuid);
+        }
+        val index = builder.build();
+        assertEquals(10000, index.metricCount());
+        for (int i = 0; i < 10000; i++) {
+            val expected = i % 2 == 0 ? detectorUuid : otherDetectorUuid;
+            assertEquals(Collections.singletonList(expected), index.find(metricId(i)));
+        }
+    }
+
+    @Test
+    public void testBuilder_derivedIndexLeavesBaseUnchanged() {
+        val base = new MetricDetectorIndex.Builder()
+                .add(METRIC_ID, detectorUuid)
+                .build();
+        val derived = new MetricDetectorIndex.Builder(base)
+                .add(METRIC_ID, otherDetectorUuid)
+                .add(OTHER_ORG_METRIC_ID, otherDetectorUuid)
+                .build();
+
+        assertEquals(Collections.singletonList(detectorUuid), base.find(METRIC_ID));
+        assertTrue(base.find(OTHER_ORG_METRIC_ID).isEmpty());
+        assertEquals(
+                new HashSet<>(Arrays.asList(detectorUuid, otherDetectorUuid)),
+                new HashSet<>(derived.find(METRIC_ID)));
+        assertEquals(3, derived.mappingCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuilder_buildTwice() {
+        val builder = new MetricDetectorIndex.Builder();
+        builder.build();
+        builder.build();
+    }
+
+    private static String metricId(int i) {
+        return "1." + String.format("%032x", i * 2654435761L);
+    }
+}
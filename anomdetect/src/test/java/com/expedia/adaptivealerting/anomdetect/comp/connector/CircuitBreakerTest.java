@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp.connector;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link CircuitBreaker} unit test.
+ */
+public final class CircuitBreakerTest {
+    private final AtomicLong now = new AtomicLong(1_000L);
+    private CircuitBreaker breakerUnderTest;
+
+    @Before
+    public void setUp() {
+        this.breakerUnderTest = new CircuitBreaker(2, 100L, now::get);
+    }
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        breakerUnderTest.recordFailure();
+        assertTrue(breakerUnderTest.tryAcquire());
+        breakerUnderTest.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breakerUnderTest.getState());
+        assertFalse(breakerUnderTest.tryAcquire());
+    }
+
+    @Test
+    public void testSuccessResetsFailureCount() {
+        breakerUnderTest.recordFailure();
+        breakerUnderTest.recordSuccess();
+        breakerUnderTest.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breakerUnderTest.getState());
+    }
+
+    @Test
+    public void testHalfOpenAllowsSingleTrial() {
+        breakerUnderTest.recordFailure();
+        breakerUnderTest.recordFailure();
+        now.addAndGet(100L);
+
+        assertTrue(breakerUnderTest.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breakerUnderTest.getState());
+        assertFalse(breakerUnderTest.tryAcquire());
+
+        breakerUnderTest.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breakerUnderTest.getState());
+        assertTrue(breakerUnderTest.tryAcquire());
+    }
+
+    @Test
+    public void testFailedTrialReopens() {
+        breakerUnderTest.recordFailure();
+        breakerUnderTest.recordFailure();
+        now.addAndGet(100L);
+        assertTrue(breakerUnderTest.tryAcquire());
+
+        breakerUnderTest.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breakerUnderTest.getState());
+        assertFalse(breakerUnderTest.tryAcquire());
+    }
+}
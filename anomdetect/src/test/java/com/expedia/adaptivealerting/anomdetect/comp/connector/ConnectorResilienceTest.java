@@ -0,0 +1,209 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.anomdetect.comp.connector;
+
+import com.expedia.adaptivealerting.anomdetect.CircuitOpenException;
+import com.expedia.adaptivealerting.anomdetect.RetryBudgetExhaustedException;
+import com.typesafe.config.ConfigFactory;
+import lombok.val;
+import org.apache.http.client.HttpResponseException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link ConnectorResilience} unit test.
+ */
+public final class ConnectorResilienceTest {
+    private static final String ENDPOINT = "/api/test";
+
+    @Test
+    public void testCall_retriesFailures() throws IOException {
+        val resilienceUnderTest = resilience("retry.max-retries = 2");
+        val attempts = new AtomicInteger();
+        val result = resilienceUnderTest.call(ENDPOINT, () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IOException("Connection reset");
+            }
+            return "ok";
+        });
+        assertEquals("ok", result);
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void testCall_doesNotRetryClientErrors() {
+        val resilienceUnderTest = resilience("retry.max-retries = 2");
+        val attempts = new AtomicInteger();
+        try {
+            resilienceUnderTest.call(ENDPOINT, () -> {
+                attempts.incrementAndGet();
+                throw new HttpResponseException(404, "Not Found");
+            });
+            fail("Expected HttpResponseException");
+        } catch (IOException e) {
+            assertTrue(e instanceof HttpResponseException);
+        }
+        assertEquals(1, attempts.get());
+    }
+
+    @Test(expected = RetryBudgetExhaustedException.class)
+    public void testCall_retryBudgetExhausted() throws IOException {
+        val resilienceUnderTest = resilience(
+                "retry.max-retries = 5\nretry.budget-ratio = 0\nretry.budget-max-tokens = 1");
+        resilienceUnderTest.call(ENDPOINT, () -> {
+            throw new IOException("Connection reset");
+        });
+    }
+
+    @Test
+    public void testCall_rejectsWhenCircuitOpen() {
+        val resilienceUnderTest = resilience("retry.max-retries = 0\ncircuit-breaker.failure-threshold = 2");
+        val attempts = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            try {
+                resilienceUnderTest.call(ENDPOINT, () -> {
+                    attempts.incrementAndGet();
+                    throw new IOException("Connection reset");
+                });
+            } catch (IOException e) {
+                // Expected
+            }
+        }
+        try {
+            resilienceUnderTest.call(ENDPOINT, () -> attempts.incrementAndGet());
+            fail("Expected CircuitOpenException");
+        } catch (CircuitOpenException e) {
+            // Expected
+        } catch (IOException e) {
+            fail("Expected CircuitOpenException");
+        }
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void testCallAsync_hedgesSlowCalls() {
+        val resilienceUnderTest = resilience("hedge.delay-ms = 10");
+        val slow = new CompletableFuture<String>();
+        val attempts = new AtomicInteger();
+        val result = resilienceUnderTest.callAsync(ENDPOINT,
+                () -> attempts.incrementAndGet() == 1 ? slow : CompletableFuture.completedFuture("hedged"));
+        assertEquals("hedged", result.join());
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void testCallAsync_rejectsWhenCircuitOpen() {
+        val resilienceUnderTest = resilience("circuit-breaker.failure-threshold = 1");
+        val failed = new CompletableFuture<String>();
+        failed.completeExceptionally(new IOException("Connection reset"));
+        resilienceUnderTest.callAsync(ENDPOINT, () -> failed);
+        try {
+            resilienceUnderTest.callAsync(ENDPOINT, () -> CompletableFuture.completedFuture("ok")).join();
+            fail("Expected CompletionException");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof CircuitOpenException);
+        }
+    }
+
+    @Test
+    public void testCall_runtimeExceptionEndsHalfOpenTrial() throws IOException {
+        val now = new AtomicLong();
+        val resilienceUnderTest = resilience(
+                "retry.max-retries = 0\ncircuit-breaker.failure-threshold = 1\ncircuit-breaker.open-duration-ms = 100",
+                now);
+        try {
+            resilienceUnderTest.call(ENDPOINT, () -> {
+                throw new IOException("Connection reset");
+            });
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // Expected
+        }
+
+        now.addAndGet(100);
+        try {
+            resilienceUnderTest.call(ENDPOINT, () -> {
+                throw new IllegalStateException("Bad response");
+            });
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+
+        now.addAndGet(100);
+        assertEquals("ok", resilienceUnderTest.call(ENDPOINT, () -> "ok"));
+    }
+
+    @Test
+    public void testCallAsync_synchronousThrowEndsHalfOpenTrial() {
+        val now = new AtomicLong();
+        val resilienceUnderTest = resilience(
+                "circuit-breaker.failure-threshold = 1\ncircuit-breaker.open-duration-ms = 100", now);
+        val failed = new CompletableFuture<String>();
+        failed.completeExceptionally(new IOException("Connection reset"));
+        resilienceUnderTest.callAsync(ENDPOINT, () -> failed);
+
+        now.addAndGet(100);
+        val result = resilienceUnderTest.<String>callAsync(ENDPOINT, () -> {
+            throw new IllegalStateException("Bad request");
+        });
+        try {
+            result.join();
+            fail("Expected CompletionException");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        now.addAndGet(100);
+        val retried = resilienceUnderTest.callAsync(ENDPOINT, () -> CompletableFuture.completedFuture("ok"));
+        assertEquals("ok", retried.join());
+    }
+
+    @Test
+    public void testDisabled_passesThrough() throws IOException {
+        val resilienceUnderTest = ConnectorResilience.disabled();
+        val attempts = new AtomicInteger();
+        try {
+            resilienceUnderTest.call(ENDPOINT, () -> {
+                attempts.incrementAndGet();
+                throw new IOException("Connection reset");
+            });
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // Expected
+        }
+        assertEquals(1, attempts.get());
+    }
+
+    private static ConnectorResilience resilience(String config) {
+        return new ConnectorResilience(ConfigFactory.parseString(config), System::currentTimeMillis, millis -> {
+        });
+    }
+
+    private static ConnectorResilience resilience(String config, AtomicLong clock) {
+        return new ConnectorResilience(ConfigFactory.parseString(config), clock::get, millis -> {
+        });
+    }
+}
@@ -24,25 +24,51 @@ import com.expedia.metrics.metrictank.MetricTankIdFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.fluent.Content;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import static com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector.API_PATH_BATCH_DETECTOR_BUNDLES;
+import static com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector.API_PATH_CHANGE_LOG_HEAD;
+import static com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector.API_PATH_DETECTOR_BUNDLE;
 import static com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector.API_PATH_DETECTOR_BY_METRIC_HASH;
 import static com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector.API_PATH_DETECTOR_UPDATES;
+import static com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector.API_PATH_BATCH_DETECTOR_UUIDS_BY_METRIC_HASH;
+import static com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector.API_PATH_BATCH_MODELS_BY_DETECTOR_UUID;
+import static com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector.API_PATH_MAPPED_METRIC_FILTER;
+import static com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector.MAPPED_METRIC_FILTER_VERSION_HEADER;
 import static com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector.API_PATH_MODEL_BY_DETECTOR_UUID;
+import static com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector.API_PATH_SLIM_DETECTORS_BY_METRIC_HASH;
+import static com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector.API_PATH_SLIM_DETECTOR_UPDATES;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 
 /**
@@ -169,6 +195,168 @@ public class ModelServiceConnectorTest {
         connectorUnderTest.findLatestModel(DETECTOR_UUID_NO_MODELS);
     }
 
+    @Test
+    public void testFindLatestModelAsync() {
+        val uri = String.format(URI_TEMPLATE + API_PATH_MODEL_BY_DETECTOR_UUID, DETECTOR_UUID);
+        when(httpClient.<ModelResources>getAsync(eq(uri), any()))
+                .thenReturn(CompletableFuture.completedFuture(modelResources));
+        val result = connectorUnderTest.findLatestModelAsync(DETECTOR_UUID).join();
+        assertNotNull(result);
+    }
+
+    @Test
+    public void testFindLatestModelAsync_retrievalException() {
+        val uri = String.format(URI_TEMPLATE + API_PATH_MODEL_BY_DETECTOR_UUID, DETECTOR_UUID_CANT_RETRIEVE);
+        val failed = new CompletableFuture<ModelResources>();
+        failed.completeExceptionally(new UncheckedIOException(new IOException()));
+        when(httpClient.<ModelResources>getAsync(eq(uri), any())).thenReturn(failed);
+        try {
+            connectorUnderTest.findLatestModelAsync(DETECTOR_UUID_CANT_RETRIEVE).join();
+            fail("Expected CompletionException");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof DetectorRetrievalException);
+        }
+    }
+
+    @Test
+    public void testFindLatestModels() {
+        val result = connectorUnderTest.findLatestModels(Arrays.asList(DETECTOR_UUID, DETECTOR_UUID_NO_MODELS));
+        assertEquals(1, result.size());
+    }
+
+    @Test
+    public void testFindLatestModels_empty() {
+        assertTrue(connectorUnderTest.findLatestModels(Collections.emptyList()).isEmpty());
+    }
+
+    @Test(expected = DetectorRetrievalException.class)
+    public void testFindLatestModels_retrievalException() {
+        connectorUnderTest.findLatestModels(Collections.singletonList(DETECTOR_UUID_CANT_RETRIEVE));
+    }
+
+    @Test
+    public void testFindDetectorUuids_batch() throws IOException {
+        val metricId = metricTankIdFactory.getId(metricDef);
+        val metricId_cantRetrieve = metricTankIdFactory.getId(metricDef_cantRetrieve);
+        val uuid = UUID.randomUUID();
+        val uuidsByMetricId = new HashMap<String, List<String>>();
+        uuidsByMetricId.put(metricId, Collections.singletonList(uuid.toString()));
+        uuidsByMetricId.put(metricId_cantRetrieve, Collections.emptyList());
+        val response = new ObjectMapper().writeValueAsBytes(uuidsByMetricId);
+        val realMapperConnector = new ModelServiceConnector(httpClient, URI_TEMPLATE, new ObjectMapper());
+        when(httpClient.post(
+                URI_TEMPLATE + API_PATH_BATCH_DETECTOR_UUIDS_BY_METRIC_HASH,
+                "[\"" + metricId + "\",\"" + metricId_cantRetrieve + "\"]"))
+                .thenReturn(new Content(response, ContentType.APPLICATION_JSON));
+
+        val result = realMapperConnector.findDetectorUuids(Arrays.asList(metricDef, metricDef_cantRetrieve, metricDef));
+        assertEquals(3, result.size());
+        assertEquals(Collections.singletonList(uuid), result.get(0));
+        assertTrue(result.get(1).isEmpty());
+        assertEquals(Collections.singletonList(uuid), result.get(2));
+    }
+
+    @Test
+    public void testFindDetectorUuids_slim() throws IOException {
+        val metricId = metricTankIdFactory.getId(metricDef);
+        val uuid = UUID.randomUUID();
+        val realMapperConnector = new ModelServiceConnector(httpClient, URI_TEMPLATE, new ObjectMapper());
+        when(httpClient.get(URI_TEMPLATE + API_PATH_SLIM_DETECTORS_BY_METRIC_HASH + metricId))
+                .thenReturn(jsonContent("[\"" + uuid + "\"]"));
+
+        assertEquals(Collections.singletonList(uuid), realMapperConnector.findDetectorUuids(metricDef));
+    }
+
+    @Test
+    public void testFindUpdatedDetectorUuids() throws IOException {
+        val uuid = UUID.randomUUID();
+        val realMapperConnector = new ModelServiceConnector(httpClient, URI_TEMPLATE, new ObjectMapper());
+        when(httpClient.get(URI_TEMPLATE + API_PATH_SLIM_DETECTOR_UPDATES + 5))
+                .thenReturn(jsonContent("[\"" + uuid + "\"]"));
+
+        assertEquals(Collections.singletonList(uuid), realMapperConnector.findUpdatedDetectorUuids(5));
+    }
+
+    @Test
+    public void testFindDetectorBundle() throws IOException {
+        val realMapperConnector = new ModelServiceConnector(httpClient, URI_TEMPLATE, new ObjectMapper());
+        when(httpClient.get(URI_TEMPLATE + API_PATH_DETECTOR_BUNDLE + DETECTOR_UUID))
+                .thenReturn(jsonContent("{\"uuid\":\"" + DETECTOR_UUID + "\",\"detectorType\":\"" + CONSTANT_DETECTOR +
+                        "\",\"enabled\":true,\"params\":{\"type\":\"RIGHT_TAILED\"}" +
+                        ",\"anomalyType\":\"RIGHT_TAILED\"}"));
+
+        val result = realMapperConnector.findDetectorBundle(DETECTOR_UUID);
+        assertEquals(DETECTOR_UUID.toString(), result.getUuid());
+        assertEquals(CONSTANT_DETECTOR, result.toModelResource().getDetectorType().getKey());
+        assertTrue(result.isEnabled());
+        assertEquals("RIGHT_TAILED", result.getAnomalyType());
+    }
+
+    @Test(expected = DetectorNotFoundException.class)
+    public void testFindDetectorBundle_notFound() throws IOException {
+        when(httpClient.get(URI_TEMPLATE + API_PATH_DETECTOR_BUNDLE + DETECTOR_UUID_NO_MODELS))
+                .thenThrow(new HttpResponseException(404, "Not Found"));
+        connectorUnderTest.findDetectorBundle(DETECTOR_UUID_NO_MODELS);
+    }
+
+    @Test
+    public void testFindDetectorBundles() throws IOException {
+        val realMapperConnector = new ModelServiceConnector(httpClient, URI_TEMPLATE, new ObjectMapper());
+        when(httpClient.post(
+                URI_TEMPLATE + API_PATH_BATCH_DETECTOR_BUNDLES,
+                "[\"" + DETECTOR_UUID + "\",\"" + DETECTOR_UUID_NO_MODELS + "\"]"))
+                .thenReturn(jsonContent("[{\"uuid\":\"" + DETECTOR_UUID + "\",\"detectorType\":\"" + EWMA_DETECTOR +
+                        "\",\"enabled\":true,\"params\":{}}]"));
+
+        val result = realMapperConnector.findDetectorBundles(Arrays.asList(DETECTOR_UUID, DETECTOR_UUID_NO_MODELS));
+        assertEquals(1, result.size());
+        assertEquals(DETECTOR_UUID.toString(), result.get(0).getUuid());
+    }
+
+    @Test
+    public void testFindChangesSince() throws IOException {
+        val realMapperConnector = new ModelServiceConnector(httpClient, URI_TEMPLATE, new ObjectMapper());
+        when(httpClient.get(URI_TEMPLATE + "/api/changes?since=10&limit=100"))
+                .thenReturn(jsonContent("{\"cursor\":11,\"hasMore\":false,\"changes\":[{\"seq\":11," +
+                        "\"detectorUuid\":\"" + DETECTOR_UUID + "\",\"metricHash\":null,\"source\":\"MODEL\"," +
+                        "\"type\":\"UPSERT\"}]}"));
+        when(httpClient.get(URI_TEMPLATE + API_PATH_CHANGE_LOG_HEAD)).thenReturn(jsonContent("{\"cursor\":42}"));
+
+        val page = realMapperConnector.findChangesSince(10L, 100);
+        assertEquals(11L, page.getCursor());
+        assertEquals(1, page.getChanges().size());
+        assertEquals(DETECTOR_UUID.toString(), page.getChanges().get(0).getDetectorUuid());
+        assertEquals(42L, realMapperConnector.findChangeLogHead());
+    }
+
+    @Test
+    public void testFindMappedMetricFilter_takesVersionFromHeader() throws IOException {
+        val response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.setHeader(MAPPED_METRIC_FILTER_VERSION_HEADER, "v2");
+        response.setHeader(HttpHeaders.ETAG, "\"v2\"");
+        response.setEntity(new ByteArrayEntity(new byte[]{1, 2, 3}));
+        when(httpClient.get(eq(URI_TEMPLATE + API_PATH_MAPPED_METRIC_FILTER),
+                eq(Collections.singletonMap(HttpHeaders.IF_NONE_MATCH, "\"v1\"")), any()))
+                .thenAnswer(invocation -> invocation.<ResponseHandler<?>>getArgument(2).handleResponse(response));
+
+        val result = connectorUnderTest.findMappedMetricFilter("v1");
+        assertEquals("v2", result.getVersion());
+        assertArrayEquals(new byte[]{1, 2, 3}, result.getContent());
+    }
+
+    @Test
+    public void testFindMappedMetricFilter_notModified() throws IOException {
+        val response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 304, "Not Modified");
+        when(httpClient.get(eq(URI_TEMPLATE + API_PATH_MAPPED_METRIC_FILTER), any(), any()))
+                .thenAnswer(invocation -> invocation.<ResponseHandler<?>>getArgument(2).handleResponse(response));
+
+        assertNull(connectorUnderTest.findMappedMetricFilter("v1"));
+    }
+
+    private static Content jsonContent(String json) {
+        return new Content(json.getBytes(StandardCharsets.UTF_8), ContentType.APPLICATION_JSON);
+    }
+
     private void initTestObjects() throws IOException {
         initTestObjects_findDetectors();
         initTestObjects_findLatestModel();
@@ -272,6 +460,14 @@ public class ModelServiceConnectorTest {
         when(httpClient.get(uri_cantRetrieve)).thenThrow(new IOException());
         when(httpClient.get(uri_cantDeserialize)).thenReturn(modelResourcesContent_cantDeserialize);
         when(httpClient.get(uri_noModels)).thenReturn(modelResourcesContent_noModels);
+
+        val uri_batch = URI_TEMPLATE + API_PATH_BATCH_MODELS_BY_DETECTOR_UUID;
+        val batchUuids = Arrays.asList(DETECTOR_UUID.toString(), DETECTOR_UUID_NO_MODELS.toString());
+        when(objectMapper.writeValueAsString(batchUuids)).thenReturn("batch");
+        val batchUuids_cantRetrieve = Collections.singletonList(DETECTOR_UUID_CANT_RETRIEVE.toString());
+        when(objectMapper.writeValueAsString(batchUuids_cantRetrieve)).thenReturn("batchCantRetrieve");
+        when(httpClient.post(uri_batch, "batch")).thenReturn(modelResourcesContent);
+        when(httpClient.post(uri_batch, "batchCantRetrieve")).thenThrow(new IOException());
     }
 
     private void initDependencies_findLatestModel_objectMapper() throws IOException {
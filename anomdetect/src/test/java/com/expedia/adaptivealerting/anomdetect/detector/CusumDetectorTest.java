@@ -33,6 +33,7 @@ import java.util.List;
 import java.util.UUID;
 
 import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
 
 public class CusumDetectorTest {
     private static final double WEAK_SIGMAS = 3.0;
@@ -141,6 +142,42 @@ public class CusumDetectorTest {
         testClassify(params, anomalyType, testRows);
     }
 
+    @Test
+    public void testMigrateStateFrom() {
+        val oldParams = migrationParams(1000.0, WEAK_SIGMAS);
+        val oldDetector = new CusumDetector();
+        oldDetector.init(detectorUuid, oldParams, AnomalyType.TWO_TAILED);
+        for (int i = 0; i < 10; i++) {
+            oldDetector.classify(new MetricData(metricDefinition, 1000.0 + i % 3, epochSecond + i));
+        }
+
+        // Threshold changes keep all state.
+        val retuned = new CusumDetector();
+        retuned.init(detectorUuid, migrationParams(1000.0, 2.0), AnomalyType.TWO_TAILED);
+        assertTrue(retuned.migrateStateFrom(oldDetector));
+        assertEquals(oldDetector.getTotalDataPoints(), retuned.getTotalDataPoints());
+        assertEquals(oldDetector.getMovingRange(), retuned.getMovingRange());
+        assertEquals(oldDetector.getSumHigh(), retuned.getSumHigh());
+
+        // A new target keeps the moving range but resets the sums.
+        val retargeted = new CusumDetector();
+        retargeted.init(detectorUuid, migrationParams(2000.0, WEAK_SIGMAS), AnomalyType.TWO_TAILED);
+        assertTrue(retargeted.migrateStateFrom(oldDetector));
+        assertEquals(oldDetector.getMovingRange(), retargeted.getMovingRange());
+        assertEquals(0.0, retargeted.getSumHigh());
+        assertEquals(0.0, retargeted.getSumLow());
+    }
+
+    private CusumParams migrationParams(double targetValue, double weakSigmas) {
+        return new CusumParams()
+                .setType(AnomalyType.TWO_TAILED)
+                .setTargetValue(targetValue)
+                .setWeakSigmas(weakSigmas)
+                .setStrongSigmas(STRONG_SIGMAS)
+                .setInitMeanEstimate(1000.0)
+                .setWarmUpPeriod(WARMUP_PERIOD);
+    }
+
     private void testClassify(CusumParams params, AnomalyType anomalyType, CusumTestRow[] testRows) {
         val detector = new CusumDetector();
         detector.init(detectorUuid, params, anomalyType);
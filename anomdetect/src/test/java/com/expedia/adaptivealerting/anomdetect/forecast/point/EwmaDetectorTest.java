@@ -15,6 +15,7 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.point;
 
+import com.expedia.adaptivealerting.anomdetect.DetectorStateException;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
 import com.expedia.adaptivealerting.core.util.MathUtil;
 import com.expedia.metrics.MetricData;
@@ -28,11 +29,15 @@ import org.junit.Test;
 
 import java.io.InputStreamReader;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 
 import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class EwmaDetectorTest {
     private static final double TOLERANCE = 0.001;
@@ -97,6 +102,88 @@ public class EwmaDetectorTest {
         }
     }
 
+    @Test
+    public void testSnapshotAndRestoreState() {
+        val params = new EwmaParams().setAlpha(0.05);
+        val detector = new EwmaDetector();
+        detector.init(UUID.randomUUID(), params, AnomalyType.TWO_TAILED);
+        for (int i = 0; i < 10; i++) {
+            detector.classify(new MetricData(metricDefinition, 100.0 + i, epochSecond + i));
+        }
+
+        val restored = new EwmaDetector();
+        restored.init(detector.getUuid(), params, AnomalyType.TWO_TAILED);
+        restored.restoreState(detector.snapshotState());
+
+        assertEquals(detector.getMean(), restored.getMean());
+        assertEquals(detector.getVariance(), restored.getVariance());
+    }
+
+    @Test
+    public void testMigrateStateFrom() {
+        val detector = new EwmaDetector();
+        detector.init(UUID.randomUUID(), new EwmaParams().setAlpha(0.05), AnomalyType.TWO_TAILED);
+        for (int i = 0; i < 10; i++) {
+            detector.classify(new MetricData(metricDefinition, 100.0 + i, epochSecond + i));
+        }
+
+        val newParams = new EwmaParams().setAlpha(0.05).setWeakSigmas(2.0).setStrongSigmas(3.0);
+        val replacement = new EwmaDetector();
+        replacement.init(detector.getUuid(), newParams, AnomalyType.RIGHT_TAILED);
+
+        assertTrue(replacement.migrateStateFrom(detector));
+        assertEquals(detector.getMean(), replacement.getMean());
+        assertEquals(detector.getVariance(), replacement.getVariance());
+        assertEquals(AnomalyType.RIGHT_TAILED, replacement.getAnomalyType());
+    }
+
+    @Test
+    public void testMigrateStateFrom_differentType() {
+        val detector = new EwmaDetector();
+        detector.init(UUID.randomUUID(), new EwmaParams(), AnomalyType.TWO_TAILED);
+        val other = new PewmaDetector();
+        other.init(detector.getUuid(), new PewmaParams(), AnomalyType.TWO_TAILED);
+        assertFalse(detector.migrateStateFrom(other));
+    }
+
+    @Test(expected = DetectorStateException.class)
+    public void testRestoreState_unsupportedVersion() {
+        val detector = new EwmaDetector();
+        detector.init(UUID.randomUUID(), new EwmaParams(), AnomalyType.TWO_TAILED);
+        val snapshot = detector.snapshotState();
+        // Format byte, then the class name as modified UTF-8 (2-byte length), then the int state version.
+        snapshot[3 + EwmaDetector.class.getName().length() + 3] = 99;
+        detector.restoreState(snapshot);
+    }
+
+    @Test(expected = DetectorStateException.class)
+    public void testRestoreState_differentType() {
+        val other = new PewmaDetector();
+        other.init(UUID.randomUUID(), new PewmaParams(), AnomalyType.TWO_TAILED);
+
+        val detector = new EwmaDetector();
+        detector.init(other.getUuid(), new EwmaParams(), AnomalyType.TWO_TAILED);
+        detector.restoreState(other.snapshotState());
+    }
+
+    @Test
+    public void testRestoreState_trailingBytes() {
+        val detector = new EwmaDetector();
+        detector.init(UUID.randomUUID(), new EwmaParams().setAlpha(0.05), AnomalyType.TWO_TAILED);
+        val snapshot = detector.snapshotState();
+        val padded = Arrays.copyOf(snapshot, snapshot.length + 1);
+
+        val restored = new EwmaDetector();
+        restored.init(detector.getUuid(), new EwmaParams().setAlpha(0.05), AnomalyType.TWO_TAILED);
+        try {
+            restored.restoreState(padded);
+            fail("Expected DetectorStateException");
+        } catch (DetectorStateException e) {
+            // Expected
+        }
+        restored.restoreState(snapshot);
+    }
+
     private static void readData_calInflow() {
         val is = ClassLoader.getSystemResourceAsStream("tests/cal-inflow-tests-ewma.csv");
         data = new CsvToBeanBuilder<EwmaTestRow>(new InputStreamReader(is))
@@ -15,6 +15,7 @@
  */
 package com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters;
 
+import com.expedia.adaptivealerting.anomdetect.DetectorStateException;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyType;
 import com.expedia.metrics.MetricData;
@@ -36,6 +37,8 @@ import static com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters
 import static com.expedia.adaptivealerting.anomdetect.forecast.point.holtwinters.HoltWintersAustouristsTestHelper.buildAustouristsParams;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests Holt-Winters functionality by comparing with data generated from Hyndman's R "fpp2" library - see GenerateAustouristsTests.R
@@ -84,7 +87,63 @@ public class HoltWintersDetectorTest {
         doAustouristsTest(AUSTOURISTS_MULT_DATA, SeasonalityType.MULTIPLICATIVE, true);
     }
 
+    @Test
+    public void testAdditiveWithTrainingRestoredFromSnapshot() {
+        // Row 5 is in the middle of the initial training (frequency 4, so 8 training points).
+        doAustouristsTest(AUSTOURISTS_ADD_DATA, SeasonalityType.ADDITIVE, true, 5);
+    }
+
+    @Test
+    public void testMultiplicativeRestoredFromSnapshot() {
+        doAustouristsTest(AUSTOURISTS_MULT_DATA, SeasonalityType.MULTIPLICATIVE, false, 20);
+    }
+
+    @Test(expected = DetectorStateException.class)
+    public void testRestoreState_frequencyMismatch() {
+        val detector = new HoltWintersDetector();
+        detector.init(detectorUUID, new HoltWintersParams().setFrequency(4), AnomalyType.TWO_TAILED);
+        val snapshot = detector.snapshotState();
+
+        val other = new HoltWintersDetector();
+        other.init(detectorUUID, new HoltWintersParams().setFrequency(24), AnomalyType.TWO_TAILED);
+        other.restoreState(snapshot);
+    }
+
+    @Test(expected = DetectorStateException.class)
+    public void testRestoreState_seasonalityTypeMismatch() {
+        val detector = new HoltWintersDetector();
+        detector.init(detectorUUID, new HoltWintersParams().setFrequency(4), AnomalyType.TWO_TAILED);
+        val snapshot = detector.snapshotState();
+
+        val params = new HoltWintersParams().setFrequency(4).setSeasonalityType(SeasonalityType.ADDITIVE);
+        val other = new HoltWintersDetector();
+        other.init(detectorUUID, params, AnomalyType.TWO_TAILED);
+        other.restoreState(snapshot);
+    }
+
+    @Test
+    public void testMigrateStateFrom() {
+        val detector = new HoltWintersDetector();
+        detector.init(detectorUUID, new HoltWintersParams().setFrequency(4).setAlpha(0.2), AnomalyType.TWO_TAILED);
+
+        val retuned = new HoltWintersDetector();
+        retuned.init(detectorUUID, new HoltWintersParams().setFrequency(4).setAlpha(0.5), AnomalyType.TWO_TAILED);
+        assertTrue(retuned.migrateStateFrom(detector));
+
+        val refrequenced = new HoltWintersDetector();
+        refrequenced.init(detectorUUID, new HoltWintersParams().setFrequency(24), AnomalyType.TWO_TAILED);
+        assertFalse(refrequenced.migrateStateFrom(detector));
+    }
+
     private void doAustouristsTest(List<HoltWintersAustouristsTestRow> testData, SeasonalityType seasonalityType, boolean withTraining) {
+        doAustouristsTest(testData, seasonalityType, withTraining, -1);
+    }
+
+    /**
+     * @param restoreAtRow if non-negative, the detector is replaced by a fresh one restored from a snapshot after this
+     *                     many rows, which must give the same results as the original
+     */
+    private void doAustouristsTest(List<HoltWintersAustouristsTestRow> testData, SeasonalityType seasonalityType, boolean withTraining, int restoreAtRow) {
         final ListIterator<HoltWintersAustouristsTestRow> testRows = testData.listIterator();
         HoltWintersAustouristsTestRow firstRow = testRows.next();
         double initLevelEstimate = firstRow.getL();
@@ -94,10 +153,17 @@ public class HoltWintersDetectorTest {
                 buildAustouristsParams(seasonalityType).setInitTrainingMethod(HoltWintersTrainingMethod.SIMPLE) :
                 buildAustouristsParams(seasonalityType, initLevelEstimate, initBaseEstimate, initSeasonalEstimates);
 
-        val subject = new HoltWintersDetector();
+        HoltWintersDetector subject = new HoltWintersDetector();
         subject.init(detectorUUID, params, AnomalyType.TWO_TAILED);
 
+        int rowCount = 0;
         while (testRows.hasNext()) {
+            if (rowCount++ == restoreAtRow) {
+                val restored = new HoltWintersDetector();
+                restored.init(detectorUUID, params, AnomalyType.TWO_TAILED);
+                restored.restoreState(subject.snapshotState());
+                subject = restored;
+            }
             final HoltWintersAustouristsTestRow testRow = testRows.next();
             boolean trainingComplete = subject.isInitialTrainingComplete();
             final double forecastBeforeObservation = subject.getComponents().getForecast();
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.core.data;
+
+import com.expedia.metrics.MetricData;
+import com.expedia.metrics.MetricDefinition;
+import com.expedia.metrics.metrictank.MetricTankIdFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * Size-bounded interner for {@link MetricDefinition}s, keyed by the definition's canonical key and tag set (i.e.
+ * {@link MetricDefinition#equals(Object)}, which doesn't depend on tag order). Each distinct definition maps to a
+ * single shared instance along with its MetricTank id, so the id (sorting and hashing the tags) is computed once per
+ * series rather than once per data point, and deserialized records stop carrying their own copies of the tag maps.
+ * </p>
+ * <p>
+ * Definitions whose id can't be computed (e.g. empty tag values) aren't interned; {@link #intern(MetricDefinition)}
+ * throws the id factory's exception as before.
+ * </p>
+ */
+public final class MetricDefinitionInterner {
+    public static final long DEFAULT_MAX_SIZE = 500_000L;
+
+    private static final MetricDefinitionInterner SHARED = new MetricDefinitionInterner(DEFAULT_MAX_SIZE);
+
+    private final MetricTankIdFactory metricTankIdFactory = new MetricTankIdFactory();
+    private final Cache<MetricDefinition, InternedMetricDefinition> cache;
+
+    public MetricDefinitionInterner(long maxSize) {
+        isTrue(maxSize > 0, "maxSize must be strictly positive");
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    /**
+     * Returns the process-wide interner, so the mapper, manager and model service connector in the same JVM share
+     * instances and ids.
+     *
+     * @return Shared interner.
+     */
+    public static MetricDefinitionInterner shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the canonical instance for the given definition, interning it if it hasn't been seen.
+     *
+     * @param metricDefinition Metric definition.
+     * @return Canonical definition and its metric id.
+     * @throws IllegalArgumentException if the metric id can't be computed for the definition.
+     */
+    public InternedMetricDefinition intern(MetricDefinition metricDefinition) {
+        notNull(metricDefinition, "metricDefinition can't be null");
+        return cache.get(metricDefinition, def -> new InternedMetricDefinition(def, metricTankIdFactory.getId(def)));
+    }
+
+    /**
+     * Returns the MetricTank id for the given definition, computing it only the first time the definition is seen.
+     *
+     * @param metricDefinition Metric definition.
+     * @return Metric id.
+     * @throws IllegalArgumentException if the metric id can't be computed for the definition.
+     */
+    public String getId(MetricDefinition metricDefinition) {
+        return intern(metricDefinition).getMetricId();
+    }
+
+    /**
+     * Returns the given metric data with its definition replaced by the canonical instance. Returns the metric data as
+     * is if it already uses the canonical instance, or if its definition can't be interned.
+     *
+     * @param metricData Metric data.
+     * @return Metric data sharing the canonical definition.
+     */
+    public MetricData intern(MetricData metricData) {
+        notNull(metricData, "metricData can't be null");
+        final MetricDefinition canonical;
+        try {
+            canonical = intern(metricData.getMetricDefinition()).getMetricDefinition();
+        } catch (RuntimeException e) {
+            // Leave malformed definitions for downstream processing to deal with as before.
+            return metricData;
+        }
+        if (canonical == metricData.getMetricDefinition()) {
+            return metricData;
+        }
+        return new MetricData(canonical, metricData.getValue(), metricData.getTimestamp());
+    }
+
+    public long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+}
@@ -18,7 +18,6 @@ package com.expedia.adaptivealerting.core.data;
 import com.expedia.metrics.MetricData;
 import com.expedia.metrics.MetricDefinition;
 import com.expedia.metrics.jackson.MetricsJavaModule;
-import com.expedia.metrics.metrictank.MetricTankIdFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.opencsv.CSVReaderBuilder;
 import lombok.extern.slf4j.Slf4j;
@@ -41,7 +40,7 @@ public final class MetricFrameLoader {
 
         val metricDef = objectMapper.readValue(metricDefFile, MetricDefinition.class);
         log.info("metricDef={}", metricDef);
-        log.info("metricId={}", new MetricTankIdFactory().getId(metricDef));
+        log.info("metricId={}", MetricDefinitionInterner.shared().getId(metricDef));
         return loadCsv(metricDef, new FileInputStream(metricDataFile), hasHeader);
     }
 
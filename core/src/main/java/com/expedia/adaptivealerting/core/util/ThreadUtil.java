@@ -17,6 +17,9 @@ package com.expedia.adaptivealerting.core.util;
 
 import lombok.SneakyThrows;
 
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Thread utilities.
  */
@@ -30,4 +33,20 @@ public final class ThreadUtil {
     public static void sleep(long millis) {
         Thread.sleep(millis);
     }
+
+    /**
+     * Returns a thread factory that creates daemon threads named {@code <namePrefix>-<n>}.
+     *
+     * @param namePrefix Thread name prefix.
+     * @return Daemon thread factory.
+     */
+    public static ThreadFactory daemonThreadFactory(String namePrefix) {
+        AssertUtil.notNull(namePrefix, "namePrefix can't be null");
+        final AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            final Thread thread = new Thread(runnable, namePrefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
 }
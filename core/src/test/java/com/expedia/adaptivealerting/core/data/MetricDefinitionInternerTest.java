@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.core.data;
+
+import com.expedia.metrics.MetricData;
+import com.expedia.metrics.MetricDefinition;
+import com.expedia.metrics.TagCollection;
+import com.expedia.metrics.metrictank.MetricTankIdFactory;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * {@link MetricDefinitionInterner} unit test.
+ */
+public final class MetricDefinitionInternerTest {
+    private MetricDefinitionInterner internerUnderTest;
+
+    @Before
+    public void setUp() {
+        this.internerUnderTest = new MetricDefinitionInterner(100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_invalidMaxSize() {
+        new MetricDefinitionInterner(0);
+    }
+
+    @Test
+    public void testIntern_sharesInstanceAcrossEqualDefinitions() {
+        val first = metricDefinition("metric");
+        val second = metricDefinition("metric");
+        assertNotSame(first, second);
+
+        val interned = internerUnderTest.intern(first);
+        assertSame(first, interned.getMetricDefinition());
+        assertSame(interned, internerUnderTest.intern(second));
+        assertEquals(1L, internerUnderTest.size());
+    }
+
+    @Test
+    public void testGetId_matchesIdFactory() {
+        val metricDef = metricDefinition("metric");
+        assertEquals(new MetricTankIdFactory().getId(metricDef), internerUnderTest.getId(metricDef));
+    }
+
+    @Test
+    public void testIntern_metricData() {
+        val canonical = internerUnderTest.intern(metricDefinition("metric")).getMetricDefinition();
+        val metricData = new MetricData(metricDefinition("metric"), 3.0, 1000L);
+
+        val interned = internerUnderTest.intern(metricData);
+        assertSame(canonical, interned.getMetricDefinition());
+        assertEquals(3.0, interned.getValue(), 0.0);
+        assertEquals(1000L, interned.getTimestamp());
+        assertSame(interned, internerUnderTest.intern(interned));
+    }
+
+    private static MetricDefinition metricDefinition(String key) {
+        val tags = new HashMap<String, String>();
+        tags.put("org_id", "1");
+        tags.put("mtype", "count");
+        tags.put("unit", "");
+        tags.put("interval", "5");
+        return new MetricDefinition(key, new TagCollection(tags), TagCollection.EMPTY);
+    }
+}
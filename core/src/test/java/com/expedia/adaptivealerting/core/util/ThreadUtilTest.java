@@ -17,6 +17,7 @@ package com.expedia.adaptivealerting.core.util;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class ThreadUtilTest {
@@ -28,4 +29,12 @@ public class ThreadUtilTest {
         long duration = System.currentTimeMillis() - start;
         assertTrue(duration >= 450);
     }
+
+    @Test
+    public void testDaemonThreadFactory() {
+        Thread thread = ThreadUtil.daemonThreadFactory("some-pool").newThread(() -> {
+        });
+        assertTrue(thread.isDaemon());
+        assertEquals("some-pool-1", thread.getName());
+    }
 }
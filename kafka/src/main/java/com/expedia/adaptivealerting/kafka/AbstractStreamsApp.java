@@ -17,11 +17,18 @@ package com.expedia.adaptivealerting.kafka;
 
 import com.codahale.metrics.JmxReporter;
 import com.codahale.metrics.MetricRegistry;
+import com.expedia.adaptivealerting.kafka.metrics.PrometheusExporter;
+import com.expedia.adaptivealerting.kafka.metrics.SharedMetrics;
+import com.expedia.adaptivealerting.kafka.metrics.StreamsAppMetrics;
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.apache.kafka.streams.KafkaStreams;
 import org.apache.kafka.streams.Topology;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 
 /**
@@ -30,27 +37,63 @@ import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
  * https://kafka.apache.org/10/documentation/streams/developer-guide/write-streams
  * <p>
  * for more information on writing streams apps.
+ * <p>
+ * Metrics go to the {@link SharedMetrics} registry, which is reported over JMX and, when
+ * {@code metrics.prometheus-port} is set, served for Prometheus scraping.
  */
+@Slf4j
 public abstract class AbstractStreamsApp {
 
     @Getter
     private final StreamsAppConfig config;
 
+    @Getter
+    private final MetricRegistry metricRegistry;
+
     @Getter
     private final JmxReporter jmxReporter;
 
+    @Getter
+    private final StreamsAppMetrics appMetrics;
+
     public AbstractStreamsApp(StreamsAppConfig config) {
         notNull(config, "config can't be null");
         this.config = config;
-        this.jmxReporter = JmxReporter.forRegistry(new MetricRegistry()).build();
+        this.metricRegistry = SharedMetrics.registry();
+        this.jmxReporter = JmxReporter.forRegistry(metricRegistry).build();
+        this.appMetrics = new StreamsAppMetrics(metricRegistry, getClass());
     }
 
     public void start() {
         val streams = new KafkaStreams(buildTopology(), config.getStreamsConfig());
+        configureStreams(streams);
         Runtime.getRuntime().addShutdownHook(new Thread(streams::close));
         jmxReporter.start();
+        startPrometheusExporter();
         streams.start();
     }
 
     protected abstract Topology buildTopology();
+
+    /**
+     * Hook for registering listeners on the streams instance before it starts. Does nothing by default.
+     *
+     * @param streams Streams instance.
+     */
+    protected void configureStreams(KafkaStreams streams) {
+    }
+
+    private void startPrometheusExporter() {
+        val port = config.getPrometheusPort();
+        if (port <= 0) {
+            return;
+        }
+        try {
+            val exporter = new PrometheusExporter(metricRegistry, port);
+            Runtime.getRuntime().addShutdownHook(new Thread(exporter::close));
+            exporter.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't start Prometheus exporter on port " + port, e);
+        }
+    }
 }
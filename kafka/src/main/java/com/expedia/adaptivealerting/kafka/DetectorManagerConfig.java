@@ -0,0 +1,164 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka;
+
+import com.typesafe.config.Config;
+import lombok.Getter;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * {@link KafkaAnomalyDetectorManager} topology configuration. All keys are optional; missing keys fall back to the
+ * plain synchronous, stateless topology.
+ */
+public class DetectorManagerConfig {
+
+    /**
+     * Whether to persist learned detector state in a changelogged state store.
+     */
+    private static final String CK_DETECTOR_STATE_ENABLED = "detector-state.enabled";
+
+    /**
+     * How often to write changed detector state back to the state store.
+     */
+    private static final String CK_SNAPSHOT_INTERVAL_MS = "detector-state.snapshot-interval-ms";
+
+    /**
+     * Whether to load detectors asynchronously, parking records until their detector arrives.
+     */
+    private static final String CK_ASYNC_LOADING_ENABLED = "detector-loading.async";
+
+    /**
+     * Maximum number of records parked per detector while it's loading.
+     */
+    private static final String CK_MAX_PARKED_RECORDS = "detector-loading.max-parked-records";
+
+    /**
+     * How often to check for completed loads and replay parked records.
+     */
+    private static final String CK_DRAIN_INTERVAL_MS = "detector-loading.drain-interval-ms";
+
+    /**
+     * Whether to bulk-load the detectors for the assigned partitions after each rebalance.
+     */
+    private static final String CK_PREFETCH_ENABLED = "detector-prefetch.enabled";
+
+    /**
+     * Whether to evict cached detectors for input partitions revoked from this instance.
+     */
+    private static final String CK_EVICT_REVOKED_ENABLED = "detector-cache.evict-revoked";
+
+    /**
+     * Whether to consume pushed detector updates from a compacted topic instead of polling the model service.
+     */
+    private static final String CK_DETECTOR_UPDATES_ENABLED = "detector-updates.enabled";
+
+    /**
+     * Compacted detector updates topic.
+     */
+    private static final String CK_DETECTOR_UPDATES_TOPIC = "detector-updates.topic";
+
+    /**
+     * Whether to classify records in micro-batches using the Processor API topology.
+     */
+    private static final String CK_BATCHING_ENABLED = "detector-batching.enabled";
+
+    /**
+     * Maximum number of records per micro-batch.
+     */
+    private static final String CK_BATCH_MAX_SIZE = "detector-batching.max-size";
+
+    /**
+     * How often to classify a partially filled micro-batch.
+     */
+    private static final String CK_BATCH_FLUSH_INTERVAL_MS = "detector-batching.flush-interval-ms";
+
+    private static final String DEFAULT_DETECTOR_UPDATES_TOPIC = "detector-updates";
+    private static final long DEFAULT_SNAPSHOT_INTERVAL_MS = 30_000L;
+    private static final int DEFAULT_MAX_PARKED_RECORDS = 1_000;
+    private static final long DEFAULT_DRAIN_INTERVAL_MS = 100L;
+    private static final int DEFAULT_BATCH_MAX_SIZE = 500;
+    private static final long DEFAULT_BATCH_FLUSH_INTERVAL_MS = 100L;
+
+    @Getter
+    private final boolean detectorStateEnabled;
+
+    @Getter
+    private final long snapshotIntervalMs;
+
+    @Getter
+    private final boolean asyncLoadingEnabled;
+
+    @Getter
+    private final int maxParkedRecords;
+
+    @Getter
+    private final long drainIntervalMs;
+
+    @Getter
+    private final boolean prefetchEnabled;
+
+    @Getter
+    private final boolean evictRevokedEnabled;
+
+    @Getter
+    private final boolean detectorUpdatesEnabled;
+
+    @Getter
+    private final String detectorUpdatesTopic;
+
+    @Getter
+    private final boolean batchingEnabled;
+
+    @Getter
+    private final int batchMaxSize;
+
+    @Getter
+    private final long batchFlushIntervalMs;
+
+    public DetectorManagerConfig(Config typesafeConfig) {
+        notNull(typesafeConfig, "typesafeConfig can't be null");
+        this.detectorStateEnabled = getBoolean(typesafeConfig, CK_DETECTOR_STATE_ENABLED, false);
+        this.snapshotIntervalMs = getLong(typesafeConfig, CK_SNAPSHOT_INTERVAL_MS, DEFAULT_SNAPSHOT_INTERVAL_MS);
+        this.asyncLoadingEnabled = getBoolean(typesafeConfig, CK_ASYNC_LOADING_ENABLED, false);
+        this.maxParkedRecords = (int) getLong(typesafeConfig, CK_MAX_PARKED_RECORDS, DEFAULT_MAX_PARKED_RECORDS);
+        this.drainIntervalMs = getLong(typesafeConfig, CK_DRAIN_INTERVAL_MS, DEFAULT_DRAIN_INTERVAL_MS);
+        this.prefetchEnabled = getBoolean(typesafeConfig, CK_PREFETCH_ENABLED, false);
+        this.evictRevokedEnabled = getBoolean(typesafeConfig, CK_EVICT_REVOKED_ENABLED, false);
+        this.detectorUpdatesEnabled = getBoolean(typesafeConfig, CK_DETECTOR_UPDATES_ENABLED, false);
+        this.detectorUpdatesTopic = typesafeConfig.hasPath(CK_DETECTOR_UPDATES_TOPIC)
+                ? typesafeConfig.getString(CK_DETECTOR_UPDATES_TOPIC)
+                : DEFAULT_DETECTOR_UPDATES_TOPIC;
+        this.batchingEnabled = getBoolean(typesafeConfig, CK_BATCHING_ENABLED, false);
+        this.batchMaxSize = (int) getLong(typesafeConfig, CK_BATCH_MAX_SIZE, DEFAULT_BATCH_MAX_SIZE);
+        this.batchFlushIntervalMs = getLong(typesafeConfig, CK_BATCH_FLUSH_INTERVAL_MS, DEFAULT_BATCH_FLUSH_INTERVAL_MS);
+
+        isTrue(snapshotIntervalMs > 0, CK_SNAPSHOT_INTERVAL_MS + " must be > 0");
+        isTrue(maxParkedRecords > 0, CK_MAX_PARKED_RECORDS + " must be > 0");
+        isTrue(drainIntervalMs > 0, CK_DRAIN_INTERVAL_MS + " must be > 0");
+        isTrue(batchMaxSize > 0, CK_BATCH_MAX_SIZE + " must be > 0");
+        isTrue(batchFlushIntervalMs > 0, CK_BATCH_FLUSH_INTERVAL_MS + " must be > 0");
+    }
+
+    private static boolean getBoolean(Config config, String path, boolean defaultValue) {
+        return config.hasPath(path) ? config.getBoolean(path) : defaultValue;
+    }
+
+    private static long getLong(Config config, String path, long defaultValue) {
+        return config.hasPath(path) ? config.getLong(path) : defaultValue;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorManager;
+import com.expedia.adaptivealerting.core.util.ThreadUtil;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.common.utils.Utils;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.StreamsConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * Streams state listener that keeps the detector cache in line with the input partitions assigned to this instance
+ * whenever a rebalance completes.
+ * </p>
+ * <p>
+ * With {@code detector-cache.evict-revoked} set, detectors tracked for partitions this instance no longer owns are
+ * evicted (see {@link DetectorManager#retainPartitions(Set)}). With {@code detector-prefetch.enabled} set, the detectors
+ * for newly assigned partitions are prefetched, so the first record for each detector doesn't pay for a model service
+ * round trip. A rebalance that assigns no new partitions skips the prefetch. The admin client used to look up the
+ * input topic's partition count is created on the first prefetch and kept until the streams app stops.
+ * </p>
+ * <p>
+ * The mapper keys mapped metrics by detector UUID, so a detector's partition is derived the same way the default
+ * producer partitioner places the record. The prefetch itself runs on the {@link DetectorManager} loader threads;
+ * records arriving meanwhile wait on the in-flight prefetch rather than issuing their own loads.
+ * </p>
+ */
+@Slf4j
+public class DetectorRebalanceListener implements KafkaStreams.StateListener {
+    private final ExecutorService executor =
+            Executors.newSingleThreadExecutor(ThreadUtil.daemonThreadFactory("detector-prefetch"));
+
+    private final KafkaStreams streams;
+    private final DetectorManager manager;
+    private final DetectorManagerConfig managerConfig;
+    private final Supplier<AdminClient> adminClientFactory;
+    private final String inputTopic;
+
+    // Only touched on the executor thread.
+    private AdminClient adminClient;
+    private Set<Integer> prefetchedPartitions = Collections.emptySet();
+    private int prefetchedNumPartitions;
+
+    public DetectorRebalanceListener(
+            KafkaStreams streams,
+            DetectorManager manager,
+            DetectorManagerConfig managerConfig,
+            StreamsConfig streamsConfig,
+            String inputTopic) {
+
+        this(streams, manager, managerConfig, adminClientFactory(streamsConfig), inputTopic);
+    }
+
+    DetectorRebalanceListener(
+            KafkaStreams streams,
+            DetectorManager manager,
+            DetectorManagerConfig managerConfig,
+            Supplier<AdminClient> adminClientFactory,
+            String inputTopic) {
+
+        notNull(streams, "streams can't be null");
+        notNull(manager, "manager can't be null");
+        notNull(managerConfig, "managerConfig can't be null");
+        notNull(adminClientFactory, "adminClientFactory can't be null");
+        notNull(inputTopic, "inputTopic can't be null");
+        this.streams = streams;
+        this.manager = manager;
+        this.managerConfig = managerConfig;
+        this.adminClientFactory = adminClientFactory;
+        this.inputTopic = inputTopic;
+    }
+
+    @Override
+    public void onChange(KafkaStreams.State newState, KafkaStreams.State oldState) {
+        if (newState == KafkaStreams.State.RUNNING && oldState == KafkaStreams.State.REBALANCING) {
+            // Don't block the stream thread that reports the state change.
+            executor.execute(this::onRebalanced);
+        } else if (newState == KafkaStreams.State.NOT_RUNNING) {
+            executor.execute(this::closeAdminClient);
+            executor.shutdown();
+        }
+    }
+
+    private void onRebalanced() {
+        val ownedPartitions = findOwnedPartitions();
+        if (managerConfig.isEvictRevokedEnabled()) {
+            try {
+                manager.retainPartitions(ownedPartitions);
+            } catch (Exception e) {
+                log.error("Error evicting detectors for revoked partitions", e);
+            }
+        }
+        if (managerConfig.isPrefetchEnabled()) {
+            prefetch(ownedPartitions);
+        }
+    }
+
+    private void prefetch(Set<Integer> ownedPartitions) {
+        val newPartitions = new HashSet<Integer>(ownedPartitions);
+        newPartitions.removeAll(prefetchedPartitions);
+        if (newPartitions.isEmpty()) {
+            log.debug("No newly assigned partitions, skipping detector prefetch: ownedPartitions={}", ownedPartitions);
+            this.prefetchedPartitions = ownedPartitions;
+            return;
+        }
+        try {
+            val numPartitions = findNumPartitions();
+            if (numPartitions != prefetchedNumPartitions) {
+                // Detectors moved between partitions, so everything we own may be new to us.
+                newPartitions.addAll(ownedPartitions);
+            }
+            log.info("Prefetching detectors: inputTopic={}, newPartitions={}", inputTopic, newPartitions);
+            manager.prefetchDetectors(uuid -> newPartitions.contains(partitionFor(uuid, numPartitions)));
+            this.prefetchedPartitions = ownedPartitions;
+            this.prefetchedNumPartitions = numPartitions;
+        } catch (Exception e) {
+            log.error("Error starting detector prefetch", e);
+        }
+    }
+
+    private Set<Integer> findOwnedPartitions() {
+        val partitions = new HashSet<Integer>();
+        for (val thread : streams.localThreadsMetadata()) {
+            for (val task : thread.activeTasks()) {
+                for (val topicPartition : task.topicPartitions()) {
+                    if (inputTopic.equals(topicPartition.topic())) {
+                        partitions.add(topicPartition.partition());
+                    }
+                }
+            }
+        }
+        return partitions;
+    }
+
+    private int findNumPartitions() throws Exception {
+        if (adminClient == null) {
+            this.adminClient = adminClientFactory.get();
+        }
+        return adminClient
+                .describeTopics(Collections.singleton(inputTopic))
+                .all()
+                .get()
+                .get(inputTopic)
+                .partitions()
+                .size();
+    }
+
+    private void closeAdminClient() {
+        if (adminClient != null) {
+            adminClient.close();
+            this.adminClient = null;
+        }
+    }
+
+    private static Supplier<AdminClient> adminClientFactory(StreamsConfig streamsConfig) {
+        notNull(streamsConfig, "streamsConfig can't be null");
+        val props = new Properties();
+        props.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG,
+                String.join(",", streamsConfig.getList(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG)));
+        return () -> AdminClient.create(props);
+    }
+
+    /**
+     * Returns the partition the default producer partitioner assigns to records keyed by the given detector UUID.
+     *
+     * @param detectorUuid  Detector UUID.
+     * @param numPartitions Number of input topic partitions.
+     * @return Partition number.
+     */
+    static int partitionFor(UUID detectorUuid, int numPartitions) {
+        val keyBytes = detectorUuid.toString().getBytes(StandardCharsets.UTF_8);
+        return Utils.toPositive(Utils.murmur2(keyBytes)) % numPartitions;
+    }
+}
@@ -15,16 +15,28 @@
  */
 package com.expedia.adaptivealerting.kafka;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.expedia.adaptivealerting.anomdetect.DetectorManager;
-import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
 import com.expedia.adaptivealerting.core.data.MappedMetricData;
-import com.expedia.adaptivealerting.core.util.ErrorUtil;
+import com.expedia.adaptivealerting.kafka.metrics.SharedMetrics;
+import com.expedia.adaptivealerting.kafka.processor.DetectorManagerBatchProcessor;
+import com.expedia.adaptivealerting.kafka.processor.DetectorManagerTransformer;
+import com.expedia.adaptivealerting.kafka.processor.DetectorUpdateProcessor;
+import com.expedia.adaptivealerting.kafka.serde.DetectorUpdateJsonSerde;
 import com.expedia.adaptivealerting.kafka.util.DetectorUtil;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KafkaStreams;
 import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.Consumed;
 import org.apache.kafka.streams.Topology;
 import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.state.Stores;
+
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 
@@ -37,18 +49,48 @@ import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
  * volume, downstream consumers user those to reliably detect recovery from an anomalous situation. Anyway this wrapper
  * isn't responsible for domain logic; its responsibility is to adapt the {@link DetectorManager} to Kafka.
  * </p>
+ * <p>
+ * When {@code detector-state.enabled} is set, learned detector state is kept in a RocksDB-backed, changelogged state
+ * store keyed by detector UUID. State is restored lazily when a detector is first loaded and written back periodically
+ * (by default at the streams commit interval), so restarts and rebalances don't send detectors back to warmup.
+ * </p>
+ * <p>
+ * When {@code detector-loading.async} is set, detector cache misses don't block the stream thread. See
+ * {@link DetectorManagerTransformer}.
+ * </p>
+ * <p>
+ * When {@code detector-prefetch.enabled} is set, the detectors for the assigned partitions are bulk-loaded after each
+ * rebalance. When {@code detector-cache.evict-revoked} is set, detectors for partitions revoked from this instance are
+ * evicted after each rebalance. See {@link DetectorRebalanceListener}.
+ * </p>
+ * <p>
+ * When {@code detector-updates.enabled} is set, detector changes pushed by the Model Service to a compacted topic are
+ * consumed into a global store instead of polling for updated detectors, so changes, disables and deletes take effect
+ * within seconds. See {@link DetectorUpdateProcessor}.
+ * </p>
+ * <p>
+ * When {@code detector-batching.enabled} is set, the topology is built with the Processor API and records are
+ * classified in micro-batches instead of one at a time. See {@link DetectorManagerBatchProcessor}.
+ * </p>
  */
 @Slf4j
 public final class KafkaAnomalyDetectorManager extends AbstractStreamsApp {
     private static final String CK_AD_MANAGER = "ad-manager";
 
+    static final String DETECTOR_STATE_STORE = "detector-state";
+    static final String DETECTOR_UPDATES_STORE = "detector-updates";
+
+    private static final String SOURCE_NAME = "mapped-metrics-source";
+    private static final String BATCH_PROCESSOR_NAME = "detector-manager-batch-processor";
+    private static final String SINK_NAME = "anomalies-sink";
+
     private final DetectorManager manager;
 
     public static void main(String[] args) {
         val config = new TypesafeConfigLoader(CK_AD_MANAGER).loadMergedConfig();
         val saConfig = new StreamsAppConfig(config);
         val detectorSource = DetectorUtil.buildDetectorSource(config);
-        val manager = new DetectorManager(detectorSource,config);
+        val manager = new DetectorManager(detectorSource, config, SharedMetrics.registry());
         new KafkaAnomalyDetectorManager(saConfig, manager).start();
     }
 
@@ -63,37 +105,101 @@ public final class KafkaAnomalyDetectorManager extends AbstractStreamsApp {
         val config = getConfig();
         val inputTopic = config.getInputTopic();
         val outputTopic = config.getOutputTopic();
+        val managerConfig = new DetectorManagerConfig(config.getTypesafeConfig());
         log.info("Initializing: inputTopic={}, outputTopic={}", inputTopic, outputTopic);
 
         val builder = new StreamsBuilder();
+        final String stateStoreName = managerConfig.isDetectorStateEnabled() ? DETECTOR_STATE_STORE : null;
+        if (stateStoreName != null) {
+            builder.addStateStore(Stores.keyValueStoreBuilder(
+                    Stores.persistentKeyValueStore(stateStoreName),
+                    Serdes.String(),
+                    Serdes.ByteArray()));
+        }
+        if (managerConfig.isDetectorUpdatesEnabled()) {
+            val updateSerde = new DetectorUpdateJsonSerde();
+            builder.addGlobalStore(
+                    Stores.keyValueStoreBuilder(
+                            Stores.inMemoryKeyValueStore(DETECTOR_UPDATES_STORE),
+                            Serdes.String(),
+                            updateSerde).withLoggingDisabled(),
+                    managerConfig.getDetectorUpdatesTopic(),
+                    Consumed.with(Serdes.String(), updateSerde),
+                    () -> new DetectorUpdateProcessor(manager, DETECTOR_UPDATES_STORE));
+        }
+        final String[] stateStoreNames = stateStoreName == null ? new String[0] : new String[]{stateStoreName};
+
+        if (managerConfig.isBatchingEnabled()) {
+            val topology = builder.build()
+                    .addSource(SOURCE_NAME, inputTopic)
+                    .addProcessor(BATCH_PROCESSOR_NAME,
+                            () -> new DetectorManagerBatchProcessor(
+                                    manager, managerConfig, stateStoreName, getAppMetrics()),
+                            SOURCE_NAME)
+                    .addSink(SINK_NAME, outputTopic, BATCH_PROCESSOR_NAME);
+            if (stateStoreName != null) {
+                topology.connectProcessorAndStateStores(BATCH_PROCESSOR_NAME, stateStoreNames);
+            }
+            return topology;
+        }
+
         final KStream<String, MappedMetricData> stream = builder.stream(inputTopic);
+        val metrics = getAppMetrics();
         stream
+                .peek(metrics::recordIn)
+                .filter(metrics::recordNonNull)
+                .transform(() -> new DetectorManagerTransformer(manager, managerConfig, stateStoreName), stateStoreNames)
                 .filter((key, mmd) -> mmd != null)
-                .mapValues(this::toAnomalyMmd)
-                .filter((key, mmd) -> mmd != null)
+                .peek(metrics::recordOut)
                 .to(outputTopic);
         return builder.build();
     }
 
-    private MappedMetricData toAnomalyMmd(MappedMetricData mmd) {
-        assert mmd != null;
+    @Override
+    protected void configureStreams(KafkaStreams streams) {
+        val config = getConfig();
+        SharedMetrics.gauge(cacheMetricName("hit-ratio"),
+                (Gauge<Double>) () -> manager.getDetectorCacheStats().hitRate());
+        SharedMetrics.gauge(cacheMetricName("evictions"),
+                (Gauge<Long>) () -> manager.getDetectorCacheStats().getEvictionCount());
 
-        AnomalyResult anomalyResult = null;
-        try {
-            anomalyResult = manager.classify(mmd);
-        } catch (Exception e) {
-            log.error("Classification error: mappedMetricData={}, error={}",
-                    mmd,
-                    ErrorUtil.singleLineExceptionTrace(e));
-        }
+        val quarantine = manager.getQuarantine();
+        SharedMetrics.gauge(quarantineMetricName("count"),
+                (Gauge<Integer>) () -> quarantine.getQuarantinedDetectors().size());
+        SharedMetrics.gauge(quarantineMetricName("detectors"),
+                (Gauge<String>) () -> quarantine.getQuarantinedDetectors()
+                        .stream()
+                        .map(UUID::toString)
+                        .sorted()
+                        .collect(Collectors.joining(",")));
 
-        if (anomalyResult == null) {
-            log.info("anomalyResult=null");
-            return null;
+        val managerConfig = new DetectorManagerConfig(config.getTypesafeConfig());
+        if (managerConfig.isPrefetchEnabled() || managerConfig.isEvictRevokedEnabled()) {
+            streams.setStateListener(new DetectorRebalanceListener(
+                    streams, manager, managerConfig, config.getStreamsConfig(), config.getInputTopic()));
         }
+        if (!managerConfig.isPrefetchEnabled()) {
+            return;
+        }
+
+        val progress = manager.getPrefetchProgress();
+        SharedMetrics.gauge(prefetchMetricName("requested"), (Gauge<Long>) progress::getRequested);
+        SharedMetrics.gauge(prefetchMetricName("loaded"), (Gauge<Long>) progress::getLoaded);
+        SharedMetrics.gauge(prefetchMetricName("missing"), (Gauge<Long>) progress::getMissing);
+        SharedMetrics.gauge(prefetchMetricName("failed"), (Gauge<Long>) progress::getFailed);
+        SharedMetrics.gauge(prefetchMetricName("duration-ms"), (Gauge<Long>) progress::getDurationMillis);
+        SharedMetrics.gauge(prefetchMetricName("running"), (Gauge<Boolean>) progress::isRunning);
+    }
+
+    private static String cacheMetricName(String name) {
+        return MetricRegistry.name("detector-cache", name);
+    }
+
+    private static String quarantineMetricName(String name) {
+        return MetricRegistry.name("detector-quarantine", name);
+    }
 
-        val newMmd = new MappedMetricData(mmd, anomalyResult);
-        log.info("produced={}", newMmd);
-        return newMmd;
+    private static String prefetchMetricName(String name) {
+        return MetricRegistry.name("detector-prefetch", name);
     }
 }
@@ -15,15 +15,26 @@
  */
 package com.expedia.adaptivealerting.kafka;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.expedia.adaptivealerting.anomdetect.DetectorMapper;
+import com.expedia.adaptivealerting.anomdetect.comp.DetectorMappingCache;
+import com.expedia.adaptivealerting.anomdetect.comp.DetectorSource;
+import com.expedia.adaptivealerting.anomdetect.comp.MappingIndexDetectorSource;
+import com.expedia.adaptivealerting.anomdetect.comp.MappingRuleDetectorSource;
 import com.expedia.adaptivealerting.core.data.MappedMetricData;
+import com.expedia.adaptivealerting.kafka.filter.MappedMetricFilter;
+import com.expedia.adaptivealerting.kafka.metrics.SharedMetrics;
+import com.expedia.adaptivealerting.kafka.processor.DetectorMapperBatchTransformer;
 import com.expedia.adaptivealerting.kafka.serde.MappedMetricDataJsonSerde;
 import com.expedia.adaptivealerting.kafka.util.DetectorUtil;
 import com.expedia.metrics.MetricData;
+import com.typesafe.config.Config;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KafkaStreams;
 import org.apache.kafka.streams.KeyValue;
 import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.Topology;
@@ -32,6 +43,7 @@ import org.apache.kafka.streams.kstream.Produced;
 
 import java.util.stream.Collectors;
 
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
 import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 
 /**
@@ -41,8 +53,25 @@ import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
 @Slf4j
 public final class KafkaAnomalyDetectorMapper extends AbstractStreamsApp {
     private static final String CK_AD_MAPPER = "ad-mapper";
+    private static final String CK_ENABLED = "enabled";
+    private static final String CK_REFRESH_INTERVAL_MS = "refresh-interval-ms";
+    private static final String CK_MAPPING_CACHE = "detector-mapping-cache";
+    private static final String CK_MAPPING_INDEX = "detector-mapping-index";
+    private static final String CK_MAPPING_RULES = "detector-mapping-rules";
+    private static final String CK_METRIC_FILTER = "mapped-metric-filter";
+    private static final String CK_DETECTOR_BATCHING = "detector-batching";
+    private static final String CK_MAX_SIZE = "max-size";
+    private static final String CK_FLUSH_INTERVAL_MS = "flush-interval-ms";
+    private static final long DEFAULT_MAPPING_INDEX_REFRESH_INTERVAL_MS = 30_000L;
+    private static final long DEFAULT_MAPPING_RULES_REFRESH_INTERVAL_MS = 30_000L;
+    private static final long DEFAULT_METRIC_FILTER_REFRESH_INTERVAL_MS = 60_000L;
+    private static final int DEFAULT_BATCH_MAX_SIZE = 500;
+    private static final long DEFAULT_BATCH_FLUSH_INTERVAL_MS = 100L;
 
     private final DetectorMapper mapper;
+    private final MappedMetricFilter metricFilter;
+    private final int batchMaxSize;
+    private final long batchFlushIntervalMs;
 
     // TODO Make these configurable. [WLW]
     private Serde<String> outputKeySerde = new Serdes.StringSerde();
@@ -51,9 +80,109 @@ public final class KafkaAnomalyDetectorMapper extends AbstractStreamsApp {
     public static void main(String[] args) {
         val config = new TypesafeConfigLoader(CK_AD_MAPPER).loadMergedConfig();
         val saConfig = new StreamsAppConfig(config);
-        val detectorSource = DetectorUtil.buildDetectorSource(config);
-        val mapper = new DetectorMapper(detectorSource);
-        new KafkaAnomalyDetectorMapper(saConfig, mapper).start();
+        val mappingIndex = buildMappingIndex(config);
+        DetectorMapper mapper;
+        MappingRuleDetectorSource mappingRules;
+        if (mappingIndex != null) {
+            // The index already answers lookups from memory, so a mapping cache in front of it would only cost heap.
+            mappingRules = buildMappingRules(mappingIndex, config);
+            mapper = new DetectorMapper(mappingRules != null ? mappingRules : mappingIndex);
+        } else {
+            val defaultSource = DetectorUtil.buildDetectorSource(config);
+            mappingRules = buildMappingRules(defaultSource, config);
+            val detectorSource = mappingRules != null ? mappingRules : defaultSource;
+            mapper = new DetectorMapper(detectorSource, buildMappingCache(detectorSource, config));
+        }
+        val metricFilter = buildMetricFilter(config, mappingRules);
+        val batchingConfig = enabledConfig(config, CK_DETECTOR_BATCHING);
+        if (batchingConfig == null) {
+            new KafkaAnomalyDetectorMapper(saConfig, mapper, metricFilter).start();
+        } else {
+            new KafkaAnomalyDetectorMapper(
+                    saConfig,
+                    mapper,
+                    metricFilter,
+                    batchingConfig.hasPath(CK_MAX_SIZE) ? batchingConfig.getInt(CK_MAX_SIZE) : DEFAULT_BATCH_MAX_SIZE,
+                    batchingConfig.hasPath(CK_FLUSH_INTERVAL_MS)
+                            ? batchingConfig.getLong(CK_FLUSH_INTERVAL_MS)
+                            : DEFAULT_BATCH_FLUSH_INTERVAL_MS).start();
+        }
+    }
+
+    private static MappingIndexDetectorSource buildMappingIndex(Config config) {
+        val indexConfig = enabledConfig(config, CK_MAPPING_INDEX);
+        if (indexConfig == null) {
+            return null;
+        }
+        val refreshIntervalMs = indexConfig.hasPath(CK_REFRESH_INTERVAL_MS)
+                ? indexConfig.getLong(CK_REFRESH_INTERVAL_MS)
+                : DEFAULT_MAPPING_INDEX_REFRESH_INTERVAL_MS;
+        val connector = DetectorUtil.buildModelServiceConnector(config);
+        val mappingIndex = new MappingIndexDetectorSource(connector, DetectorUtil.buildDetectorSource(config));
+        mappingIndex.start(refreshIntervalMs);
+        Runtime.getRuntime().addShutdownHook(new Thread(mappingIndex::close));
+
+        SharedMetrics.gauge(MetricRegistry.name(CK_MAPPING_INDEX, "mappings"),
+                (Gauge<Integer>) mappingIndex::getMappingCount);
+        SharedMetrics.gauge(MetricRegistry.name(CK_MAPPING_INDEX, "sync-age-ms"),
+                (Gauge<Long>) () -> System.currentTimeMillis() - mappingIndex.getLastSyncMillis());
+        return mappingIndex;
+    }
+
+    private static MappingRuleDetectorSource buildMappingRules(DetectorSource delegate, Config config) {
+        val rulesConfig = enabledConfig(config, CK_MAPPING_RULES);
+        if (rulesConfig == null) {
+            return null;
+        }
+        val refreshIntervalMs = rulesConfig.hasPath(CK_REFRESH_INTERVAL_MS)
+                ? rulesConfig.getLong(CK_REFRESH_INTERVAL_MS)
+                : DEFAULT_MAPPING_RULES_REFRESH_INTERVAL_MS;
+        val connector = DetectorUtil.buildModelServiceConnector(config);
+        val mappingRules = new MappingRuleDetectorSource(connector, delegate);
+        mappingRules.start(refreshIntervalMs);
+        Runtime.getRuntime().addShutdownHook(new Thread(mappingRules::close));
+
+        SharedMetrics.gauge(MetricRegistry.name(CK_MAPPING_RULES, "rules"),
+                (Gauge<Integer>) mappingRules::getRuleCount);
+        SharedMetrics.gauge(MetricRegistry.name(CK_MAPPING_RULES, "sync-age-ms"),
+                (Gauge<Long>) () -> System.currentTimeMillis() - mappingRules.getLastSyncMillis());
+        return mappingRules;
+    }
+
+    private static DetectorMappingCache buildMappingCache(DetectorSource detectorSource, Config config) {
+        val cacheConfig = enabledConfig(config, CK_MAPPING_CACHE);
+        return cacheConfig == null ? null : DetectorMappingCache.fromConfig(detectorSource, cacheConfig);
+    }
+
+    private static MappedMetricFilter buildMetricFilter(Config config, MappingRuleDetectorSource mappingRules) {
+        val filterConfig = enabledConfig(config, CK_METRIC_FILTER);
+        if (filterConfig == null) {
+            return null;
+        }
+        val refreshIntervalMs = filterConfig.hasPath(CK_REFRESH_INTERVAL_MS)
+                ? filterConfig.getLong(CK_REFRESH_INTERVAL_MS)
+                : DEFAULT_METRIC_FILTER_REFRESH_INTERVAL_MS;
+        val connector = DetectorUtil.buildModelServiceConnector(config);
+        val metricFilter = mappingRules == null
+                ? new MappedMetricFilter(connector, SharedMetrics.registry())
+                : new MappedMetricFilter(connector, SharedMetrics.registry(), mappingRules::matchesAnyRule);
+        metricFilter.start(refreshIntervalMs);
+        Runtime.getRuntime().addShutdownHook(new Thread(metricFilter::close));
+        return metricFilter;
+    }
+
+    /**
+     * Returns the config block at the given path, or null if it's missing or has {@code enabled = false}.
+     */
+    private static Config enabledConfig(Config config, String path) {
+        if (!config.hasPath(path)) {
+            return null;
+        }
+        val blockConfig = config.getConfig(path);
+        if (blockConfig.hasPath(CK_ENABLED) && !blockConfig.getBoolean(CK_ENABLED)) {
+            return null;
+        }
+        return blockConfig;
     }
 
     /**
@@ -63,9 +192,46 @@ public final class KafkaAnomalyDetectorMapper extends AbstractStreamsApp {
      * @param mapper Anomaly detector mapper.
      */
     public KafkaAnomalyDetectorMapper(StreamsAppConfig config, DetectorMapper mapper) {
+        this(config, mapper, null);
+    }
+
+    /**
+     * Creates a new Kafka Streams adapter for the {@link DetectorMapper} that drops metrics without detector mappings
+     * before looking them up.
+     *
+     * @param config       Streams app configuration.
+     * @param mapper       Anomaly detector mapper.
+     * @param metricFilter Mapped metric filter, or null to look up every metric.
+     */
+    public KafkaAnomalyDetectorMapper(StreamsAppConfig config, DetectorMapper mapper, MappedMetricFilter metricFilter) {
+        this(config, mapper, metricFilter, 0, 0L);
+    }
+
+    /**
+     * Creates a new Kafka Streams adapter for the {@link DetectorMapper} that maps metrics in micro-batches, so the
+     * detector lookups for each batch take a single model service request.
+     *
+     * @param config               Streams app configuration.
+     * @param mapper               Anomaly detector mapper.
+     * @param metricFilter         Mapped metric filter, or null to look up every metric.
+     * @param batchMaxSize         Number of buffered metrics that triggers a flush, or 0 to map metrics one at a time.
+     * @param batchFlushIntervalMs Wall-clock interval between flushes. Ignored when batching is off.
+     */
+    public KafkaAnomalyDetectorMapper(
+            StreamsAppConfig config,
+            DetectorMapper mapper,
+            MappedMetricFilter metricFilter,
+            int batchMaxSize,
+            long batchFlushIntervalMs) {
+
         super(config);
         notNull(mapper, "mapper can't be null");
+        isTrue(batchMaxSize >= 0, "batchMaxSize must be >= 0");
+        isTrue(batchMaxSize == 0 || batchFlushIntervalMs > 0, "batchFlushIntervalMs must be > 0");
         this.mapper = mapper;
+        this.metricFilter = metricFilter;
+        this.batchMaxSize = batchMaxSize;
+        this.batchFlushIntervalMs = batchFlushIntervalMs;
     }
 
     @Override
@@ -75,15 +241,40 @@ public final class KafkaAnomalyDetectorMapper extends AbstractStreamsApp {
         val outputTopic = config.getOutputTopic();
         log.info("Initializing: inputTopic={}, outputTopic={}", inputTopic, outputTopic);
 
+        val metrics = getAppMetrics();
         val builder = new StreamsBuilder();
-        final KStream<String, MetricData> stream = builder.stream(inputTopic);
-        stream
-                .filter((key, md) -> md != null)
-                .flatMap(this::metricsByDetector)
+        final KStream<String, MetricData> stream = builder.<String, MetricData>stream(inputTopic)
+                .peek(metrics::recordIn)
+                .filter(metrics::recordNonNull)
+                .filter(this::mightBeMapped);
+        final KStream<String, MappedMetricData> mapped = batchMaxSize > 0
+                ? stream.transform(() -> new DetectorMapperBatchTransformer(mapper, batchMaxSize, batchFlushIntervalMs))
+                : stream.flatMap(this::metricsByDetector);
+        mapped
+                .peek(metrics::recordOut)
                 .to(outputTopic, Produced.with(outputKeySerde, outputValueSerde));
         return builder.build();
     }
 
+    @Override
+    protected void configureStreams(KafkaStreams streams) {
+        if (metricFilter != null) {
+            SharedMetrics.gauge(MetricRegistry.name(CK_METRIC_FILTER, "drop-ratio"),
+                    (Gauge<Double>) metricFilter::dropRatio);
+        }
+        val mappingCache = mapper.getMappingCache();
+        if (mappingCache != null) {
+            SharedMetrics.gauge(MetricRegistry.name(CK_MAPPING_CACHE, "hit-ratio"),
+                    (Gauge<Double>) mappingCache::hitRate);
+            SharedMetrics.gauge(MetricRegistry.name(CK_MAPPING_CACHE, "size"),
+                    (Gauge<Long>) mappingCache::estimatedSize);
+        }
+    }
+
+    private boolean mightBeMapped(String key, MetricData metricData) {
+        return metricFilter == null || metricFilter.mightBeMapped(metricData);
+    }
+
     private Iterable<? extends KeyValue<String, MappedMetricData>> metricsByDetector(
             String key,
             MetricData metricData) {
@@ -66,8 +66,12 @@ public class KafkaAnomalyToAlertMapper extends AbstractStreamsApp {
         log.info("Initializing: inboundTopic={}, outboundTopic={}", inboundTopic, outboundTopic);
 
         val builder = new StreamsBuilder();
+        val metrics = getAppMetrics();
         final KStream<String, MappedMetricData> stream = builder.stream(inboundTopic);
-        stream.filter((key, mappedMetricData) -> AnomalyLevel.STRONG.equals(mappedMetricData.getAnomalyResult().getAnomalyLevel()) ||
+        stream
+                .peek(metrics::recordIn)
+                .filter(metrics::recordNonNull)
+                .filter((key, mappedMetricData) -> AnomalyLevel.STRONG.equals(mappedMetricData.getAnomalyResult().getAnomalyLevel()) ||
                 AnomalyLevel.WEAK.equals(mappedMetricData.getAnomalyResult().getAnomalyLevel()))
                 .map((key, mappedMetricData) -> {
                     val metricData = mappedMetricData.getMetricData();
@@ -92,6 +96,7 @@ public class KafkaAnomalyToAlertMapper extends AbstractStreamsApp {
 
                     return KeyValue.pair(mappedMetricData.getDetectorUuid().toString(), alert);
                 })
+                .peek(metrics::recordOut)
                 .to(outboundTopic, Produced.with(new Serdes.StringSerde(), new AlertJsonSerde()));
 
         return builder.build();
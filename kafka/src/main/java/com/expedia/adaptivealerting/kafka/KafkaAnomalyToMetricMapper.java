@@ -15,14 +15,18 @@
  */
 package com.expedia.adaptivealerting.kafka;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.expedia.adaptivealerting.anomdetect.AnomalyToMetricMapper;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
 import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
 import com.expedia.adaptivealerting.core.data.MappedMetricData;
+import com.expedia.adaptivealerting.core.data.MetricDefinitionInterner;
+import com.expedia.adaptivealerting.kafka.metrics.SharedMetrics;
+import com.expedia.adaptivealerting.kafka.metrics.StreamsAppMetrics;
 import com.expedia.adaptivealerting.kafka.util.ConfigUtil;
 import com.expedia.metrics.MetricData;
 import com.expedia.metrics.MetricDefinition;
-import com.expedia.metrics.metrictank.MetricTankIdFactory;
 import com.typesafe.config.Config;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -36,6 +40,7 @@ import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.errors.WakeupException;
 
 import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Maps anomalies to metrics. Note that the input topic actually contains {@link MappedMetricData} rather than
@@ -52,7 +57,10 @@ public class KafkaAnomalyToMetricMapper implements Runnable {
     private final AnomalyToMetricMapper mapper = new AnomalyToMetricMapper();
 
     // TODO Replace this with the non-MetricTank version. [WLW]
-    private final MetricTankIdFactory metricTankIdFactory = new MetricTankIdFactory();
+    private final MetricDefinitionInterner metricDefinitionInterner = MetricDefinitionInterner.shared();
+
+    private final StreamsAppMetrics metrics = new StreamsAppMetrics(SharedMetrics.registry(), getClass());
+    private final Timer delayTimer = SharedMetrics.registry().timer(MetricRegistry.name(getClass(), "delay"));
 
     @Getter
     private final Consumer<String, MappedMetricData> anomalyConsumer;
@@ -129,11 +137,14 @@ public class KafkaAnomalyToMetricMapper implements Runnable {
         val numConsumed = anomalyRecords.count();
 
         log.trace("Read {} anomaly records from topic={}", numConsumed, anomalyTopic);
-//        recordsConsumed.increment(numConsumed);
+        metrics.getRecordsIn().mark(numConsumed);
 
         int numProduced = 0;
         for (val anomalyRecord : anomalyRecords) {
             val anomalyMMD = anomalyRecord.value();
+            if (!metrics.recordNonNull(anomalyRecord.key(), anomalyMMD)) {
+                continue;
+            }
             val anomalyResult = anomalyMMD.getAnomalyResult();
             val anomalyLevel = anomalyResult.getAnomalyLevel();
             if (anomalyLevel == AnomalyLevel.WEAK || anomalyLevel == AnomalyLevel.STRONG) {
@@ -146,17 +157,20 @@ public class KafkaAnomalyToMetricMapper implements Runnable {
         }
 
         log.trace("Wrote {} metricData records to topic={}", numProduced, metricTopic);
-//        recordsProduced.increment(numProduced);
+        metrics.getRecordsOut().mark(numProduced);
 
         if (anomalyRecords.isEmpty()) {
             return;
         }
 
         val anomaly0 = anomalyRecords.iterator().next().value();
+        if (anomaly0 == null) {
+            return;
+        }
         val timestamp = anomaly0.getMetricData().getTimestamp() * 1000L;
         val timeDelay = System.currentTimeMillis() - timestamp;
         log.trace("timeDelay={}", timeDelay);
-//        delayTimer.record(Duration.ofMillis(timeDelay));
+        delayTimer.update(timeDelay, TimeUnit.MILLISECONDS);
     }
 
     private ProducerRecord<String, MetricData> toMetricDataRecord(
@@ -184,11 +198,11 @@ public class KafkaAnomalyToMetricMapper implements Runnable {
     }
 
     private String getMetricId(MetricDefinition metricDef) {
-        // Calling metricTankIdFactory.getId() fails when the metric definition contains tags having values that are
+        // Computing the metric id fails when the metric definition contains tags having values that are
         // null or empty, or contain semicolons. We do see this in production. Hence this check. Would be better though
         // if we can limit or eliminate such metric definitions since we'd like to avoid unnecessary exceptions.
         try {
-            return metricTankIdFactory.getId(metricDef);
+            return metricDefinitionInterner.getId(metricDef);
         } catch (IllegalArgumentException e) {
             log.warn("IllegalArgumentException: message={}, newMetricDef={}", e.getMessage(), metricDef);
             return null;
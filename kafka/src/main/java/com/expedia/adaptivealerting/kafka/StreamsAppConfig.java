@@ -49,6 +49,11 @@ public class StreamsAppConfig {
      */
     private static final String CK_HEALTH_STATUS_PATH = "health.status.path";
 
+    /**
+     * Prometheus scrape port configuration key. Optional; the exporter is disabled when missing or not positive.
+     */
+    private static final String CK_PROMETHEUS_PORT = "metrics.prometheus-port";
+
     @Getter
     private final Config typesafeConfig;
 
@@ -64,6 +69,9 @@ public class StreamsAppConfig {
     @Getter
     private final String healthStatusPath;
 
+    @Getter
+    private final int prometheusPort;
+
     public StreamsAppConfig(Config typesafeConfig) {
         notNull(typesafeConfig, "typesafeConfig can't be null");
         this.typesafeConfig = typesafeConfig;
@@ -71,6 +79,9 @@ public class StreamsAppConfig {
         this.inputTopic = typesafeConfig.getString(CK_INPUT_TOPIC);
         this.outputTopic = typesafeConfig.getString(CK_OUTPUT_TOPIC);
         this.healthStatusPath = typesafeConfig.getString(CK_HEALTH_STATUS_PATH);
+        this.prometheusPort = typesafeConfig.hasPath(CK_PROMETHEUS_PORT)
+                ? typesafeConfig.getInt(CK_PROMETHEUS_PORT)
+                : 0;
     }
 
     private StreamsConfig toStreamsConfig(Config config) {
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.filter;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.expedia.adaptivealerting.anomdetect.DetectorException;
+import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector;
+import com.expedia.adaptivealerting.core.data.MetricDefinitionInterner;
+import com.expedia.adaptivealerting.core.util.ThreadUtil;
+import com.expedia.metrics.MetricData;
+import com.expedia.metrics.MetricDefinition;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * Prefilter that drops metrics without detector mappings before the mapper looks them up. Periodically downloads the
+ * Model Service's Bloom filter of mapped metric hashes, and only lets through metrics whose MetricTank id might be in
+ * it. Bloom filters have no false negatives, so every mapped metric passes; a small fraction of unmapped metrics
+ * passes too and is dropped by the regular lookup.
+ * <p>
+ * Until the first filter is downloaded, and whenever a metric id can't be computed, the filter lets metrics through.
+ * A failed refresh keeps the previous filter. Newly mapped metrics are dropped until the next refresh picks them up.
+ * <p>
+ * Metrics mapped by pattern-based mapping rules have no mapping rows, so they're not in the Bloom filter. An optional
+ * rule predicate lets them through.
+ */
+@Slf4j
+public class MappedMetricFilter implements Closeable {
+    public static final String METRIC_PREFIX = "mapped-metric-filter";
+
+    private final ModelServiceConnector connector;
+    private final MetricDefinitionInterner metricDefinitionInterner = MetricDefinitionInterner.shared();
+    private final Predicate<MetricDefinition> mappedByRule;
+    private final Meter passedMeter;
+    private final Meter droppedMeter;
+
+    @Getter
+    private volatile String version;
+
+    private volatile BloomFilter<CharSequence> bloomFilter;
+    private ScheduledExecutorService scheduler;
+
+    public MappedMetricFilter(ModelServiceConnector connector, MetricRegistry metricRegistry) {
+        this(connector, metricRegistry, null);
+    }
+
+    /**
+     * Creates a filter that also lets through the metrics matching the given rule predicate.
+     *
+     * @param connector      Model Service connector.
+     * @param metricRegistry Metric registry.
+     * @param mappedByRule   Indicates whether a mapping rule maps the metric, or null if there are no rules.
+     */
+    public MappedMetricFilter(
+            ModelServiceConnector connector,
+            MetricRegistry metricRegistry,
+            Predicate<MetricDefinition> mappedByRule) {
+
+        notNull(connector, "connector can't be null");
+        notNull(metricRegistry, "metricRegistry can't be null");
+        this.connector = connector;
+        this.mappedByRule = mappedByRule;
+        this.passedMeter = metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, "passed"));
+        this.droppedMeter = metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, "dropped"));
+    }
+
+    /**
+     * Indicates whether the given metric might have detector mappings.
+     *
+     * @param metricData Metric data.
+     * @return false if the metric definitely has no detector mappings.
+     */
+    public boolean mightBeMapped(MetricData metricData) {
+        notNull(metricData, "metricData can't be null");
+        val filter = bloomFilter;
+        if (filter == null) {
+            passedMeter.mark();
+            return true;
+        }
+
+        String metricId;
+        try {
+            metricId = metricDefinitionInterner.getId(metricData.getMetricDefinition());
+        } catch (RuntimeException e) {
+            // Let the mapper deal with malformed metrics the way it always has.
+            passedMeter.mark();
+            return true;
+        }
+
+        if (filter.mightContain(metricId)
+                || (mappedByRule != null && mappedByRule.test(metricData.getMetricDefinition()))) {
+            passedMeter.mark();
+            return true;
+        }
+        droppedMeter.mark();
+        return false;
+    }
+
+    /**
+     * Returns the fraction of metrics dropped so far.
+     *
+     * @return Drop ratio, or 0.0 if no metrics have been seen.
+     */
+    public double dropRatio() {
+        val dropped = droppedMeter.getCount();
+        val total = dropped + passedMeter.getCount();
+        return total == 0 ? 0.0 : (double) dropped / total;
+    }
+
+    /**
+     * Downloads the filter if its version has changed since the last download. The download is conditional on the
+     * current version, so an unchanged filter costs a single empty response.
+     *
+     * @throws DetectorException if the filter can't be retrieved or deserialized
+     */
+    public void refresh() {
+        val download = connector.findMappedMetricFilter(version);
+        if (download == null || download.getVersion().equals(version)) {
+            log.debug("Mapped metric filter unchanged: version={}", version);
+            return;
+        }
+
+        val content = download.getContent();
+        try {
+            this.bloomFilter = BloomFilter.readFrom(
+                    new ByteArrayInputStream(content),
+                    Funnels.stringFunnel(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new DetectorException("Can't deserialize mapped metric filter: version=" + download.getVersion(), e);
+        }
+        this.version = download.getVersion();
+        log.info("Loaded mapped metric filter: version={}, bytes={}", version, content.length);
+    }
+
+    /**
+     * Loads the filter and starts refreshing it periodically in the background.
+     *
+     * @param refreshIntervalMs Refresh interval in milliseconds.
+     */
+    public synchronized void start(long refreshIntervalMs) {
+        isTrue(refreshIntervalMs > 0, "refreshIntervalMs must be > 0");
+        isTrue(scheduler == null, "Mapped metric filter already started");
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                ThreadUtil.daemonThreadFactory("mapped-metric-filter-refresh"));
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0L, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.warn("Error refreshing mapped metric filter, keeping version={}", version, e);
+        }
+    }
+}
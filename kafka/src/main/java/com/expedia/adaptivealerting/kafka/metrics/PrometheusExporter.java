@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.metrics;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.expedia.adaptivealerting.core.util.ThreadUtil;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * Serves a metric registry at {@code /metrics} in the Prometheus text exposition format, alongside the JMX reporter.
+ * Uses the JDK's built-in HTTP server, so there's no extra dependency.
+ * </p>
+ * <p>
+ * Gauges and counters are exported as gauges, meters as counters, and histograms and timers as summaries with the
+ * registry's own quantiles. Timers are exported in seconds. Names are sanitized to the Prometheus charset.
+ * </p>
+ */
+@Slf4j
+public final class PrometheusExporter implements Closeable {
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final Pattern INVALID_NAME_CHARS = Pattern.compile("[^a-zA-Z0-9_:]");
+    private static final double[] QUANTILES = {0.5, 0.75, 0.95, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final MetricRegistry registry;
+    private final HttpServer server;
+
+    public PrometheusExporter(MetricRegistry registry, int port) throws IOException {
+        notNull(registry, "registry can't be null");
+        isTrue(port > 0, "port must be strictly positive");
+        this.registry = registry;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/metrics", this::handleScrape);
+        server.setExecutor(Executors.newSingleThreadExecutor(ThreadUtil.daemonThreadFactory("prometheus-exporter")));
+    }
+
+    public void start() {
+        server.start();
+        log.info("Started Prometheus exporter: address={}", server.getAddress());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handleScrape(HttpExchange exchange) throws IOException {
+        try {
+            val body = new StringWriter();
+            write(registry, body);
+            val bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (Exception e) {
+            log.error("Error serving metrics scrape", e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Writes the registry in the Prometheus text exposition format.
+     *
+     * @param registry Metric registry.
+     * @param writer   Destination.
+     * @throws IOException if the writer fails
+     */
+    static void write(MetricRegistry registry, Writer writer) throws IOException {
+        for (val entry : registry.getGauges().entrySet()) {
+            writeGauge(writer, sanitize(entry.getKey()), entry.getValue());
+        }
+        for (val entry : registry.getCounters().entrySet()) {
+            writeSample(writer, sanitize(entry.getKey()), "gauge", entry.getValue().getCount());
+        }
+        for (val entry : registry.getMeters().entrySet()) {
+            writeSample(writer, sanitize(entry.getKey()) + "_total", "counter", entry.getValue().getCount());
+        }
+        for (val entry : registry.getHistograms().entrySet()) {
+            val histogram = entry.getValue();
+            writeSummary(writer, sanitize(entry.getKey()), histogram.getSnapshot(), histogram.getCount(), 1.0);
+        }
+        for (val entry : registry.getTimers().entrySet()) {
+            val timer = entry.getValue();
+            val name = sanitize(entry.getKey()) + "_seconds";
+            writeSummary(writer, name, timer.getSnapshot(), timer.getCount(), NANOS_PER_SECOND);
+        }
+        writer.flush();
+    }
+
+    static String sanitize(String name) {
+        val sanitized = INVALID_NAME_CHARS.matcher(name).replaceAll("_");
+        return Character.isDigit(sanitized.charAt(0)) ? "_" + sanitized : sanitized;
+    }
+
+    private static void writeGauge(Writer writer, String name, Gauge<?> gauge) throws IOException {
+        final Object value;
+        try {
+            value = gauge.getValue();
+        } catch (RuntimeException e) {
+            log.warn("Error reading gauge: name={}", name, e);
+            return;
+        }
+        if (value instanceof Number) {
+            writeSample(writer, name, "gauge", ((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            writeSample(writer, name, "gauge", (Boolean) value ? 1 : 0);
+        }
+        // Non-numeric gauges (e.g. lists of UUIDs) are JMX-only.
+    }
+
+    private static void writeSample(Writer writer, String name, String type, double value) throws IOException {
+        writer.write("# TYPE " + name + " " + type + "\n");
+        writer.write(name + " " + format(value) + "\n");
+    }
+
+    private static void writeSummary(Writer writer, String name, Snapshot snapshot, long count, double divisor)
+            throws IOException {
+
+        writer.write("# TYPE " + name + " summary\n");
+        for (val quantile : QUANTILES) {
+            val value = snapshot.getValue(quantile) / divisor;
+            writer.write(name + "{quantile=\"" + quantile + "\"} " + format(value) + "\n");
+        }
+        writer.write(name + "_count " + count + "\n");
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        return Double.toString(value);
+    }
+}
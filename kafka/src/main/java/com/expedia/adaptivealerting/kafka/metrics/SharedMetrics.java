@@ -0,0 +1,63 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.metrics;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
+/**
+ * Access to the process-wide metric registry. The streams apps, the detector manager and the serdes all register into
+ * it, so the JMX reporter and the Prometheus exporter see every metric. Serdes are instantiated by Kafka via
+ * reflection, which is why this is a static lookup rather than something passed around.
+ */
+public final class SharedMetrics {
+    public static final String REGISTRY_NAME = "adaptive-alerting";
+
+    private SharedMetrics() {
+    }
+
+    public static MetricRegistry registry() {
+        return SharedMetricRegistries.getOrCreate(REGISTRY_NAME);
+    }
+
+    /**
+     * Registers the given gauge under the given name, replacing any gauge registered under that name before. Unlike
+     * {@link MetricRegistry#register(String, com.codahale.metrics.Metric)}, this doesn't fail when another app instance
+     * in the same JVM has already registered the gauge; the latest instance's gauge wins.
+     *
+     * @param name  Metric name.
+     * @param gauge Gauge.
+     * @param <T>   Gauge value type.
+     * @return The registered gauge.
+     */
+    public static synchronized <T> Gauge<T> gauge(String name, Gauge<T> gauge) {
+        final MetricRegistry registry = registry();
+        registry.remove(name);
+        return registry.register(name, gauge);
+    }
+
+    /**
+     * Returns the deserialization failure meter for the given deserializer class.
+     *
+     * @param deserializerClass Deserializer class.
+     * @return Deserialization failure meter.
+     */
+    public static Meter deserializationFailures(Class<?> deserializerClass) {
+        return registry().meter(MetricRegistry.name(deserializerClass, "deserialization-failures"));
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.metrics;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import lombok.Getter;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * Record throughput meters for a streams app, named after the app class. The {@code record*} methods match the
+ * signatures Kafka Streams expects, so topologies can use them as method references in {@code peek()} and
+ * {@code filter()}.
+ */
+@Getter
+public class StreamsAppMetrics {
+    private final Meter recordsIn;
+    private final Meter recordsOut;
+    private final Meter recordsFiltered;
+
+    public StreamsAppMetrics(MetricRegistry registry, Class<?> appClass) {
+        notNull(registry, "registry can't be null");
+        notNull(appClass, "appClass can't be null");
+        this.recordsIn = registry.meter(MetricRegistry.name(appClass, "records-in"));
+        this.recordsOut = registry.meter(MetricRegistry.name(appClass, "records-out"));
+        this.recordsFiltered = registry.meter(MetricRegistry.name(appClass, "records-filtered"));
+    }
+
+    public void recordIn(Object key, Object value) {
+        recordsIn.mark();
+    }
+
+    public void recordOut(Object key, Object value) {
+        recordsOut.mark();
+    }
+
+    /**
+     * Filter predicate that drops null values, which is what the serdes return for records they can't deserialize.
+     *
+     * @param key   Record key.
+     * @param value Record value.
+     * @return Boolean indicating whether the value isn't null.
+     */
+    public boolean recordNonNull(Object key, Object value) {
+        if (value == null) {
+            recordsFiltered.mark();
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.processor;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorManager;
+import com.expedia.adaptivealerting.anomdetect.comp.DetectorStateStore;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
+import com.expedia.adaptivealerting.core.data.MappedMetricData;
+import com.expedia.adaptivealerting.core.util.ErrorUtil;
+import com.expedia.adaptivealerting.kafka.DetectorManagerConfig;
+import com.expedia.adaptivealerting.kafka.metrics.StreamsAppMetrics;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.apache.kafka.streams.processor.AbstractProcessor;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * Micro-batching alternative to {@link DetectorManagerTransformer}. Records are buffered per stream task and
+ * classified together via {@link DetectorManager#classifyBatch(List, DetectorStateStore)} once the batch is full or the
+ * flush interval elapses, so detector lookups are amortized across each batch. Wall-clock punctuation runs once per
+ * poll loop iteration, so with the default interval a batch is roughly the records of one poll.
+ * </p>
+ * <p>
+ * Detectors are loaded synchronously; asynchronous loading applies to the transformer topology only. Buffered records
+ * are flushed when the task is closed, but if the process dies after the streams commit and before the next flush, the
+ * buffered records aren't reprocessed. Keep the flush interval well below the commit interval.
+ * </p>
+ */
+@Slf4j
+public final class DetectorManagerBatchProcessor extends AbstractProcessor<String, MappedMetricData> {
+    private final DetectorManager manager;
+    private final DetectorManagerConfig config;
+    private final String stateStoreName;
+    private final StreamsAppMetrics metrics;
+
+    private final List<String> keys = new ArrayList<>();
+    private final List<MappedMetricData> batch = new ArrayList<>();
+    private final Set<UUID> dirtyDetectors = new HashSet<>();
+    private final Set<UUID> trackedDetectors = new HashSet<>();
+
+    private DetectorStateStore stateStore;
+    private int partition;
+
+    /**
+     * @param manager        Detector manager.
+     * @param config         Topology configuration.
+     * @param stateStoreName Name of the detector state store, or {@code null} if detector state isn't persisted.
+     * @param metrics        Record throughput meters.
+     */
+    public DetectorManagerBatchProcessor(
+            DetectorManager manager,
+            DetectorManagerConfig config,
+            String stateStoreName,
+            StreamsAppMetrics metrics) {
+
+        notNull(manager, "manager can't be null");
+        notNull(config, "config can't be null");
+        notNull(metrics, "metrics can't be null");
+        this.manager = manager;
+        this.config = config;
+        this.stateStoreName = stateStoreName;
+        this.metrics = metrics;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void init(ProcessorContext context) {
+        super.init(context);
+        this.partition = context.taskId().partition;
+        if (stateStoreName != null) {
+            val store = (KeyValueStore<String, byte[]>) context.getStateStore(stateStoreName);
+            this.stateStore = new KeyValueDetectorStateStore(store);
+            context.schedule(config.getSnapshotIntervalMs(), PunctuationType.WALL_CLOCK_TIME,
+                    timestamp -> saveDirtyDetectors());
+        }
+        context.schedule(config.getBatchFlushIntervalMs(), PunctuationType.WALL_CLOCK_TIME, timestamp -> flush());
+    }
+
+    @Override
+    public void process(String key, MappedMetricData mmd) {
+        metrics.recordIn(key, mmd);
+        if (!metrics.recordNonNull(key, mmd)) {
+            return;
+        }
+        trackPartition(mmd.getDetectorUuid());
+        keys.add(key);
+        batch.add(mmd);
+        if (batch.size() >= config.getBatchMaxSize()) {
+            flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        if (stateStore != null) {
+            saveDirtyDetectors();
+        }
+    }
+
+    private void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            final List<AnomalyResult> results = stateStore == null
+                    ? manager.classifyBatch(batch)
+                    : manager.classifyBatch(batch, stateStore);
+            int produced = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                val anomalyResult = results.get(i);
+                if (anomalyResult == null) {
+                    continue;
+                }
+                val mmd = batch.get(i);
+                if (stateStore != null) {
+                    dirtyDetectors.add(mmd.getDetectorUuid());
+                }
+                context().forward(keys.get(i), new MappedMetricData(mmd, anomalyResult));
+                produced++;
+            }
+            metrics.getRecordsOut().mark(produced);
+            log.debug("Classified batch: size={}, produced={}", batch.size(), produced);
+        } catch (Exception e) {
+            log.error("Batch classification error: droppedRecords={}, error={}",
+                    batch.size(),
+                    ErrorUtil.singleLineExceptionTrace(e));
+        } finally {
+            keys.clear();
+            batch.clear();
+        }
+    }
+
+    private void trackPartition(UUID detectorUuid) {
+        if (trackedDetectors.add(detectorUuid)) {
+            manager.trackDetectorPartition(detectorUuid, partition);
+        }
+    }
+
+    private void saveDirtyDetectors() {
+        if (dirtyDetectors.isEmpty()) {
+            return;
+        }
+        int saved = 0;
+        for (val detectorUuid : dirtyDetectors) {
+            try {
+                if (manager.saveDetectorState(detectorUuid, stateStore)) {
+                    saved++;
+                }
+            } catch (Exception e) {
+                log.error("Error saving detector state: detectorUuid={}, error={}",
+                        detectorUuid,
+                        ErrorUtil.singleLineExceptionTrace(e));
+            }
+        }
+        log.debug("Saved detector state: dirty={}, saved={}", dirtyDetectors.size(), saved);
+        dirtyDetectors.clear();
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.processor;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorManager;
+import com.expedia.adaptivealerting.anomdetect.comp.DetectorStateStore;
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
+import com.expedia.adaptivealerting.core.data.MappedMetricData;
+import com.expedia.adaptivealerting.core.util.ErrorUtil;
+import com.expedia.adaptivealerting.kafka.DetectorManagerConfig;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import lombok.var;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * <p>
+ * Adapts {@link DetectorManager} classification to a Kafka Streams transformer. One instance is created per stream
+ * task.
+ * </p>
+ * <p>
+ * With asynchronous loading enabled, a record whose detector isn't cached triggers a background load and is parked in a
+ * bounded per-detector buffer. Later records for that detector join the buffer, and the buffer is replayed in order
+ * once the detector arrives, while records for detectors already loaded keep flowing. Parked records' offsets may
+ * already be committed, so when the task is closed, e.g. on rebalance or shutdown, the transformer waits for the
+ * outstanding loads and replays the parked records before the final commit instead of dropping them.
+ * </p>
+ * <p>
+ * With detector state enabled, detectors are restored from the task's state store when they're installed and changed
+ * detectors are written back to it periodically.
+ * </p>
+ * <p>
+ * The detectors seen by the task are tracked against its input partition, so the manager can drop them once the
+ * partition is revoked. See {@link DetectorManager#retainPartitions(Set)}.
+ * </p>
+ */
+@Slf4j
+public final class DetectorManagerTransformer
+        implements Transformer<String, MappedMetricData, KeyValue<String, MappedMetricData>> {
+
+    private final DetectorManager manager;
+    private final DetectorManagerConfig config;
+    private final String stateStoreName;
+
+    private final Set<UUID> dirtyDetectors = new HashSet<>();
+    private final Set<UUID> trackedDetectors = new HashSet<>();
+    private final Map<UUID, PendingDetector> pendingDetectors = new LinkedHashMap<>();
+
+    private ProcessorContext context;
+    private DetectorStateStore stateStore;
+    private int partition;
+
+    /**
+     * @param manager        Detector manager.
+     * @param config         Topology configuration.
+     * @param stateStoreName Name of the detector state store, or {@code null} if detector state isn't persisted.
+     */
+    public DetectorManagerTransformer(DetectorManager manager, DetectorManagerConfig config, String stateStoreName) {
+        notNull(manager, "manager can't be null");
+        notNull(config, "config can't be null");
+        this.manager = manager;
+        this.config = config;
+        this.stateStoreName = stateStoreName;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void init(ProcessorContext context) {
+        this.context = context;
+        this.partition = context.taskId().partition;
+        if (stateStoreName != null) {
+            val store = (KeyValueStore<String, byte[]>) context.getStateStore(stateStoreName);
+            this.stateStore = new KeyValueDetectorStateStore(store);
+            context.schedule(config.getSnapshotIntervalMs(), PunctuationType.WALL_CLOCK_TIME,
+                    timestamp -> saveDirtyDetectors());
+        }
+        if (config.isAsyncLoadingEnabled()) {
+            context.schedule(config.getDrainIntervalMs(), PunctuationType.WALL_CLOCK_TIME,
+                    timestamp -> drainPendingDetectors());
+        }
+    }
+
+    @Override
+    public KeyValue<String, MappedMetricData> transform(String key, MappedMetricData mmd) {
+        if (manager.isDetectorDisabled(mmd.getDetectorUuid())) {
+            return null;
+        }
+        trackPartition(mmd.getDetectorUuid());
+        if (config.isAsyncLoadingEnabled() && parkIfLoading(key, mmd)) {
+            return null;
+        }
+        val anomalyMmd = toAnomalyMmd(mmd);
+        return anomalyMmd == null ? null : KeyValue.pair(key, anomalyMmd);
+    }
+
+    @Override
+    @Deprecated
+    public KeyValue<String, MappedMetricData> punctuate(long timestamp) {
+        return null;
+    }
+
+    @Override
+    public void close() {
+        if (!pendingDetectors.isEmpty()) {
+            log.info("Waiting for detectors still loading before close: detectors={}", pendingDetectors.keySet());
+            pendingDetectors.forEach(this::replay);
+            pendingDetectors.clear();
+        }
+        if (stateStore != null) {
+            saveDirtyDetectors();
+        }
+    }
+
+    /**
+     * Parks the record if its detector is loading or isn't cached, starting the load if necessary.
+     *
+     * @return Boolean indicating whether the record was parked.
+     */
+    private boolean parkIfLoading(String key, MappedMetricData mmd) {
+        val detectorUuid = mmd.getDetectorUuid();
+        var pending = pendingDetectors.get(detectorUuid);
+        if (pending == null) {
+            if (manager.getCachedDetector(detectorUuid) != null) {
+                return false;
+            }
+            pending = new PendingDetector(manager.loadDetectorAsync(detectorUuid));
+            pendingDetectors.put(detectorUuid, pending);
+        }
+        pending.park(key, mmd, config.getMaxParkedRecords());
+        return true;
+    }
+
+    private void trackPartition(UUID detectorUuid) {
+        if (trackedDetectors.add(detectorUuid)) {
+            manager.trackDetectorPartition(detectorUuid, partition);
+        }
+    }
+
+    private void drainPendingDetectors() {
+        val it = pendingDetectors.entrySet().iterator();
+        while (it.hasNext()) {
+            val entry = it.next();
+            val pending = entry.getValue();
+            if (!pending.future.isDone()) {
+                continue;
+            }
+            it.remove();
+            replay(entry.getKey(), pending);
+        }
+    }
+
+    /**
+     * Installs the loaded detector and classifies the records parked for it. Blocks until the load completes, so
+     * callers other than {@link #close()} should only pass pending detectors whose load is done.
+     */
+    private void replay(UUID detectorUuid, PendingDetector pending) {
+        final Detector detector;
+        try {
+            detector = pending.future.join();
+        } catch (Exception e) {
+            log.error("Error loading detector: detectorUuid={}, droppedRecords={}, error={}",
+                    detectorUuid,
+                    pending.records.size(),
+                    ErrorUtil.singleLineExceptionTrace(e));
+            return;
+        }
+        if (detector == null) {
+            log.warn("No detector: detectorUuid={}, droppedRecords={}", detectorUuid, pending.records.size());
+            return;
+        }
+
+        manager.installDetector(detectorUuid, detector, stateStore);
+        for (val record : pending.records) {
+            val anomalyMmd = toAnomalyMmd(record.value);
+            if (anomalyMmd != null) {
+                context.forward(record.key, anomalyMmd);
+            }
+        }
+    }
+
+    private MappedMetricData toAnomalyMmd(MappedMetricData mmd) {
+        assert mmd != null;
+
+        AnomalyResult anomalyResult = null;
+        try {
+            anomalyResult = stateStore == null ? manager.classify(mmd) : manager.classify(mmd, stateStore);
+        } catch (Exception e) {
+            log.error("Classification error: mappedMetricData={}, error={}",
+                    mmd,
+                    ErrorUtil.singleLineExceptionTrace(e));
+        }
+
+        if (anomalyResult == null) {
+            log.info("anomalyResult=null");
+            return null;
+        }
+
+        if (stateStore != null) {
+            dirtyDetectors.add(mmd.getDetectorUuid());
+        }
+        val newMmd = new MappedMetricData(mmd, anomalyResult);
+        log.info("produced={}", newMmd);
+        return newMmd;
+    }
+
+    private void saveDirtyDetectors() {
+        if (dirtyDetectors.isEmpty()) {
+            return;
+        }
+        int saved = 0;
+        for (val detectorUuid : dirtyDetectors) {
+            try {
+                if (manager.saveDetectorState(detectorUuid, stateStore)) {
+                    saved++;
+                }
+            } catch (Exception e) {
+                log.error("Error saving detector state: detectorUuid={}, error={}",
+                        detectorUuid,
+                        ErrorUtil.singleLineExceptionTrace(e));
+            }
+        }
+        log.debug("Saved detector state: dirty={}, saved={}", dirtyDetectors.size(), saved);
+        dirtyDetectors.clear();
+    }
+
+    private static final class PendingDetector {
+        private final CompletableFuture<Detector> future;
+        private final Deque<KeyValue<String, MappedMetricData>> records = new ArrayDeque<>();
+
+        PendingDetector(CompletableFuture<Detector> future) {
+            this.future = future;
+        }
+
+        void park(String key, MappedMetricData mmd, int maxParkedRecords) {
+            if (records.size() >= maxParkedRecords) {
+                val dropped = records.removeFirst();
+                log.warn("Parked record buffer full, dropping oldest: mappedMetricData={}", dropped.value);
+            }
+            records.addLast(KeyValue.pair(key, mmd));
+        }
+    }
+}
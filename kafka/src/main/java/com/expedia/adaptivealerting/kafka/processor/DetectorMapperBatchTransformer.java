@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.processor;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorMapper;
+import com.expedia.adaptivealerting.core.data.MappedMetricData;
+import com.expedia.adaptivealerting.core.util.ErrorUtil;
+import com.expedia.metrics.MetricData;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.isTrue;
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * Micro-batching mapper step. Metric data is buffered per stream task and mapped together via
+ * {@link DetectorMapper#mapBatch(List)} once the batch is full or the flush interval elapses, so the detector lookups
+ * for a batch go to the model service as a single request. Each mapped record is forwarded keyed by its detector UUID.
+ * As with {@link DetectorManagerBatchProcessor}, keep the flush interval well below the commit interval.
+ */
+@Slf4j
+public final class DetectorMapperBatchTransformer
+        implements Transformer<String, MetricData, KeyValue<String, MappedMetricData>> {
+
+    private final DetectorMapper mapper;
+    private final int maxSize;
+    private final long flushIntervalMs;
+
+    private final List<MetricData> batch = new ArrayList<>();
+
+    private ProcessorContext context;
+
+    /**
+     * @param mapper          Detector mapper.
+     * @param maxSize         Number of buffered records that triggers a flush.
+     * @param flushIntervalMs Wall-clock interval between flushes.
+     */
+    public DetectorMapperBatchTransformer(DetectorMapper mapper, int maxSize, long flushIntervalMs) {
+        notNull(mapper, "mapper can't be null");
+        isTrue(maxSize > 0, "maxSize must be > 0");
+        isTrue(flushIntervalMs > 0, "flushIntervalMs must be > 0");
+        this.mapper = mapper;
+        this.maxSize = maxSize;
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    @Override
+    public void init(ProcessorContext context) {
+        this.context = context;
+        context.schedule(flushIntervalMs, PunctuationType.WALL_CLOCK_TIME, timestamp -> flush());
+    }
+
+    @Override
+    public KeyValue<String, MappedMetricData> transform(String key, MetricData metricData) {
+        batch.add(metricData);
+        if (batch.size() >= maxSize) {
+            flush();
+        }
+        return null;
+    }
+
+    @Override
+    @Deprecated
+    public KeyValue<String, MappedMetricData> punctuate(long timestamp) {
+        return null;
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            val mmdSets = mapper.mapBatch(batch);
+            int produced = 0;
+            for (val mmdSet : mmdSets) {
+                for (val mmd : mmdSet) {
+                    log.info("produced={}", mmd);
+                    context.forward(mmd.getDetectorUuid().toString(), mmd);
+                    produced++;
+                }
+            }
+            log.debug("Mapped batch: size={}, produced={}", batch.size(), produced);
+        } catch (Exception e) {
+            log.error("Batch mapping error: droppedRecords={}, error={}",
+                    batch.size(),
+                    ErrorUtil.singleLineExceptionTrace(e));
+        } finally {
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.processor;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorManager;
+import com.expedia.adaptivealerting.core.data.DetectorUpdate;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.apache.kafka.streams.processor.AbstractProcessor;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.util.UUID;
+
+import static com.expedia.adaptivealerting.core.util.AssertUtil.notNull;
+
+/**
+ * Global store processor for the compacted detector updates topic. Keeps the latest update per detector in the global
+ * store and pushes each change into the {@link DetectorManager}. Tombstones mark deleted detectors.
+ */
+@Slf4j
+public final class DetectorUpdateProcessor extends AbstractProcessor<String, DetectorUpdate> {
+    private final DetectorManager manager;
+    private final String storeName;
+
+    private KeyValueStore<String, DetectorUpdate> store;
+
+    public DetectorUpdateProcessor(DetectorManager manager, String storeName) {
+        notNull(manager, "manager can't be null");
+        notNull(storeName, "storeName can't be null");
+        this.manager = manager;
+        this.storeName = storeName;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void init(ProcessorContext context) {
+        super.init(context);
+        this.store = (KeyValueStore<String, DetectorUpdate>) context.getStateStore(storeName);
+
+        // The store is restored from the topic without going through process(), so seed the disabled detectors here.
+        int disabled = 0;
+        try (KeyValueIterator<String, DetectorUpdate> it = store.all()) {
+            while (it.hasNext()) {
+                val entry = it.next();
+                if (entry.value != null && !entry.value.isEnabled()) {
+                    manager.applyDetectorUpdate(UUID.fromString(entry.key), false);
+                    disabled++;
+                }
+            }
+        }
+        log.info("Initialized detector updates: disabledDetectors={}", disabled);
+    }
+
+    @Override
+    public void process(String key, DetectorUpdate update) {
+        if (key == null) {
+            return;
+        }
+        final UUID detectorUuid;
+        try {
+            detectorUuid = UUID.fromString(key);
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring detector update with invalid key: key={}", key);
+            return;
+        }
+
+        if (update == null) {
+            store.delete(key);
+            manager.applyDetectorDelete(detectorUuid);
+        } else {
+            store.put(key, update);
+            manager.applyDetectorUpdate(detectorUuid, update.isEnabled());
+        }
+    }
+}
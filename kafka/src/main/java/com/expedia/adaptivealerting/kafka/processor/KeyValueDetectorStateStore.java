@@ -0,0 +1,49 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.processor;
+
+import com.expedia.adaptivealerting.anomdetect.comp.DetectorStateStore;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.util.UUID;
+
+/**
+ * {@link DetectorStateStore} backed by a Kafka Streams key-value store (RocksDB plus a compacted changelog topic),
+ * keyed by detector UUID string.
+ */
+@RequiredArgsConstructor
+public final class KeyValueDetectorStateStore implements DetectorStateStore {
+
+    @NonNull
+    private final KeyValueStore<String, byte[]> store;
+
+    @Override
+    public byte[] load(UUID uuid) {
+        return store.get(uuid.toString());
+    }
+
+    @Override
+    public void save(UUID uuid, byte[] snapshot) {
+        store.put(uuid.toString(), snapshot);
+    }
+
+    @Override
+    public void delete(UUID uuid) {
+        store.delete(uuid.toString());
+    }
+}
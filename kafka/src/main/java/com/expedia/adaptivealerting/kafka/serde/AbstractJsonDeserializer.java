@@ -15,6 +15,8 @@
  */
 package com.expedia.adaptivealerting.kafka.serde;
 
+import com.codahale.metrics.Meter;
+import com.expedia.adaptivealerting.kafka.metrics.SharedMetrics;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.Getter;
@@ -39,6 +41,8 @@ public abstract class AbstractJsonDeserializer<T> implements Deserializer<T> {
     private ObjectMapper objectMapper = new ObjectMapper()
             .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 
+    private final Meter deserializationFailures = SharedMetrics.deserializationFailures(getClass());
+
     public AbstractJsonDeserializer(Class<T> targetClass) {
         this.targetClass = targetClass;
     }
@@ -65,6 +69,7 @@ public abstract class AbstractJsonDeserializer<T> implements Deserializer<T> {
             // Returning null per
             // https://stackoverflow.com/questions/51136942/how-to-handle-serializationexception-after-deserialization
             log.error("Deserialization error", e);
+            deserializationFailures.mark();
             return null;
         }
     }
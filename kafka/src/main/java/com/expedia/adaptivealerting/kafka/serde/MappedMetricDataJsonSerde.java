@@ -16,7 +16,9 @@
 package com.expedia.adaptivealerting.kafka.serde;
 
 import com.expedia.adaptivealerting.core.data.MappedMetricData;
+import com.expedia.adaptivealerting.core.data.MetricDefinitionInterner;
 import com.expedia.metrics.jackson.MetricsJavaModule;
+import lombok.val;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serializer;
@@ -56,5 +58,14 @@ public final class MappedMetricDataJsonSerde implements Serde<MappedMetricData>
             super(MappedMetricData.class);
             getObjectMapper().registerModule(new MetricsJavaModule());
         }
+
+        @Override
+        public MappedMetricData deserialize(String topic, byte[] data) {
+            val mmd = super.deserialize(topic, data);
+            if (mmd != null && mmd.getMetricData() != null) {
+                mmd.setMetricData(MetricDefinitionInterner.shared().intern(mmd.getMetricData()));
+            }
+            return mmd;
+        }
     }
 }
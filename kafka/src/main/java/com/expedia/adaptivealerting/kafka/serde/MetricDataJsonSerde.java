@@ -15,8 +15,10 @@
  */
 package com.expedia.adaptivealerting.kafka.serde;
 
+import com.expedia.adaptivealerting.core.data.MetricDefinitionInterner;
 import com.expedia.metrics.MetricData;
 import com.expedia.metrics.jackson.MetricsJavaModule;
+import lombok.val;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serializer;
@@ -56,5 +58,11 @@ public final class MetricDataJsonSerde implements Serde<MetricData> {
             super(MetricData.class);
             getObjectMapper().registerModule(new MetricsJavaModule());
         }
+
+        @Override
+        public MetricData deserialize(String topic, byte[] data) {
+            val metricData = super.deserialize(topic, data);
+            return metricData == null ? null : MetricDefinitionInterner.shared().intern(metricData);
+        }
     }
 }
@@ -15,6 +15,9 @@
  */
 package com.expedia.adaptivealerting.kafka.serde;
 
+import com.codahale.metrics.Meter;
+import com.expedia.adaptivealerting.core.data.MetricDefinitionInterner;
+import com.expedia.adaptivealerting.kafka.metrics.SharedMetrics;
 import com.expedia.metrics.MetricData;
 import com.expedia.metrics.metrictank.MessagePackSerializer;
 import lombok.extern.slf4j.Slf4j;
@@ -74,6 +77,7 @@ public class MetricDataMessagePackSerde implements Serde<MetricData> {
 
         // N.B. This is a MetricTank-specific serializer. We don't want that for the long term.
         private static final MessagePackSerializer mps = new MessagePackSerializer();
+        private final Meter deserializationFailures = SharedMetrics.deserializationFailures(getClass());
 
         @Override
         public void configure(Map<String, ?> configs, boolean isKey) {
@@ -82,9 +86,10 @@ public class MetricDataMessagePackSerde implements Serde<MetricData> {
         @Override
         public MetricData deserialize(String topic, byte[] metricDataBytes) {
             try {
-                return mps.deserialize(metricDataBytes);
+                return MetricDefinitionInterner.shared().intern(mps.deserialize(metricDataBytes));
             } catch (IOException e) {
                 log.error("Deserialization error", e);
+                deserializationFailures.mark();
                 return null;
             }
         }
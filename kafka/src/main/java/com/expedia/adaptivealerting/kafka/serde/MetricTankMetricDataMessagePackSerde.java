@@ -15,6 +15,9 @@
  */
 package com.expedia.adaptivealerting.kafka.serde;
 
+import com.codahale.metrics.Meter;
+import com.expedia.adaptivealerting.core.data.MetricDefinitionInterner;
+import com.expedia.adaptivealerting.kafka.metrics.SharedMetrics;
 import com.expedia.metrics.MetricData;
 import com.expedia.metrics.metrictank.MessagePackSerializer;
 import com.expedia.metrics.metrictank.MetricTankMetricDefinition;
@@ -99,6 +102,7 @@ public class MetricTankMetricDataMessagePackSerde implements Serde<MetricData> {
 
     public static class Deser implements Deserializer<MetricData> {
         private static final MessagePackSerializer mps = new MessagePackSerializer();
+        private final Meter deserializationFailures = SharedMetrics.deserializationFailures(getClass());
 
         @Override
         public void configure(Map<String, ?> map, boolean b) {
@@ -107,9 +111,10 @@ public class MetricTankMetricDataMessagePackSerde implements Serde<MetricData> {
         @Override
         public MetricData deserialize(String topic, byte[] metricDataBytes) {
             try {
-                return mps.deserialize(metricDataBytes);
+                return MetricDefinitionInterner.shared().intern(mps.deserialize(metricDataBytes));
             } catch (IOException e) {
                 log.error("Deserialization error", e);
+                deserializationFailures.mark();
                 return null;
             }
         }
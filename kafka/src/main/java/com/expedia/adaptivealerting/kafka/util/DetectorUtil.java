@@ -15,8 +15,11 @@
  */
 package com.expedia.adaptivealerting.kafka.util;
 
+import com.expedia.adaptivealerting.anomdetect.comp.ChangeLogDetectorSource;
 import com.expedia.adaptivealerting.anomdetect.comp.DefaultDetectorSource;
 import com.expedia.adaptivealerting.anomdetect.comp.DetectorSource;
+import com.expedia.adaptivealerting.anomdetect.comp.FileDetectorSource;
+import com.expedia.adaptivealerting.anomdetect.comp.connector.ConnectorResilience;
 import com.expedia.adaptivealerting.anomdetect.comp.connector.HttpClientWrapper;
 import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -24,16 +27,84 @@ import com.typesafe.config.Config;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 
+import java.nio.file.Paths;
+
 /**
  * Detector utilities.
  */
 @Slf4j
 public final class DetectorUtil {
     private static final String CK_MODEL_SERVICE_URI_TEMPLATE = "model-service-base-uri";
+    private static final String CK_MODEL_SERVICE_HTTP_CLIENT = "model-service-http-client";
+    private static final String CK_MODEL_SERVICE_RESILIENCE = "model-service-resilience";
+    private static final String CK_DETECTOR_SNAPSHOT_ENABLED = "detector-snapshot.enabled";
+    private static final String CK_DETECTOR_SNAPSHOT_FILE = "detector-snapshot.file";
+    private static final String CK_DETECTOR_SNAPSHOT_REFRESH_INTERVAL_MS = "detector-snapshot.refresh-interval-ms";
+    private static final long DEFAULT_DETECTOR_SNAPSHOT_REFRESH_INTERVAL_MS = 10_000L;
+    private static final String CK_DETECTOR_CHANGE_LOG_ENABLED = "detector-change-log.enabled";
+    private static final String CK_DETECTOR_CHANGE_LOG_PAGE_SIZE = "detector-change-log.page-size";
+
+    // One connection pool and one set of circuit breakers per process, shared by every connector the app builds.
+    private static HttpClientWrapper httpClient;
+    private static ConnectorResilience resilience;
+    private static FileDetectorSource snapshotSource;
 
+    /**
+     * Builds the app's detector source: a {@link FileDetectorSource} if {@code detector-snapshot} is enabled, and a
+     * Model Service-backed source otherwise. The latter syncs updated detectors through the change log if
+     * {@code detector-change-log} is enabled.
+     */
     public static DetectorSource buildDetectorSource(Config config) {
+        if (config.hasPath(CK_DETECTOR_SNAPSHOT_ENABLED) && config.getBoolean(CK_DETECTOR_SNAPSHOT_ENABLED)) {
+            return sharedSnapshotSource(config);
+        }
+        val connector = buildModelServiceConnector(config);
+        val source = new DefaultDetectorSource(connector);
+        if (config.hasPath(CK_DETECTOR_CHANGE_LOG_ENABLED) && config.getBoolean(CK_DETECTOR_CHANGE_LOG_ENABLED)) {
+            val pageSize = config.hasPath(CK_DETECTOR_CHANGE_LOG_PAGE_SIZE)
+                    ? config.getInt(CK_DETECTOR_CHANGE_LOG_PAGE_SIZE)
+                    : ChangeLogDetectorSource.DEFAULT_PAGE_SIZE;
+            return new ChangeLogDetectorSource(connector, source, pageSize);
+        }
+        return source;
+    }
+
+    public static ModelServiceConnector buildModelServiceConnector(Config config) {
         val uriTemplate = config.getString(CK_MODEL_SERVICE_URI_TEMPLATE);
-        val connector = new ModelServiceConnector(new HttpClientWrapper(), uriTemplate, new ObjectMapper());
-        return new DefaultDetectorSource(connector);
+        return new ModelServiceConnector(
+                sharedHttpClient(config),
+                uriTemplate,
+                new ObjectMapper(),
+                sharedResilience(config));
+    }
+
+    private static synchronized FileDetectorSource sharedSnapshotSource(Config config) {
+        if (snapshotSource == null) {
+            val refreshIntervalMs = config.hasPath(CK_DETECTOR_SNAPSHOT_REFRESH_INTERVAL_MS)
+                    ? config.getLong(CK_DETECTOR_SNAPSHOT_REFRESH_INTERVAL_MS)
+                    : DEFAULT_DETECTOR_SNAPSHOT_REFRESH_INTERVAL_MS;
+            snapshotSource = new FileDetectorSource(Paths.get(config.getString(CK_DETECTOR_SNAPSHOT_FILE)));
+            snapshotSource.start(refreshIntervalMs);
+            Runtime.getRuntime().addShutdownHook(new Thread(snapshotSource::close));
+        }
+        return snapshotSource;
+    }
+
+    private static synchronized HttpClientWrapper sharedHttpClient(Config config) {
+        if (httpClient == null) {
+            httpClient = config.hasPath(CK_MODEL_SERVICE_HTTP_CLIENT)
+                    ? HttpClientWrapper.fromConfig(config.getConfig(CK_MODEL_SERVICE_HTTP_CLIENT))
+                    : new HttpClientWrapper();
+        }
+        return httpClient;
+    }
+
+    private static synchronized ConnectorResilience sharedResilience(Config config) {
+        if (resilience == null) {
+            resilience = config.hasPath(CK_MODEL_SERVICE_RESILIENCE)
+                    ? new ConnectorResilience(config.getConfig(CK_MODEL_SERVICE_RESILIENCE))
+                    : ConnectorResilience.disabled();
+        }
+        return resilience;
     }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorManager;
+import com.typesafe.config.ConfigFactory;
+import lombok.val;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.DescribeTopicsResult;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.producer.internals.DefaultPartitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.TopicPartitionInfo;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.processor.TaskMetadata;
+import org.apache.kafka.streams.processor.ThreadMetadata;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class DetectorRebalanceListenerTest {
+    private static final String INPUT_TOPIC = "mapped-metrics";
+    private static final int NUM_PARTITIONS = 12;
+
+    @Test
+    public void testPartitionFor_matchesProducerPartitioner() {
+        val partitions = new ArrayList<PartitionInfo>();
+        for (int i = 0; i < NUM_PARTITIONS; i++) {
+            partitions.add(new PartitionInfo(INPUT_TOPIC, i, Node.noNode(), new Node[0], new Node[0]));
+        }
+        val cluster = new Cluster("cluster", Collections.emptyList(), partitions,
+                Collections.emptySet(), Collections.emptySet());
+        val partitioner = new DefaultPartitioner();
+
+        for (int i = 0; i < 100; i++) {
+            val uuid = UUID.randomUUID();
+            val key = uuid.toString();
+            val keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            val expected = partitioner.partition(INPUT_TOPIC, key, keyBytes, null, null, cluster);
+            assertEquals(expected, DetectorRebalanceListener.partitionFor(uuid, NUM_PARTITIONS));
+        }
+    }
+
+    @Test
+    public void testOnChange_evictsRevokedPartitions() {
+        val streams = mock(KafkaStreams.class);
+        val manager = mock(DetectorManager.class);
+        val task = new TaskMetadata("0_3", Collections.singleton(new TopicPartition(INPUT_TOPIC, 3)));
+        val thread = new ThreadMetadata("stream-thread-1", "RUNNING",
+                Collections.singleton(task), Collections.emptySet());
+        when(streams.localThreadsMetadata()).thenReturn(Collections.singleton(thread));
+
+        val managerConfig = new DetectorManagerConfig(ConfigFactory.parseString("detector-cache.evict-revoked = true"));
+        val listener = new DetectorRebalanceListener(
+                streams, manager, managerConfig, new StreamsConfig(streamsProps()), INPUT_TOPIC);
+        listener.onChange(KafkaStreams.State.RUNNING, KafkaStreams.State.REBALANCING);
+
+        verify(manager, timeout(1000)).retainPartitions(Collections.singleton(3));
+        verify(manager, never()).prefetchDetectors(any(Predicate.class));
+    }
+
+    @Test
+    public void testOnChange_prefetchesNewPartitionsOnce() throws Exception {
+        val streams = mock(KafkaStreams.class);
+        val manager = mock(DetectorManager.class);
+        val task = new TaskMetadata("0_3", Collections.singleton(new TopicPartition(INPUT_TOPIC, 3)));
+        val thread = new ThreadMetadata("stream-thread-1", "RUNNING",
+                Collections.singleton(task), Collections.emptySet());
+        when(streams.localThreadsMetadata()).thenReturn(Collections.singleton(thread));
+
+        val adminClient = mockAdminClient();
+        val adminClientsCreated = new AtomicInteger();
+        val managerConfig = new DetectorManagerConfig(ConfigFactory.parseString("detector-prefetch.enabled = true"));
+        val listener = new DetectorRebalanceListener(streams, manager, managerConfig, () -> {
+            adminClientsCreated.incrementAndGet();
+            return adminClient;
+        }, INPUT_TOPIC);
+
+        // The second rebalance leaves the assignment as it was, so there's nothing new to prefetch.
+        listener.onChange(KafkaStreams.State.RUNNING, KafkaStreams.State.REBALANCING);
+        listener.onChange(KafkaStreams.State.RUNNING, KafkaStreams.State.REBALANCING);
+        listener.onChange(KafkaStreams.State.NOT_RUNNING, KafkaStreams.State.PENDING_SHUTDOWN);
+
+        verify(adminClient, timeout(1000)).close();
+        verify(manager, times(1)).prefetchDetectors(any(Predicate.class));
+        assertEquals(1, adminClientsCreated.get());
+    }
+
+    @Test
+    public void testOnChange_ignoresOtherTransitions() {
+        val streams = mock(KafkaStreams.class);
+        val manager = mock(DetectorManager.class);
+        val managerConfig = new DetectorManagerConfig(ConfigFactory.empty());
+        val listener = new DetectorRebalanceListener(
+                streams, manager, managerConfig, new StreamsConfig(streamsProps()), INPUT_TOPIC);
+
+        listener.onChange(KafkaStreams.State.REBALANCING, KafkaStreams.State.CREATED);
+        listener.onChange(KafkaStreams.State.PENDING_SHUTDOWN, KafkaStreams.State.RUNNING);
+
+        verifyZeroInteractions(streams, manager);
+    }
+
+    private static AdminClient mockAdminClient() {
+        val partitions = new ArrayList<TopicPartitionInfo>();
+        for (int i = 0; i < NUM_PARTITIONS; i++) {
+            partitions.add(new TopicPartitionInfo(i, Node.noNode(), Collections.emptyList(), Collections.emptyList()));
+        }
+        val description = new TopicDescription(INPUT_TOPIC, false, partitions);
+        val result = mock(DescribeTopicsResult.class);
+        when(result.all()).thenReturn(KafkaFuture.completedFuture(Collections.singletonMap(INPUT_TOPIC, description)));
+        val adminClient = mock(AdminClient.class);
+        when(adminClient.describeTopics(Collections.singleton(INPUT_TOPIC))).thenReturn(result);
+        return adminClient;
+    }
+
+    private static Properties streamsProps() {
+        val props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        return props;
+    }
+}
@@ -35,8 +35,14 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -120,6 +126,38 @@ public final class KafkaDetectorManagerTest {
         doesNotPublishAnomaly(metric_invalid);
     }
 
+    @Test
+    public void testPublishesAnomaliesInBatches() {
+        when(tsConfig.hasPath("detector-batching.enabled")).thenReturn(true);
+        when(tsConfig.getBoolean("detector-batching.enabled")).thenReturn(true);
+        when(manager.classifyBatch(anyList())).thenAnswer(invocation -> {
+            final List<MappedMetricData> batch = invocation.getArgument(0);
+            return batch.stream()
+                    .map(mmd -> new AnomalyResult(AnomalyLevel.WEAK))
+                    .collect(Collectors.toList());
+        });
+
+        val topology = new KafkaAnomalyDetectorManager(saConfig, manager).buildTopology();
+        val driver = TestObjectMother.topologyTestDriver(topology, MappedMetricDataJsonSerde.class, false);
+        try {
+            driver.pipeInput(metricFactory.create(INPUT_TOPIC, KAFKA_KEY, metric_normalAnomaly));
+            driver.pipeInput(metricFactory.create(INPUT_TOPIC, KAFKA_KEY, metric_strongAnomaly));
+
+            // Buffered until the flush interval elapses.
+            assertNull(driver.readOutput(OUTPUT_TOPIC, stringDeser, anomalyDeser));
+
+            driver.advanceWallClockTime(100L);
+            for (int i = 0; i < 2; i++) {
+                val anomaly = driver.readOutput(OUTPUT_TOPIC, stringDeser, anomalyDeser).value();
+                assertEquals(AnomalyLevel.WEAK, anomaly.getAnomalyResult().getAnomalyLevel());
+            }
+            assertNull(driver.readOutput(OUTPUT_TOPIC, stringDeser, anomalyDeser));
+            verify(manager, times(1)).classifyBatch(anyList());
+        } finally {
+            driver.close();
+        }
+    }
+
     /**
      * Addresses bug https://github.com/ExpediaDotCom/adaptive-alerting/issues/245
      * See also https://stackoverflow.com/questions/51136942/how-to-handle-serializationexception-after-deserialization
@@ -17,6 +17,7 @@ package com.expedia.adaptivealerting.kafka;
 
 import com.expedia.adaptivealerting.anomdetect.DetectorMapper;
 import com.expedia.adaptivealerting.core.data.MappedMetricData;
+import com.expedia.adaptivealerting.kafka.filter.MappedMetricFilter;
 import com.expedia.adaptivealerting.kafka.serde.MappedMetricDataJsonSerde;
 import com.expedia.adaptivealerting.kafka.serde.MetricDataJsonSerde;
 import com.expedia.adaptivealerting.kafka.util.TestObjectMother;
@@ -36,9 +37,14 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.Arrays;
 import java.util.Collections;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -55,6 +61,9 @@ public final class KafkaDetectorMapperTest {
     @Mock
     private DetectorMapper mapper;
 
+    @Mock
+    private MappedMetricFilter metricFilter;
+
     @Mock
     private StreamsAppConfig saConfig;
 
@@ -99,6 +108,45 @@ public final class KafkaDetectorMapperTest {
         OutputVerifier.compareKeyValue(outputRecord, outputKafkaKey, mappedMetricData);
     }
 
+    @Test
+    public void testDropsMetricsRejectedByMetricFilter() {
+        when(metricFilter.mightBeMapped(any(MetricData.class))).thenReturn(false);
+        val topology = new KafkaAnomalyDetectorMapper(saConfig, mapper, metricFilter).buildTopology();
+        val driver = TestObjectMother.topologyTestDriver(topology, MetricDataJsonSerde.class, false);
+        try {
+            driver.pipeInput(metricDataFactory.create(INPUT_TOPIC, KAFKA_KEY, metricData));
+            Assert.assertNull(driver.readOutput(OUTPUT_TOPIC, stringDeser, mmdDeser));
+        } finally {
+            driver.close();
+        }
+        verify(mapper, never()).map(any(MetricData.class));
+    }
+
+    @Test
+    public void testMapsMetricsInBatches() {
+        when(mapper.mapBatch(anyList())).thenReturn(Arrays.asList(
+                Collections.singleton(mappedMetricData),
+                Collections.singleton(mappedMetricData)));
+        val topology = new KafkaAnomalyDetectorMapper(saConfig, mapper, null, 2, 60_000L).buildTopology();
+        val driver = TestObjectMother.topologyTestDriver(topology, MetricDataJsonSerde.class, false);
+        try {
+            driver.pipeInput(metricDataFactory.create(INPUT_TOPIC, KAFKA_KEY, metricData));
+            Assert.assertNull(driver.readOutput(OUTPUT_TOPIC, stringDeser, mmdDeser));
+
+            // The second record fills the batch.
+            driver.pipeInput(metricDataFactory.create(INPUT_TOPIC, KAFKA_KEY, metricData));
+            val outputKafkaKey = mappedMetricData.getDetectorUuid().toString();
+            OutputVerifier.compareKeyValue(
+                    driver.readOutput(OUTPUT_TOPIC, stringDeser, mmdDeser), outputKafkaKey, mappedMetricData);
+            OutputVerifier.compareKeyValue(
+                    driver.readOutput(OUTPUT_TOPIC, stringDeser, mmdDeser), outputKafkaKey, mappedMetricData);
+        } finally {
+            driver.close();
+        }
+        verify(mapper, times(1)).mapBatch(anyList());
+        verify(mapper, never()).map(any(MetricData.class));
+    }
+
     /**
      * Addresses bug https://github.com/ExpediaDotCom/adaptive-alerting/issues/253
      * See also https://stackoverflow.com/questions/51136942/how-to-handle-serializationexception-after-deserialization
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.filter;
+
+import com.codahale.metrics.MetricRegistry;
+import com.expedia.adaptivealerting.anomdetect.DetectorRetrievalException;
+import com.expedia.adaptivealerting.anomdetect.comp.connector.MappedMetricFilterContent;
+import com.expedia.adaptivealerting.anomdetect.comp.connector.ModelServiceConnector;
+import com.expedia.adaptivealerting.kafka.util.TestObjectMother;
+import com.expedia.metrics.MetricData;
+import com.expedia.metrics.MetricDefinition;
+import com.expedia.metrics.metrictank.MetricTankIdFactory;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link MappedMetricFilter} unit test.
+ */
+public final class MappedMetricFilterTest {
+    private static final String VERSION = "version-1";
+
+    @Mock
+    private ModelServiceConnector connector;
+
+    private MappedMetricFilter filterUnderTest;
+    private MetricData mappedMetricData;
+    private MetricData unmappedMetricData;
+
+    @Before
+    public void setUp() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        initTestObjects();
+        initDependencies();
+        this.filterUnderTest = new MappedMetricFilter(connector, new MetricRegistry());
+    }
+
+    @Test
+    public void testMightBeMapped_passesEverythingBeforeFirstRefresh() {
+        assertTrue(filterUnderTest.mightBeMapped(unmappedMetricData));
+        assertEquals(0.0, filterUnderTest.dropRatio(), 0.001);
+    }
+
+    @Test
+    public void testMightBeMapped_dropsUnmappedMetrics() {
+        filterUnderTest.refresh();
+        assertEquals(VERSION, filterUnderTest.getVersion());
+        assertTrue(filterUnderTest.mightBeMapped(mappedMetricData));
+        assertFalse(filterUnderTest.mightBeMapped(unmappedMetricData));
+        assertEquals(0.5, filterUnderTest.dropRatio(), 0.001);
+    }
+
+    @Test
+    public void testRefresh_downloadsConditionallyOnKnownVersion() {
+        filterUnderTest.refresh();
+        filterUnderTest.refresh();
+        verify(connector, times(1)).findMappedMetricFilter(null);
+        verify(connector, times(1)).findMappedMetricFilter(VERSION);
+        assertEquals(VERSION, filterUnderTest.getVersion());
+        assertFalse(filterUnderTest.mightBeMapped(unmappedMetricData));
+    }
+
+    @Test
+    public void testRefresh_failureKeepsPreviousFilter() {
+        filterUnderTest.refresh();
+        when(connector.findMappedMetricFilter(VERSION)).thenThrow(new DetectorRetrievalException("boom", null));
+        try {
+            filterUnderTest.refresh();
+        } catch (DetectorRetrievalException e) {
+            // Expected
+        }
+        assertEquals(VERSION, filterUnderTest.getVersion());
+        assertFalse(filterUnderTest.mightBeMapped(unmappedMetricData));
+    }
+
+    private void initTestObjects() {
+        this.mappedMetricData = TestObjectMother.metricData(
+                new MetricDefinition("mapped-metric", TestObjectMother.metricTags(), TestObjectMother.metricMeta()),
+                1.0);
+        this.unmappedMetricData = TestObjectMother.metricData(
+                new MetricDefinition("unmapped-metric", TestObjectMother.metricTags(), TestObjectMother.metricMeta()),
+                1.0);
+    }
+
+    private void initDependencies() throws IOException {
+        val bloomFilter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), 1000, 0.0001);
+        bloomFilter.put(new MetricTankIdFactory().getId(mappedMetricData.getMetricDefinition()));
+        val out = new ByteArrayOutputStream();
+        bloomFilter.writeTo(out);
+
+        when(connector.findMappedMetricFilter(null))
+                .thenReturn(new MappedMetricFilterContent(VERSION, out.toByteArray()));
+        when(connector.findMappedMetricFilter(VERSION)).thenReturn(null);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.metrics;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link PrometheusExporter} unit test.
+ */
+public final class PrometheusExporterTest {
+    private MetricRegistry registry;
+
+    @Before
+    public void setUp() {
+        this.registry = new MetricRegistry();
+    }
+
+    @Test
+    public void testSanitize() {
+        assertEquals("detector_classify_EwmaDetector", PrometheusExporter.sanitize("detector.classify.EwmaDetector"));
+        assertEquals("detector_cache_hit_ratio", PrometheusExporter.sanitize("detector-cache.hit-ratio"));
+        assertEquals("_1m_rate", PrometheusExporter.sanitize("1m.rate"));
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        registry.register("detector-cache.hit-ratio", (Gauge<Double>) () -> 0.75);
+        registry.register("detector-prefetch.running", (Gauge<Boolean>) () -> true);
+        registry.register("detector-quarantine.detectors", (Gauge<String>) () -> "not-a-number");
+        registry.meter("app.records-in").mark(3);
+        registry.timer("detector.load").update(2, TimeUnit.SECONDS);
+
+        val out = write();
+        assertTrue(out.contains("# TYPE detector_cache_hit_ratio gauge\ndetector_cache_hit_ratio 0.75\n"));
+        assertTrue(out.contains("detector_prefetch_running 1.0\n"));
+        assertFalse(out.contains("detector_quarantine_detectors"));
+        assertTrue(out.contains("# TYPE app_records_in_total counter\napp_records_in_total 3.0\n"));
+        assertTrue(out.contains("# TYPE detector_load_seconds summary\n"));
+        assertTrue(out.contains("detector_load_seconds{quantile=\"0.5\"} 2.0\n"));
+        assertTrue(out.contains("detector_load_seconds_count 1\n"));
+    }
+
+    @Test
+    public void testWrite_emptyRegistry() throws Exception {
+        assertEquals("", write());
+    }
+
+    private String write() throws Exception {
+        val writer = new StringWriter();
+        PrometheusExporter.write(registry, writer);
+        return writer.toString();
+    }
+}
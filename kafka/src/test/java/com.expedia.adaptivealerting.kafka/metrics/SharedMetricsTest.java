@@ -0,0 +1,44 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.metrics;
+
+import com.codahale.metrics.Gauge;
+import lombok.val;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link SharedMetrics} unit test.
+ */
+public final class SharedMetricsTest {
+    private static final String GAUGE_NAME = "shared-metrics-test.value";
+
+    @After
+    public void tearDown() {
+        SharedMetrics.registry().remove(GAUGE_NAME);
+    }
+
+    @Test
+    public void testGauge_replacesEarlierGauge() {
+        SharedMetrics.gauge(GAUGE_NAME, (Gauge<Integer>) () -> 1);
+        SharedMetrics.gauge(GAUGE_NAME, (Gauge<Integer>) () -> 2);
+
+        val gauge = SharedMetrics.registry().getGauges().get(GAUGE_NAME);
+        assertEquals(2, gauge.getValue());
+    }
+}
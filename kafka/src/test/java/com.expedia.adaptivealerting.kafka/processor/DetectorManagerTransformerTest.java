@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.processor;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorManager;
+import com.expedia.adaptivealerting.anomdetect.detector.Detector;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyLevel;
+import com.expedia.adaptivealerting.core.anomaly.AnomalyResult;
+import com.expedia.adaptivealerting.core.data.MappedMetricData;
+import com.expedia.adaptivealerting.kafka.DetectorManagerConfig;
+import com.typesafe.config.ConfigFactory;
+import lombok.val;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.TaskId;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.concurrent.CompletableFuture;
+
+import static com.expedia.adaptivealerting.kafka.util.TestObjectMother.mappedMetricData;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public final class DetectorManagerTransformerTest {
+    private static final String KEY = "some-key";
+
+    private DetectorManagerTransformer transformerUnderTest;
+
+    @Mock
+    private DetectorManager manager;
+
+    @Mock
+    private ProcessorContext context;
+
+    @Mock
+    private Detector detector;
+
+    private MappedMetricData mmd;
+    private CompletableFuture<Detector> load;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        this.mmd = mappedMetricData();
+        this.load = new CompletableFuture<>();
+        when(context.taskId()).thenReturn(new TaskId(0, 3));
+        when(manager.loadDetectorAsync(mmd.getDetectorUuid())).thenReturn(load);
+        when(manager.classify(mmd)).thenReturn(new AnomalyResult(AnomalyLevel.NORMAL));
+
+        val config = new DetectorManagerConfig(ConfigFactory.parseString("detector-loading.async = true"));
+        this.transformerUnderTest = new DetectorManagerTransformer(manager, config, null);
+        transformerUnderTest.init(context);
+    }
+
+    @Test
+    public void testClose_replaysParkedRecords() {
+        assertNull(transformerUnderTest.transform(KEY, mmd));
+        verify(context, never()).forward(any(), any());
+
+        // The load finishes after the record is parked but before the drain punctuator sees it.
+        load.complete(detector);
+        transformerUnderTest.close();
+
+        verify(manager).installDetector(mmd.getDetectorUuid(), detector, null);
+        verify(context).forward(eq(KEY), any(MappedMetricData.class));
+    }
+
+    @Test
+    public void testClose_waitsForOutstandingLoads() {
+        assertNull(transformerUnderTest.transform(KEY, mmd));
+
+        CompletableFuture.runAsync(() -> {
+            try {
+                Thread.sleep(50L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            load.complete(detector);
+        });
+        transformerUnderTest.close();
+
+        verify(context).forward(eq(KEY), any(MappedMetricData.class));
+    }
+
+    @Test
+    public void testClose_failedLoad() {
+        assertNull(transformerUnderTest.transform(KEY, mmd));
+        load.completeExceptionally(new RuntimeException("Model service unavailable"));
+        transformerUnderTest.close();
+
+        verify(manager, never()).installDetector(any(), any(), any());
+        verify(context, never()).forward(any(), any());
+    }
+}
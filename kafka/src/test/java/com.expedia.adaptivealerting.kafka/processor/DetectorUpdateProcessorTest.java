@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.kafka.processor;
+
+import com.expedia.adaptivealerting.anomdetect.DetectorManager;
+import com.expedia.adaptivealerting.core.data.DetectorUpdate;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.UUID;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public final class DetectorUpdateProcessorTest {
+    private static final String STORE_NAME = "detector-updates";
+    private static final UUID DETECTOR_UUID = UUID.randomUUID();
+
+    private DetectorUpdateProcessor processorUnderTest;
+
+    @Mock
+    private DetectorManager manager;
+
+    @Mock
+    private ProcessorContext context;
+
+    @Mock
+    private KeyValueStore<String, DetectorUpdate> store;
+
+    @Mock
+    private KeyValueIterator<String, DetectorUpdate> storeIterator;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(context.getStateStore(STORE_NAME)).thenReturn(store);
+        when(store.all()).thenReturn(storeIterator);
+        when(storeIterator.hasNext()).thenReturn(false);
+
+        this.processorUnderTest = new DetectorUpdateProcessor(manager, STORE_NAME);
+        processorUnderTest.init(context);
+    }
+
+    @Test
+    public void testProcess_update() {
+        final DetectorUpdate update = new DetectorUpdate(DETECTOR_UUID.toString(), false);
+        processorUnderTest.process(DETECTOR_UUID.toString(), update);
+        verify(store).put(DETECTOR_UUID.toString(), update);
+        verify(manager).applyDetectorUpdate(DETECTOR_UUID, false);
+    }
+
+    @Test
+    public void testProcess_tombstone() {
+        processorUnderTest.process(DETECTOR_UUID.toString(), null);
+        verify(store).delete(DETECTOR_UUID.toString());
+        verify(manager).applyDetectorDelete(DETECTOR_UUID);
+    }
+
+    @Test
+    public void testProcess_invalidKey() {
+        processorUnderTest.process("not-a-uuid", new DetectorUpdate("not-a-uuid", true));
+        verifyZeroInteractions(manager);
+    }
+}
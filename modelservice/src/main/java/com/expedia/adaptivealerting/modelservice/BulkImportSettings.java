@@ -0,0 +1,39 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for the bulk import endpoints.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "bulk-import")
+public class BulkImportSettings {
+
+    /**
+     * Number of items written per transaction.
+     */
+    private int chunkSize = 1000;
+
+    /**
+     * Maximum number of items per request.
+     */
+    private int maxItems = 100000;
+}
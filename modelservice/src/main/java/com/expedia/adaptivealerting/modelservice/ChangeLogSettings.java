@@ -0,0 +1,33 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for serving the detector change log. {@code settleSeconds} is how long a missing seq holds up the log
+ * before it's taken to have rolled back, and must exceed the longest transaction that writes detectors, models or
+ * mappings.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "change-log")
+public class ChangeLogSettings {
+    private int settleSeconds = 60;
+    private int maxLimit = 10000;
+}
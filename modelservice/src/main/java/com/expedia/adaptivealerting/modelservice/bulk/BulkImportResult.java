@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.bulk;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import: one result per non-blank input line, in input order, plus counts by status.
+ */
+@Data
+public class BulkImportResult {
+    private int total;
+    private int created;
+    private int updated;
+    private int unchanged;
+    private int upserted;
+    private int failed;
+    private List<ItemResult> results = new ArrayList<>();
+
+    ItemResult addItem(int line) {
+        ItemResult item = new ItemResult();
+        item.setLine(line);
+        results.add(item);
+        return item;
+    }
+
+    void summarize() {
+        this.total = results.size();
+        this.created = this.updated = this.unchanged = this.upserted = this.failed = 0;
+        for (ItemResult item : results) {
+            switch (item.getStatus()) {
+                case CREATED:
+                    created++;
+                    break;
+                case UPDATED:
+                    updated++;
+                    break;
+                case UNCHANGED:
+                    unchanged++;
+                    break;
+                case UPSERTED:
+                    upserted++;
+                    break;
+                default:
+                    failed++;
+                    break;
+            }
+        }
+    }
+
+    public enum Status {
+        CREATED,
+        UPDATED,
+        UNCHANGED,
+
+        /**
+         * Written, but the driver didn't report whether the item was inserted or updated. MySQL Connector/J does this
+         * when it rewrites a batch into a multi-row insert.
+         */
+        UPSERTED,
+        FAILED
+    }
+
+    @Data
+    public static class ItemResult {
+
+        /**
+         * 1-based line number of the item in the request body.
+         */
+        private int line;
+
+        /**
+         * Natural key of the item, if it could be parsed.
+         */
+        private String key;
+
+        private Status status;
+        private String message;
+
+        void fail(String message) {
+            this.status = Status.FAILED;
+            this.message = message;
+        }
+    }
+}
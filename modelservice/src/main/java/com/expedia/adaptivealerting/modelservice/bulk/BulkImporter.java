@@ -0,0 +1,549 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.bulk;
+
+import com.expedia.adaptivealerting.modelservice.BulkImportSettings;
+import com.expedia.adaptivealerting.modelservice.bulk.BulkImportResult.ItemResult;
+import com.expedia.adaptivealerting.modelservice.bulk.BulkImportResult.Status;
+import com.expedia.adaptivealerting.modelservice.cache.DetectorLookupCache;
+import com.expedia.adaptivealerting.modelservice.event.DetectorUpdatePublisher;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Imports metrics, detectors and mappings from newline-delimited JSON, one item per line.
+ * <p>
+ * Items are upserted with JDBC batches, one transaction per chunk, so a bad chunk doesn't roll back the rest of the
+ * import. Upserts rely on the unique keys (metric hash and key, detector uuid, metric-detector pair), so re-running an
+ * import is safe and concurrent imports of the same metric can't create duplicates. Malformed or invalid items are
+ * reported as failed and skipped.
+ * <p>
+ * Each chunk first locks and reads the rows its metrics and detectors already have. Items identical to their row are
+ * reported as unchanged and not written, so re-imports don't fire update triggers and flood the change log. A metric
+ * whose key and hash belong to different rows fails, as the upsert would otherwise update whichever row it hit.
+ * <p>
+ * The writes bypass the Spring Data REST repository events, so the importer invalidates the lookup cache and
+ * publishes detector updates itself. The change log triggers fire as usual.
+ */
+@Slf4j
+@Component
+public class BulkImporter {
+    private static final String UPSERT_METRIC_SQL = "INSERT INTO metric (ukey, hash, tags) " +
+            "VALUES (:key, :hash, :tags) " +
+            "ON DUPLICATE KEY UPDATE tags = VALUES(tags)";
+
+    private static final String UPSERT_DETECTOR_SQL = "INSERT INTO detector " +
+            "(uuid, model_type_id, hyperparams, training_meta, created_by) " +
+            "VALUES (:uuid, :typeId, :hyperparams, :trainingMeta, :createdBy) " +
+            "ON DUPLICATE KEY UPDATE model_type_id = VALUES(model_type_id), hyperparams = VALUES(hyperparams), " +
+            "training_meta = VALUES(training_meta)";
+
+    // Mappings have nothing to update, so existing ones are just skipped.
+    private static final String INSERT_MAPPING_SQL = "INSERT IGNORE INTO metric_detector_mapping " +
+            "(metric_id, detector_id) VALUES (:metricId, :detectorId)";
+
+    private static final String FIND_MODEL_TYPE_IDS_SQL = "SELECT ukey AS k, id FROM model_type";
+    private static final String FIND_METRIC_IDS_SQL = "SELECT hash AS k, id FROM metric WHERE hash IN (:keys)";
+    private static final String FIND_DETECTOR_IDS_SQL = "SELECT uuid AS k, id FROM detector WHERE uuid IN (:keys)";
+    private static final String FIND_DETECTOR_ENABLED_SQL = "SELECT uuid, enabled FROM detector WHERE uuid IN (:uuids)";
+    private static final String FIND_METRICS_SQL = "SELECT ukey, hash, tags FROM metric " +
+            "WHERE hash IN (:hashes) OR ukey IN (:keys) FOR UPDATE";
+    private static final String FIND_DETECTORS_SQL = "SELECT uuid, model_type_id, hyperparams, training_meta " +
+            "FROM detector WHERE uuid IN (:uuids) FOR UPDATE";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private DetectorLookupCache lookupCache;
+
+    @Autowired(required = false)
+    private DetectorUpdatePublisher updatePublisher;
+
+    @Autowired
+    private BulkImportSettings settings;
+
+    /**
+     * Upserts metrics. Each line is an object with {@code key}, {@code hash} and optional {@code tags}.
+     *
+     * @param in NDJSON input.
+     * @return Per-item results.
+     * @throws IOException              if there's a problem reading the input.
+     * @throws IllegalArgumentException if the input has more than the maximum number of items.
+     */
+    public BulkImportResult importMetrics(Reader in) throws IOException {
+        BulkImportResult result = new BulkImportResult();
+        List<Item<MetricItem>> items = readItems(in, MetricItem.class, result);
+        for (List<Item<MetricItem>> chunk : Lists.partition(items, settings.getChunkSize())) {
+            writeChunk("metrics", chunk, () -> upsertMetrics(chunk), null);
+        }
+        result.summarize();
+        log.info("Imported metrics: {}", summary(result));
+        return result;
+    }
+
+    /**
+     * Upserts detectors. Each line is an object with {@code uuid}, {@code type} (the model type key) and optional
+     * {@code hyperparams}, {@code trainingMetaData} and {@code createdBy}. Updates leave {@code createdBy} and the
+     * enabled flag alone.
+     *
+     * @param in NDJSON input.
+     * @return Per-item results.
+     * @throws IOException              if there's a problem reading the input.
+     * @throws IllegalArgumentException if the input has more than the maximum number of items.
+     */
+    public BulkImportResult importDetectors(Reader in) throws IOException {
+        BulkImportResult result = new BulkImportResult();
+        List<Item<DetectorItem>> items = readItems(in, DetectorItem.class, result);
+        Map<String, Long> typeIds = findIds(FIND_MODEL_TYPE_IDS_SQL, null);
+        for (List<Item<DetectorItem>> chunk : Lists.partition(items, settings.getChunkSize())) {
+            Map<String, Boolean> enabledFlags = new HashMap<>();
+            writeChunk("detectors", chunk, () -> upsertDetectors(chunk, typeIds, enabledFlags),
+                    () -> afterDetectorsCommit(chunk, enabledFlags));
+        }
+        result.summarize();
+        log.info("Imported detectors: {}", summary(result));
+        return result;
+    }
+
+    /**
+     * Creates metric-detector mappings. Each line is an object with {@code metricHash} and {@code detectorUuid}, both
+     * of which must already exist.
+     *
+     * @param in NDJSON input.
+     * @return Per-item results.
+     * @throws IOException              if there's a problem reading the input.
+     * @throws IllegalArgumentException if the input has more than the maximum number of items.
+     */
+    public BulkImportResult importMappings(Reader in) throws IOException {
+        BulkImportResult result = new BulkImportResult();
+        List<Item<MappingItem>> items = readItems(in, MappingItem.class, result);
+        for (List<Item<MappingItem>> chunk : Lists.partition(items, settings.getChunkSize())) {
+            writeChunk("mappings", chunk, () -> insertMappings(chunk), () -> afterMappingsCommit(chunk));
+        }
+        result.summarize();
+        log.info("Imported mappings: {}", summary(result));
+        return result;
+    }
+
+    private <T extends Validated> List<Item<T>> readItems(Reader in, Class<T> itemClass, BulkImportResult result)
+            throws IOException {
+
+        List<Item<T>> items = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(in);
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            if (result.getResults().size() == settings.getMaxItems()) {
+                throw new IllegalArgumentException("Import must contain at most " + settings.getMaxItems() + " items");
+            }
+
+            ItemResult itemResult = result.addItem(lineNumber);
+            T value;
+            try {
+                value = objectMapper.readValue(line, itemClass);
+            } catch (JsonProcessingException e) {
+                itemResult.fail("Malformed item: " + e.getOriginalMessage());
+                continue;
+            }
+            itemResult.setKey(value.key());
+            String error = value.validate();
+            if (error != null) {
+                itemResult.fail(error);
+                continue;
+            }
+            items.add(new Item<>(value, itemResult));
+        }
+        return items;
+    }
+
+    private <T> void writeChunk(String what, List<Item<T>> chunk, Runnable write, Runnable afterCommit) {
+        try {
+            new TransactionTemplate(transactionManager).execute(status -> {
+                write.run();
+                return null;
+            });
+        } catch (DataAccessException e) {
+            log.warn("Error importing {}: lines={}-{}", what,
+                    chunk.get(0).getResult().getLine(), chunk.get(chunk.size() - 1).getResult().getLine(), e);
+            String message = "Chunk rolled back: " + e.getMostSpecificCause().getMessage();
+            for (Item<T> item : chunk) {
+                if (item.getResult().getStatus() != Status.FAILED) {
+                    item.getResult().fail(message);
+                }
+            }
+            return;
+        }
+        if (afterCommit != null) {
+            afterCommit.run();
+        }
+    }
+
+    private void upsertMetrics(List<Item<MetricItem>> chunk) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("hashes", keys(chunk, MetricItem::getHash));
+        params.put("keys", keys(chunk, MetricItem::getKey));
+        Map<String, String> keysByHash = new HashMap<>();
+        Map<String, String> hashesByKey = new HashMap<>();
+        Map<String, JsonNode> tagsByHash = new HashMap<>();
+        for (Map<String, Object> row : jdbcTemplate.queryForList(FIND_METRICS_SQL, params)) {
+            String key = (String) row.get("ukey");
+            String hash = (String) row.get("hash");
+            keysByHash.put(hash, key);
+            hashesByKey.put(key, hash);
+            tagsByHash.put(hash, readJson(row.get("tags")));
+        }
+
+        List<Item<MetricItem>> changed = new ArrayList<>(chunk.size());
+        for (Item<MetricItem> item : chunk) {
+            MetricItem metric = item.getValue();
+            String existingKey = keysByHash.get(metric.getHash());
+            String existingHash = hashesByKey.get(metric.getKey());
+            JsonNode tags = objectMapper.valueToTree(metric.getTags());
+            if (existingKey != null && !existingKey.equals(metric.getKey())) {
+                item.getResult().fail("hash " + metric.getHash() + " already belongs to metric " + existingKey);
+            } else if (existingHash != null && !existingHash.equals(metric.getHash())) {
+                item.getResult().fail("key " + metric.getKey() + " already has hash " + existingHash);
+            } else if (existingKey != null && Objects.equals(tagsByHash.get(metric.getHash()), tags)) {
+                item.getResult().setStatus(Status.UNCHANGED);
+            } else {
+                // Later items in the chunk see this one as existing.
+                keysByHash.put(metric.getHash(), metric.getKey());
+                hashesByKey.put(metric.getKey(), metric.getHash());
+                tagsByHash.put(metric.getHash(), tags);
+                changed.add(item);
+            }
+        }
+        batchUpdate(UPSERT_METRIC_SQL, changed, metric -> new MapSqlParameterSource()
+                .addValue("key", metric.getKey())
+                .addValue("hash", metric.getHash())
+                .addValue("tags", toJson(metric.getTags())));
+    }
+
+    private void upsertDetectors(
+            List<Item<DetectorItem>> chunk,
+            Map<String, Long> typeIds,
+            Map<String, Boolean> enabledFlags) {
+
+        Map<String, List<Object>> statesByUuid = new HashMap<>();
+        Map<String, Object> uuids = Collections.singletonMap("uuids", keys(chunk, DetectorItem::getUuid));
+        for (Map<String, Object> row : jdbcTemplate.queryForList(FIND_DETECTORS_SQL, uuids)) {
+            statesByUuid.put((String) row.get("uuid"), Arrays.asList(
+                    ((Number) row.get("model_type_id")).longValue(),
+                    readJson(row.get("hyperparams")),
+                    readJson(row.get("training_meta"))));
+        }
+
+        List<Item<DetectorItem>> valid = new ArrayList<>(chunk.size());
+        for (Item<DetectorItem> item : chunk) {
+            DetectorItem detector = item.getValue();
+            Long typeId = typeIds.get(detector.getType());
+            if (typeId == null) {
+                item.getResult().fail("Unknown detector type: " + detector.getType());
+                continue;
+            }
+            List<Object> state = Arrays.asList(
+                    typeId,
+                    objectMapper.valueToTree(detector.getHyperparams()),
+                    objectMapper.valueToTree(detector.getTrainingMetaData()));
+            if (state.equals(statesByUuid.put(detector.getUuid(), state))) {
+                item.getResult().setStatus(Status.UNCHANGED);
+            } else {
+                valid.add(item);
+            }
+        }
+        batchUpdate(UPSERT_DETECTOR_SQL, valid, detector -> new MapSqlParameterSource()
+                .addValue("uuid", detector.getUuid())
+                .addValue("typeId", typeIds.get(detector.getType()))
+                .addValue("hyperparams", toJson(detector.getHyperparams()))
+                .addValue("trainingMeta", toJson(detector.getTrainingMetaData()))
+                .addValue("createdBy", detector.getCreatedBy()));
+
+        // Updates keep the stored enabled flag, so read it back for the update events.
+        if (updatePublisher != null && !valid.isEmpty()) {
+            Map<String, Object> params = Collections.singletonMap("uuids", keys(valid, DetectorItem::getUuid));
+            for (Map<String, Object> row : jdbcTemplate.queryForList(FIND_DETECTOR_ENABLED_SQL, params)) {
+                Object enabled = row.get("enabled");
+                enabledFlags.put((String) row.get("uuid"), enabled instanceof Number
+                        ? ((Number) enabled).intValue() != 0
+                        : (Boolean) enabled);
+            }
+        }
+    }
+
+    private void insertMappings(List<Item<MappingItem>> chunk) {
+        Map<String, Long> metricIds = findIds(FIND_METRIC_IDS_SQL, keys(chunk, MappingItem::getMetricHash));
+        Map<String, Long> detectorIds = findIds(FIND_DETECTOR_IDS_SQL, keys(chunk, MappingItem::getDetectorUuid));
+
+        List<Item<MappingItem>> valid = new ArrayList<>(chunk.size());
+        for (Item<MappingItem> item : chunk) {
+            MappingItem mapping = item.getValue();
+            if (!metricIds.containsKey(mapping.getMetricHash())) {
+                item.getResult().fail("Unknown metric hash: " + mapping.getMetricHash());
+            } else if (!detectorIds.containsKey(mapping.getDetectorUuid())) {
+                item.getResult().fail("Unknown detector uuid: " + mapping.getDetectorUuid());
+            } else {
+                valid.add(item);
+            }
+        }
+        batchUpdate(INSERT_MAPPING_SQL, valid, mapping -> new MapSqlParameterSource()
+                .addValue("metricId", metricIds.get(mapping.getMetricHash()))
+                .addValue("detectorId", detectorIds.get(mapping.getDetectorUuid())));
+    }
+
+    private void afterDetectorsCommit(List<Item<DetectorItem>> chunk, Map<String, Boolean> enabledFlags) {
+        for (Item<DetectorItem> item : chunk) {
+            if (isWritten(item) && item.getResult().getStatus() != Status.UNCHANGED) {
+                String uuid = item.getValue().getUuid();
+                lookupCache.invalidateDetector(uuid);
+                if (updatePublisher != null) {
+                    updatePublisher.publishUpdate(uuid, enabledFlags.get(uuid));
+                }
+            }
+        }
+    }
+
+    private void afterMappingsCommit(List<Item<MappingItem>> chunk) {
+        for (Item<MappingItem> item : chunk) {
+            if (isWritten(item) && item.getResult().getStatus() != Status.UNCHANGED) {
+                lookupCache.invalidateMetric(item.getValue().getMetricHash());
+            }
+        }
+    }
+
+    private <T> void batchUpdate(String sql, List<Item<T>> items, ParamsBuilder<T> paramsBuilder) {
+        if (items.isEmpty()) {
+            return;
+        }
+        SqlParameterSource[] params = new SqlParameterSource[items.size()];
+        for (int i = 0; i < params.length; i++) {
+            params[i] = paramsBuilder.build(items.get(i).getValue());
+        }
+        int[] counts = jdbcTemplate.batchUpdate(sql, params);
+        for (int i = 0; i < params.length; i++) {
+            items.get(i).getResult().setStatus(toStatus(counts[i]));
+        }
+    }
+
+    private Map<String, Long> findIds(String sql, Set<String> keys) {
+        Map<String, Long> ids = new HashMap<>();
+        if (keys != null && keys.isEmpty()) {
+            return ids;
+        }
+        Map<String, Object> params = keys == null
+                ? Collections.emptyMap()
+                : Collections.singletonMap("keys", keys);
+        for (Map<String, Object> row : jdbcTemplate.queryForList(sql, params)) {
+            ids.put((String) row.get("k"), ((Number) row.get("id")).longValue());
+        }
+        return ids;
+    }
+
+    private String toJson(Map<String, Object> value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Can't serialize JSON column", e);
+        }
+    }
+
+    private JsonNode readJson(Object column) {
+        if (column == null) {
+            return null;
+        }
+        String json = column instanceof byte[]
+                ? new String((byte[]) column, StandardCharsets.UTF_8)
+                : column.toString();
+        try {
+            return objectMapper.readTree(json);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't deserialize JSON column", e);
+        }
+    }
+
+    private static <T> Set<String> keys(List<Item<T>> items, Function<T, String> keyFn) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (Item<T> item : items) {
+            keys.add(keyFn.apply(item.getValue()));
+        }
+        return keys;
+    }
+
+    private static boolean isWritten(Item<?> item) {
+        Status status = item.getResult().getStatus();
+        return status != null && status != Status.FAILED;
+    }
+
+    private static Status toStatus(int count) {
+        switch (count) {
+            case 0:
+                return Status.UNCHANGED;
+            case 1:
+                return Status.CREATED;
+            case 2:
+                // MySQL reports 2 for an ON DUPLICATE KEY UPDATE that changed the existing row.
+                return Status.UPDATED;
+            default:
+                return Status.UPSERTED;
+        }
+    }
+
+    private static String summary(BulkImportResult result) {
+        return "total=" + result.getTotal() + ", created=" + result.getCreated() + ", updated=" + result.getUpdated() +
+                ", unchanged=" + result.getUnchanged() + ", upserted=" + result.getUpserted() +
+                ", failed=" + result.getFailed();
+    }
+
+    private interface ParamsBuilder<T> {
+        SqlParameterSource build(T value);
+    }
+
+    private interface Validated {
+
+        /**
+         * @return Natural key of the item, for reporting.
+         */
+        String key();
+
+        /**
+         * @return Error message if the item is invalid, or null if it's valid.
+         */
+        String validate();
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class Item<T> {
+        private T value;
+        private ItemResult result;
+    }
+
+    @Data
+    static class MetricItem implements Validated {
+        private String key;
+        private String hash;
+        private Map<String, Object> tags;
+
+        @Override
+        public String key() {
+            return hash;
+        }
+
+        @Override
+        public String validate() {
+            if (key == null || key.isEmpty()) {
+                return "key is required";
+            }
+            if (hash == null || hash.isEmpty()) {
+                return "hash is required";
+            }
+            return null;
+        }
+    }
+
+    @Data
+    static class DetectorItem implements Validated {
+        private String uuid;
+        private String type;
+        private Map<String, Object> hyperparams;
+        private Map<String, Object> trainingMetaData;
+        private String createdBy;
+
+        @Override
+        public String key() {
+            return uuid;
+        }
+
+        @Override
+        public String validate() {
+            if (uuid == null) {
+                return "uuid is required";
+            }
+            try {
+                UUID.fromString(uuid);
+            } catch (IllegalArgumentException e) {
+                return "Invalid uuid: " + uuid;
+            }
+            if (type == null) {
+                return "type is required";
+            }
+            return null;
+        }
+    }
+
+    @Data
+    static class MappingItem implements Validated {
+        private String metricHash;
+        private String detectorUuid;
+
+        @Override
+        public String key() {
+            return metricHash + "/" + detectorUuid;
+        }
+
+        @Override
+        public String validate() {
+            if (metricHash == null) {
+                return "metricHash is required";
+            }
+            if (detectorUuid == null) {
+                return "detectorUuid is required";
+            }
+            return null;
+        }
+    }
+}
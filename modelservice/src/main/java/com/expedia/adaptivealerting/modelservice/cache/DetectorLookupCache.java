@@ -0,0 +1,311 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.cache;
+
+import com.expedia.adaptivealerting.modelservice.LookupCacheSettings;
+import com.expedia.adaptivealerting.modelservice.entity.Detector;
+import com.expedia.adaptivealerting.modelservice.entity.Model;
+import com.expedia.adaptivealerting.modelservice.repo.DetectorRepository;
+import com.expedia.adaptivealerting.modelservice.repo.ModelRepository;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache for the lookups every detector mapper and manager makes: the detector UUIDs of a metric hash and
+ * the detector bundle of a detector UUID. Absent bundles are cached too, so detectors without models don't hit the
+ * database on every retry.
+ * <p>
+ * Changes made through the REST API invalidate the affected entries (see {@code LookupCacheEventHandler}). Entries
+ * also expire after a fixed time, which bounds staleness for changes the events don't see, such as writes through
+ * another Model Service instance or straight to the database. A load that overlaps an invalidation isn't cached, since
+ * it may have read the database before the change.
+ * <p>
+ * Gets, hits, misses and evictions are published per cache through Micrometer, along with a hit ratio gauge.
+ */
+@Component
+public class DetectorLookupCache {
+    private static final String PARAM_ANOMALY_TYPE = "type";
+
+    private final DetectorRepository detectorRepository;
+    private final ModelRepository modelRepository;
+    private final boolean enabled;
+
+    private final GuardedCache<List<String>> detectorUuidsByMetricHash;
+    private final GuardedCache<Optional<Map<String, Object>>> bundlesByDetectorUuid;
+
+    @Autowired
+    public DetectorLookupCache(
+            DetectorRepository detectorRepository,
+            ModelRepository modelRepository,
+            LookupCacheSettings settings,
+            MeterRegistry meterRegistry) {
+        this(detectorRepository, modelRepository, settings, meterRegistry, Ticker.systemTicker());
+    }
+
+    DetectorLookupCache(
+            DetectorRepository detectorRepository,
+            ModelRepository modelRepository,
+            LookupCacheSettings settings,
+            MeterRegistry meterRegistry,
+            Ticker ticker) {
+        this.detectorRepository = detectorRepository;
+        this.modelRepository = modelRepository;
+        this.enabled = settings.isEnabled();
+        this.detectorUuidsByMetricHash = new GuardedCache<>(buildCache(settings, ticker));
+        this.bundlesByDetectorUuid = new GuardedCache<>(buildCache(settings, ticker));
+        monitor(meterRegistry, detectorUuidsByMetricHash.cache, "detectorUuidsByMetricHash");
+        monitor(meterRegistry, bundlesByDetectorUuid.cache, "detectorBundles");
+    }
+
+    private static <V> Cache<String, V> buildCache(LookupCacheSettings settings, Ticker ticker) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(settings.getMaximumSize())
+                .expireAfterWrite(settings.getExpireAfterWriteMs(), TimeUnit.MILLISECONDS)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    private static void monitor(MeterRegistry meterRegistry, Cache<String, ?> cache, String name) {
+        GuavaCacheMetrics.monitor(meterRegistry, cache, name);
+        Gauge.builder("cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .tag("cache", name)
+                .description("Fraction of lookups served from the cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Finds the detector UUIDs for the given metric hash.
+     *
+     * @param hash Metric hash.
+     * @return Detector UUIDs, empty if the metric has no detectors.
+     */
+    public List<String> findDetectorUuidsByMetricHash(String hash) {
+        if (!enabled) {
+            return detectorRepository.findDetectorUuidsByMetricHash(hash);
+        }
+        return detectorUuidsByMetricHash.get(hash, () ->
+                Collections.unmodifiableList(detectorRepository.findDetectorUuidsByMetricHash(hash)));
+    }
+
+    /**
+     * Finds the detector UUIDs for each of the given metric hashes, querying the database once for all the hashes
+     * that aren't cached.
+     *
+     * @param hashes Metric hashes.
+     * @return Detector UUIDs keyed by metric hash, in request order. Every requested hash is present, with an empty
+     * list if it has no detectors.
+     */
+    public Map<String, List<String>> findDetectorUuidsByMetricHashes(Collection<String> hashes) {
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String hash : hashes) {
+            List<String> uuids = enabled ? detectorUuidsByMetricHash.getIfPresent(hash) : null;
+            result.put(hash, uuids);
+            if (uuids == null) {
+                missing.add(hash);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        long generation = detectorUuidsByMetricHash.generation();
+        Map<String, List<String>> loaded = new LinkedHashMap<>();
+        for (String hash : missing) {
+            loaded.put(hash, new ArrayList<>());
+        }
+        for (Object[] row : detectorRepository.findDetectorUuidsByMetricHashes(missing)) {
+            loaded.computeIfAbsent((String) row[0], hash -> new ArrayList<>()).add((String) row[1]);
+        }
+        loaded.replaceAll((hash, uuids) -> Collections.unmodifiableList(uuids));
+        result.putAll(loaded);
+        if (enabled) {
+            detectorUuidsByMetricHash.putAllIfCurrent(loaded, generation);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the bundle of the given detector: its UUID, type key, enabled flag, latest model params and anomaly type.
+     *
+     * @param uuid Detector UUID.
+     * @return Detector bundle, or empty if the detector doesn't exist or has no models.
+     */
+    public Optional<Map<String, Object>> findDetectorBundle(String uuid) {
+        if (!enabled) {
+            return loadBundle(uuid);
+        }
+        return bundlesByDetectorUuid.get(uuid, () -> loadBundle(uuid));
+    }
+
+    /**
+     * Finds the bundles of the given detectors, querying the database once for all the detectors that aren't cached.
+     *
+     * @param uuids Detector UUIDs.
+     * @return Detector bundles, in request order. Detectors without models are absent.
+     */
+    public List<Map<String, Object>> findDetectorBundles(Collection<String> uuids) {
+        Map<String, Optional<Map<String, Object>>> bundles = new LinkedHashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String uuid : uuids) {
+            Optional<Map<String, Object>> bundle = enabled ? bundlesByDetectorUuid.getIfPresent(uuid) : null;
+            bundles.put(uuid, bundle);
+            if (bundle == null) {
+                missing.add(uuid);
+            }
+        }
+        if (!missing.isEmpty()) {
+            long generation = bundlesByDetectorUuid.generation();
+            Map<String, Optional<Map<String, Object>>> loaded = loadBundles(missing);
+            bundles.putAll(loaded);
+            if (enabled) {
+                bundlesByDetectorUuid.putAllIfCurrent(loaded, generation);
+            }
+        }
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        bundles.values().forEach(bundle -> bundle.ifPresent(result::add));
+        return result;
+    }
+
+    /**
+     * Invalidates the cached bundle of the given detector, e.g. because the detector or one of its models changed.
+     *
+     * @param uuid Detector UUID.
+     */
+    public void invalidateDetector(String uuid) {
+        bundlesByDetectorUuid.invalidate(uuid);
+    }
+
+    /**
+     * Invalidates the cached detector UUIDs of the given metric, e.g. because one of its mappings changed.
+     *
+     * @param hash Metric hash.
+     */
+    public void invalidateMetric(String hash) {
+        detectorUuidsByMetricHash.invalidate(hash);
+    }
+
+    /**
+     * Invalidates all cached detector UUIDs. Used when a change may affect metrics we can't identify, such as a deleted
+     * detector taking its mappings with it.
+     */
+    public void invalidateAllMetrics() {
+        detectorUuidsByMetricHash.invalidateAll();
+    }
+
+    private Optional<Map<String, Object>> loadBundle(String uuid) {
+        return loadBundles(Collections.singleton(uuid)).get(uuid);
+    }
+
+    private Map<String, Optional<Map<String, Object>>> loadBundles(Set<String> uuids) {
+        Map<String, Optional<Map<String, Object>>> bundles = new LinkedHashMap<>();
+        for (String uuid : uuids) {
+            bundles.put(uuid, Optional.empty());
+        }
+        for (Model model : modelRepository.findDetectorBundles(uuids)) {
+            // Models created in the same instant come back newest first, so keep the first one.
+            String uuid = model.getDetector().getUuid();
+            Optional<Map<String, Object>> bundle = bundles.get(uuid);
+            if (bundle == null || !bundle.isPresent()) {
+                bundles.put(uuid, Optional.of(toBundle(model)));
+            }
+        }
+        return bundles;
+    }
+
+    private static Map<String, Object> toBundle(Model model) {
+        Detector detector = model.getDetector();
+        Map<String, Object> params = model.getParams();
+        Map<String, Object> bundle = new LinkedHashMap<>();
+        bundle.put("uuid", detector.getUuid());
+        bundle.put("detectorType", detector.getType().getKey());
+        bundle.put("enabled", detector.getEnabled() == null || detector.getEnabled());
+        bundle.put("params", params == null ? null : Collections.unmodifiableMap(params));
+
+        // Only detectors that support tails have an anomaly type param, so it's null for the others.
+        bundle.put("anomalyType", params == null ? null : params.get(PARAM_ANOMALY_TYPE));
+        return Collections.unmodifiableMap(bundle);
+    }
+
+    /**
+     * Cache that only stores loads no invalidation overlapped. Every invalidation bumps a generation; a load notes the
+     * generation before querying the database and its result is dropped if the generation has moved on since, as it
+     * may predate the change. The generation is per cache rather than per key, so an unrelated invalidation costs at
+     * most an extra miss.
+     */
+    private static final class GuardedCache<V> {
+        private final Cache<String, V> cache;
+        private long generation;
+
+        GuardedCache(Cache<String, V> cache) {
+            this.cache = cache;
+        }
+
+        V get(String key, Supplier<V> loader) {
+            V value = cache.getIfPresent(key);
+            if (value == null) {
+                long loadGeneration = generation();
+                value = loader.get();
+                putAllIfCurrent(Collections.singletonMap(key, value), loadGeneration);
+            }
+            return value;
+        }
+
+        V getIfPresent(String key) {
+            return cache.getIfPresent(key);
+        }
+
+        synchronized long generation() {
+            return generation;
+        }
+
+        synchronized void putAllIfCurrent(Map<String, V> values, long loadGeneration) {
+            if (generation == loadGeneration) {
+                cache.putAll(values);
+            }
+        }
+
+        synchronized void invalidate(String key) {
+            generation++;
+            cache.invalidate(key);
+        }
+
+        synchronized void invalidateAll() {
+            generation++;
+            cache.invalidateAll();
+        }
+    }
+}
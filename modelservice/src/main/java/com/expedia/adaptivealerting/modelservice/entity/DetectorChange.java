@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.entity;
+
+import lombok.Data;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.sql.Timestamp;
+
+/**
+ * Entry in the detector change log. Entries are written by database triggers whenever a detector, one of its models or
+ * one of its mappings changes, and are never updated.
+ */
+@Data
+@Entity
+@Table(name = "detector_change_log")
+public class DetectorChange {
+
+    @Id
+    private Long seq;
+
+    @Column(name = "detector_uuid")
+    private String detectorUuid;
+
+    /**
+     * Hash of the mapped metric, for mapping changes.
+     */
+    @Column(name = "metric_hash")
+    private String metricHash;
+
+    /**
+     * What changed: DETECTOR, MODEL or MAPPING.
+     */
+    private String source;
+
+    /**
+     * UPSERT or DELETE.
+     */
+    @Column(name = "change_type")
+    private String changeType;
+
+    @Column(name = "date_created")
+    private Timestamp dateCreated;
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.entity;
+
+import com.expedia.adaptivealerting.modelservice.util.JpaConverterJson;
+import lombok.Data;
+
+import javax.persistence.*;
+import java.sql.Timestamp;
+import java.util.Map;
+
+/**
+ * Pattern-based metric-to-detector mapping. Maps every metric whose key matches the key pattern and whose tags match
+ * all the tag predicates to the detector, without a mapping row per metric. Patterns are globs: '*' matches any run of
+ * characters and '?' matches a single character.
+ */
+@Data
+@Entity
+public class MappingRule {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "detector_id")
+    private Detector detector;
+
+    @Column(name = "key_pattern")
+    private String keyPattern;
+
+    /**
+     * Tag value patterns by tag name.
+     */
+    @Column(name = "tag_predicates")
+    @Convert(converter = JpaConverterJson.class)
+    private Map<String, Object> tagPredicates;
+
+    @Column(name = "enabled", insertable = false)
+    private Boolean enabled;
+
+    @Column(name = "created_by")
+    private String createdBy;
+
+    @Column(name = "last_update_timestamp", insertable = false)
+    private Timestamp lastUpdateTimestamp;
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.event;
+
+import com.expedia.adaptivealerting.modelservice.DetectorUpdateSettings;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Properties;
+
+/**
+ * Publishes detector changes to a compacted Kafka topic keyed by detector UUID. Detector managers consume the topic as
+ * a global table, so changes take effect within seconds instead of at the next refresh poll. Deleted detectors are
+ * published as tombstones.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "detector-updates.enabled", havingValue = "true")
+public class DetectorUpdatePublisher {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Producer<String, String> producer;
+    private final String topic;
+
+    @Autowired
+    public DetectorUpdatePublisher(DetectorUpdateSettings settings) {
+        this(buildProducer(settings), settings.getTopic());
+    }
+
+    DetectorUpdatePublisher(Producer<String, String> producer, String topic) {
+        this.producer = producer;
+        this.topic = topic;
+    }
+
+    private static Producer<String, String> buildProducer(DetectorUpdateSettings settings) {
+        Properties props = new Properties();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, settings.getBootstrapServers());
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        return new KafkaProducer<>(props);
+    }
+
+    /**
+     * Publishes the current status of the given detector.
+     *
+     * @param uuid    Detector uuid.
+     * @param enabled Whether the detector is enabled. {@code null} means the database default, which is enabled.
+     */
+    public void publishUpdate(String uuid, Boolean enabled) {
+        String value;
+        try {
+            value = objectMapper.writeValueAsString(new DetectorUpdate(uuid, enabled == null || enabled));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Can't serialize detector update: uuid=" + uuid, e);
+        }
+        send(uuid, value);
+    }
+
+    /**
+     * Publishes a tombstone for the given detector.
+     *
+     * @param uuid Detector uuid.
+     */
+    public void publishDelete(String uuid) {
+        send(uuid, null);
+    }
+
+    private void send(String uuid, String value) {
+        producer.send(new ProducerRecord<>(topic, uuid, value), (metadata, e) -> {
+            if (e != null) {
+                log.error("Error publishing detector update: uuid={}", uuid, e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        producer.close();
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class DetectorUpdate {
+        private String uuid;
+        private boolean enabled;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.filter;
+
+import com.expedia.adaptivealerting.modelservice.MappedMetricFilterSettings;
+import com.expedia.adaptivealerting.modelservice.repo.MetricDetectorMappingRepository;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+/**
+ * Builds and versions a Bloom filter of the hashes of all metrics that have detector mappings. Mappers download the
+ * filter and use it to drop unmapped metrics before looking up their detectors.
+ * <p>
+ * The filter is rebuilt at most once per rebuild interval. Its version is a digest of the sorted metric hashes and the
+ * false positive rate, so it only changes when the set of mapped metrics does, and clients can poll the version
+ * cheaply before downloading the filter.
+ */
+@Slf4j
+@Component
+public class MappedMetricFilterProvider {
+    private final MetricDetectorMappingRepository mappingRepository;
+    private final MappedMetricFilterSettings settings;
+    private final LongSupplier clock;
+
+    private MappedMetricFilter filter;
+    private long builtAt;
+
+    @Autowired
+    public MappedMetricFilterProvider(
+            MetricDetectorMappingRepository mappingRepository,
+            MappedMetricFilterSettings settings) {
+        this(mappingRepository, settings, System::currentTimeMillis);
+    }
+
+    MappedMetricFilterProvider(
+            MetricDetectorMappingRepository mappingRepository,
+            MappedMetricFilterSettings settings,
+            LongSupplier clock) {
+        this.mappingRepository = mappingRepository;
+        this.settings = settings;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the current filter, rebuilding it first if it's older than the rebuild interval.
+     *
+     * @return Current mapped metric filter.
+     */
+    public synchronized MappedMetricFilter getFilter() {
+        long now = clock.getAsLong();
+        if (filter == null || now - builtAt >= settings.getRebuildIntervalMs()) {
+            filter = buildFilter();
+            builtAt = now;
+        }
+        return filter;
+    }
+
+    private MappedMetricFilter buildFilter() {
+        List<String> hashes = new ArrayList<>(mappingRepository.findMappedMetricHashes());
+        hashes.removeIf(Objects::isNull);
+        Collections.sort(hashes);
+
+        int expectedInsertions = Math.max(hashes.size(), settings.getMinExpectedInsertions());
+        BloomFilter<CharSequence> bloomFilter = BloomFilter.create(
+                Funnels.stringFunnel(StandardCharsets.UTF_8),
+                expectedInsertions,
+                settings.getFalsePositiveRate());
+        hashes.forEach(bloomFilter::put);
+
+        Hasher versionHasher = Hashing.murmur3_128().newHasher()
+                .putDouble(settings.getFalsePositiveRate())
+                .putInt(expectedInsertions);
+        hashes.forEach(hash -> versionHasher.putUnencodedChars(hash).putByte((byte) 0));
+        String version = versionHasher.hash().toString();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            bloomFilter.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't serialize mapped metric filter", e);
+        }
+        log.info("Built mapped metric filter: version={}, metrics={}, bytes={}", version, hashes.size(), out.size());
+        return new MappedMetricFilter(version, hashes.size(), out.toByteArray());
+    }
+
+    /**
+     * Serialized Bloom filter along with its version.
+     */
+    @Value
+    public static class MappedMetricFilter {
+        String version;
+        int metricCount;
+        byte[] content;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.index;
+
+import com.expedia.adaptivealerting.modelservice.repo.MetricDetectorMappingRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+/**
+ * Streams the metric-to-detector mapping index as newline-delimited JSON, so mappers can hold the whole mapping in
+ * memory instead of looking up each metric.
+ * <p>
+ * The first line is a header with the total mapping count, the largest mapping id and a checksum over all mappings.
+ * The remaining lines are the mappings with ids in {@code (afterId, maxId]}. Passing the previous {@code maxId} as
+ * {@code afterId} returns just the mappings added since. Deleted and updated mappings, and mappings committed late
+ * with an id below the cursor, don't show up in a delta; clients detect them because their own count or checksum
+ * differs from the header's, and reload the full index.
+ * <p>
+ * Everything is read in a single read-only transaction, so with InnoDB's consistent reads the header always matches
+ * the rows.
+ */
+@Slf4j
+@Component
+public class MappingIndexExporter {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private MetricDetectorMappingRepository mappingRepository;
+
+    /**
+     * Writes the mappings with ids greater than the given id to the given output stream.
+     *
+     * @param afterId Exclusive lower id bound. Use 0 for the full index.
+     * @param out     Output stream.
+     * @return Number of mappings written.
+     * @throws IOException if there's a problem writing the mappings.
+     */
+    @Transactional(readOnly = true)
+    public long export(long afterId, OutputStream out) throws IOException {
+        Long maxId = mappingRepository.findMaxId();
+        Header header = new Header(
+                mappingRepository.count(),
+                maxId == null ? 0L : maxId,
+                mappingRepository.findChecksum());
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writeLine(writer, header);
+
+        long written = 0L;
+        try (Stream<Object[]> rows = mappingRepository.streamIndexRows(afterId, header.getMaxId())) {
+            for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+                writeLine(writer, new Entry(((Number) row[0]).longValue(), (String) row[1], (String) row[2]));
+                written++;
+            }
+        }
+        writer.flush();
+        log.info("Exported mapping index: afterId={}, maxId={}, written={}", afterId, header.getMaxId(), written);
+        return written;
+    }
+
+    private void writeLine(Writer writer, Object value) throws IOException {
+        writer.write(objectMapper.writeValueAsString(value));
+        writer.write('\n');
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class Header {
+        private long count;
+        private long maxId;
+        private long checksum;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class Entry {
+        private long id;
+        private String metricHash;
+        private String detectorUuid;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.repo;
+
+import com.expedia.adaptivealerting.modelservice.entity.DetectorChange;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+
+import java.util.List;
+
+/**
+ * Spring Data repository for the detector change log. The log is served through {@code /api/changes} instead of a
+ * repository resource.
+ * <p>
+ * Sequence numbers are assigned at insert but become visible at commit, so a transaction can commit a lower seq after
+ * a higher one is already visible, and a rolled back transaction leaves a seq that never appears. Readers therefore
+ * only serve the log up to the first missing seq, and treat a missing seq as rolled back once a later change is older
+ * than a settle window, which must exceed the longest transaction that writes detectors, models or mappings.
+ */
+@RepositoryRestResource(exported = false)
+public interface DetectorChangeRepository extends PagingAndSortingRepository<DetectorChange, Long> {
+
+    /**
+     * Finds the visible changes after the given cursor, in seq order. The result may skip seqs whose transactions
+     * haven't committed yet.
+     *
+     * @param cursor Seq of the last change the caller has seen.
+     * @param limit  Maximum number of changes.
+     * @return Changes after the cursor.
+     */
+    @Query(nativeQuery = true, value = "SELECT * FROM detector_change_log " +
+            "WHERE seq > :cursor ORDER BY seq LIMIT :limit")
+    List<DetectorChange> findChangesSince(@Param("cursor") long cursor, @Param("limit") int limit);
+
+    /**
+     * Finds the seq of the latest change older than the settle window. Seqs are assigned in insert order, so a seq
+     * below this one that still isn't visible belongs to a transaction older than the window, i.e. one that rolled
+     * back.
+     *
+     * @param settleSeconds Settle window, in seconds.
+     * @return Latest settled seq, or 0 if no change is old enough.
+     */
+    @Query(nativeQuery = true, value = "SELECT COALESCE(MAX(seq), 0) FROM detector_change_log " +
+            "WHERE date_created <= DATE_SUB(CURRENT_TIMESTAMP(), INTERVAL :settleSeconds SECOND)")
+    long findSettledSeq(@Param("settleSeconds") int settleSeconds);
+}
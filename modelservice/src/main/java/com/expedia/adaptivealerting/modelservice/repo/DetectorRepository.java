@@ -22,8 +22,10 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.data.rest.core.annotation.RestResource;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 @RepositoryRestResource(excerptProjection = InlineType.class)
@@ -45,6 +47,15 @@ public interface DetectorRepository extends PagingAndSortingRepository<Detector,
      */
     List<Detector> findByCreatedBy(@Param("user") String user);
 
+    /**
+     * Finds the list of detectors with the given enabled status. Detector managers use this to prefetch the detectors
+     * they own on startup.
+     *
+     * @param enabled Enabled status.
+     * @return List of detectors with the given enabled status.
+     */
+    List<Detector> findByEnabled(@Param("enabled") Boolean enabled);
+
     /**
      * Finds a list of detectors attached to a given metric hash
      *
@@ -54,6 +65,28 @@ public interface DetectorRepository extends PagingAndSortingRepository<Detector,
     @Query("select mmm.detector from MetricDetectorMapping mmm where mmm.metric.hash = :hash")
     List<Detector> findByMetricHash(@Param("hash") String hash);
 
+    /**
+     * Finds the (metric hash, detector uuid) pairs for the given metric hashes in a single query. Backs the batched
+     * lookup endpoint, which takes the hashes in a POST body, so it isn't exported as a search resource.
+     *
+     * @param hashes Metric hashes.
+     * @return (metric hash, detector uuid) pairs. Hashes without detectors are absent.
+     */
+    @RestResource(exported = false)
+    @Query("select mmm.metric.hash, mmm.detector.uuid from MetricDetectorMapping mmm where mmm.metric.hash in :hashes")
+    List<Object[]> findDetectorUuidsByMetricHashes(@Param("hashes") Collection<String> hashes);
+
+    /**
+     * Finds the uuids of the detectors attached to the given metric hash, without loading the detectors themselves.
+     * Backs the slim read endpoint, so it isn't exported as a search resource.
+     *
+     * @param hash Metric hash.
+     * @return Detector uuids.
+     */
+    @RestResource(exported = false)
+    @Query("select mmm.detector.uuid from MetricDetectorMapping mmm where mmm.metric.hash = :hash")
+    List<String> findDetectorUuidsByMetricHash(@Param("hash") String hash);
+
     /**
      * Finds a list of detectors attached to a given metric hash
      *
@@ -64,12 +97,25 @@ public interface DetectorRepository extends PagingAndSortingRepository<Detector,
     List<Detector> getLastUpdatedDetectors(@Param("interval") int interval);
 
     /**
-     * Toggle a detector enabled status
+     * Finds the uuids of the detectors updated within the given interval. Backs the slim read endpoint, so it isn't
+     * exported as a search resource.
+     *
+     * @param interval time in minutes.
+     * @return uuids of the detectors updated within interval.
+     */
+    @RestResource(exported = false)
+    @Query(nativeQuery = true, value = "SELECT uuid from detector WHERE detector.last_update_timestamp > DATE_SUB(CURRENT_TIMESTAMP(), INTERVAL :interval MINUTE)")
+    List<String> findUuidsUpdatedWithin(@Param("interval") int interval);
+
+    /**
+     * Toggle a detector enabled status. Bulk updates skip the repository events, so this is served by
+     * {@link com.expedia.adaptivealerting.modelservice.web.DetectorToggleController}, which publishes the change.
      *
      * @param enabled boolean
      * @param uuid    detectorUUID
      * @return number of updated rows
      */
+    @RestResource(exported = false)
     @Modifying
     @Transactional
     @Query("update Detector d set d.enabled = :enabled where d.uuid = :uuid")
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.repo;
+
+import com.expedia.adaptivealerting.modelservice.entity.Detector;
+import com.expedia.adaptivealerting.modelservice.entity.Model;
+import com.expedia.adaptivealerting.modelservice.event.DetectorUpdatePublisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.rest.core.annotation.HandleAfterCreate;
+import org.springframework.data.rest.core.annotation.HandleAfterDelete;
+import org.springframework.data.rest.core.annotation.HandleAfterSave;
+import org.springframework.data.rest.core.annotation.RepositoryEventHandler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes detector and model changes made through the REST API to the detector updates topic. Detector toggles
+ * skip the repository events, so
+ * {@link com.expedia.adaptivealerting.modelservice.web.DetectorToggleController} publishes those itself.
+ */
+@Component
+@RepositoryEventHandler
+@ConditionalOnProperty(name = "detector-updates.enabled", havingValue = "true")
+public class DetectorUpdateEventHandler {
+
+    @Autowired
+    DetectorUpdatePublisher publisher;
+
+    @HandleAfterCreate
+    public void handleDetectorCreate(Detector detector) {
+        publisher.publishUpdate(detector.getUuid(), detector.getEnabled());
+    }
+
+    @HandleAfterSave
+    public void handleDetectorSave(Detector detector) {
+        publisher.publishUpdate(detector.getUuid(), detector.getEnabled());
+    }
+
+    @HandleAfterDelete
+    public void handleDetectorDelete(Detector detector) {
+        publisher.publishDelete(detector.getUuid());
+    }
+
+    @HandleAfterCreate
+    public void handleModelCreate(Model model) {
+        // A new model replaces the detector's params, so managers need to reload it.
+        Detector detector = model.getDetector();
+        publisher.publishUpdate(detector.getUuid(), detector.getEnabled());
+    }
+}
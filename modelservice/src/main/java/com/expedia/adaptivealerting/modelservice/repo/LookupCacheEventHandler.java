@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.repo;
+
+import com.expedia.adaptivealerting.modelservice.cache.DetectorLookupCache;
+import com.expedia.adaptivealerting.modelservice.entity.Detector;
+import com.expedia.adaptivealerting.modelservice.entity.MetricDetectorMapping;
+import com.expedia.adaptivealerting.modelservice.entity.Model;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.rest.core.annotation.HandleAfterCreate;
+import org.springframework.data.rest.core.annotation.HandleAfterDelete;
+import org.springframework.data.rest.core.annotation.HandleAfterSave;
+import org.springframework.data.rest.core.annotation.RepositoryEventHandler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Invalidates the detector lookup cache when detectors, models or mappings change through the REST API.
+ */
+@Component
+@RepositoryEventHandler
+public class LookupCacheEventHandler {
+
+    @Autowired
+    DetectorLookupCache lookupCache;
+
+    @HandleAfterSave
+    public void handleDetectorSave(Detector detector) {
+        lookupCache.invalidateDetector(detector.getUuid());
+    }
+
+    @HandleAfterDelete
+    public void handleDetectorDelete(Detector detector) {
+        lookupCache.invalidateDetector(detector.getUuid());
+
+        // We don't know which metrics the detector was mapped to.
+        lookupCache.invalidateAllMetrics();
+    }
+
+    @HandleAfterCreate
+    public void handleModelCreate(Model model) {
+        invalidateModel(model);
+    }
+
+    @HandleAfterSave
+    public void handleModelSave(Model model) {
+        invalidateModel(model);
+    }
+
+    @HandleAfterDelete
+    public void handleModelDelete(Model model) {
+        invalidateModel(model);
+    }
+
+    @HandleAfterCreate
+    public void handleMappingCreate(MetricDetectorMapping mapping) {
+        invalidateMapping(mapping);
+    }
+
+    @HandleAfterSave
+    public void handleMappingSave(MetricDetectorMapping mapping) {
+        // The mapping may have moved from another metric, which we can't see anymore.
+        lookupCache.invalidateAllMetrics();
+    }
+
+    @HandleAfterDelete
+    public void handleMappingDelete(MetricDetectorMapping mapping) {
+        invalidateMapping(mapping);
+    }
+
+    private void invalidateModel(Model model) {
+        if (model.getDetector() != null) {
+            lookupCache.invalidateDetector(model.getDetector().getUuid());
+        }
+    }
+
+    private void invalidateMapping(MetricDetectorMapping mapping) {
+        if (mapping.getMetric() != null) {
+            lookupCache.invalidateMetric(mapping.getMetric().getHash());
+        } else {
+            lookupCache.invalidateAllMetrics();
+        }
+    }
+}
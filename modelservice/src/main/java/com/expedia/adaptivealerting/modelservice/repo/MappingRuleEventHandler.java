@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.repo;
+
+import com.expedia.adaptivealerting.modelservice.entity.MappingRule;
+import org.springframework.data.rest.core.annotation.HandleBeforeCreate;
+import org.springframework.data.rest.core.annotation.HandleBeforeSave;
+import org.springframework.data.rest.core.annotation.RepositoryEventHandler;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+
+/**
+ * Rejects malformed mapping rules before they reach the mappers, which would otherwise skip them on every refresh.
+ */
+@Component
+@RepositoryEventHandler
+public class MappingRuleEventHandler {
+
+    @HandleBeforeCreate
+    public void handleMappingRuleCreate(MappingRule rule) {
+        validate(rule);
+    }
+
+    @HandleBeforeSave
+    public void handleMappingRuleSave(MappingRule rule) {
+        validate(rule);
+    }
+
+    private static void validate(MappingRule rule) {
+        if (rule.getDetector() == null) {
+            throw badRequest("Mapping rule must reference a detector");
+        }
+        if (rule.getKeyPattern() == null || rule.getKeyPattern().isEmpty()) {
+            throw badRequest("Mapping rule must have a key pattern; use '*' to match any key");
+        }
+        if (rule.getTagPredicates() != null) {
+            for (Map.Entry<String, Object> predicate : rule.getTagPredicates().entrySet()) {
+                if (!(predicate.getValue() instanceof String)) {
+                    throw badRequest("Tag predicate must be a string pattern: tag=" + predicate.getKey());
+                }
+            }
+        }
+    }
+
+    private static ResponseStatusException badRequest(String reason) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, reason);
+    }
+}
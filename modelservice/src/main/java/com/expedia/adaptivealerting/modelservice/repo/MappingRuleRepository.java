@@ -0,0 +1,49 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.repo;
+
+import com.expedia.adaptivealerting.modelservice.entity.MappingRule;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RestResource;
+
+import java.util.List;
+
+/**
+ * Spring Data repository for pattern-based metric/detector mapping rules.
+ */
+public interface MappingRuleRepository extends PagingAndSortingRepository<MappingRule, Long> {
+
+    /**
+     * Finds the rules mapping metrics to the given detector.
+     *
+     * @param uuid Detector uuid.
+     * @return Rules for the detector.
+     */
+    @Query("select r from MappingRule r where r.detector.uuid = :uuid")
+    List<MappingRule> findByDetectorUuid(@Param("uuid") String uuid);
+
+    /**
+     * Finds the enabled rules of enabled detectors, fetching the detectors in the same query. Backs the rule set
+     * export the mappers compile, so it isn't exported as a search resource.
+     *
+     * @return Enabled rules.
+     */
+    @RestResource(exported = false)
+    @Query("select r from MappingRule r join fetch r.detector d where r.enabled = true and d.enabled = true")
+    List<MappingRule> findActiveRules();
+}
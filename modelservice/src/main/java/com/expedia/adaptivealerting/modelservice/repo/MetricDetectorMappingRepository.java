@@ -16,12 +16,68 @@
 package com.expedia.adaptivealerting.modelservice.repo;
 
 import com.expedia.adaptivealerting.modelservice.entity.MetricDetectorMapping;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RestResource;
+
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 /**
  * Spring Data repository for metric/model mappings.
  */
 public interface MetricDetectorMappingRepository extends PagingAndSortingRepository<MetricDetectorMapping, Long> {
 
+    /**
+     * Finds the hashes of all metrics that are mapped to at least one detector.
+     *
+     * @return Hashes of the mapped metrics.
+     */
+    @RestResource(exported = false)
+    @Query("select distinct mdm.metric.hash from MetricDetectorMapping mdm")
+    List<String> findMappedMetricHashes();
+
+    /**
+     * Finds the largest mapping id, which serves as the cursor for incremental mapping index exports.
+     *
+     * @return Largest mapping id, or null if there are no mappings.
+     */
+    @RestResource(exported = false)
+    @Query("select max(mdm.id) from MetricDetectorMapping mdm")
+    Long findMaxId();
+
+    /**
+     * Sums the CRC32 of {@code metricHash:detectorUuid} over all mappings. Unlike the count and the largest id, the
+     * checksum also changes when a mapping is updated in place, or deleted and replaced by one with a lower id.
+     *
+     * @return Mapping checksum, or 0 if there are no mappings.
+     */
+    @RestResource(exported = false)
+    @Query(nativeQuery = true, value = "SELECT CAST(COALESCE(SUM(CRC32(CONCAT(m.hash, ':', d.uuid))), 0) AS UNSIGNED) "
+            + "FROM metric_detector_mapping mdm "
+            + "JOIN metric m ON m.id = mdm.metric_id "
+            + "JOIN detector d ON d.id = mdm.detector_id")
+    Long findChecksum();
+
+    /**
+     * Streams the (id, metric hash, detector uuid) triples of the mappings in the given id range, ordered by id. The
+     * MySQL driver only streams rows when the fetch size is {@link Integer#MIN_VALUE}; callers must consume the stream
+     * inside a read-only transaction and close it.
+     *
+     * @param afterId Exclusive lower id bound.
+     * @param maxId   Inclusive upper id bound.
+     * @return Stream of mapping index rows.
+     */
+    @RestResource(exported = false)
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("select mdm.id, mdm.metric.hash, mdm.detector.uuid from MetricDetectorMapping mdm "
+            + "where mdm.id > :afterId and mdm.id <= :maxId order by mdm.id")
+    Stream<Object[]> streamIndexRows(@Param("afterId") long afterId, @Param("maxId") long maxId);
+
 }
 
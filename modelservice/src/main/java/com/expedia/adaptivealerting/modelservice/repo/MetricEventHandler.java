@@ -36,6 +36,7 @@ public class MetricEventHandler {
         // but might be worth re-visiting.
         // With this implementation we do have a potential race condition where a metric with
         // a matching hash could added after findByHash but before save.
+        // The bulk import endpoint upserts metrics and doesn't have this race.
         Object existingMetric = metricRepository.findByHash(object.getHash());
         if (existingMetric != null) {
             throw new ItemExistsException(existingMetric);
@@ -23,6 +23,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import org.springframework.data.rest.core.annotation.RestResource;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -53,4 +54,38 @@ public interface ModelRepository extends PagingAndSortingRepository<Model, Long>
     // FIXME Shouldn't this return a single model? [WLW]
     @RestResource(rel = "findLatestByDetectorUuid", path = "findLatestByDetectorUuid")
     List<Model> findTopByDetectorUuidOrderByDateCreatedDesc(@Param("uuid") String uuid);
+
+    /**
+     * Finds the latest model for each of the given detectors in a single query. Detectors without models are absent
+     * from the result.
+     *
+     * @param uuids Detector uuids.
+     * @return Latest model for each detector that has one.
+     */
+    @Query(nativeQuery = true, value = "SELECT m1.*\n" +
+            "FROM model m1\n" +
+            "       join (SELECT model.detector_id, MAX(model.date_created) max_date_created\n" +
+            "             FROM model\n" +
+            "                    join detector d on d.id = model.detector_id\n" +
+            "             where d.uuid in (:uuids)\n" +
+            "             GROUP BY model.detector_id) filtered_table\n" +
+            "where m1.detector_id = filtered_table.detector_id\n" +
+            "  and m1.date_created = filtered_table.max_date_created")
+    @RestResource(exported = false)
+    List<Model> findLatestByDetectorUuids(@Param("uuids") List<String> uuids);
+
+    /**
+     * Finds the latest model for each of the given detectors, fetching the detector and its type in the same query so
+     * callers can read them without further lazy loads. The latest model is looked up through the
+     * (detector_id, date_created) index. Models created in the same instant come back newest id first.
+     *
+     * @param uuids Detector uuids.
+     * @return Latest models with their detectors. Detectors without models are absent from the result.
+     */
+    @RestResource(exported = false)
+    @Query("select m from Model m join fetch m.detector d join fetch d.type " +
+            "where d.uuid in :uuids " +
+            "and m.dateCreated = (select max(m2.dateCreated) from Model m2 where m2.detector = d) " +
+            "order by m.id desc")
+    List<Model> findDetectorBundles(@Param("uuids") Collection<String> uuids);
 }
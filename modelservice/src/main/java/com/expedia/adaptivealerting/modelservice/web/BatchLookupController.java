@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.web;
+
+import com.expedia.adaptivealerting.modelservice.cache.DetectorLookupCache;
+import com.expedia.adaptivealerting.modelservice.entity.Model;
+import com.expedia.adaptivealerting.modelservice.repo.ModelRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batched lookups for the detector mapper and manager. Spring Data REST search resources only support GET, and a few
+ * hundred hashes or UUIDs don't fit in a query string, so these take the keys in a POST body instead.
+ */
+@RestController
+public class BatchLookupController {
+    public static final int MAX_BATCH_SIZE = 1000;
+
+    @Autowired
+    private DetectorLookupCache lookupCache;
+
+    @Autowired
+    private ModelRepository modelRepository;
+
+    /**
+     * Finds the detector UUIDs for each of the given metric hashes.
+     *
+     * @param hashes Metric hashes.
+     * @return Detector UUIDs keyed by metric hash. Every requested hash is present, with an empty list if it has no
+     * detectors, so callers can tell "no detectors" from "not looked up".
+     */
+    @PostMapping(value = "/api/batch/detectorUuidsByMetricHash")
+    public Map<String, List<String>> findDetectorUuidsByMetricHash(@RequestBody List<String> hashes) {
+        checkBatchSize(hashes);
+        return lookupCache.findDetectorUuidsByMetricHashes(new LinkedHashSet<>(hashes));
+    }
+
+    /**
+     * Finds the latest model for each of the given detectors. The response has the same shape as the
+     * {@code findLatestByDetectorUuid} search resource.
+     *
+     * @param uuids Detector UUIDs.
+     * @return Latest models. Detectors without models are absent.
+     */
+    @PostMapping(value = "/api/batch/latestModelsByDetectorUuid")
+    public Map<String, Object> findLatestModelsByDetectorUuid(@RequestBody List<String> uuids) {
+        checkBatchSize(uuids);
+        List<Map<String, Object>> models = new ArrayList<>();
+        if (!uuids.isEmpty()) {
+            for (Model model : modelRepository.findLatestByDetectorUuids(new ArrayList<>(new LinkedHashSet<>(uuids)))) {
+                models.add(toResource(model));
+            }
+        }
+        return Collections.singletonMap("_embedded", Collections.singletonMap("models", models));
+    }
+
+    private static void checkBatchSize(List<String> keys) {
+        if (keys == null || keys.size() > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    "Batch must contain at most " + MAX_BATCH_SIZE + " keys");
+        }
+    }
+
+    private static Map<String, Object> toResource(Model model) {
+        Map<String, Object> resource = new LinkedHashMap<>();
+        resource.put("id", model.getId());
+        resource.put("uuid", model.getDetector().getUuid());
+        resource.put("detectorType", model.getDetector().getType());
+        resource.put("params", model.getParams());
+        resource.put("dateCreated", model.getDateCreated());
+        return resource;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.web;
+
+import com.expedia.adaptivealerting.modelservice.bulk.BulkImportResult;
+import com.expedia.adaptivealerting.modelservice.bulk.BulkImporter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bulk import endpoints for onboarding. Each takes a newline-delimited JSON body with one item per line and returns a
+ * result per item, so a client can fix and resubmit just the failed lines. Imports are idempotent.
+ */
+@RestController
+public class BulkImportController {
+
+    @Autowired
+    private BulkImporter importer;
+
+    @PostMapping(value = "/api/bulk/metrics")
+    public BulkImportResult importMetrics(InputStream body) throws IOException {
+        try {
+            return importer.importMetrics(reader(body));
+        } catch (IllegalArgumentException e) {
+            throw badRequest(e);
+        }
+    }
+
+    @PostMapping(value = "/api/bulk/detectors")
+    public BulkImportResult importDetectors(InputStream body) throws IOException {
+        try {
+            return importer.importDetectors(reader(body));
+        } catch (IllegalArgumentException e) {
+            throw badRequest(e);
+        }
+    }
+
+    @PostMapping(value = "/api/bulk/mappings")
+    public BulkImportResult importMappings(InputStream body) throws IOException {
+        try {
+            return importer.importMappings(reader(body));
+        } catch (IllegalArgumentException e) {
+            throw badRequest(e);
+        }
+    }
+
+    private static Reader reader(InputStream body) {
+        return new InputStreamReader(body, StandardCharsets.UTF_8);
+    }
+
+    private static ResponseStatusException badRequest(IllegalArgumentException e) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.web;
+
+import com.expedia.adaptivealerting.modelservice.ChangeLogSettings;
+import com.expedia.adaptivealerting.modelservice.entity.DetectorChange;
+import com.expedia.adaptivealerting.modelservice.repo.DetectorChangeRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves the detector change log, so clients can sync incrementally instead of polling for recently updated
+ * detectors. A client reads the head once, then repeatedly asks for the changes since the cursor returned by its last
+ * call. Each call costs in proportion to the number of changes, not the number of detectors.
+ * <p>
+ * Both calls stop before the first seq that isn't visible yet, so a cursor never moves past a change that commits
+ * later. A missing seq only stops them until a later change has settled, after which it's taken to have rolled back
+ * (see {@link DetectorChangeRepository}).
+ */
+@RestController
+public class ChangeLogController {
+
+    @Autowired
+    private DetectorChangeRepository changeRepository;
+
+    @Autowired
+    private ChangeLogSettings settings;
+
+    /**
+     * Returns the cursor of the latest change with no missing seqs before it.
+     *
+     * @return Cursor a client with an up-to-date view passes to its first {@link #changesSince(long, int)} call.
+     */
+    @GetMapping(value = "/api/changes/head")
+    public Map<String, Object> head() {
+        long settledSeq = changeRepository.findSettledSeq(settings.getSettleSeconds());
+
+        // Everything up to the settled seq is final, so only the changes since need checking for gaps.
+        long head = settledSeq;
+        int pageSize = settings.getMaxLimit();
+        int servable;
+        do {
+            List<DetectorChange> changes = changeRepository.findChangesSince(head, pageSize);
+            servable = servablePrefix(changes, head, settledSeq);
+            if (servable > 0) {
+                head = changes.get(servable - 1).getSeq();
+            }
+        } while (servable == pageSize);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("cursor", head);
+        return result;
+    }
+
+    /**
+     * Returns the changes after the given cursor, in order.
+     *
+     * @param cursor Cursor returned by the previous call, or by {@link #head()}.
+     * @param limit  Maximum number of changes.
+     * @return Changes, the cursor for the next call, and whether more changes are available right away.
+     */
+    @GetMapping(value = "/api/changes")
+    public Map<String, Object> changesSince(
+            @RequestParam("since") long cursor,
+            @RequestParam(value = "limit", defaultValue = "1000") int limit) {
+
+        if (cursor < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "since must be >= 0");
+        }
+        if (limit <= 0 || limit > settings.getMaxLimit()) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    "limit must be between 1 and " + settings.getMaxLimit());
+        }
+
+        // Read the settled seq first, so it can't cover a change committed after the changes were read.
+        long settledSeq = changeRepository.findSettledSeq(settings.getSettleSeconds());
+        List<DetectorChange> changes = changeRepository.findChangesSince(cursor, limit);
+        int servable = servablePrefix(changes, cursor, settledSeq);
+
+        List<Map<String, Object>> entries = new ArrayList<>(servable);
+        long nextCursor = cursor;
+        for (DetectorChange change : changes.subList(0, servable)) {
+            entries.add(toEntry(change));
+            nextCursor = change.getSeq();
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("cursor", nextCursor);
+        result.put("hasMore", servable == limit);
+        result.put("changes", entries);
+        return result;
+    }
+
+    /**
+     * Returns how many of the given changes, which follow the cursor in seq order, can be served: all of them up to the
+     * first one preceded by a missing seq. A missing seq doesn't count if the change after it is at or below the
+     * settled seq, since the transaction that took it is then older than the settle window.
+     */
+    private static int servablePrefix(List<DetectorChange> changes, long cursor, long settledSeq) {
+        long previous = cursor;
+        for (int i = 0; i < changes.size(); i++) {
+            long seq = changes.get(i).getSeq();
+            if (seq != previous + 1 && seq > settledSeq) {
+                return i;
+            }
+            previous = seq;
+        }
+        return changes.size();
+    }
+
+    private static Map<String, Object> toEntry(DetectorChange change) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("seq", change.getSeq());
+        entry.put("detectorUuid", change.getDetectorUuid());
+        entry.put("metricHash", change.getMetricHash());
+        entry.put("source", change.getSource());
+        entry.put("type", change.getChangeType());
+        return entry;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.web;
+
+import com.expedia.adaptivealerting.modelservice.cache.DetectorLookupCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Detector bundles: everything a detector manager needs to build a detector, i.e. the detector UUID, type key,
+ * enabled flag, latest model params and anomaly type, loaded in a single query and cached.
+ */
+@RestController
+public class DetectorBundleController {
+
+    @Autowired
+    private DetectorLookupCache lookupCache;
+
+    /**
+     * Finds the bundle for the given detector.
+     *
+     * @param uuid Detector UUID.
+     * @return Detector bundle.
+     * @throws ResponseStatusException with status 404 if the detector doesn't exist or has no models
+     */
+    @GetMapping(value = "/api/detectorBundle")
+    public Map<String, Object> findDetectorBundle(@RequestParam("uuid") String uuid) {
+        return lookupCache.findDetectorBundle(uuid).orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.NOT_FOUND, "No models for detector " + uuid));
+    }
+
+    /**
+     * Finds the bundles for the given detectors.
+     *
+     * @param uuids Detector UUIDs.
+     * @return Detector bundles. Detectors without models are absent.
+     */
+    @PostMapping(value = "/api/batch/detectorBundles")
+    public List<Map<String, Object>> findDetectorBundles(@RequestBody List<String> uuids) {
+        if (uuids == null || uuids.size() > BatchLookupController.MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    "Batch must contain at most " + BatchLookupController.MAX_BATCH_SIZE + " keys");
+        }
+        return lookupCache.findDetectorBundles(new LinkedHashSet<>(uuids));
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.web;
+
+import com.expedia.adaptivealerting.modelservice.cache.DetectorLookupCache;
+import com.expedia.adaptivealerting.modelservice.event.DetectorUpdatePublisher;
+import com.expedia.adaptivealerting.modelservice.repo.DetectorRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.rest.webmvc.RepositoryRestController;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+/**
+ * Serves the detector toggle at its original search resource path. The toggle is a bulk update, which skips the
+ * repository events, so this controller invalidates the cached detector bundle and publishes the change itself.
+ * Otherwise detector managers would keep seeing the old enabled flag.
+ */
+@RepositoryRestController
+public class DetectorToggleController {
+
+    @Autowired
+    private DetectorRepository detectorRepository;
+
+    @Autowired
+    private DetectorLookupCache lookupCache;
+
+    @Autowired(required = false)
+    private DetectorUpdatePublisher updatePublisher;
+
+    /**
+     * Enables or disables a detector.
+     *
+     * @param enabled Whether the detector is enabled.
+     * @param uuid    Detector uuid.
+     * @return Number of updated detectors.
+     */
+    @GetMapping(value = "/detectors/search/toggleDetector")
+    public ResponseEntity<Integer> toggleDetector(
+            @RequestParam("enabled") Boolean enabled,
+            @RequestParam("uuid") String uuid) {
+
+        int updated = detectorRepository.toggleDetector(enabled, uuid);
+        if (updated > 0) {
+            lookupCache.invalidateDetector(uuid);
+            if (updatePublisher != null) {
+                updatePublisher.publishUpdate(uuid, enabled);
+            }
+        }
+        return ResponseEntity.ok(updated);
+    }
+}
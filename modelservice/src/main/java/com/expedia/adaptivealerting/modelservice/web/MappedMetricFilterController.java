@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.web;
+
+import com.expedia.adaptivealerting.modelservice.filter.MappedMetricFilterProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Serves the Bloom filter of mapped metric hashes. The filter uses Guava's {@code BloomFilter} serialized form over
+ * UTF-8 encoded metric hashes.
+ */
+@RestController
+public class MappedMetricFilterController {
+    public static final String VERSION_HEADER = "X-Filter-Version";
+
+    @Autowired
+    private MappedMetricFilterProvider filterProvider;
+
+    /**
+     * Returns the filter, or 304 Not Modified if the client's {@code If-None-Match} already names its version. The
+     * version is sent in both the {@code X-Filter-Version} header and the ETag.
+     */
+    @GetMapping(value = "/api/mappedMetricFilter", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> getFilter(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        MappedMetricFilterProvider.MappedMetricFilter filter = filterProvider.getFilter();
+        String etag = "\"" + filter.getVersion() + "\"";
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .header(VERSION_HEADER, filter.getVersion())
+                    .eTag(etag)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .header(VERSION_HEADER, filter.getVersion())
+                .eTag(etag)
+                .body(filter.getContent());
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.web;
+
+import com.expedia.adaptivealerting.modelservice.index.MappingIndexExporter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Streams the metric-to-detector mapping index. See {@link MappingIndexExporter} for the format.
+ */
+@RestController
+public class MappingIndexController {
+    public static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
+    @Autowired
+    private MappingIndexExporter exporter;
+
+    @GetMapping(value = "/api/mappingIndex")
+    public void exportMappingIndex(
+            @RequestParam(value = "afterId", defaultValue = "0") long afterId,
+            HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON_CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        exporter.export(afterId, response.getOutputStream());
+    }
+}
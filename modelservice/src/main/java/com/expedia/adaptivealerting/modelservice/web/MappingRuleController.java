@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.web;
+
+import com.expedia.adaptivealerting.modelservice.entity.MappingRule;
+import com.expedia.adaptivealerting.modelservice.repo.MappingRuleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exports the active mapping rules in a compact form for the mappers, which compile them into a local matcher. The
+ * rules themselves are managed through the {@code /api/mappingRules} repository resource.
+ */
+@RestController
+public class MappingRuleController {
+
+    @Autowired
+    private MappingRuleRepository mappingRuleRepository;
+
+    /**
+     * Returns the enabled rules of enabled detectors.
+     *
+     * @return Rules with their id, detector UUID, key pattern and tag predicates.
+     */
+    @GetMapping(value = "/api/mappingRuleSet")
+    public List<Map<String, Object>> findActiveRules() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (MappingRule rule : mappingRuleRepository.findActiveRules()) {
+            result.add(toEntry(rule));
+        }
+        return result;
+    }
+
+    private static Map<String, Object> toEntry(MappingRule rule) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("id", rule.getId());
+        entry.put("detectorUuid", rule.getDetector().getUuid());
+        entry.put("keyPattern", rule.getKeyPattern());
+        entry.put("tags", rule.getTagPredicates() == null ? new LinkedHashMap<>() : rule.getTagPredicates());
+        return entry;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.web;
+
+import com.expedia.adaptivealerting.modelservice.cache.DetectorLookupCache;
+import com.expedia.adaptivealerting.modelservice.repo.DetectorRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+/**
+ * Slim versions of the detector mapper and manager's hot lookups. The equivalent search resources wrap their results
+ * in HAL {@code _embedded} envelopes with links and inline whole detectors; these return just the fields the callers
+ * read. Responses are JSON by default and Smile for clients sending {@code Accept: application/x-jackson-smile}, and
+ * large ones are gzipped (see {@code server.compression}).
+ */
+@RestController
+public class SlimReadController {
+
+    @Autowired
+    private DetectorRepository detectorRepository;
+
+    @Autowired
+    private DetectorLookupCache lookupCache;
+
+    /**
+     * Finds the detector UUIDs for the given metric hash.
+     *
+     * @param hash Metric hash.
+     * @return Detector UUIDs, empty if the metric has no detectors.
+     */
+    @GetMapping(value = "/api/slim/detectorUuidsByMetricHash")
+    public List<String> findDetectorUuidsByMetricHash(@RequestParam("hash") String hash) {
+        return lookupCache.findDetectorUuidsByMetricHash(hash);
+    }
+
+    /**
+     * Finds the UUIDs of the detectors updated within the given interval.
+     *
+     * @param interval Interval in minutes.
+     * @return Detector UUIDs.
+     */
+    @GetMapping(value = "/api/slim/updatedDetectorUuids")
+    public List<String> findUpdatedDetectorUuids(@RequestParam("interval") int interval) {
+        if (interval <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "interval must be strictly positive");
+        }
+        return detectorRepository.findUuidsUpdatedWithin(interval);
+    }
+}
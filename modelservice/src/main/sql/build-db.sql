@@ -30,7 +30,8 @@ CREATE TABLE detector (
   last_update_timestamp timestamp default CURRENT_TIMESTAMP NOT NULL  on update CURRENT_TIMESTAMP,
   date_created          timestamp default CURRENT_TIMESTAMP NULL     DEFAULT CURRENT_TIMESTAMP,
   created_by            varchar(100),
-  constraint model_type_id_fk foreign key (model_type_id) references model_type (id)
+  constraint model_type_id_fk foreign key (model_type_id) references model_type (id),
+  index (last_update_timestamp)
 );
 
 create table model (
@@ -41,7 +42,8 @@ create table model (
   strong_sigmas decimal(3, 3),
   other_stuff   json,
   date_created  timestamp                         default CURRENT_TIMESTAMP,
-  constraint detector_id_fk foreign key (detector_id) references detector (id)
+  constraint detector_id_fk foreign key (detector_id) references detector (id),
+  index (detector_id, date_created)
 );
 
 create table metric_detector_mapping (
@@ -54,6 +56,69 @@ create table metric_detector_mapping (
   unique index (metric_id, detector_id)
 );
 
+-- Pattern-based mappings. Mappers match every metric against the rules locally, so one rule covers any number of
+-- metrics without per-metric mapping rows. key_pattern is a glob over the metric key ('*' matches any run of
+-- characters, '?' a single character); tag_predicates maps tag names to value globs, all of which must match.
+create table mapping_rule (
+  id                    int unsigned primary key            not null auto_increment,
+  detector_id           int unsigned                        not null,
+  key_pattern           varchar(255)                        not null,
+  tag_predicates        json,
+  enabled               boolean                                      default true,
+  created_by            varchar(100),
+  last_update_timestamp timestamp default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP,
+  date_created          timestamp                                    default CURRENT_TIMESTAMP,
+  constraint detector_id_rule_fk foreign key (detector_id) references detector (id)
+);
+
+-- Ordered log of detector changes. Detector managers and mappers sync incrementally by reading the entries after the
+-- last seq they saw. The triggers below write the entries in the same transaction as the change itself, so writes
+-- through any path are covered, including deletes and model inserts. source is DETECTOR, MODEL or MAPPING and
+-- change_type is UPSERT or DELETE. metric_hash is set for mapping changes.
+create table detector_change_log (
+  seq           bigint unsigned primary key not null auto_increment,
+  detector_uuid char(36)                    not null,
+  metric_hash   char(36),
+  source        varchar(16)                 not null,
+  change_type   varchar(16)                 not null,
+  date_created  timestamp                            default CURRENT_TIMESTAMP
+);
+
+create trigger detector_after_insert after insert on detector for each row
+  insert into detector_change_log (detector_uuid, source, change_type) values (NEW.uuid, 'DETECTOR', 'UPSERT');
+
+create trigger detector_after_update after update on detector for each row
+  insert into detector_change_log (detector_uuid, source, change_type) values (NEW.uuid, 'DETECTOR', 'UPSERT');
+
+create trigger detector_after_delete after delete on detector for each row
+  insert into detector_change_log (detector_uuid, source, change_type) values (OLD.uuid, 'DETECTOR', 'DELETE');
+
+create trigger model_after_insert after insert on model for each row
+  insert into detector_change_log (detector_uuid, source, change_type)
+  select d.uuid, 'MODEL', 'UPSERT' from detector d where d.id = NEW.detector_id;
+
+create trigger model_after_update after update on model for each row
+  insert into detector_change_log (detector_uuid, source, change_type)
+  select d.uuid, 'MODEL', 'UPSERT' from detector d where d.id = NEW.detector_id;
+
+create trigger model_after_delete after delete on model for each row
+  insert into detector_change_log (detector_uuid, source, change_type)
+  select d.uuid, 'MODEL', 'DELETE' from detector d where d.id = OLD.detector_id;
+
+create trigger mapping_after_insert after insert on metric_detector_mapping for each row
+  insert into detector_change_log (detector_uuid, metric_hash, source, change_type)
+  select d.uuid, m.hash, 'MAPPING', 'UPSERT' from detector d, metric m where d.id = NEW.detector_id and m.id = NEW.metric_id;
+
+create trigger mapping_after_update after update on metric_detector_mapping for each row
+  insert into detector_change_log (detector_uuid, metric_hash, source, change_type)
+  select d.uuid, m.hash, 'MAPPING', 'DELETE' from detector d, metric m where d.id = OLD.detector_id and m.id = OLD.metric_id
+  union all
+  select d.uuid, m.hash, 'MAPPING', 'UPSERT' from detector d, metric m where d.id = NEW.detector_id and m.id = NEW.metric_id;
+
+create trigger mapping_after_delete after delete on metric_detector_mapping for each row
+  insert into detector_change_log (detector_uuid, metric_hash, source, change_type)
+  select d.uuid, m.hash, 'MAPPING', 'DELETE' from detector d, metric m where d.id = OLD.detector_id and m.id = OLD.metric_id;
+
 create table user (
   id       int unsigned primary key not null auto_increment,
   username varchar(100) unique      not null,
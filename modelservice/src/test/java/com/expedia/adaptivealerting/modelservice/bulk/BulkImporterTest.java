@@ -0,0 +1,260 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.bulk;
+
+import com.expedia.adaptivealerting.modelservice.BulkImportSettings;
+import com.expedia.adaptivealerting.modelservice.bulk.BulkImportResult.ItemResult;
+import com.expedia.adaptivealerting.modelservice.bulk.BulkImportResult.Status;
+import com.expedia.adaptivealerting.modelservice.cache.DetectorLookupCache;
+import com.expedia.adaptivealerting.modelservice.event.DetectorUpdatePublisher;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BulkImporterTest {
+    private static final String DETECTOR_UUID = "4fdc3395-e969-449a-a306-201db183c6d7";
+
+    /* Class under test */
+    @InjectMocks
+    private BulkImporter importer;
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private DetectorLookupCache lookupCache;
+
+    @Mock
+    private DetectorUpdatePublisher updatePublisher;
+
+    @Mock
+    private BulkImportSettings settings;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(settings.getChunkSize()).thenReturn(100);
+        when(settings.getMaxItems()).thenReturn(10);
+    }
+
+    @Test
+    public void testImportMetrics() throws Exception {
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO metric"), any(SqlParameterSource[].class)))
+                .thenReturn(new int[]{1, 2, 0});
+
+        BulkImportResult result = importer.importMetrics(new StringReader(
+                "{\"key\":\"a\",\"hash\":\"1.a\"}\n" +
+                        "\n" +
+                        "{\"key\":\"b\",\"hash\":\"1.b\",\"tags\":{\"unit\":\"ms\"}}\n" +
+                        "not json\n" +
+                        "{\"key\":\"c\"}\n" +
+                        "{\"key\":\"d\",\"hash\":\"1.d\"}\n"));
+
+        assertEquals(5, result.getTotal());
+        assertEquals(1, result.getCreated());
+        assertEquals(1, result.getUpdated());
+        assertEquals(1, result.getUnchanged());
+        assertEquals(2, result.getFailed());
+
+        List<ItemResult> items = result.getResults();
+        assertItem(items.get(0), 1, "1.a", Status.CREATED);
+        assertItem(items.get(1), 3, "1.b", Status.UPDATED);
+        assertItem(items.get(2), 4, null, Status.FAILED);
+        assertItem(items.get(3), 5, null, Status.FAILED);
+        assertEquals("hash is required", items.get(3).getMessage());
+        assertItem(items.get(4), 6, "1.d", Status.UNCHANGED);
+    }
+
+    @Test
+    public void testImportMetrics_chunked() throws Exception {
+        when(settings.getChunkSize()).thenReturn(2);
+        when(jdbcTemplate.batchUpdate(anyString(), any(SqlParameterSource[].class)))
+                .thenReturn(new int[]{1, 1})
+                .thenReturn(new int[]{1});
+
+        BulkImportResult result = importer.importMetrics(new StringReader(
+                "{\"key\":\"a\",\"hash\":\"1.a\"}\n" +
+                        "{\"key\":\"b\",\"hash\":\"1.b\"}\n" +
+                        "{\"key\":\"c\",\"hash\":\"1.c\"}"));
+
+        assertEquals(3, result.getCreated());
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), any(SqlParameterSource[].class));
+    }
+
+    @Test
+    public void testImportMetrics_chunkRolledBack() throws Exception {
+        when(settings.getChunkSize()).thenReturn(1);
+        when(jdbcTemplate.batchUpdate(anyString(), any(SqlParameterSource[].class)))
+                .thenThrow(new DataIntegrityViolationException("Duplicate entry"))
+                .thenReturn(new int[]{1});
+
+        BulkImportResult result = importer.importMetrics(new StringReader(
+                "{\"key\":\"a\",\"hash\":\"1.a\"}\n{\"key\":\"b\",\"hash\":\"1.b\"}"));
+
+        assertEquals(1, result.getFailed());
+        assertEquals(1, result.getCreated());
+        assertEquals(Status.FAILED, result.getResults().get(0).getStatus());
+        assertEquals(Status.CREATED, result.getResults().get(1).getStatus());
+    }
+
+    @Test
+    public void testImportMetrics_checksExistingRows() throws Exception {
+        when(jdbcTemplate.queryForList(startsWith("SELECT ukey, hash"), anyMap())).thenReturn(Arrays.asList(
+                row("ukey", "a", "hash", "1.a", "tags", null),
+                row("ukey", "b", "hash", "1.b", "tags", "{\"unit\": \"ms\"}")));
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO metric"), any(SqlParameterSource[].class)))
+                .thenReturn(new int[]{1});
+
+        BulkImportResult result = importer.importMetrics(new StringReader(
+                "{\"key\":\"a\",\"hash\":\"1.x\"}\n" +
+                        "{\"key\":\"z\",\"hash\":\"1.a\"}\n" +
+                        "{\"key\":\"b\",\"hash\":\"1.b\",\"tags\":{\"unit\":\"ms\"}}\n" +
+                        "{\"key\":\"c\",\"hash\":\"1.c\"}"));
+
+        List<ItemResult> items = result.getResults();
+        assertItem(items.get(0), 1, "1.x", Status.FAILED);
+        assertEquals("key a already has hash 1.a", items.get(0).getMessage());
+        assertItem(items.get(1), 2, "1.a", Status.FAILED);
+        assertEquals("hash 1.a already belongs to metric a", items.get(1).getMessage());
+        assertItem(items.get(2), 3, "1.b", Status.UNCHANGED);
+        assertItem(items.get(3), 4, "1.c", Status.CREATED);
+
+        // Only the new metric is written.
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO metric"),
+                argThat((SqlParameterSource[] params) -> params.length == 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testImportMetrics_tooManyItems() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 11; i++) {
+            body.append("{\"key\":\"k").append(i).append("\",\"hash\":\"1.").append(i).append("\"}\n");
+        }
+        importer.importMetrics(new StringReader(body.toString()));
+    }
+
+    @Test
+    public void testImportDetectors() throws Exception {
+        when(jdbcTemplate.queryForList(startsWith("SELECT ukey"), anyMap()))
+                .thenReturn(Collections.singletonList(row("k", "cusum-detector", "id", 2)));
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO detector"), any(SqlParameterSource[].class)))
+                .thenReturn(new int[]{2});
+        when(jdbcTemplate.queryForList(startsWith("SELECT uuid, enabled"), anyMap()))
+                .thenReturn(Collections.singletonList(row("uuid", DETECTOR_UUID, "enabled", false)));
+
+        BulkImportResult result = importer.importDetectors(new StringReader(
+                "{\"uuid\":\"" + DETECTOR_UUID + "\",\"type\":\"cusum-detector\",\"hyperparams\":{\"alpha\":0.1}}\n" +
+                        "{\"uuid\":\"bad\",\"type\":\"cusum-detector\"}\n" +
+                        "{\"uuid\":\"" + DETECTOR_UUID + "\",\"type\":\"no-such-detector\"}"));
+
+        List<ItemResult> items = result.getResults();
+        assertItem(items.get(0), 1, DETECTOR_UUID, Status.UPDATED);
+        assertItem(items.get(1), 2, "bad", Status.FAILED);
+        assertItem(items.get(2), 3, DETECTOR_UUID, Status.FAILED);
+        assertEquals("Unknown detector type: no-such-detector", items.get(2).getMessage());
+
+        verify(lookupCache, times(1)).invalidateDetector(DETECTOR_UUID);
+        verify(updatePublisher, times(1)).publishUpdate(DETECTOR_UUID, false);
+    }
+
+    @Test
+    public void testImportDetectors_skipsUnchanged() throws Exception {
+        when(jdbcTemplate.queryForList(startsWith("SELECT ukey"), anyMap()))
+                .thenReturn(Collections.singletonList(row("k", "cusum-detector", "id", 2)));
+        when(jdbcTemplate.queryForList(startsWith("SELECT uuid, model_type_id"), anyMap()))
+                .thenReturn(Collections.singletonList(row("uuid", DETECTOR_UUID, "model_type_id", 2,
+                        "hyperparams", "{\"alpha\": 0.1}", "training_meta", null)));
+
+        BulkImportResult result = importer.importDetectors(new StringReader(
+                "{\"uuid\":\"" + DETECTOR_UUID + "\",\"type\":\"cusum-detector\",\"hyperparams\":{\"alpha\":0.1}}"));
+
+        assertItem(result.getResults().get(0), 1, DETECTOR_UUID, Status.UNCHANGED);
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), any(SqlParameterSource[].class));
+        verify(lookupCache, never()).invalidateDetector(anyString());
+        verify(updatePublisher, never()).publishUpdate(anyString(), anyBoolean());
+    }
+
+    @Test
+    public void testImportMappings() throws Exception {
+        when(jdbcTemplate.queryForList(startsWith("SELECT hash"), anyMap()))
+                .thenReturn(Arrays.asList(row("k", "1.a", "id", 10L), row("k", "1.b", "id", 11L)));
+        when(jdbcTemplate.queryForList(startsWith("SELECT uuid AS k"), anyMap()))
+                .thenReturn(Collections.singletonList(row("k", DETECTOR_UUID, "id", 20L)));
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT IGNORE"), any(SqlParameterSource[].class)))
+                .thenReturn(new int[]{1, 0});
+
+        BulkImportResult result = importer.importMappings(new StringReader(
+                mapping("1.a", DETECTOR_UUID) + "\n" +
+                        mapping("1.b", DETECTOR_UUID) + "\n" +
+                        mapping("1.c", DETECTOR_UUID) + "\n" +
+                        mapping("1.a", "e0b0b0b5-5c4f-4c2a-9d0c-4b1c8f0e1a2b")));
+
+        assertEquals(1, result.getCreated());
+        assertEquals(1, result.getUnchanged());
+        assertEquals(2, result.getFailed());
+        assertEquals("Unknown metric hash: 1.c", result.getResults().get(2).getMessage());
+        assertEquals(Status.FAILED, result.getResults().get(3).getStatus());
+
+        verify(lookupCache, times(1)).invalidateMetric("1.a");
+        verify(lookupCache, never()).invalidateMetric("1.b");
+    }
+
+    private static void assertItem(ItemResult item, int line, String key, Status status) {
+        assertEquals(line, item.getLine());
+        assertEquals(key, item.getKey());
+        assertEquals(status, item.getStatus());
+    }
+
+    private static String mapping(String metricHash, String detectorUuid) {
+        return "{\"metricHash\":\"" + metricHash + "\",\"detectorUuid\":\"" + detectorUuid + "\"}";
+    }
+
+    private static Map<String, Object> row(Object... keysAndValues) {
+        Map<String, Object> row = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            row.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return row;
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.cache;
+
+import com.expedia.adaptivealerting.modelservice.LookupCacheSettings;
+import com.expedia.adaptivealerting.modelservice.entity.Detector;
+import com.expedia.adaptivealerting.modelservice.entity.Model;
+import com.expedia.adaptivealerting.modelservice.entity.ModelType;
+import com.expedia.adaptivealerting.modelservice.repo.DetectorRepository;
+import com.expedia.adaptivealerting.modelservice.repo.ModelRepository;
+import com.google.common.base.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DetectorLookupCacheTest {
+
+    @Mock
+    private DetectorRepository detectorRepository;
+
+    @Mock
+    private ModelRepository modelRepository;
+
+    private LookupCacheSettings settings;
+    private MeterRegistry meterRegistry;
+    private long nanos;
+    private DetectorLookupCache cacheUnderTest;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        this.settings = new LookupCacheSettings();
+        settings.setExpireAfterWriteMs(1000);
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.cacheUnderTest = newCache();
+    }
+
+    @Test
+    public void testFindDetectorUuidsByMetricHash_cached() {
+        when(detectorRepository.findDetectorUuidsByMetricHash("hash-1")).thenReturn(Arrays.asList("uuid-1"));
+
+        assertEquals(Collections.singletonList("uuid-1"), cacheUnderTest.findDetectorUuidsByMetricHash("hash-1"));
+        assertEquals(Collections.singletonList("uuid-1"), cacheUnderTest.findDetectorUuidsByMetricHash("hash-1"));
+        verify(detectorRepository, times(1)).findDetectorUuidsByMetricHash("hash-1");
+        assertEquals(0.5, meterRegistry.get("cache.hit.ratio").tag("cache", "detectorUuidsByMetricHash")
+                .gauge().value(), 0.0);
+    }
+
+    @Test
+    public void testFindDetectorUuidsByMetricHash_expires() {
+        when(detectorRepository.findDetectorUuidsByMetricHash("hash-1")).thenReturn(Arrays.asList("uuid-1"));
+
+        cacheUnderTest.findDetectorUuidsByMetricHash("hash-1");
+        nanos += TimeUnit.MILLISECONDS.toNanos(1000);
+        cacheUnderTest.findDetectorUuidsByMetricHash("hash-1");
+        verify(detectorRepository, times(2)).findDetectorUuidsByMetricHash("hash-1");
+    }
+
+    @Test
+    public void testFindDetectorUuidsByMetricHash_invalidateMetric() {
+        when(detectorRepository.findDetectorUuidsByMetricHash("hash-1")).thenReturn(Arrays.asList("uuid-1"));
+
+        cacheUnderTest.findDetectorUuidsByMetricHash("hash-1");
+        cacheUnderTest.invalidateMetric("hash-1");
+        cacheUnderTest.findDetectorUuidsByMetricHash("hash-1");
+        verify(detectorRepository, times(2)).findDetectorUuidsByMetricHash("hash-1");
+    }
+
+    @Test
+    public void testFindDetectorUuidsByMetricHashes_queriesOnlyMisses() {
+        when(detectorRepository.findDetectorUuidsByMetricHash("hash-1")).thenReturn(Arrays.asList("uuid-1"));
+        when(detectorRepository.findDetectorUuidsByMetricHashes(new LinkedHashSet<>(Arrays.asList("hash-2", "hash-3"))))
+                .thenReturn(Collections.singletonList(new Object[]{"hash-2", "uuid-2"}));
+        cacheUnderTest.findDetectorUuidsByMetricHash("hash-1");
+
+        Map<String, List<String>> result = cacheUnderTest.findDetectorUuidsByMetricHashes(
+                Arrays.asList("hash-1", "hash-2", "hash-3"));
+        assertEquals(Arrays.asList("hash-1", "hash-2", "hash-3"), Arrays.asList(result.keySet().toArray()));
+        assertEquals(Collections.singletonList("uuid-1"), result.get("hash-1"));
+        assertEquals(Collections.singletonList("uuid-2"), result.get("hash-2"));
+        assertTrue(result.get("hash-3").isEmpty());
+
+        // All three are cached now, including the one without detectors.
+        cacheUnderTest.findDetectorUuidsByMetricHashes(Arrays.asList("hash-1", "hash-2", "hash-3"));
+        verify(detectorRepository, times(1)).findDetectorUuidsByMetricHashes(
+                new LinkedHashSet<>(Arrays.asList("hash-2", "hash-3")));
+    }
+
+    @Test
+    public void testFindDetectorUuidsByMetricHashes_invalidatedWhileLoadingIsNotCached() {
+        Set<String> hashes = Collections.singleton("hash-1");
+        when(detectorRepository.findDetectorUuidsByMetricHashes(hashes)).thenAnswer(invocation -> {
+            // A mapping change lands between the query and the cache write.
+            cacheUnderTest.invalidateMetric("hash-1");
+            return Collections.singletonList(new Object[]{"hash-1", "uuid-1"});
+        });
+
+        assertEquals(Collections.singletonList("uuid-1"),
+                cacheUnderTest.findDetectorUuidsByMetricHashes(hashes).get("hash-1"));
+        cacheUnderTest.findDetectorUuidsByMetricHashes(hashes);
+        verify(detectorRepository, times(2)).findDetectorUuidsByMetricHashes(hashes);
+    }
+
+    @Test
+    public void testFindDetectorBundle() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("type", "RIGHT_TAILED");
+        when(modelRepository.findDetectorBundles(Collections.singleton("uuid-1")))
+                .thenReturn(Collections.singletonList(model("uuid-1", "constant-detector", false, params)));
+
+        Map<String, Object> bundle = cacheUnderTest.findDetectorBundle("uuid-1").get();
+        assertEquals("uuid-1", bundle.get("uuid"));
+        assertEquals("constant-detector", bundle.get("detectorType"));
+        assertEquals(false, bundle.get("enabled"));
+        assertEquals(params, bundle.get("params"));
+        assertEquals("RIGHT_TAILED", bundle.get("anomalyType"));
+    }
+
+    @Test
+    public void testFindDetectorBundle_absentIsCachedUntilInvalidated() {
+        assertFalse(cacheUnderTest.findDetectorBundle("uuid-1").isPresent());
+        assertFalse(cacheUnderTest.findDetectorBundle("uuid-1").isPresent());
+        verify(modelRepository, times(1)).findDetectorBundles(Collections.singleton("uuid-1"));
+
+        cacheUnderTest.invalidateDetector("uuid-1");
+        cacheUnderTest.findDetectorBundle("uuid-1");
+        verify(modelRepository, times(2)).findDetectorBundles(Collections.singleton("uuid-1"));
+    }
+
+    @Test
+    public void testFindDetectorBundle_invalidatedWhileLoadingIsNotCached() {
+        when(modelRepository.findDetectorBundles(Collections.singleton("uuid-1"))).thenAnswer(invocation -> {
+            cacheUnderTest.invalidateDetector("uuid-1");
+            return Collections.singletonList(model("uuid-1", "ewma-detector", true, Collections.emptyMap()));
+        });
+
+        cacheUnderTest.findDetectorBundle("uuid-1");
+        cacheUnderTest.findDetectorBundle("uuid-1");
+        verify(modelRepository, times(2)).findDetectorBundles(Collections.singleton("uuid-1"));
+    }
+
+    @Test
+    public void testFindDetectorBundles_keepsNewestModelPerDetector() {
+        Model newest = model("uuid-1", "ewma-detector", true, Collections.singletonMap("alpha", 0.2));
+        Model tied = model("uuid-1", "ewma-detector", true, Collections.singletonMap("alpha", 0.1));
+        Model other = model("uuid-2", "ewma-detector", true, Collections.emptyMap());
+        when(modelRepository.findDetectorBundles(new LinkedHashSet<>(Arrays.asList("uuid-1", "uuid-2", "uuid-3"))))
+                .thenReturn(Arrays.asList(newest, tied, other));
+
+        List<Map<String, Object>> bundles = cacheUnderTest.findDetectorBundles(
+                Arrays.asList("uuid-1", "uuid-2", "uuid-3"));
+        assertEquals(2, bundles.size());
+        assertEquals(newest.getParams(), bundles.get(0).get("params"));
+        assertEquals("uuid-2", bundles.get(1).get("uuid"));
+        assertNull(bundles.get(1).get("anomalyType"));
+
+        // Served from the cache, without another query.
+        assertEquals(bundles, cacheUnderTest.findDetectorBundles(Arrays.asList("uuid-1", "uuid-2", "uuid-3")));
+        verify(modelRepository, times(1)).findDetectorBundles(
+                new LinkedHashSet<>(Arrays.asList("uuid-1", "uuid-2", "uuid-3")));
+    }
+
+    @Test
+    public void testDisabled() {
+        settings.setEnabled(false);
+        this.cacheUnderTest = new DetectorLookupCache(
+                detectorRepository, modelRepository, settings, new SimpleMeterRegistry());
+        when(detectorRepository.findDetectorUuidsByMetricHash("hash-1")).thenReturn(Arrays.asList("uuid-1"));
+
+        cacheUnderTest.findDetectorUuidsByMetricHash("hash-1");
+        cacheUnderTest.findDetectorUuidsByMetricHash("hash-1");
+        verify(detectorRepository, times(2)).findDetectorUuidsByMetricHash("hash-1");
+    }
+
+    private DetectorLookupCache newCache() {
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos;
+            }
+        };
+        return new DetectorLookupCache(detectorRepository, modelRepository, settings, meterRegistry, ticker);
+    }
+
+    private static Model model(String uuid, String type, boolean enabled, Map<String, Object> params) {
+        ModelType modelType = new ModelType();
+        modelType.setKey(type);
+        Detector detector = new Detector();
+        detector.setUuid(uuid);
+        detector.setType(modelType);
+        detector.setEnabled(enabled);
+        Model model = new Model();
+        model.setDetector(detector);
+        model.setParams(params);
+        return model;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.filter;
+
+import com.expedia.adaptivealerting.modelservice.MappedMetricFilterSettings;
+import com.expedia.adaptivealerting.modelservice.repo.MetricDetectorMappingRepository;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MappedMetricFilterProviderTest {
+    private static final long REBUILD_INTERVAL_MS = 60000L;
+
+    @Mock
+    private MetricDetectorMappingRepository mappingRepository;
+
+    private final AtomicLong now = new AtomicLong(0L);
+    private MappedMetricFilterProvider providerUnderTest;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        MappedMetricFilterSettings settings = new MappedMetricFilterSettings();
+        settings.setRebuildIntervalMs(REBUILD_INTERVAL_MS);
+        settings.setFalsePositiveRate(0.0001);
+        when(mappingRepository.findMappedMetricHashes()).thenReturn(Arrays.asList("1.abc", "1.def"));
+        this.providerUnderTest = new MappedMetricFilterProvider(mappingRepository, settings, now::get);
+    }
+
+    @Test
+    public void testGetFilter_containsMappedHashes() throws IOException {
+        MappedMetricFilterProvider.MappedMetricFilter filter = providerUnderTest.getFilter();
+        assertEquals(2, filter.getMetricCount());
+
+        BloomFilter<CharSequence> bloomFilter = BloomFilter.readFrom(
+                new ByteArrayInputStream(filter.getContent()),
+                Funnels.stringFunnel(StandardCharsets.UTF_8));
+        assertTrue(bloomFilter.mightContain("1.abc"));
+        assertTrue(bloomFilter.mightContain("1.def"));
+        assertFalse(bloomFilter.mightContain("1.unmapped"));
+    }
+
+    @Test
+    public void testGetFilter_rebuildsAfterInterval() {
+        MappedMetricFilterProvider.MappedMetricFilter filter = providerUnderTest.getFilter();
+        assertSame(filter, providerUnderTest.getFilter());
+        verify(mappingRepository, times(1)).findMappedMetricHashes();
+
+        now.set(REBUILD_INTERVAL_MS);
+        assertEquals(filter.getVersion(), providerUnderTest.getFilter().getVersion());
+
+        when(mappingRepository.findMappedMetricHashes()).thenReturn(Arrays.asList("1.abc", "1.ghi"));
+        now.set(2 * REBUILD_INTERVAL_MS);
+        assertNotEquals(filter.getVersion(), providerUnderTest.getFilter().getVersion());
+    }
+}
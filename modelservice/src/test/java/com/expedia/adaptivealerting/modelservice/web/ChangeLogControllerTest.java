@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.web;
+
+import com.expedia.adaptivealerting.modelservice.ChangeLogSettings;
+import com.expedia.adaptivealerting.modelservice.entity.DetectorChange;
+import com.expedia.adaptivealerting.modelservice.repo.DetectorChangeRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+public class ChangeLogControllerTest {
+
+    /* Class under test */
+    @InjectMocks
+    private ChangeLogController controller;
+
+    @Mock
+    private DetectorChangeRepository changeRepository;
+
+    @Mock
+    private ChangeLogSettings settings;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(settings.getSettleSeconds()).thenReturn(5);
+        when(settings.getMaxLimit()).thenReturn(100);
+    }
+
+    @Test
+    public void testHead() {
+        when(changeRepository.findSettledSeq(5)).thenReturn(40L);
+        when(changeRepository.findChangesSince(40L, 100))
+                .thenReturn(Arrays.asList(change(41L, "uuid-1", "MODEL"), change(42L, "uuid-2", "MODEL")));
+        assertEquals(42L, controller.head().get("cursor"));
+    }
+
+    @Test
+    public void testHead_stopsBeforeUncommittedSeq() {
+        when(changeRepository.findSettledSeq(5)).thenReturn(40L);
+        when(changeRepository.findChangesSince(40L, 100))
+                .thenReturn(Arrays.asList(change(41L, "uuid-1", "MODEL"), change(43L, "uuid-2", "MODEL")));
+        assertEquals(41L, controller.head().get("cursor"));
+    }
+
+    @Test
+    public void testChangesSince() {
+        when(changeRepository.findSettledSeq(5)).thenReturn(12L);
+        when(changeRepository.findChangesSince(10L, 2))
+                .thenReturn(Arrays.asList(change(11L, "uuid-1", "MODEL"), change(12L, "uuid-2", "DETECTOR")));
+
+        Map<String, Object> result = controller.changesSince(10L, 2);
+        assertEquals(12L, result.get("cursor"));
+        assertTrue((Boolean) result.get("hasMore"));
+
+        List<?> changes = (List<?>) result.get("changes");
+        assertEquals(2, changes.size());
+        Map<?, ?> first = (Map<?, ?>) changes.get(0);
+        assertEquals(11L, first.get("seq"));
+        assertEquals("uuid-1", first.get("detectorUuid"));
+        assertEquals("MODEL", first.get("source"));
+        assertEquals("UPSERT", first.get("type"));
+    }
+
+    @Test
+    public void testChangesSince_seqsCommittedOutOfOrder() {
+        // Seq 12's transaction is still open when 13 commits, so nothing past 11 is served.
+        when(changeRepository.findSettledSeq(5)).thenReturn(10L);
+        when(changeRepository.findChangesSince(10L, 10))
+                .thenReturn(Arrays.asList(change(11L, "uuid-1", "MODEL"), change(13L, "uuid-3", "MODEL")));
+
+        Map<String, Object> result = controller.changesSince(10L, 10);
+        assertEquals(11L, result.get("cursor"));
+        assertFalse((Boolean) result.get("hasMore"));
+        assertEquals(1, ((List<?>) result.get("changes")).size());
+
+        // Once 12 commits the client picks up both.
+        when(changeRepository.findChangesSince(11L, 10))
+                .thenReturn(Arrays.asList(change(12L, "uuid-2", "MODEL"), change(13L, "uuid-3", "MODEL")));
+
+        result = controller.changesSince(11L, 10);
+        assertEquals(13L, result.get("cursor"));
+        assertEquals(2, ((List<?>) result.get("changes")).size());
+    }
+
+    @Test
+    public void testChangesSince_skipsSettledGap() {
+        // Seq 12 never appeared and 13 is older than the settle window, so 12 rolled back.
+        when(changeRepository.findSettledSeq(5)).thenReturn(13L);
+        when(changeRepository.findChangesSince(11L, 10))
+                .thenReturn(Arrays.asList(change(13L, "uuid-3", "MODEL"), change(14L, "uuid-4", "MODEL")));
+
+        Map<String, Object> result = controller.changesSince(11L, 10);
+        assertEquals(14L, result.get("cursor"));
+        assertEquals(2, ((List<?>) result.get("changes")).size());
+    }
+
+    @Test
+    public void testChangesSince_noChangesKeepsCursor() {
+        Map<String, Object> result = controller.changesSince(10L, 2);
+        assertEquals(10L, result.get("cursor"));
+        assertFalse((Boolean) result.get("hasMore"));
+    }
+
+    @Test(expected = ResponseStatusException.class)
+    public void testChangesSince_limitTooLarge() {
+        controller.changesSince(0L, 101);
+    }
+
+    @Test(expected = ResponseStatusException.class)
+    public void testChangesSince_negativeCursor() {
+        controller.changesSince(-1L, 10);
+    }
+
+    private static DetectorChange change(long seq, String uuid, String source) {
+        DetectorChange change = new DetectorChange();
+        change.setSeq(seq);
+        change.setDetectorUuid(uuid);
+        change.setSource(source);
+        change.setChangeType("UPSERT");
+        return change;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.web;
+
+import com.expedia.adaptivealerting.modelservice.cache.DetectorLookupCache;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+
+public class DetectorBundleControllerTest {
+
+    /* Class under test */
+    @InjectMocks
+    private DetectorBundleController controller;
+
+    @Mock
+    private DetectorLookupCache lookupCache;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void testFindDetectorBundle() {
+        Map<String, Object> bundle = Collections.singletonMap("uuid", "uuid-1");
+        when(lookupCache.findDetectorBundle("uuid-1")).thenReturn(Optional.of(bundle));
+        assertEquals(bundle, controller.findDetectorBundle("uuid-1"));
+    }
+
+    @Test
+    public void testFindDetectorBundle_notFound() {
+        when(lookupCache.findDetectorBundle("uuid-without-models")).thenReturn(Optional.empty());
+        try {
+            controller.findDetectorBundle("uuid-without-models");
+            fail("Expected ResponseStatusException");
+        } catch (ResponseStatusException e) {
+            assertEquals(HttpStatus.NOT_FOUND, e.getStatus());
+        }
+    }
+
+    @Test
+    public void testFindDetectorBundles_dedupesUuids() {
+        List<Map<String, Object>> bundles = Collections.singletonList(Collections.singletonMap("uuid", "uuid-1"));
+        when(lookupCache.findDetectorBundles(new LinkedHashSet<>(Arrays.asList("uuid-1", "uuid-2"))))
+                .thenReturn(bundles);
+        assertEquals(bundles, controller.findDetectorBundles(Arrays.asList("uuid-1", "uuid-2", "uuid-1")));
+    }
+
+    @Test(expected = ResponseStatusException.class)
+    public void testFindDetectorBundles_tooMany() {
+        controller.findDetectorBundles(Collections.nCopies(BatchLookupController.MAX_BATCH_SIZE + 1, "uuid"));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.web;
+
+import com.expedia.adaptivealerting.modelservice.cache.DetectorLookupCache;
+import com.expedia.adaptivealerting.modelservice.event.DetectorUpdatePublisher;
+import com.expedia.adaptivealerting.modelservice.repo.DetectorRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DetectorToggleControllerTest {
+    private static final String DETECTOR_UUID = "4fdc3395-e969-449a-a306-201db183c6d7";
+
+    /* Class under test */
+    @InjectMocks
+    private DetectorToggleController controller;
+
+    @Mock
+    private DetectorRepository detectorRepository;
+
+    @Mock
+    private DetectorLookupCache lookupCache;
+
+    @Mock
+    private DetectorUpdatePublisher updatePublisher;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void testToggleDetector() {
+        when(detectorRepository.toggleDetector(false, DETECTOR_UUID)).thenReturn(1);
+        assertEquals(Integer.valueOf(1), controller.toggleDetector(false, DETECTOR_UUID).getBody());
+        verify(lookupCache).invalidateDetector(DETECTOR_UUID);
+        verify(updatePublisher).publishUpdate(DETECTOR_UUID, false);
+    }
+
+    @Test
+    public void testToggleDetector_unknownDetector() {
+        when(detectorRepository.toggleDetector(true, DETECTOR_UUID)).thenReturn(0);
+        assertEquals(Integer.valueOf(0), controller.toggleDetector(true, DETECTOR_UUID).getBody());
+        verify(lookupCache, never()).invalidateDetector(anyString());
+        verify(updatePublisher, never()).publishUpdate(anyString(), anyBoolean());
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.web;
+
+import com.expedia.adaptivealerting.modelservice.filter.MappedMetricFilterProvider;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.when;
+
+public class MappedMetricFilterControllerTest {
+    private static final byte[] CONTENT = {1, 2, 3};
+
+    /* Class under test */
+    @InjectMocks
+    private MappedMetricFilterController controller;
+
+    @Mock
+    private MappedMetricFilterProvider filterProvider;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(filterProvider.getFilter())
+                .thenReturn(new MappedMetricFilterProvider.MappedMetricFilter("v1", 3, CONTENT));
+    }
+
+    @Test
+    public void testGetFilter() {
+        ResponseEntity<byte[]> response = controller.getFilter(null);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("v1", response.getHeaders().getFirst(MappedMetricFilterController.VERSION_HEADER));
+        assertEquals("\"v1\"", response.getHeaders().getETag());
+        assertArrayEquals(CONTENT, response.getBody());
+    }
+
+    @Test
+    public void testGetFilter_notModified() {
+        ResponseEntity<byte[]> response = controller.getFilter("\"v1\"");
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("v1", response.getHeaders().getFirst(MappedMetricFilterController.VERSION_HEADER));
+        assertNull(response.getBody());
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2018-2019 Expedia Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expedia.adaptivealerting.modelservice.web;
+
+import com.expedia.adaptivealerting.modelservice.repo.DetectorRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+
+public class SlimReadControllerTest {
+
+    /* Class under test */
+    @InjectMocks
+    private SlimReadController controller;
+
+    @Mock
+    private DetectorRepository detectorRepository;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void testFindUpdatedDetectorUuids() {
+        when(detectorRepository.findUuidsUpdatedWithin(5)).thenReturn(Collections.singletonList("uuid-1"));
+        assertEquals(Collections.singletonList("uuid-1"), controller.findUpdatedDetectorUuids(5));
+    }
+
+    @Test(expected = ResponseStatusException.class)
+    public void testFindUpdatedDetectorUuids_invalidInterval() {
+        controller.findUpdatedDetectorUuids(0);
+    }
+}